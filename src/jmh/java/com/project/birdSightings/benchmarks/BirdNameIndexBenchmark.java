@@ -0,0 +1,64 @@
+package com.project.birdSightings.benchmarks;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.service.BirdNameIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures autocomplete suggestions over a catalog of generated bird names, exact and typo-tolerant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BirdNameIndexBenchmark {
+    private static final int BIRDS = 10_000;
+    private static final String[] COLORS = {"Brown", "Red", "Grey", "White", "Black"};
+
+    private BirdNameIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new BirdNameIndex();
+        Random random = new Random(42);
+        for (int i = 0; i < BIRDS; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 5 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            index.put(new Bird(name.toString(), COLORS[i % COLORS.length], "1", "1"));
+        }
+        index.put(new Bird("Sparrow", "Brown", "3.5", "0.5"));
+    }
+
+    @Benchmark
+    public List<Bird> prefix() {
+        return index.suggest("spa", null, 10, false);
+    }
+
+    @Benchmark
+    public List<Bird> prefixWithColor() {
+        return index.suggest("s", "brown", 10, false);
+    }
+
+    @Benchmark
+    public List<Bird> fuzzy() {
+        return index.suggest("sparow", null, 10, true);
+    }
+}
@@ -0,0 +1,101 @@
+package com.project.birdSightings.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.geo.GeoJsonModule;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON encoding and decoding of the models through the WebFlux Jackson codecs, configured like the
+ * application's ObjectMapper. Run with {@code -prof gc} to see the allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final ResolvableType SIGHTING = ResolvableType.forClass(Sighting.class);
+    private static final ResolvableType BIRD = ResolvableType.forClass(Bird.class);
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private Jackson2JsonEncoder encoder;
+    private Jackson2JsonDecoder decoder;
+    private Sighting sighting;
+    private Bird bird;
+    private byte[] sightingJson;
+    private byte[] birdJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule(), GeoJsonModule.geoJsonModule())
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        encoder = new Jackson2JsonEncoder(objectMapper);
+        decoder = new Jackson2JsonDecoder(objectMapper);
+
+        bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        sighting = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+        sighting.setId("60dd8a9c2f8fb814b56fa181");
+        sighting.setPosition(new GeoJsonPoint(13.4, 52.5));
+        sightingJson = objectMapper.writeValueAsBytes(sighting);
+        birdJson = objectMapper.writeValueAsBytes(bird);
+    }
+
+    @Benchmark
+    public DataBuffer encodeSighting() {
+        return release(encoder.encodeValue(sighting, bufferFactory, SIGHTING, MediaType.APPLICATION_JSON, Collections.emptyMap()));
+    }
+
+    @Benchmark
+    public Sighting decodeSighting() {
+        return (Sighting) decoder.decodeToMono(
+            Mono.just(bufferFactory.wrap(sightingJson)), SIGHTING, MediaType.APPLICATION_JSON, Collections.emptyMap()
+        ).block();
+    }
+
+    @Benchmark
+    public DataBuffer encodeBird() {
+        return release(encoder.encodeValue(bird, bufferFactory, BIRD, MediaType.APPLICATION_JSON, Collections.emptyMap()));
+    }
+
+    @Benchmark
+    public Bird decodeBird() {
+        return (Bird) decoder.decodeToMono(
+            Mono.just(bufferFactory.wrap(birdJson)), BIRD, MediaType.APPLICATION_JSON, Collections.emptyMap()
+        ).block();
+    }
+
+    private static DataBuffer release(DataBuffer buffer) {
+        DataBufferUtils.release(buffer);
+        return buffer;
+    }
+}
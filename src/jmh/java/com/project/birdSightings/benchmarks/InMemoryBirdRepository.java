@@ -0,0 +1,28 @@
+package com.project.birdSightings.benchmarks;
+
+import com.project.birdSightings.model.Bird;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Birds kept in memory by name, backing the bird lookups of the service benchmarks.
+ */
+public class InMemoryBirdRepository {
+    private final Map<String, Bird> birds = new ConcurrentHashMap<>();
+
+    public Mono<Bird> save(Bird bird) {
+        birds.put(bird.getName(), bird);
+        return Mono.just(bird);
+    }
+
+    public Mono<Bird> findById(String name) {
+        return Mono.justOrEmpty(birds.get(name));
+    }
+
+    public Flux<Bird> findAllById(Iterable<String> names) {
+        return Flux.fromIterable(names).filter(birds::containsKey).map(birds::get);
+    }
+}
@@ -0,0 +1,133 @@
+package com.project.birdSightings.benchmarks;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.SightingRepository;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Sightings kept in memory in (date, id) order, so the service benchmarks measure the service and not MongoDB.
+ * Queries follow the same keyset semantics as the MongoDB implementation.
+ */
+public class InMemorySightingRepository implements SightingRepository {
+    private static final Comparator<SightingCursor> ORDER = Comparator
+        .comparing(SightingCursor::getDate)
+        .thenComparing(SightingCursor::getId);
+
+    private final ConcurrentSkipListMap<SightingCursor, Sighting> sightings = new ConcurrentSkipListMap<>(ORDER);
+
+    @Override
+    public Flux<Sighting> inserted() {
+        return Flux.never();
+    }
+
+    @Override
+    public boolean queryReadsMayLag() {
+        return false;
+    }
+
+    @Override
+    public Mono<Sighting> store(Sighting sighting, WriteConcern writeConcern) {
+        if (sighting.getId() == null) {
+            sighting.setId(ObjectId.get().toHexString());
+        }
+        sightings.put(SightingCursor.after(sighting), sighting);
+        return Mono.just(sighting);
+    }
+
+    @Override
+    public Mono<Map<Integer, WriteFailure>> insertUnordered(List<Sighting> batch, WriteConcern writeConcern) {
+        batch.forEach(sighting -> store(sighting, writeConcern));
+        return Mono.just(Collections.emptyMap());
+    }
+
+    @Override
+    public Flux<Sighting> findByIdempotencyKeys(Collection<Sighting> keyed) {
+        Set<String> keys = keyed.stream()
+            .map(Sighting::getIdempotencyKey)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        return Flux.fromIterable(sightings.values()).filter(sighting -> keys.contains(sighting.getIdempotencyKey()));
+    }
+
+    @Override
+    public Mono<Long> clearIdempotencyKeys(String prefix) {
+        long cleared = 0;
+        for (Sighting sighting : sightings.values()) {
+            if (sighting.getIdempotencyKey() != null && sighting.getIdempotencyKey().startsWith(prefix)) {
+                sighting.setIdempotencyKey(null);
+                cleared++;
+            }
+        }
+        return Mono.just(cleared);
+    }
+
+    @Override
+    public Flux<Sighting> findPage(SightingFilter filter, SightingCursor after, int limit) {
+        return stream(filter, after, limit).take(limit);
+    }
+
+    @Override
+    public Flux<Sighting> stream(SightingFilter filter, SightingCursor after, int batchSize) {
+        Map<SightingCursor, Sighting> from = after == null ? sightings : sightings.tailMap(after, false);
+        return Flux.fromIterable(from.values()).filter(matching(filter));
+    }
+
+    @Override
+    public Mono<Sighting> removeById(String id) {
+        return Flux.fromIterable(sightings.entrySet())
+            .filter(entry -> entry.getValue().getId().equals(id))
+            .next()
+            .map(entry -> sightings.remove(entry.getKey()));
+    }
+
+    @Override
+    public Mono<List<Sighting>> removeBatch(SightingFilter filter, int batchSize) {
+        return stream(filter, null, batchSize).take(batchSize)
+            .doOnNext(sighting -> sightings.remove(SightingCursor.after(sighting)))
+            .collectList();
+    }
+
+    @Override
+    public Flux<Sighting> findNear(SightingFilter filter, GeoJsonPoint point, double maxDistanceMeters, int limit) {
+        List<Sighting> near = new ArrayList<>();
+        for (Sighting sighting : sightings.values()) {
+            if (sighting.getPosition() != null && matching(filter).test(sighting)) {
+                near.add(sighting);
+            }
+        }
+        near.sort(Comparator.comparingDouble(sighting -> squaredDistance(point, sighting.getPosition())));
+        return Flux.fromIterable(near).take(limit);
+    }
+
+    private static Predicate<Sighting> matching(SightingFilter filter) {
+        return sighting -> (filter.getBirdName() == null || filter.getBirdName().equals(sighting.getBird().getName()))
+            && (filter.getLocation() == null || filter.getLocation().equals(sighting.getLocation()))
+            && (filter.getStartDate() == null || !sighting.getDate().isBefore(filter.getStartDate()))
+            && (filter.getEndDate() == null || !sighting.getDate().isAfter(filter.getEndDate()));
+    }
+
+    private static double squaredDistance(GeoJsonPoint from, GeoJsonPoint to) {
+        double x = from.getX() - to.getX();
+        double y = from.getY() - to.getY();
+        return x * x + y * y;
+    }
+}
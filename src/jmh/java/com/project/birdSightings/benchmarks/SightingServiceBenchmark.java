@@ -0,0 +1,173 @@
+package com.project.birdSightings.benchmarks;
+
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.metrics.Instrumentation;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.CursorPage;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.repository.BirdRepository;
+import com.project.birdSightings.service.AdmissionControl;
+import com.project.birdSightings.service.BirdCache;
+import com.project.birdSightings.service.BirdService;
+import com.project.birdSightings.service.IdempotencyKeys;
+import com.project.birdSightings.service.Pagination;
+import com.project.birdSightings.service.SightingGroupCommit;
+import com.project.birdSightings.service.SightingRangeCache;
+import com.project.birdSightings.service.SightingService;
+import com.project.birdSightings.service.SightingStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sighting service on top of in-memory repositories, so only the service code, Reactor, the range
+ * cache and the bird cache are on the measured path. Run with {@code -prof gc} to see the allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SightingServiceBenchmark {
+    private static final int SIGHTINGS = 10_000;
+    private static final String[] LOCATIONS = {"Park", "Forest", "Lake", "River", "Garden"};
+
+    private SightingService sightingService;
+    private BirdService birdService;
+    private Bird sparrow;
+    private LocalDate firstDay;
+
+    @Setup
+    public void setUp() {
+        InMemoryBirdRepository birds = new InMemoryBirdRepository();
+        BirdRepository birdRepository = Stubs.backedBy(BirdRepository.class, birds);
+        InMemorySightingRepository sightings = new InMemorySightingRepository();
+
+        Pagination pagination = new Pagination();
+        ReflectionTestUtils.setField(pagination, "defaultLimit", 100);
+        ReflectionTestUtils.setField(pagination, "maxLimit", 1000);
+
+        Instrumentation instrumentation = new Instrumentation();
+        ReflectionTestUtils.setField(instrumentation, "meterRegistry", new SimpleMeterRegistry());
+
+        BirdCache birdCache = new BirdCache();
+        ReflectionTestUtils.setField(birdCache, "birdRepository", birdRepository);
+        ReflectionTestUtils.setField(birdCache, "maximumSize", 10_000L);
+        ReflectionTestUtils.setField(birdCache, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(birdCache, "negativeTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.invokeMethod(birdCache, "init");
+
+        SightingRangeCache sightingRangeCache = new SightingRangeCache();
+        ReflectionTestUtils.setField(sightingRangeCache, "sightingRepository", sightings);
+        ReflectionTestUtils.setField(sightingRangeCache, "enabled", true);
+        ReflectionTestUtils.setField(sightingRangeCache, "maxMemory", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(sightingRangeCache, "maxSegmentSize", 20_000);
+        ReflectionTestUtils.setField(sightingRangeCache, "maxSegments", 400);
+        ReflectionTestUtils.invokeMethod(sightingRangeCache, "init");
+
+        sightingService = new SightingService();
+        ReflectionTestUtils.setField(sightingService, "sightingRepository", sightings);
+        ReflectionTestUtils.setField(sightingService, "birdCache", birdCache);
+        ReflectionTestUtils.setField(sightingService, "pagination", pagination);
+        ReflectionTestUtils.setField(sightingService, "sightingStatsService", new NoOpStatsService());
+        ReflectionTestUtils.setField(sightingService, "ingestBatchSize", 500);
+        ReflectionTestUtils.setField(sightingService, "ingestConcurrency", 4);
+        ReflectionTestUtils.setField(sightingService, "streamBatchSize", 256);
+        ReflectionTestUtils.setField(sightingService, "instrumentation", instrumentation);
+        ReflectionTestUtils.setField(sightingService, "admissionControl", new AdmissionControl());
+        ReflectionTestUtils.setField(sightingService, "sightingGroupCommit", new SightingGroupCommit());
+        ReflectionTestUtils.setField(sightingService, "idempotencyKeys", new IdempotencyKeys());
+        ReflectionTestUtils.setField(sightingService, "sightingRangeCache", sightingRangeCache);
+        ReflectionTestUtils.setField(sightingService, "defaultDurability", Durability.W1);
+
+        birdService = new BirdService();
+        ReflectionTestUtils.setField(birdService, "birdRepository", birdRepository);
+        ReflectionTestUtils.setField(birdService, "birdCache", birdCache);
+        ReflectionTestUtils.setField(birdService, "pagination", pagination);
+        ReflectionTestUtils.setField(birdService, "instrumentation", instrumentation);
+        ReflectionTestUtils.setField(birdService, "admissionControl", new AdmissionControl());
+
+        sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        birds.save(sparrow);
+        birds.save(new Bird("Robin", "Red", "4.5", "0.8"));
+        firstDay = LocalDate.of(2021, 1, 1);
+        for (int i = 0; i < SIGHTINGS; i++) {
+            Bird bird = i % 2 == 0 ? sparrow : new Bird("Robin", "Red", "4.5", "0.8");
+            sightings.store(new Sighting(bird, LOCATIONS[i % LOCATIONS.length], firstDay.plusDays(i % 365)), null);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<Sighting> addSighting() {
+        return sightingService.addSighting(new Sighting(sparrow, "Park", firstDay)).block();
+    }
+
+    @Benchmark
+    public Object addSightingUnknownBird() {
+        return missing(sightingService.addSighting(new Sighting(new Bird("Dodo", null, null, null), "Park", firstDay)));
+    }
+
+    @Benchmark
+    public CursorPage<Sighting> getAllSightings() {
+        return sightingService.getAllSightings(null, null, null).block();
+    }
+
+    @Benchmark
+    public CursorPage<Sighting> getSightingsByBird() {
+        return sightingService.getSightingsByBird("Sparrow", null, null, null).block();
+    }
+
+    @Benchmark
+    public CursorPage<Sighting> getSightingsByDateBetween() {
+        return sightingService.getSightingsByDateBetween(
+            firstDay.plusDays(100), firstDay.plusDays(130), null, null, null
+        ).block();
+    }
+
+    @Benchmark
+    public Object getSightingsByDateBetweenMiss() {
+        return missing(sightingService.getSightingsByDateBetween(
+            LocalDate.of(1990, 1, 1), LocalDate.of(1990, 12, 31), null, null, null
+        ));
+    }
+
+    @Benchmark
+    public Object findBirdByNameMiss() {
+        return missing(birdService.findBirdByName("Dodo"));
+    }
+
+    private static Object missing(Mono<?> lookup) {
+        return lookup.cast(Object.class).onErrorResume(ResourceNotFoundException.class, Mono::just).block();
+    }
+
+    private static class NoOpStatsService extends SightingStatsService {
+        @Override
+        public Mono<Void> recordAdded(Collection<Sighting> sightings) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> recordDeleted(Collection<Sighting> sightings) {
+            return Mono.empty();
+        }
+    }
+}
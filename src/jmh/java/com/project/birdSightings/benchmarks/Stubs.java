@@ -0,0 +1,55 @@
+package com.project.birdSightings.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds repository stubs for the benchmarks.
+ * Repository interfaces declare more methods than a benchmark exercises.
+ * A stub implements the whole interface and forwards each call to the target method with the same name whose
+ * parameters fit the declared ones; calls the target does not implement fail with
+ * {@link UnsupportedOperationException}.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    static <T> T backedBy(Class<T> type, Object target) {
+        Map<Method, Method> targets = new ConcurrentHashMap<>();
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Method implementation = targets.computeIfAbsent(method, called -> find(target, called));
+            try {
+                return implementation.invoke(target, args);
+            } catch (InvocationTargetException exception) {
+                throw exception.getCause();
+            }
+        });
+        return type.cast(stub);
+    }
+
+    private static Method find(Object target, Method method) {
+        for (Method candidate : target.getClass().getMethods()) {
+            if (candidate.getName().equals(method.getName()) && fits(method.getParameterTypes(), candidate.getParameterTypes())) {
+                candidate.setAccessible(true);
+                return candidate;
+            }
+        }
+        throw new UnsupportedOperationException(method + " is not stubbed");
+    }
+
+    private static boolean fits(Class<?>[] declared, Class<?>[] implemented) {
+        if (declared.length != implemented.length) {
+            return false;
+        }
+        for (int i = 0; i < declared.length; i++) {
+            if (!declared[i].isAssignableFrom(implemented[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package com.project.birdSightings.loadtest;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The application endpoints the load generator calls.
+ * Response bodies are read to the end and discarded, so latencies cover the complete response.
+ */
+public class BirdsClient {
+    private final WebClient webClient;
+
+    /**
+     * Constructs a new BirdsClient.
+     *
+     * @param baseUrl the URL the application is reachable at
+     * @param writeConcern the Write-Concern header sent with every request, or null for the application default
+     */
+    public BirdsClient(String baseUrl, String writeConcern) {
+        WebClient.Builder builder = WebClient.builder().baseUrl(baseUrl);
+        if (writeConcern != null) {
+            builder.defaultHeader("Write-Concern", writeConcern);
+        }
+        this.webClient = builder.build();
+    }
+
+    public Request addBird(Map<String, Object> bird) {
+        return new Request("addBird", webClient.post().uri("/api/bird")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(bird)
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    public Request getBird(String name) {
+        return new Request("getBird", webClient.get().uri("/api/bird/name/{name}", name)
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    public Request addSighting(String bird, LocalDate date) {
+        return new Request("addSighting", webClient.post().uri("/api/sighting")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(Workload.sighting(bird, date))
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    public Request addSightings(List<Map<String, Object>> sightings) {
+        return new Request("addSightings", webClient.post().uri("/api/sighting/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(sightings)
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    public Request getSightingsByBird(String name) {
+        return new Request("getSightingsByBird", webClient.get().uri("/api/sighting/bird/{name}", name)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    public Request getSightingsByDate(LocalDate startDate, LocalDate endDate) {
+        return new Request("getSightingsByDate", webClient.get()
+            .uri(uri -> uri.path("/api/sighting/date-range")
+                .queryParam("startDate", startDate)
+                .queryParam("endDate", endDate)
+                .build())
+            .accept(MediaType.APPLICATION_JSON)
+            .exchangeToMono(BirdsClient::status));
+    }
+
+    private static Mono<Integer> status(ClientResponse response) {
+        return response.releaseBody().thenReturn(response.rawStatusCode());
+    }
+}
@@ -0,0 +1,111 @@
+package com.project.birdSightings.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records response latencies per operation in HdrHistograms, along with error counts per status.
+ * Nothing is recorded until {@link #start()} is called, so the warmup does not show in the results.
+ */
+public class LatencyRecorder {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong startedAt = new AtomicLong();
+    private final AtomicLong stoppedAt = new AtomicLong();
+    private volatile boolean recording;
+
+    public void start() {
+        startedAt.set(System.nanoTime());
+        recording = true;
+    }
+
+    public void stop() {
+        recording = false;
+        stoppedAt.set(System.nanoTime());
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param operation the operation name
+     * @param latencyNanos the time from the intended send time to the end of the response
+     * @param status the HTTP status, or 0 if the request failed without a response
+     */
+    public void record(String operation, long latencyNanos, int status) {
+        if (!recording) {
+            return;
+        }
+        Operation recorded = operations.computeIfAbsent(operation, name -> new Operation());
+        recorded.histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+        if (status == 0 || status >= 400) {
+            recorded.errors.computeIfAbsent(status, code -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Counts a request the open-loop generator could not send because too many were already in flight.
+     */
+    public void drop() {
+        if (recording) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Summarizes the recorded requests.
+     * Each operation reports its count, errors, throughput and latency percentiles in milliseconds, plus the
+     * full histogram in HdrHistogram's compressed, base64 encoded form, so runs can be merged or compared exactly.
+     *
+     * @return the report
+     */
+    public Map<String, Object> report() {
+        double seconds = (stoppedAt.get() - startedAt.get()) / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("measuredSeconds", seconds);
+        report.put("dropped", dropped.sum());
+        Map<String, Object> byOperation = new TreeMap<>();
+        operations.forEach((name, operation) -> byOperation.put(name, operation.report(seconds)));
+        report.put("operations", byOperation);
+        return report;
+    }
+
+    private static class Operation {
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+
+        Map<String, Object> report(double seconds) {
+            Histogram snapshot = histogram.copy();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("count", snapshot.getTotalCount());
+            report.put("throughput", snapshot.getTotalCount() / seconds);
+            Map<String, Long> errorCounts = new TreeMap<>();
+            errors.forEach((status, count) -> errorCounts.put(status == 0 ? "failed" : status.toString(), count.sum()));
+            report.put("errors", errorCounts);
+            Map<String, Double> latency = new LinkedHashMap<>();
+            latency.put("mean", snapshot.getMean() / 1000);
+            latency.put("p50", snapshot.getValueAtPercentile(50) / 1000.0);
+            latency.put("p90", snapshot.getValueAtPercentile(90) / 1000.0);
+            latency.put("p99", snapshot.getValueAtPercentile(99) / 1000.0);
+            latency.put("p99.9", snapshot.getValueAtPercentile(99.9) / 1000.0);
+            latency.put("max", snapshot.getMaxValue() / 1000.0);
+            report.put("latencyMs", latency);
+            ByteBuffer buffer = ByteBuffer.allocate(snapshot.getNeededByteBufferCapacity());
+            int length = snapshot.encodeIntoCompressedByteBuffer(buffer);
+            report.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+            return report;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.project.birdSightings.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives load against a running application and reports the latencies per operation.
+ * <p>
+ * In closed-loop mode a fixed number of clients each send their next request as soon as the previous one has
+ * completed, which measures the throughput the application sustains. In open-loop mode requests are started
+ * at a fixed rate regardless of how long earlier ones take, and latencies are measured from the time a request
+ * was due rather than the time it was sent, so a stalled server shows up in the percentiles instead of only
+ * lowering the request rate.
+ * <p>
+ * Before the run, the birds of the workload and seed-sightings sightings are added (skip with --seed=false).
+ * The report is written as JSON to the report file. Example:
+ * <pre>
+ * mvn -Ploadtest -DskipTests verify -Dloadtest.args="--scenario=hot-bird --mode=open --rate=500 --duration=120"
+ * </pre>
+ */
+public class LoadGenerator {
+    private final LoadOptions options;
+    private final BirdsClient client;
+    private final Workload workload;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.client = new BirdsClient(options.getBaseUrl(), options.getWriteConcern());
+        this.workload = new Workload(options);
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadOptions options = LoadOptions.parse(args);
+        Map<String, Object> report = new LoadGenerator(options).run();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(options.getReport().toFile(), report);
+        System.out.println("Report written to " + options.getReport().toAbsolutePath());
+    }
+
+    /**
+     * Seeds the data, then runs the warmup and the measured period.
+     *
+     * @return the report
+     */
+    public Map<String, Object> run() {
+        if (options.isSeed()) {
+            seed();
+        }
+        Instant startedAt = Instant.now();
+        Mono.delay(options.getWarmup()).subscribe(tick -> recorder.start());
+        Duration total = options.getWarmup().plus(options.getDuration());
+        (options.isOpenLoop() ? openLoop(total) : closedLoop(total)).blockLast();
+        recorder.stop();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("options", options.describe());
+        report.putAll(recorder.report());
+        return report;
+    }
+
+    private void seed() {
+        Random random = new Random(options.getRandomSeed());
+        Flux.range(0, options.getBirds())
+            .flatMap(rank -> client.addBird(workload.bird(rank)).getCall(), 16)
+            .blockLast();
+        int bursts = (options.getSeedSightings() + options.getBurstSize() - 1) / options.getBurstSize();
+        Flux.range(0, bursts)
+            .concatMap(burst -> client.addSightings(workload.sightings(
+                random, Math.min(options.getBurstSize(), options.getSeedSightings() - burst * options.getBurstSize())
+            )).getCall())
+            .blockLast();
+    }
+
+    private Flux<Integer> closedLoop(Duration total) {
+        long end = System.nanoTime() + total.toNanos();
+        return Flux.range(0, options.getConcurrency())
+            .flatMap(worker -> Mono.defer(() -> send(System.nanoTime())).repeat(() -> System.nanoTime() < end),
+                options.getConcurrency());
+    }
+
+    private Flux<Integer> openLoop(Duration total) {
+        long period = (long) (1e9 / options.getRate());
+        long start = System.nanoTime();
+        return Flux.interval(Duration.ofNanos(period))
+            .take(total.toNanos() / period)
+            .onBackpressureDrop(tick -> recorder.drop())
+            .flatMap(tick -> send(start + (tick + 1) * period), options.getMaxInFlight());
+    }
+
+    private Mono<Integer> send(long intendedStart) {
+        Request request = options.getScenario().next(client, workload, ThreadLocalRandom.current());
+        return request.getCall()
+            .onErrorReturn(0)
+            .doOnNext(status -> recorder.record(request.getOperation(), System.nanoTime() - intendedStart, status));
+    }
+}
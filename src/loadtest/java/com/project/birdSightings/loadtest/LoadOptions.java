@@ -0,0 +1,162 @@
+package com.project.birdSightings.loadtest;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load generator run, given on the command line as {@code --name=value}.
+ */
+@Getter
+public class LoadOptions {
+    private String baseUrl = "http://localhost:8080";
+    private Scenario scenario = Scenario.MIXED;
+    /**
+     * closed: a fixed number of clients, each sending its next request when the previous one completes.
+     * open: requests arrive at a fixed rate, whether or not earlier ones have completed.
+     */
+    private boolean openLoop = false;
+    private int concurrency = 16;
+    private double rate = 200;
+    private int maxInFlight = 1024;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(60);
+    private double writeRatio = 0.1;
+    private int burstSize = 500;
+    /**
+     * w1, journaled or majority; null leaves the durability to the application.
+     */
+    private String writeConcern = null;
+    private int rangeDays = 30;
+    private int birds = 100;
+    private double skew = 1.0;
+    private boolean seed = true;
+    private int seedSightings = 10_000;
+    private LocalDate firstDay = LocalDate.of(2021, 1, 1);
+    private int days = 365;
+    private long randomSeed = 42;
+    private Path report = Paths.get("load-report.json");
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments, each of the form --name=value
+     * @return the options, with defaults for the ones not given
+     * @throws IllegalArgumentException if an argument is unknown or malformed
+     */
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.set(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "base-url":
+                baseUrl = value;
+                break;
+            case "scenario":
+                scenario = Scenario.parse(value);
+                break;
+            case "mode":
+                if (!value.equals("open") && !value.equals("closed")) {
+                    throw new IllegalArgumentException("Unknown mode " + value + ", expected open or closed");
+                }
+                openLoop = value.equals("open");
+                break;
+            case "concurrency":
+                concurrency = Integer.parseInt(value);
+                break;
+            case "rate":
+                rate = Double.parseDouble(value);
+                break;
+            case "max-in-flight":
+                maxInFlight = Integer.parseInt(value);
+                break;
+            case "warmup":
+                warmup = Duration.ofSeconds(Long.parseLong(value));
+                break;
+            case "duration":
+                duration = Duration.ofSeconds(Long.parseLong(value));
+                break;
+            case "write-ratio":
+                writeRatio = Double.parseDouble(value);
+                break;
+            case "write-concern":
+                writeConcern = value;
+                break;
+            case "burst-size":
+                burstSize = Integer.parseInt(value);
+                break;
+            case "range-days":
+                rangeDays = Integer.parseInt(value);
+                break;
+            case "birds":
+                birds = Integer.parseInt(value);
+                break;
+            case "skew":
+                skew = Double.parseDouble(value);
+                break;
+            case "seed":
+                seed = Boolean.parseBoolean(value);
+                break;
+            case "seed-sightings":
+                seedSightings = Integer.parseInt(value);
+                break;
+            case "first-day":
+                firstDay = LocalDate.parse(value);
+                break;
+            case "days":
+                days = Integer.parseInt(value);
+                break;
+            case "random-seed":
+                randomSeed = Long.parseLong(value);
+                break;
+            case "report":
+                report = Paths.get(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option --" + name);
+        }
+    }
+
+    /**
+     * Returns the options that shape the load, for the report.
+     *
+     * @return the option names mapped to their values
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("baseUrl", baseUrl);
+        description.put("scenario", scenario.name().toLowerCase());
+        description.put("mode", openLoop ? "open" : "closed");
+        if (openLoop) {
+            description.put("rate", rate);
+            description.put("maxInFlight", maxInFlight);
+        } else {
+            description.put("concurrency", concurrency);
+        }
+        description.put("warmupSeconds", warmup.getSeconds());
+        description.put("durationSeconds", duration.getSeconds());
+        description.put("writeRatio", writeRatio);
+        description.put("burstSize", burstSize);
+        description.put("writeConcern", writeConcern == null ? "default" : writeConcern);
+        description.put("rangeDays", rangeDays);
+        description.put("birds", birds);
+        description.put("skew", skew);
+        description.put("days", days);
+        description.put("randomSeed", randomSeed);
+        return description;
+    }
+}
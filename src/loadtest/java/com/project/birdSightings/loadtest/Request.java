@@ -0,0 +1,16 @@
+package com.project.birdSightings.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+/**
+ * One request of a scenario: the operation name it is reported under, and the call itself.
+ * The call completes with the HTTP status once the whole response body has been received.
+ */
+@Getter
+@AllArgsConstructor
+public class Request {
+    private final String operation;
+    private final Mono<Integer> call;
+}
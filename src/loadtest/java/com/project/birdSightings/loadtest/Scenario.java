@@ -0,0 +1,72 @@
+package com.project.birdSightings.loadtest;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * The request mixes the load generator can send.
+ */
+public enum Scenario {
+    /**
+     * Single sighting writes (write-ratio of the requests) mixed with bird lookups, bird sighting pages
+     * and date-range pages.
+     */
+    MIXED {
+        @Override
+        Request next(BirdsClient client, Workload workload, Random random) {
+            double roll = random.nextDouble();
+            double writeRatio = workload.getOptions().getWriteRatio();
+            if (roll < writeRatio) {
+                return client.addSighting(workload.anyBird(random), workload.anyDay(random));
+            }
+            double read = (roll - writeRatio) / (1 - writeRatio);
+            if (read < 0.4) {
+                return client.getBird(workload.anyBird(random));
+            }
+            if (read < 0.8) {
+                return client.getSightingsByBird(workload.anyBird(random));
+            }
+            LocalDate start = workload.anyDay(random);
+            return client.getSightingsByDate(start, start.plusDays(workload.getOptions().getRangeDays() - 1));
+        }
+    },
+    /**
+     * Bulk uploads of burst-size sightings each.
+     */
+    INGEST {
+        @Override
+        Request next(BirdsClient client, Workload workload, Random random) {
+            return client.addSightings(workload.sightings(random, workload.getOptions().getBurstSize()));
+        }
+    },
+    /**
+     * Date-range pages over windows of range-days, starting anywhere in the seeded period.
+     */
+    DATE_RANGE {
+        @Override
+        Request next(BirdsClient client, Workload workload, Random random) {
+            LocalDate start = workload.anyDay(random);
+            return client.getSightingsByDate(start, start.plusDays(workload.getOptions().getRangeDays() - 1));
+        }
+    },
+    /**
+     * Bird and bird sighting lookups, with bird popularity following a Zipf distribution (see skew).
+     */
+    HOT_BIRD {
+        @Override
+        Request next(BirdsClient client, Workload workload, Random random) {
+            String bird = workload.hotBird(random);
+            return random.nextBoolean() ? client.getBird(bird) : client.getSightingsByBird(bird);
+        }
+    };
+
+    abstract Request next(BirdsClient client, Workload workload, Random random);
+
+    static Scenario parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("Unknown scenario " + value + ", expected mixed, ingest, date-range or hot-bird");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.project.birdSightings.loadtest;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The data the scenarios draw from: a fixed set of birds, locations and days, derived from the options,
+ * so runs with the same options send comparable requests.
+ */
+@Getter
+public class Workload {
+    private static final String[] LOCATIONS = {"Park", "Forest", "Lake", "River", "Garden", "Meadow", "Coast", "Marsh"};
+    private static final String[] COLORS = {"Brown", "Red", "Blue", "Black", "White", "Yellow", "Green", "Grey"};
+
+    private final LoadOptions options;
+    private final List<String> birds;
+    /**
+     * Cumulative Zipf weights of the birds, most popular first.
+     */
+    private final double[] popularity;
+
+    public Workload(LoadOptions options) {
+        this.options = options;
+        this.birds = new ArrayList<>(options.getBirds());
+        this.popularity = new double[options.getBirds()];
+        double total = 0;
+        for (int rank = 0; rank < options.getBirds(); rank++) {
+            birds.add(String.format("LoadBird-%04d", rank));
+            total += 1 / Math.pow(rank + 1, options.getSkew());
+            popularity[rank] = total;
+        }
+        for (int rank = 0; rank < popularity.length; rank++) {
+            popularity[rank] /= total;
+        }
+    }
+
+    public String anyBird(Random random) {
+        return birds.get(random.nextInt(birds.size()));
+    }
+
+    public String hotBird(Random random) {
+        int rank = Arrays.binarySearch(popularity, random.nextDouble());
+        return birds.get(Math.min(rank < 0 ? -rank - 1 : rank, birds.size() - 1));
+    }
+
+    public LocalDate anyDay(Random random) {
+        return options.getFirstDay().plusDays(random.nextInt(options.getDays()));
+    }
+
+    public Map<String, Object> bird(int rank) {
+        Map<String, Object> bird = new LinkedHashMap<>();
+        bird.put("name", birds.get(rank));
+        bird.put("color", COLORS[rank % COLORS.length]);
+        bird.put("weight", 1.0 + rank % 10);
+        bird.put("height", 0.1 * (1 + rank % 5));
+        return bird;
+    }
+
+    public List<Map<String, Object>> sightings(Random random, int count) {
+        List<Map<String, Object>> sightings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sightings.add(sighting(anyBird(random), anyDay(random), LOCATIONS[random.nextInt(LOCATIONS.length)]));
+        }
+        return sightings;
+    }
+
+    static Map<String, Object> sighting(String bird, LocalDate date) {
+        return sighting(bird, date, LOCATIONS[Math.floorMod(bird.hashCode() + date.getDayOfYear(), LOCATIONS.length)]);
+    }
+
+    private static Map<String, Object> sighting(String bird, LocalDate date, String location) {
+        Map<String, Object> sighting = new LinkedHashMap<>();
+        Map<String, Object> birdReference = new LinkedHashMap<>();
+        birdReference.put("name", bird);
+        sighting.put("bird", birdReference);
+        sighting.put("location", location);
+        sighting.put("date", date.toString());
+        return sighting;
+    }
+}
@@ -0,0 +1,73 @@
+package com.project.birdSightings.config;
+
+import com.project.birdSightings.model.Bird;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts bird weights and heights stored as strings, from before they were numeric, into numbers.
+ * Until a bird is converted it is still read correctly, because strings are converted to numbers on read, but range
+ * queries and the measurement indexes only see numbers. The conversion is a single update with an aggregation
+ * pipeline (MongoDB 4.2 or later) that only touches birds that still have a string measurement, so it is a no-op
+ * once done. A measurement that is not a number is cleared.
+ * Sightings keep their embedded copies as they are; they are converted on read.
+ * Runs in the background once the application has started, unless birds.migration.measurements=false.
+ * Only used with {@code sightings.storage.engine=mongodb}.
+ */
+@Component
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class BirdMeasurementMigration {
+    private static final Logger log = LoggerFactory.getLogger(BirdMeasurementMigration.class);
+    private static final List<String> MEASUREMENTS = Arrays.asList("weight", "height");
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${birds.migration.measurements:true}")
+    private boolean enabled;
+
+    /**
+     * Converts the remaining string measurements.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        List<Document> stringMeasurement = new ArrayList<>();
+        Document toNumbers = new Document();
+        for (String field : MEASUREMENTS) {
+            stringMeasurement.add(new Document(field, new Document("$type", "string")));
+            toNumbers.append(field, new Document("$convert", new Document("input", "$" + field)
+                .append("to", "double")
+                .append("onError", null)
+                .append("onNull", null)));
+        }
+        Document filter = new Document("$or", stringMeasurement);
+        List<Document> update = Collections.singletonList(new Document("$set", toNumbers));
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Bird.class))
+            .flatMap(collection -> Mono.from(collection.updateMany(filter, update)))
+            .subscribe(
+                result -> {
+                    if (result.getModifiedCount() > 0) {
+                        log.info("Converted the measurements of {} birds to numbers", result.getModifiedCount());
+                    }
+                },
+                error -> log.warn("Could not convert bird measurements to numbers", error)
+            );
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.birdSightings.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.geo.GeoJsonModule;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+
+/**
+ * Jackson settings for the JSON request and response bodies, and for their compact binary encodings.
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Reads and writes GeoJSON types, such as {@link org.springframework.data.mongodb.core.geo.GeoJsonPoint},
+     * in their standard {"type": ..., "coordinates": ...} form.
+     *
+     * @return the GeoJSON Jackson module
+     */
+    @Bean
+    public Module geoJsonModule() {
+        return GeoJsonModule.geoJsonModule();
+    }
+
+    /**
+     * Reads and writes bodies as CBOR (application/cbor) and Smile (application/x-jackson-smile) besides JSON.
+     * Both use the same modules and settings as the JSON mapper, so they carry the same documents in fewer bytes
+     * and with cheaper parsing. Smile is supported by WebFlux out of the box, but with a mapper of its own; CBOR is
+     * not registered by default.
+     *
+     * @param builder the builder of the application's JSON mapper
+     * @return the customizer registering the binary codecs
+     */
+    @Bean
+    public CodecCustomizer binaryCodecs(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper cborMapper = builder.factory(new CBORFactory()).build();
+        ObjectMapper smileMapper = builder.factory(new SmileFactory()).build();
+        // The media types must be given: without them the codecs claim the JSON media types
+        MimeType smile = new MimeType("application", "x-jackson-smile");
+        return configurer -> {
+            configurer.customCodecs().register(new Jackson2CborEncoder(cborMapper, MediaType.APPLICATION_CBOR));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper, MediaType.APPLICATION_CBOR));
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, smile));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, smile));
+        };
+    }
+}
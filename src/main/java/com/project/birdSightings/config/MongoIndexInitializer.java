@@ -0,0 +1,70 @@
+package com.project.birdSightings.config;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.repository.MongoSightingRollupRepository;
+import com.project.birdSightings.repository.SightingCollections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates the indexes the repository queries rely on once the application has started.
+ * Every list query is paginated on its sort key, so each index ends with the sort key fields
+ * (date and _id for sightings, _id for birds) and pages are read straight off the index.
+ * Indexes are declared here rather than with annotations on the documents, because {@link Bird} is also
+ * embedded in {@link Sighting} and annotated bird indexes would be repeated on the sightings collection.
+ * Faceted bird searches match an equal color first and then the measurement ranges, so the measurement indexes
+ * follow that order.
+ * The sightings indexes are defined in {@link SightingCollections}, which also creates them on new monthly buckets.
+ * Index creation runs in the background; if MongoDB is not reachable the failure is only logged.
+ * Only used with {@code sightings.storage.engine=mongodb}.
+ */
+@Component
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class MongoIndexInitializer {
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private SightingCollections sightingCollections;
+
+    /**
+     * Ensures all indexes exist. Creating an index that already exists is a no-op in MongoDB.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        Flux.concat(
+                sightingCollections.all()
+                    .flatMapMany(Flux::fromIterable)
+                    .concatMap(sightingCollections::ensureIndexes),
+                mongoTemplate.indexOps(MongoSightingRollupRepository.COLLECTION).ensureIndex(
+                    new Index().named("day").on("_id.day", Sort.Direction.ASC)
+                ),
+                mongoTemplate.indexOps(Bird.class).ensureIndex(
+                    new Index().named("color_id").on("color", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                ),
+                mongoTemplate.indexOps(Bird.class).ensureIndex(
+                    new Index().named("color_weight_height")
+                        .on("color", Sort.Direction.ASC).on("weight", Sort.Direction.ASC).on("height", Sort.Direction.ASC)
+                ),
+                mongoTemplate.indexOps(Bird.class).ensureIndex(
+                    new Index().named("weight_height").on("weight", Sort.Direction.ASC).on("height", Sort.Direction.ASC)
+                )
+            )
+            .subscribe(
+                index -> log.info("Ensured MongoDB index {}", index),
+                error -> log.warn("Could not ensure MongoDB indexes", error)
+            );
+    }
+}
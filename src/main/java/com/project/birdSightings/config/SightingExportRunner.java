@@ -0,0 +1,97 @@
+package com.project.birdSightings.config;
+
+import com.project.birdSightings.model.ExportCompression;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.service.SightingExport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Exports sightings to a local file from the command line, then exits:
+ * <pre>
+ * java -jar birds.jar --spring.main.web-application-type=none --export.file=sightings.csv.gz \
+ *     --export.start-date=2021-01-01 --export.end-date=2021-12-31 --export.bird=Sparrow
+ * </pre>
+ * export.location and export.compression (gzip or none; by default taken from the file name) are optional as well.
+ * The file is written with the same stream as the export endpoint. Its buffers are direct, so the asynchronous file
+ * channel hands them to the operating system without copying them to the heap first, and each buffer is released
+ * as soon as it is written. Without export.file the application starts normally.
+ */
+@Component
+public class SightingExportRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(SightingExportRunner.class);
+
+    @Autowired
+    private SightingExport sightingExport;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${export.file:}")
+    private String file;
+
+    @Value("${export.compression:}")
+    private String compression;
+
+    @Value("${export.start-date:}")
+    private String startDate;
+
+    @Value("${export.end-date:}")
+    private String endDate;
+
+    @Value("${export.bird:}")
+    private String bird;
+
+    @Value("${export.location:}")
+    private String location;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (file.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(file);
+        ExportCompression format = !compression.isEmpty()
+            ? ExportCompression.parse(compression)
+            : file.endsWith(".gz") ? ExportCompression.GZIP : ExportCompression.NONE;
+        SightingFilter filter = SightingFilter.byDateBetween(date(startDate), date(endDate));
+        filter.setBirdName(bird.isEmpty() ? null : bird);
+        filter.setLocation(location.isEmpty() ? null : location);
+
+        long started = System.nanoTime();
+        int exitCode = 0;
+        try {
+            DataBufferUtils.write(
+                sightingExport.exportCsv(filter, format, new DefaultDataBufferFactory(true)),
+                path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+            ).block();
+            log.info("Exported sightings to {} ({} bytes) in {} ms",
+                path, Files.size(path), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception exception) {
+            log.error("Could not export sightings to {}", path, exception);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+
+    private static LocalDate date(String text) {
+        return text.isEmpty() ? null : LocalDate.parse(text);
+    }
+}
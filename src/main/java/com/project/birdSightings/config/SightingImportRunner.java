@@ -0,0 +1,71 @@
+package com.project.birdSightings.config;
+
+import com.project.birdSightings.model.ImportJob;
+import com.project.birdSightings.service.SightingImport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Imports sightings from a local CSV file from the command line, then exits:
+ * <pre>
+ * java -jar birds.jar --spring.main.web-application-type=none --import.file=sightings.csv
+ * </pre>
+ * Progress is logged every import.progress-interval. Running the same command again after an interruption
+ * resumes from the checkpoint saved next to the file. Without import.file the application starts normally.
+ */
+@Component
+public class SightingImportRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(SightingImportRunner.class);
+
+    @Autowired
+    private SightingImport sightingImport;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${import.file:}")
+    private String file;
+
+    @Value("${import.progress-interval:10s}")
+    private Duration progressInterval;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (file.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(file);
+        long started = System.nanoTime();
+        int exitCode = 0;
+        Disposable progress = Flux.interval(progressInterval, progressInterval)
+            .concatMap(tick -> sightingImport.getJobs().take(1))
+            .filter(job -> job.getStatus() == ImportJob.Status.RUNNING)
+            .subscribe(job -> log.info("Import of {}: {}% processed, {} sightings imported, {} rejected",
+                path, String.format("%.1f", job.getProgress()), job.getImported(), job.getRejected()));
+        try {
+            ImportJob job = sightingImport.importFile(path).block();
+            log.info("Imported {} sightings from {} in {} ms; {} rejected",
+                job.getImported(), path, (System.nanoTime() - started) / 1_000_000, job.getRejected());
+        } catch (Exception exception) {
+            log.error("Could not import sightings from {}", path, exception);
+            exitCode = 1;
+        } finally {
+            progress.dispose();
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+}
@@ -1,12 +1,23 @@
 package com.project.birdSightings.controller;
 
+import com.project.birdSightings.metrics.Instrumentation;
 import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.FacetedBirds;
 import com.project.birdSightings.service.BirdService;
+import com.project.birdSightings.service.DataVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.util.List;
+
 /**
  * REST controller for managing birds.
  */
@@ -17,6 +28,12 @@ public class BirdController {
     @Autowired
     private BirdService birdService;
 
+    @Autowired
+    private Instrumentation instrumentation;
+
+    @Autowired
+    private DataVersions dataVersions;
+
     /**
      * Adds a new bird.
      *
@@ -29,13 +46,33 @@ public class BirdController {
     }
 
     /**
-     * Retrieves all birds.
+     * Retrieves one page of all birds, ordered by name.
+     * The cursor of the next page is returned in the Next-Cursor header.
+     *
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param exchange the current exchange, answered with 304 Not Modified while the birds are unchanged
+     * @return a Mono containing the page of birds
+     */
+    @GetMapping(produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Bird>>> getAllBirds(@RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        ServerWebExchange exchange) {
+        return ConditionalGets.ifModified(exchange, dataVersions.birds(), () -> instrumentation.results(
+            "getAllBirds", birdService.getAllBirds(after, limit)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Streams all birds, ordered by name, as newline-delimited JSON or Server-Sent Events.
      *
      * @return a Flux containing all birds
      */
-    @GetMapping
-    public Flux<Bird> getAllBirds() {
-        return birdService.getAllBirds();
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Bird> streamAllBirds() {
+        return instrumentation.results("streamAllBirds", birdService.streamBirds());
     }
 
     /**
@@ -50,24 +87,100 @@ public class BirdController {
     }
 
     /**
-     * Retrieves birds by their color.
+     * Retrieves one page of the birds of a color, ordered by name.
+     *
+     * @param color the color of the birds
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param exchange the current exchange, answered with 304 Not Modified while the birds are unchanged
+     * @return a Mono containing the page of birds with the specified color
+     */
+    @GetMapping(value = "/color/{color}", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Bird>>> getBirdByColor(@PathVariable String color,
+                                                           @RequestParam(required = false) String after,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           ServerWebExchange exchange) {
+        return ConditionalGets.ifModified(exchange, dataVersions.birds(), () -> instrumentation.results(
+            "getBirdByColor", birdService.findBirdByColor(color, after, limit)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Streams the birds of a color, ordered by name, as newline-delimited JSON or Server-Sent Events.
      *
      * @param color the color of the birds
      * @return a Flux containing the birds with the specified color
      */
-    @GetMapping("/color/{color}")
-    public Flux<Bird> getBirdByColor(@PathVariable String color) {
-        return birdService.findBirdByColor(color);
+    @GetMapping(value = "/color/{color}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Bird> streamBirdsByColor(@PathVariable String color) {
+        return instrumentation.results("streamBirdsByColor", birdService.streamBirdsByColor(color));
+    }
+
+    /**
+     * Searches birds by color, weight range and height range, ordered by name.
+     * Besides one page of birds, the response counts all matching birds per color, weight range and height range.
+     * The cursor of the next page is returned in the Next-Cursor header.
+     *
+     * @param color the color of the birds
+     * @param minWeight the minimum weight
+     * @param maxWeight the maximum weight
+     * @param minHeight the minimum height
+     * @param maxHeight the maximum height
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param exchange the current exchange, answered with 304 Not Modified while the birds are unchanged
+     * @return a Mono containing the page of birds and the counts wrapped in a ResponseEntity
+     */
+    @GetMapping("/search")
+    public Mono<ResponseEntity<FacetedBirds>> searchBirds(@RequestParam(required = false) String color,
+                                                          @RequestParam(required = false) Double minWeight,
+                                                          @RequestParam(required = false) Double maxWeight,
+                                                          @RequestParam(required = false) Double minHeight,
+                                                          @RequestParam(required = false) Double maxHeight,
+                                                          @RequestParam(required = false) String after,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          ServerWebExchange exchange) {
+        BirdSearch search = new BirdSearch();
+        search.setColor(color);
+        search.setMinWeight(minWeight);
+        search.setMaxWeight(maxWeight);
+        search.setMinHeight(minHeight);
+        search.setMaxHeight(maxHeight);
+        return ConditionalGets.ifModified(exchange, dataVersions.birds(), () -> birdService
+            .searchBirds(search, after, limit)
+            .map(result -> Pages.toResponse(result, result.getNext())));
+    }
+
+    /**
+     * Suggests birds for type-ahead, from an in-memory index of the bird names.
+     *
+     * @param q the beginning of the name, matched ignoring case and accents
+     * @param color the color of the birds, matched ignoring case
+     * @param limit the maximum number of suggestions
+     * @param fuzzy true to tolerate typos in q
+     * @return a Mono containing the suggested birds, prefix matches first
+     */
+    @GetMapping("/autocomplete")
+    public Mono<List<Bird>> autocomplete(@RequestParam(defaultValue = "") String q,
+                                         @RequestParam(required = false) String color,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(defaultValue = "false") boolean fuzzy) {
+        return birdService.autocomplete(q, color, limit, fuzzy);
     }
 
     /**
      * Deletes a bird by its name.
+     * The bird's sightings are deleted in the background; the response is 202 Accepted with the deletion job,
+     * whose status can be followed at the Location header.
      *
      * @param name the name of the bird to delete
-     * @return a Mono indicating when the deletion is complete
+     * @return a Mono containing the job deleting the bird's sightings wrapped in a ResponseEntity
      */
     @DeleteMapping("/{name}")
-    public Mono<Void> deleteBird(@PathVariable String name) {
-        return birdService.deleteBird(name);
+    public Mono<ResponseEntity<DeletionJob>> deleteBird(@PathVariable String name) {
+        return birdService.deleteBird(name)
+            .map(job -> ResponseEntity.accepted().location(URI.create("/api/sighting/jobs/" + job.getId())).body(job));
     }
 }
\ No newline at end of file
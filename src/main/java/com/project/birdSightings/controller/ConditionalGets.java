@@ -0,0 +1,49 @@
+package com.project.birdSightings.controller;
+
+import com.project.birdSightings.model.DataVersion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Answers conditional GETs from the version of the data, before the data is read.
+ * The same version tags every encoding of a response, so responses vary by the Accept header.
+ */
+final class ConditionalGets {
+    private ConditionalGets() {
+    }
+
+    /**
+     * Answers 304 Not Modified without reading if the client's If-None-Match or If-Modified-Since is still
+     * current, and otherwise reads the response and tags it with the version.
+     *
+     * @param exchange the current exchange
+     * @param version the version of the data the response depends on, or null to always read
+     * @param read reads the response
+     * @return a Mono containing the tagged response, or the 304 response
+     */
+    static <T> Mono<ResponseEntity<T>> ifModified(ServerWebExchange exchange, DataVersion version,
+                                                  Supplier<Mono<ResponseEntity<T>>> read) {
+        if (version == null) {
+            return read.get();
+        }
+        boolean notModified = version.getLastModified() != null
+            ? exchange.checkNotModified(version.getETag(), version.getLastModified())
+            : exchange.checkNotModified(version.getETag());
+        if (notModified) {
+            return Mono.just(tag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version).build());
+        }
+        return read.get().map(response -> tag(
+            ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()), version
+        ).body(response.getBody()));
+    }
+
+    private static ResponseEntity.BodyBuilder tag(ResponseEntity.BodyBuilder response, DataVersion version) {
+        response.varyBy(HttpHeaders.ACCEPT).eTag(version.getETag());
+        return version.getLastModified() != null ? response.lastModified(version.getLastModified()) : response;
+    }
+}
@@ -0,0 +1,20 @@
+package com.project.birdSightings.controller;
+
+/**
+ * Media types of the compact binary encodings that list endpoints can respond with besides JSON.
+ * Both carry the same documents as the JSON responses.
+ */
+final class MediaTypes {
+    /**
+     * Concise Binary Object Representation (RFC 8949).
+     */
+    static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    /**
+     * Jackson's binary JSON.
+     */
+    static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private MediaTypes() {
+    }
+}
@@ -0,0 +1,31 @@
+package com.project.birdSightings.controller;
+
+import com.project.birdSightings.model.CursorPage;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Turns cursor pages into HTTP responses.
+ */
+final class Pages {
+    /**
+     * The response header carrying the cursor of the next page. It is absent on the last page.
+     */
+    static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
+    private Pages() {
+    }
+
+    static <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page) {
+        return toResponse(page.getItems(), page.getNext());
+    }
+
+    static <T> ResponseEntity<T> toResponse(T body, String next) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (next != null) {
+            response.header(NEXT_CURSOR_HEADER, next);
+        }
+        return response.body(body);
+    }
+}
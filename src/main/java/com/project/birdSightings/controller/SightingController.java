@@ -1,16 +1,43 @@
 package com.project.birdSightings.controller;
 
-import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.metrics.Instrumentation;
+import com.project.birdSightings.model.DataVersion;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.ExportCompression;
+import com.project.birdSightings.model.ImportJob;
+import com.project.birdSightings.model.IngestResult;
 import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import com.project.birdSightings.service.DataVersions;
+import com.project.birdSightings.service.GeoShapes;
+import com.project.birdSightings.service.SightingExport;
+import com.project.birdSightings.service.SightingFields;
+import com.project.birdSightings.service.SightingImport;
+import com.project.birdSightings.service.SightingPurge;
 import com.project.birdSightings.service.SightingService;
+import com.project.birdSightings.service.SightingStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * REST controller for managing bird sightings.
@@ -18,64 +45,451 @@ import java.time.LocalDate;
 @RestController
 @RequestMapping("/api/sighting")
 public class SightingController {
+    private static final String WRITE_CONCERN = "Write-Concern";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
     @Autowired
     private SightingService sightingService;
 
+    @Autowired
+    private Instrumentation instrumentation;
+
+    @Autowired
+    private SightingStatsService sightingStatsService;
+
+    @Autowired
+    private SightingPurge sightingPurge;
+
+    @Autowired
+    private SightingExport sightingExport;
+
+    @Autowired
+    private SightingImport sightingImport;
+
+    @Autowired
+    private DataVersions dataVersions;
+
     /**
      * Adds a new sighting.
+     * The optional Write-Concern header (w1, journaled or majority) overrides the configured durability.
+     * With an Idempotency-Key header, retries of the same submission return the originally stored sighting.
+     * Keys starting with import: are reserved for imports and rejected.
      *
      * @param sighting the sighting to add
+     * @param writeConcern the write concern to wait for
+     * @param idempotencyKey the client's key for this submission
      * @return a Mono containing the added sighting wrapped in a ResponseEntity
      */
     @PostMapping
-    public Mono<ResponseEntity<Sighting>> addSighting(@RequestBody Sighting sighting) {
-        return sightingService.addSighting(sighting);
+    public Mono<ResponseEntity<Sighting>> addSighting(@RequestBody Sighting sighting,
+                                                      @RequestHeader(value = WRITE_CONCERN, required = false)
+                                                          String writeConcern,
+                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false)
+                                                          String idempotencyKey) {
+        if (idempotencyKey != null) {
+            sighting.setIdempotencyKey(idempotencyKey);
+        }
+        return sightingService.addSighting(sighting, durability(writeConcern));
+    }
+
+    /**
+     * Adds sightings in bulk.
+     * The body is either a JSON array or newline-delimited JSON, and it is processed as a stream.
+     *
+     * The optional Write-Concern header (w1, journaled or majority) overrides the configured durability.
+     * Records with an idempotencyKey field that was stored before are reported with the original sighting's ID.
+     *
+     * @param sightings the sightings to add
+     * @param writeConcern the write concern to wait for
+     * @return a Flux containing one accept/reject result per uploaded record
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<IngestResult> addSightings(@RequestBody Flux<Sighting> sightings,
+                                           @RequestHeader(value = WRITE_CONCERN, required = false)
+                                               String writeConcern) {
+        return instrumentation.results(
+            "addSightings", sightingService.addSightings(sightings, durability(writeConcern))
+        );
+    }
+
+    /**
+     * Retrieves one page of all sightings, ordered by date.
+     * The cursor of the next page is returned in the Next-Cursor header.
+     *
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param fields the comma-separated fields to return, such as "date,location,bird.name", or null for all
+     * @param exchange the current exchange, answered with 304 Not Modified while the sightings are unchanged
+     * @return a Mono containing the page of sightings
+     */
+    @GetMapping(produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Sighting>>> getAllSightings(@RequestParam(required = false) String after,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String fields,
+                                                                ServerWebExchange exchange) {
+        return ConditionalGets.ifModified(exchange, dataVersions.sightings(), () -> instrumentation.results(
+            "getAllSightings", sightingService.getAllSightings(after, limit, fields)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Retrieves one page of the sightings of a specific bird, ordered by date.
+     *
+     * @param name the name of the bird to filter sightings by
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param fields the comma-separated fields to return, such as "date,location,bird.name", or null for all
+     * @param exchange the current exchange, answered with 304 Not Modified while the sightings are unchanged
+     * @return a Mono containing the page of sightings of the specified bird
+     */
+    @GetMapping(value = "/bird/{name}", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Sighting>>> getSightingsByBird(@PathVariable String name,
+                                                                   @RequestParam(required = false) String after,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   ServerWebExchange exchange) {
+        return ConditionalGets.ifModified(exchange, dataVersions.sightings(), () -> instrumentation.results(
+            "getSightingsByBird", sightingService.getSightingsByBird(name, after, limit, fields)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Retrieves one page of the sightings at a location, ordered by date.
+     *
+     * @param location the location to filter sightings by
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param fields the comma-separated fields to return, such as "date,location,bird.name", or null for all
+     * @param exchange the current exchange, answered with 304 Not Modified while the sightings are unchanged
+     * @return a Mono containing the page of sightings at the specified location
+     */
+    @GetMapping(value = "/location/{location}", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Sighting>>> getSightingsByLocation(@PathVariable String location,
+                                                                       @RequestParam(required = false) String after,
+                                                                       @RequestParam(required = false) Integer limit,
+                                                                       @RequestParam(required = false) String fields,
+                                                                       ServerWebExchange exchange) {
+        return ConditionalGets.ifModified(exchange, dataVersions.sightings(), () -> instrumentation.results(
+            "getSightingsByLocation", sightingService.getSightingsByLocation(location, after, limit, fields)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Retrieves one page of the sightings within a date range, ordered by date.
+     *
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param fields the comma-separated fields to return, such as "date,location,bird.name", or null for all
+     * @param exchange the current exchange, answered with 304 Not Modified while the sightings are unchanged
+     * @return a Mono containing the page of sightings within the specified date range
+     */
+    @GetMapping(value = "/date-range", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Sighting>>> getSightingsByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                                                   @RequestParam(required = false) String after,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   ServerWebExchange exchange) {
+        DataVersion version = dataVersions.sightings(startDate, endDate);
+        return ConditionalGets.ifModified(exchange, version, () -> instrumentation.results(
+            "getSightingsByDate", sightingService.getSightingsByDateBetween(startDate, endDate, after, limit, fields)
+        ).map(Pages::toResponse));
+    }
+
+    /**
+     * Retrieves the sightings within a radius of a point, nearest first.
+     *
+     * @param lng the longitude of the center
+     * @param lat the latitude of the center
+     * @param radiusKm the search radius in kilometers
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @param limit the maximum number of sightings
+     * @return a Flux containing the sightings ordered by distance
+     */
+    @GetMapping("/near")
+    public Flux<Sighting> getSightingsNear(@RequestParam double lng,
+                                           @RequestParam double lat,
+                                           @RequestParam double radiusKm,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                           @RequestParam(required = false) Integer limit) {
+        return instrumentation.results(
+            "getSightingsNear", sightingService.getSightingsNear(GeoShapes.point(lng, lat), radiusKm, startDate, endDate, limit)
+        );
+    }
+
+    /**
+     * Retrieves one page of the sightings within a bounding box or polygon, ordered by date.
+     * Pass either all of minLng, minLat, maxLng and maxLat, or a polygon as "lng,lat;lng,lat;...".
+     *
+     * @param minLng the western edge of the box
+     * @param minLat the southern edge of the box
+     * @param maxLng the eastern edge of the box
+     * @param maxLat the northern edge of the box
+     * @param polygon the vertices of the polygon
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @param after the cursor of the page to continue after
+     * @param limit the page size
+     * @param fields the comma-separated fields to return, such as "date,location,bird.name", or null for all
+     * @param exchange the current exchange, answered with 304 Not Modified while the sightings are unchanged
+     * @return a Mono containing the page of sightings within the area
+     */
+    @GetMapping(value = "/within", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaTypes.APPLICATION_CBOR_VALUE, MediaTypes.APPLICATION_SMILE_VALUE
+    })
+    public Mono<ResponseEntity<List<Sighting>>> getSightingsWithin(@RequestParam(required = false) Double minLng,
+                                                                   @RequestParam(required = false) Double minLat,
+                                                                   @RequestParam(required = false) Double maxLng,
+                                                                   @RequestParam(required = false) Double maxLat,
+                                                                   @RequestParam(required = false) String polygon,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                                                   @RequestParam(required = false) String after,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   ServerWebExchange exchange) {
+        GeoJsonPolygon area;
+        if (polygon != null) {
+            area = GeoShapes.polygon(polygon);
+        } else if (minLng != null && minLat != null && maxLng != null && maxLat != null) {
+            area = GeoShapes.box(minLng, minLat, maxLng, maxLat);
+        } else {
+            throw new InvalidRequestException("Missing area. Pass minLng, minLat, maxLng and maxLat, or a polygon.");
+        }
+        DataVersion version = dataVersions.sightings(startDate, endDate);
+        return ConditionalGets.ifModified(exchange, version, () -> instrumentation.results(
+            "getSightingsWithin", sightingService.getSightingsWithin(area, startDate, endDate, after, limit, fields)
+        ).map(Pages::toResponse));
     }
 
     /**
-     * Retrieves all sightings.
+     * Follows newly added sightings live, as newline-delimited JSON or Server-Sent Events.
+     * The most recent sightings are replayed first. Clients that cannot keep up miss some sightings
+     * instead of slowing down the feed.
      *
+     * @param bird the bird name to match
+     * @param location the location to match
+     * @param minLng the western edge of the area to match
+     * @param minLat the southern edge of the area to match
+     * @param maxLng the eastern edge of the area to match
+     * @param maxLat the northern edge of the area to match
+     * @return an endless Flux of new sightings
+     */
+    @GetMapping(value = "/live", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Sighting> liveSightings(@RequestParam(required = false) String bird,
+                                        @RequestParam(required = false) String location,
+                                        @RequestParam(required = false) Double minLng,
+                                        @RequestParam(required = false) Double minLat,
+                                        @RequestParam(required = false) Double maxLng,
+                                        @RequestParam(required = false) Double maxLat) {
+        return sightingService.liveSightings(bird, location, minLng, minLat, maxLng, maxLat);
+    }
+
+    /**
+     * Streams all sightings, ordered by date, as newline-delimited JSON or Server-Sent Events.
+     *
+     * @param after the cursor to resume after
+     * @param fields the comma-separated fields to return, or null for all
      * @return a Flux containing all sightings
      */
-    @GetMapping
-    public Flux<Sighting> getAllSightings() {
-        return sightingService.getAllSightings();
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Sighting> streamAllSightings(@RequestParam(required = false) String after,
+                                             @RequestParam(required = false) String fields) {
+        return instrumentation.results(
+            "streamAllSightings", sightingService.streamSightings(project(new SightingFilter(), fields), after)
+        );
     }
 
     /**
-     * Retrieves sightings by a specific bird.
+     * Streams the sightings of a specific bird, ordered by date, as newline-delimited JSON or Server-Sent Events.
      *
-     * @param bird the bird to filter sightings by
+     * @param name the name of the bird to filter sightings by
+     * @param after the cursor to resume after
+     * @param fields the comma-separated fields to return, or null for all
      * @return a Flux containing the sightings of the specified bird
      */
-    @GetMapping("/bird")
-    public Flux<Sighting> getSightingsByBird(@RequestBody Bird bird) {
-        return sightingService.getSightingsByBird(bird);
+    @GetMapping(value = "/bird/{name}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Sighting> streamSightingsByBird(@PathVariable String name,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) String fields) {
+        return instrumentation.results("streamSightingsByBird",
+            sightingService.streamSightings(project(SightingFilter.byBird(name), fields), after)
+        );
     }
 
     /**
-     * Retrieves sightings by location.
+     * Streams the sightings at a location, ordered by date, as newline-delimited JSON or Server-Sent Events.
      *
      * @param location the location to filter sightings by
+     * @param after the cursor to resume after
+     * @param fields the comma-separated fields to return, or null for all
      * @return a Flux containing the sightings at the specified location
      */
-    @GetMapping("/location/{location}")
-    public Flux<Sighting> getSightingsByLocation(@PathVariable String location) {
-        return sightingService.getSightingsByLocation(location);
+    @GetMapping(value = "/location/{location}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Sighting> streamSightingsByLocation(@PathVariable String location,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(required = false) String fields) {
+        return instrumentation.results("streamSightingsByLocation",
+            sightingService.streamSightings(project(SightingFilter.byLocation(location), fields), after)
+        );
     }
 
     /**
-     * Retrieves sightings within a date range.
+     * Streams the sightings within a date range, ordered by date, as newline-delimited JSON or Server-Sent Events.
      *
      * @param startDate the start date of the range
      * @param endDate the end date of the range
+     * @param after the cursor to resume after
+     * @param fields the comma-separated fields to return, or null for all
      * @return a Flux containing the sightings within the specified date range
      */
-    @GetMapping("/date-range")
-    public Flux<Sighting> getSightingsByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-        return sightingService.getSightingsByDateBetween(startDate, endDate);
+    @GetMapping(value = "/date-range", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Sighting> streamSightingsByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) String fields) {
+        SightingFilter filter = project(SightingFilter.byDateBetween(startDate, endDate), fields);
+        return instrumentation.results("streamSightingsByDate", sightingService.streamSightings(filter, after));
+    }
+
+    /**
+     * Downloads the sightings matching a filter as a CSV file, ordered by date.
+     * The file is streamed from the database cursor as it is written to the client and never held in memory.
+     *
+     * @param bird the name of the bird, or null for all birds
+     * @param location the location, or null for all locations
+     * @param startDate the first day to export, or null for no lower bound
+     * @param endDate the last day to export, or null for no upper bound
+     * @param compression "gzip" (the default) or "none"
+     * @param response the response, whose buffer factory the file is written with
+     * @return the CSV file wrapped in a ResponseEntity
+     */
+    @GetMapping("/export")
+    public ResponseEntity<Flux<DataBuffer>> exportSightings(@RequestParam(required = false) String bird,
+                                                            @RequestParam(required = false) String location,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                                            @RequestParam(defaultValue = "gzip") String compression,
+                                                            ServerHttpResponse response) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new InvalidRequestException("Invalid date range. The start date is after the end date.");
+        }
+        ExportCompression format = ExportCompression.parse(compression);
+        SightingFilter filter = SightingFilter.byDateBetween(startDate, endDate);
+        filter.setBirdName(bird);
+        filter.setLocation(location);
+        return ResponseEntity.ok()
+            .contentType(format.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("sightings" + format.getExtension()).build().toString())
+            .body(sightingExport.exportCsv(filter, format, response.bufferFactory()));
+    }
+
+    /**
+     * Counts sightings, grouped by any combination of bird, location and one of day, week or month.
+     *
+     * @param groupBy the dimensions to group by; none gives a single total
+     * @param startDate the first day to count
+     * @param endDate the last day to count
+     * @param source "rollup" to count from the incrementally maintained rollups, "raw" to aggregate the sightings
+     * @return a Flux containing one count per group
+     */
+    @GetMapping("/stats")
+    public Flux<SightingStat> getStats(@RequestParam(defaultValue = "") List<String> groupBy,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                       @RequestParam(defaultValue = "rollup") String source) {
+        return sightingStatsService.getStats(
+            StatDimension.parse(groupBy), startDate, endDate, "raw".equalsIgnoreCase(source)
+        );
+    }
+
+    /**
+     * Rebuilds the statistics rollups from the raw sightings.
+     *
+     * @return a Mono indicating when the rebuild is complete
+     */
+    @PostMapping("/stats/rebuild")
+    public Mono<Void> rebuildStats() {
+        return sightingStatsService.rebuildRollups();
+    }
+
+    /**
+     * Starts deleting the sightings older than the retention period, unless a purge is already running.
+     *
+     * @return a Mono containing the started or running purge job
+     */
+    @PostMapping("/retention/purge")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<DeletionJob> purgeExpiredSightings() {
+        return Mono.fromSupplier(sightingPurge::purgeExpired);
+    }
+
+    /**
+     * Retrieves the background deletion jobs that are kept, most recently started first.
+     *
+     * @return a Flux containing the jobs
+     */
+    @GetMapping("/jobs")
+    public Flux<DeletionJob> getDeletionJobs() {
+        return sightingPurge.getJobs();
+    }
+
+    /**
+     * Retrieves the status of a background deletion job.
+     *
+     * @param id the ID of the job
+     * @return a Mono containing the job, or an error if not found
+     */
+    @GetMapping("/jobs/{id}")
+    public Mono<DeletionJob> getDeletionJob(@PathVariable String id) {
+        return sightingPurge.findJob(id);
+    }
+
+    /**
+     * Starts importing a CSV file of the import directory in the background, resuming from its checkpoint if an
+     * earlier import of the file was interrupted.
+     *
+     * @param file the name of the file, relative to the import directory
+     * @return a Mono containing the started import job
+     */
+    @PostMapping("/import")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<ImportJob> importSightings(@RequestParam String file) {
+        return Mono.fromSupplier(() -> sightingImport.start(file)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Retrieves the imports that are kept, most recently started first.
+     *
+     * @return a Flux containing the import jobs
+     */
+    @GetMapping("/imports")
+    public Flux<ImportJob> getImportJobs() {
+        return sightingImport.getJobs();
+    }
+
+    /**
+     * Retrieves the progress of an import.
+     *
+     * @param id the ID of the import job
+     * @return a Mono containing the job, or an error if not found
+     */
+    @GetMapping("/imports/{id}")
+    public Mono<ImportJob> getImportJob(@PathVariable String id) {
+        return sightingImport.findJob(id);
     }
 
     /**
@@ -88,4 +502,13 @@ public class SightingController {
     public Mono<Void> deleteSighting(@PathVariable String id) {
         return sightingService.deleteSighting(id);
     }
-}
\ No newline at end of file
+
+    private static Durability durability(String writeConcern) {
+        return writeConcern == null ? null : Durability.parse(writeConcern);
+    }
+
+    private static SightingFilter project(SightingFilter filter, String fields) {
+        filter.setFields(SightingFields.parse(fields));
+        return filter;
+    }
+}
@@ -1,9 +1,15 @@
 package com.project.birdSightings.errorHandling;
 
+import com.project.birdSightings.metrics.Instrumentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
 
 /**
  * Global exception handler for the application.
@@ -11,15 +17,51 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    @Autowired
+    private Instrumentation instrumentation;
+
     /**
      * Handles ResourceNotFoundException and returns a 404 Not Found response.
+     * The miss is counted per URI template.
      *
      * @param exception the ResourceNotFoundException
+     * @param exchange the current exchange
      * @return a ResponseEntity containing the error response with a 404 status
      */
     @ExceptionHandler(ResourceNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handleResourceNotFoundException(ResourceNotFoundException exception) {
+    public ResponseEntity<ErrorResponse> handleResourceNotFoundException(ResourceNotFoundException exception,
+                                                                         ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        instrumentation.notFound(pattern == null ? "UNKNOWN" : pattern.getPatternString());
         ErrorResponse errorResponse = new ErrorResponse(exception.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
-}
\ No newline at end of file
+
+    /**
+     * Handles InvalidRequestException and returns a 400 Bad Request response.
+     *
+     * @param exception the InvalidRequestException
+     * @return a ResponseEntity containing the error response with a 400 status
+     */
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRequestException(InvalidRequestException exception) {
+        ErrorResponse errorResponse = new ErrorResponse(exception.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    /**
+     * Handles ServiceOverloadedException and returns a 429 Too Many Requests or 503 Service Unavailable response
+     * with a Retry-After header.
+     *
+     * @param exception the ServiceOverloadedException
+     * @return a ResponseEntity containing the error response with a 429 or 503 status
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloadedException(ServiceOverloadedException exception) {
+        ErrorResponse errorResponse = new ErrorResponse(exception.getMessage());
+        long retryAfterSeconds = Math.max(1, (exception.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(exception.getStatus())
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+            .body(errorResponse);
+    }
+}
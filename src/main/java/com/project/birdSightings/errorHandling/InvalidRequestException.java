@@ -0,0 +1,20 @@
+package com.project.birdSightings.errorHandling;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a request carries parameters that cannot be processed.
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidRequestException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidRequestException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
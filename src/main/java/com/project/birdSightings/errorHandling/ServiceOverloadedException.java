@@ -0,0 +1,30 @@
+package com.project.birdSightings.errorHandling;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown when a request is rejected because too many requests of its kind are in flight.
+ * The status is 503 Service Unavailable while the database is slow and the limit has been lowered,
+ * and 429 Too Many Requests when the limit is simply used up.
+ */
+@Getter
+public class ServiceOverloadedException extends RuntimeException {
+    private final HttpStatus status;
+    private final Duration retryAfter;
+
+    /**
+     * Constructs a new ServiceOverloadedException.
+     *
+     * @param message the detail message
+     * @param degraded whether the limit was lowered because the database is slow
+     * @param retryAfter how long the client should wait before retrying
+     */
+    public ServiceOverloadedException(String message, boolean degraded, Duration retryAfter) {
+        super(message, null, false, false);
+        this.status = degraded ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS;
+        this.retryAfter = retryAfter;
+    }
+}
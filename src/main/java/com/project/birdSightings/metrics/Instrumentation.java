@@ -0,0 +1,117 @@
+package com.project.birdSightings.metrics;
+
+import com.project.birdSightings.model.CursorPage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the application metrics that Spring Boot does not record by itself.
+ * HTTP requests ({@code http.server.requests}), MongoDB commands ({@code mongodb.driver.commands}) and the
+ * MongoDB connection pools ({@code mongodb.driver.pool.*}) are instrumented by Spring Boot. On top of that:
+ * <ul>
+ *     <li>{@code birds.service}: timer of the service methods, from subscription to completion, tagged with
+ *     service, method, outcome (success, error, cancelled) and exception</li>
+ *     <li>{@code birds.endpoint.results}: distribution of the number of records returned per request, tagged
+ *     with the endpoint (the controller method name)</li>
+ *     <li>{@code birds.not.found}: count of 404 responses, tagged with the URI template</li>
+ * </ul>
+ */
+@Component
+public class Instrumentation {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Times a service call that returns a Mono.
+     *
+     * @param service the service name
+     * @param method the method name
+     * @param call the call to time
+     * @return the call, timed from subscription to completion
+     */
+    public <T> Mono<T> timed(String service, String method, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                .doOnSuccess(value -> stop(sample, service, method, "success", "none"))
+                .doOnError(error -> stop(sample, service, method, "error", error.getClass().getSimpleName()))
+                .doOnCancel(() -> stop(sample, service, method, "cancelled", "none"));
+        });
+    }
+
+    /**
+     * Times a service call that returns a Flux.
+     *
+     * @param service the service name
+     * @param method the method name
+     * @param call the call to time
+     * @return the call, timed from subscription to completion
+     */
+    public <T> Flux<T> timed(String service, String method, Flux<T> call) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                .doOnComplete(() -> stop(sample, service, method, "success", "none"))
+                .doOnError(error -> stop(sample, service, method, "error", error.getClass().getSimpleName()))
+                .doOnCancel(() -> stop(sample, service, method, "cancelled", "none"));
+        });
+    }
+
+    /**
+     * Records the size of the page an endpoint returns.
+     *
+     * @param endpoint the endpoint name
+     * @param page the page
+     * @return the page, recorded when it is emitted
+     */
+    public <T> Mono<CursorPage<T>> results(String endpoint, Mono<CursorPage<T>> page) {
+        return page.doOnNext(emitted -> resultSize(endpoint).record(emitted.getItems().size()));
+    }
+
+    /**
+     * Records the number of records an endpoint streams, once the stream ends or the client goes away.
+     *
+     * @param endpoint the endpoint name
+     * @param records the records
+     * @return the records, counted as they are emitted
+     */
+    public <T> Flux<T> results(String endpoint, Flux<T> records) {
+        return Flux.defer(() -> {
+            AtomicLong count = new AtomicLong();
+            return records
+                .doOnNext(record -> count.incrementAndGet())
+                .doFinally(signal -> resultSize(endpoint).record(count.get()));
+        });
+    }
+
+    /**
+     * Counts a 404 response.
+     *
+     * @param uri the URI template of the request, or "UNKNOWN" when no handler matched
+     */
+    public void notFound(String uri) {
+        meterRegistry.counter("birds.not.found", "uri", uri).increment();
+    }
+
+    private void stop(Timer.Sample sample, String service, String method, String outcome, String exception) {
+        sample.stop(Timer.builder("birds.service")
+            .tag("service", service)
+            .tag("method", method)
+            .tag("outcome", outcome)
+            .tag("exception", exception)
+            .register(meterRegistry));
+    }
+
+    private DistributionSummary resultSize(String endpoint) {
+        return DistributionSummary.builder("birds.endpoint.results")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+    }
+}
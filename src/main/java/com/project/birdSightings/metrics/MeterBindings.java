@@ -0,0 +1,49 @@
+package com.project.birdSightings.metrics;
+
+import com.project.birdSightings.repository.ColumnarSightingStore;
+import com.project.birdSightings.service.BirdCache;
+import com.project.birdSightings.service.BirdNameIndex;
+import com.project.birdSightings.service.SightingFeed;
+import com.project.birdSightings.service.SightingRangeCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registers the meters of the bird cache, the live feed, the bird name index, the sighting range cache and, with
+ * the columnar storage engine, the columnar sighting store once the application has started.
+ * They are not declared as MeterBinder beans because most of them depend on MongoDB, whose client in turn depends on
+ * the meter registry for its command and connection pool metrics, which would make the beans a cycle.
+ */
+@Component
+public class MeterBindings {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BirdCache birdCache;
+
+    @Autowired
+    private SightingFeed sightingFeed;
+
+    @Autowired
+    private BirdNameIndex birdNameIndex;
+
+    @Autowired
+    private SightingRangeCache sightingRangeCache;
+
+    @Autowired
+    private ObjectProvider<ColumnarSightingStore> columnarSightingStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bind() {
+        birdCache.bindTo(meterRegistry);
+        sightingFeed.bindTo(meterRegistry);
+        birdNameIndex.bindTo(meterRegistry);
+        sightingRangeCache.bindTo(meterRegistry);
+        columnarSightingStore.ifAvailable(store -> store.bindTo(meterRegistry));
+    }
+}
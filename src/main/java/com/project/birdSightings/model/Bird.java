@@ -1,14 +1,16 @@
 package com.project.birdSightings.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Getter
 @Setter
-@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "birds")
 public class Bird {
     /**
@@ -19,6 +21,30 @@ public class Bird {
     @Id
     private String name;
     private String color;
-    private String weight;
-    private String height;
+    /**
+     * The weight, stored as a number so it can be range-queried and indexed. Optional.
+     * Clients may still send it as a string such as "3.5"; documents written before it was numeric are
+     * converted on read and rewritten by {@link com.project.birdSightings.config.BirdMeasurementMigration}.
+     */
+    private Double weight;
+    /**
+     * The height, stored as a number like the weight. Optional.
+     */
+    private Double height;
+
+    /**
+     * Constructs a new Bird with measurements given as text, as they were before they became numeric.
+     *
+     * @param name the name of the bird
+     * @param color the color of the bird
+     * @param weight the weight as a decimal number, or null
+     * @param height the height as a decimal number, or null
+     * @throws NumberFormatException if a measurement is not a number
+     */
+    public Bird(String name, String color, String weight, String height) {
+        this.name = name;
+        this.color = color;
+        this.weight = weight == null ? null : Double.valueOf(weight);
+        this.height = height == null ? null : Double.valueOf(height);
+    }
 }
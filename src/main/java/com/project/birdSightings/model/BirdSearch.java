@@ -0,0 +1,19 @@
+package com.project.birdSightings.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The conditions of a faceted bird search. Conditions left null are not applied; ranges include both ends.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class BirdSearch {
+    private String color;
+    private Double minWeight;
+    private Double maxWeight;
+    private Double minHeight;
+    private Double maxHeight;
+}
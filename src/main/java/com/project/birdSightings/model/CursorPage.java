@@ -0,0 +1,40 @@
+package com.project.birdSightings.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated result.
+ *
+ * @param <T> the type of the items in the page
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private final List<T> items;
+    /**
+     * The opaque cursor to pass as {@code after} to fetch the next page, or null if this is the last page.
+     */
+    private final String next;
+
+    /**
+     * Builds a page from a query that fetched one item more than the page size.
+     * The extra item is only used to tell whether there is a next page and is not returned.
+     *
+     * @param fetched the fetched items, at most {@code pageSize + 1}
+     * @param pageSize the number of items in a page
+     * @param cursorOf builds the cursor pointing after an item
+     * @param <T> the type of the items
+     * @return the page
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int pageSize, Function<T, String> cursorOf) {
+        if (fetched.size() <= pageSize) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, pageSize);
+        return new CursorPage<>(items, cursorOf.apply(items.get(pageSize - 1)));
+    }
+}
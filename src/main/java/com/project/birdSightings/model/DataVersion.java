@@ -0,0 +1,22 @@
+package com.project.birdSightings.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * The version of the data a read depends on, as sent in the ETag and Last-Modified headers.
+ */
+@Getter
+@AllArgsConstructor
+public class DataVersion {
+    /**
+     * A strong entity tag, quoted, that changes whenever the data may have changed.
+     */
+    private final String eTag;
+    /**
+     * The second the data was last modified in, or null while writes in that second may still follow.
+     */
+    private final Instant lastModified;
+}
@@ -0,0 +1,88 @@
+package com.project.birdSightings.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * The progress of a background job that deletes sightings in batches.
+ * A job is updated by the single pipeline running it and read by status requests.
+ */
+@Getter
+public class DeletionJob {
+    /**
+     * Why the sightings are deleted.
+     */
+    public enum Kind {
+        /**
+         * The sightings of a deleted bird.
+         */
+        CASCADE,
+        /**
+         * The sightings older than the retention period.
+         */
+        RETENTION
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final Kind kind;
+    /**
+     * The bird name for a cascade, the last date purged for a retention job.
+     */
+    private final String target;
+    private final Instant startedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile long deleted;
+    private volatile int batches;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    /**
+     * Constructs a new running DeletionJob.
+     *
+     * @param id the ID of the job
+     * @param kind why the sightings are deleted
+     * @param target what the job deletes
+     */
+    public DeletionJob(String id, Kind kind, String target) {
+        this.id = id;
+        this.kind = kind;
+        this.target = target;
+        this.startedAt = Instant.now();
+    }
+
+    /**
+     * Counts a deleted batch.
+     *
+     * @param size the number of sightings deleted in the batch
+     */
+    public void recordBatch(int size) {
+        deleted += size;
+        batches++;
+    }
+
+    /**
+     * Marks the job as completed.
+     */
+    public void complete() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    /**
+     * Marks the job as failed. The batches deleted before the failure stay deleted.
+     *
+     * @param error the reason the job failed
+     */
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
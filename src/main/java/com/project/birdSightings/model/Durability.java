@@ -0,0 +1,48 @@
+package com.project.birdSightings.model;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import lombok.Getter;
+
+import java.text.MessageFormat;
+
+/**
+ * How durable a sighting write has to be before it is acknowledged to the client.
+ */
+public enum Durability {
+    /**
+     * Acknowledged by the primary once applied in memory (w:1).
+     */
+    W1(WriteConcern.W1),
+    /**
+     * Acknowledged by the primary once written to its journal (w:1, j:true).
+     */
+    JOURNALED(WriteConcern.JOURNALED),
+    /**
+     * Acknowledged once a majority of the replica set has applied the write (w:majority).
+     */
+    MAJORITY(WriteConcern.MAJORITY);
+
+    @Getter
+    private final WriteConcern writeConcern;
+
+    Durability(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+    }
+
+    /**
+     * Parses a durability name, ignoring case.
+     *
+     * @param name the name, one of w1, journaled or majority
+     * @return the durability
+     */
+    public static Durability parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid write concern. {0} is not one of w1, journaled or majority.", name
+            ));
+        }
+    }
+}
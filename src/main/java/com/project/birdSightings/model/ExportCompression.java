@@ -0,0 +1,43 @@
+package com.project.birdSightings.model;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+import java.text.MessageFormat;
+
+/**
+ * How an exported CSV file is compressed.
+ */
+@Getter
+public enum ExportCompression {
+    NONE(".csv", new MediaType("text", "csv")),
+    GZIP(".csv.gz", new MediaType("application", "gzip"));
+
+    /**
+     * The file name extension of an export.
+     */
+    private final String extension;
+    private final MediaType mediaType;
+
+    ExportCompression(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Parses a compression name, ignoring case.
+     *
+     * @param name the name, one of none or gzip
+     * @return the compression
+     */
+    public static ExportCompression parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid compression. {0} is not one of none or gzip.", name
+            ));
+        }
+    }
+}
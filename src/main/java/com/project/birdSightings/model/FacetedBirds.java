@@ -0,0 +1,59 @@
+package com.project.birdSightings.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of the birds matching a search, with counts over all matching birds.
+ */
+@Getter
+@AllArgsConstructor
+public class FacetedBirds {
+    private final List<Bird> birds;
+    /**
+     * The number of birds matching the search, across all pages.
+     */
+    private final long total;
+    /**
+     * The number of matching birds of each color, most frequent first.
+     */
+    private final List<ValueCount> colors;
+    /**
+     * The matching birds with a weight, split into ranges of about the same size.
+     */
+    private final List<RangeCount> weights;
+    /**
+     * The matching birds with a height, split into ranges of about the same size.
+     */
+    private final List<RangeCount> heights;
+    /**
+     * The cursor of the next page, or null if this is the last page. It is returned as a header.
+     */
+    @JsonIgnore
+    private final String next;
+
+    /**
+     * The number of birds with one value of a field.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ValueCount {
+        private final String value;
+        private final long count;
+    }
+
+    /**
+     * The number of birds whose value of a field lies in a range. The minimum is included; the maximum is
+     * included only in the last range.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RangeCount {
+        private final double min;
+        private final double max;
+        private final long count;
+    }
+}
@@ -0,0 +1,110 @@
+package com.project.birdSightings.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * The progress of an import of sightings from a local CSV file.
+ * A job is updated by the single pipeline running it and read by status requests.
+ */
+@Getter
+public class ImportJob {
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final String file;
+    private final long size;
+    /**
+     * The offset the import started from; greater than zero when it resumed from a checkpoint.
+     */
+    private final long resumedFrom;
+    private final Instant startedAt;
+    private volatile Status status = Status.RUNNING;
+    /**
+     * The offset up to which every record has been imported or rejected, as saved in the checkpoint.
+     */
+    private volatile long checkpoint;
+    private volatile long imported;
+    private volatile long rejected;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    /**
+     * Constructs a new running ImportJob.
+     *
+     * @param id the ID of the job
+     * @param file the path of the imported file
+     * @param size the size of the file in bytes
+     * @param resumedFrom the offset the import starts from
+     */
+    public ImportJob(String id, String file, long size, long resumedFrom) {
+        this.id = id;
+        this.file = file;
+        this.size = size;
+        this.resumedFrom = resumedFrom;
+        this.checkpoint = resumedFrom;
+        this.startedAt = Instant.now();
+    }
+
+    /**
+     * Returns the share of the file that has been processed.
+     *
+     * @return the percentage of the file before the checkpoint
+     */
+    public double getProgress() {
+        return size == 0 ? 100 : checkpoint * 100.0 / size;
+    }
+
+    /**
+     * Counts a written batch.
+     *
+     * @param stored the number of records stored
+     * @param failed the number of records MongoDB refused
+     */
+    public void recordBatch(int stored, int failed) {
+        imported += stored;
+        rejected += failed;
+    }
+
+    /**
+     * Counts records rejected while parsing.
+     *
+     * @param count the number of rejected records
+     */
+    public void recordRejects(int count) {
+        rejected += count;
+    }
+
+    /**
+     * Moves the checkpoint forward.
+     *
+     * @param offset the offset up to which the file has been processed
+     */
+    public void advance(long offset) {
+        checkpoint = offset;
+    }
+
+    /**
+     * Marks the job as completed.
+     */
+    public void complete() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    /**
+     * Marks the job as failed. The records imported before the failure stay imported.
+     *
+     * @param error the reason the job failed
+     */
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
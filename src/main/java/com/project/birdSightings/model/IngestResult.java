@@ -0,0 +1,41 @@
+package com.project.birdSightings.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The outcome of ingesting a single record of a bulk sighting upload.
+ */
+@Getter
+@AllArgsConstructor
+public class IngestResult {
+    /**
+     * The zero-based position of the record in the uploaded stream.
+     */
+    private final long index;
+    private final String id;
+    private final boolean accepted;
+    private final String message;
+
+    /**
+     * Creates a result for a record that was stored.
+     *
+     * @param index the position of the record in the upload
+     * @param id the ID of the stored sighting
+     * @return the accepted result
+     */
+    public static IngestResult accepted(long index, String id) {
+        return new IngestResult(index, id, true, null);
+    }
+
+    /**
+     * Creates a result for a record that was not stored.
+     *
+     * @param index the position of the record in the upload
+     * @param message the reason the record was rejected
+     * @return the rejected result
+     */
+    public static IngestResult rejected(long index, String message) {
+        return new IngestResult(index, null, false, message);
+    }
+}
@@ -1,14 +1,29 @@
 package com.project.birdSightings.model;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 
+/**
+ * A sighting of a bird. Properties that are null, either optional ones or ones left out by a projection,
+ * are not written to responses.
+ * MongoDB documents and request bodies are read through the private no-argument constructor, so a projection can
+ * leave out required properties. Request bodies are read straight into the fields, so a record that misses a
+ * required property still decodes and is rejected by the service on its own, without failing the whole upload.
+ */
 @Getter
 @Setter
 @RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, onConstructor_ = {@PersistenceConstructor, @JsonCreator})
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, setterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "sightings")
 public class Sighting {
     @Id
@@ -19,4 +34,12 @@ public class Sighting {
     private String location;
     @NonNull
     private LocalDate date;
+    /**
+     * Where the bird was seen, as a GeoJSON point ([longitude, latitude]). Optional.
+     */
+    private GeoJsonPoint position;
+    /**
+     * A key chosen by the client, so a retried submission stores the sighting only once. Optional.
+     */
+    private String idempotencyKey;
 }
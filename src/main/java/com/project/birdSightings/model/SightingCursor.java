@@ -0,0 +1,26 @@
+package com.project.birdSightings.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The position of a sighting in the (date, id) sort order that sighting pages are keyed on.
+ */
+@Getter
+@AllArgsConstructor
+public class SightingCursor {
+    private final LocalDate date;
+    private final String id;
+
+    /**
+     * Creates the cursor pointing right after a sighting.
+     *
+     * @param sighting the last sighting of a page
+     * @return the cursor
+     */
+    public static SightingCursor after(Sighting sighting) {
+        return new SightingCursor(sighting.getDate(), sighting.getId());
+    }
+}
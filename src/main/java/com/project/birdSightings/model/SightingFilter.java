@@ -0,0 +1,88 @@
+package com.project.birdSightings.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * The conditions a sighting query filters on. Conditions left null are not applied.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class SightingFilter {
+    private String birdName;
+    private String location;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    /**
+     * The area the sighting position must lie within.
+     */
+    private GeoJsonPolygon area;
+    /**
+     * The properties to read, as parsed by {@link com.project.birdSightings.service.SightingFields}, or null to
+     * read whole sightings. Unlike the other properties it does not filter, it is projected.
+     */
+    private Set<String> fields;
+    /**
+     * Whether the query may be answered by a replica set member that lags behind the primary, as chosen by
+     * {@link com.project.birdSightings.repository.ReadRouting}. Left false for reads that must see earlier writes.
+     */
+    private boolean queryRead;
+
+    /**
+     * Creates a filter matching the sightings of a bird.
+     *
+     * @param birdName the name of the bird
+     * @return the filter
+     */
+    public static SightingFilter byBird(String birdName) {
+        SightingFilter filter = new SightingFilter();
+        filter.setBirdName(birdName);
+        return filter;
+    }
+
+    /**
+     * Creates a filter matching the sightings at a location.
+     *
+     * @param location the location
+     * @return the filter
+     */
+    public static SightingFilter byLocation(String location) {
+        SightingFilter filter = new SightingFilter();
+        filter.setLocation(location);
+        return filter;
+    }
+
+    /**
+     * Creates a filter matching the sightings within a date range, both ends included.
+     *
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @return the filter
+     */
+    public static SightingFilter byDateBetween(LocalDate startDate, LocalDate endDate) {
+        SightingFilter filter = new SightingFilter();
+        filter.setStartDate(startDate);
+        filter.setEndDate(endDate);
+        return filter;
+    }
+
+    /**
+     * Creates a filter matching the sightings within an area and, optionally, a date range.
+     *
+     * @param area the area the sighting position must lie within
+     * @param startDate the start date of the range, or null
+     * @param endDate the end date of the range, or null
+     * @return the filter
+     */
+    public static SightingFilter byArea(GeoJsonPolygon area, LocalDate startDate, LocalDate endDate) {
+        SightingFilter filter = byDateBetween(startDate, endDate);
+        filter.setArea(area);
+        return filter;
+    }
+}
@@ -0,0 +1,22 @@
+package com.project.birdSightings.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The number of sightings in one group of a statistics query.
+ * Only the fields that were grouped by are set.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SightingStat {
+    private final String bird;
+    private final String location;
+    /**
+     * The day (2021-07-01), ISO week (2021-W26) or month (2021-07) of the group.
+     */
+    private final String period;
+    private final long count;
+}
@@ -0,0 +1,49 @@
+package com.project.birdSightings.model;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields sighting statistics can be grouped by.
+ * At most one of the time dimensions (day, week, month) can be used in a grouping.
+ */
+public enum StatDimension {
+    BIRD,
+    LOCATION,
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * Tells whether this dimension groups by a time period.
+     *
+     * @return true for day, week and month
+     */
+    public boolean isPeriod() {
+        return this == DAY || this == WEEK || this == MONTH;
+    }
+
+    /**
+     * Parses dimension names, ignoring case.
+     *
+     * @param names the names of the dimensions, such as "bird" or "month"
+     * @return the dimensions
+     */
+    public static Set<StatDimension> parse(Collection<String> names) {
+        Set<StatDimension> dimensions = EnumSet.noneOf(StatDimension.class);
+        for (String name : names) {
+            try {
+                dimensions.add(valueOf(name.trim().toUpperCase()));
+            } catch (IllegalArgumentException exception) {
+                throw new InvalidRequestException(MessageFormat.format(
+                    "Invalid grouping. {0} is not one of bird, location, day, week or month.", name
+                ));
+            }
+        }
+        return dimensions;
+    }
+}
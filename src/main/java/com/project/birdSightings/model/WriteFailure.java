@@ -0,0 +1,69 @@
+package com.project.birdSightings.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Why a single record of an unordered insert was not stored.
+ */
+@Getter
+@AllArgsConstructor
+public class WriteFailure {
+    public enum Kind {
+        /**
+         * The record cannot be stored as it is, such as a document the collection's validation refuses.
+         */
+        INVALID,
+        /**
+         * The record's ID or idempotency key is already stored.
+         */
+        DUPLICATE_KEY,
+        /**
+         * The database could not store the record, or not acknowledge it with the requested write concern;
+         * the record itself is not at fault.
+         */
+        SERVER_ERROR
+    }
+
+    private final Kind kind;
+    private final String message;
+
+    /**
+     * Creates a failure for a record that cannot be stored as it is.
+     *
+     * @param message the reason the record was refused
+     * @return the failure
+     */
+    public static WriteFailure invalid(String message) {
+        return new WriteFailure(Kind.INVALID, message);
+    }
+
+    /**
+     * Creates a failure for a record whose ID or idempotency key is already stored.
+     *
+     * @param message the duplicate key error
+     * @return the failure
+     */
+    public static WriteFailure duplicateKey(String message) {
+        return new WriteFailure(Kind.DUPLICATE_KEY, message);
+    }
+
+    /**
+     * Creates a failure the database is to blame for.
+     *
+     * @param message the error of the database
+     * @return the failure
+     */
+    public static WriteFailure serverError(String message) {
+        return new WriteFailure(Kind.SERVER_ERROR, message);
+    }
+
+    /**
+     * Tells whether the record itself caused the failure, so sending it again unchanged fails again.
+     *
+     * @return true for invalid records and duplicate keys
+     */
+    public boolean isRecordError() {
+        return kind != Kind.SERVER_ERROR;
+    }
+}
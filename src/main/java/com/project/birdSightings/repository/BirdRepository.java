@@ -1,9 +1,62 @@
 package com.project.birdSightings.repository;
 
 import com.project.birdSightings.model.Bird;
-import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface BirdRepository extends ReactiveMongoRepository<Bird, String> {
-    Flux<Bird> findByColor(String color);
-}
\ No newline at end of file
+/**
+ * Storage of birds, keyed by name. The implementation is chosen with {@code sightings.storage.engine}:
+ * {@link MongoBirdRepository} for mongodb, the default, and {@link ColumnarBirdStore} for columnar.
+ */
+public interface BirdRepository extends BirdRepositoryCustom {
+
+    /**
+     * Stores a bird, replacing the bird with the same name.
+     *
+     * @param bird the bird to store
+     * @return a Mono containing the stored bird
+     */
+    Mono<Bird> save(Bird bird);
+
+    /**
+     * Finds a bird by its name.
+     *
+     * @param name the name of the bird
+     * @return a Mono containing the bird, or an empty Mono if it does not exist
+     */
+    Mono<Bird> findById(String name);
+
+    /**
+     * Finds several birds by name.
+     *
+     * @param names the names of the birds
+     * @return a Flux containing the existing birds; unknown names are left out
+     */
+    Flux<Bird> findAllById(Iterable<String> names);
+
+    /**
+     * Finds all birds, in no particular order.
+     *
+     * @return a Flux containing every bird
+     */
+    Flux<Bird> findAll();
+
+    /**
+     * Deletes a bird by its name.
+     *
+     * @param name the name of the bird
+     * @return a Mono indicating when the bird is deleted; deleting an unknown bird is not an error
+     */
+    Mono<Void> deleteById(String name);
+
+    /**
+     * Finds the birds whose name sorts after the given one, in name order. Used for keyset pagination.
+     */
+    Flux<Bird> findByNameGreaterThanOrderByNameAsc(String name, Pageable pageable);
+
+    /**
+     * Finds the birds of a color whose name sorts after the given one, in name order, using the {color, _id} index.
+     */
+    Flux<Bird> findByColorAndNameGreaterThanOrderByNameAsc(String color, String name, Pageable pageable);
+}
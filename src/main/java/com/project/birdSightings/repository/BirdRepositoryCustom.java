@@ -0,0 +1,25 @@
+package com.project.birdSightings.repository;
+
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.FacetedBirds;
+import reactor.core.publisher.Mono;
+
+/**
+ * The faceted bird search of {@link BirdRepository}.
+ */
+public interface BirdRepositoryCustom {
+
+    /**
+     * Finds the birds matching a search, in name order, together with the counts per color, weight range and
+     * height range of all matching birds, in a single aggregation.
+     * The conditions are matched on the {color, weight, height} and {weight, height} indexes; the page and every
+     * facet are computed from that one match with {@code $facet}.
+     *
+     * @param search the conditions to match
+     * @param after the name to continue after; the empty string for the first page
+     * @param limit the maximum number of birds to return
+     * @param ranges the number of ranges the weights and heights are split into
+     * @return a Mono containing the birds and the facet counts; the next cursor is not set
+     */
+    Mono<FacetedBirds> search(BirdSearch search, String after, int limit, int ranges);
+}
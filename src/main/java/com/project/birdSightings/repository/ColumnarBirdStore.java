@@ -0,0 +1,246 @@
+package com.project.birdSightings.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.FacetedBirds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-process bird storage, used instead of MongoDB with {@code sightings.storage.engine=columnar}.
+ * <p>
+ * Birds are kept in a concurrent sorted map by name, so lookups and name-ordered pages never wait for a lock and
+ * run on the calling thread. The faceted search scans the birds and computes the facets as MongoDB would:
+ * colors by descending count, and the weights and heights split into ranges of about the same number of birds,
+ * with equal values kept in one range, as {@code $bucketAuto} does.
+ * <p>
+ * The birds are written as JSON to bird-snapshot-file every snapshot-interval when they changed, and on shutdown,
+ * and read back on startup. A crash loses the writes since the last snapshot.
+ */
+@Repository
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "columnar")
+public class ColumnarBirdStore implements BirdRepository {
+    private static final Logger log = LoggerFactory.getLogger(ColumnarBirdStore.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${sightings.storage.bird-snapshot-file:data/birds.snapshot}")
+    private String snapshotFile;
+
+    @Value("${sightings.storage.snapshot-interval:5m}")
+    private Duration snapshotInterval;
+
+    private final ConcurrentSkipListMap<String, Bird> birds = new ConcurrentSkipListMap<>();
+    private final AtomicLong changes = new AtomicLong();
+    private long snapshotChanges;
+    private Disposable snapshots;
+
+    @PostConstruct
+    void init() throws IOException {
+        Path file = Paths.get(snapshotFile);
+        if (Files.exists(file)) {
+            for (Bird bird : objectMapper.readValue(file.toFile(), Bird[].class)) {
+                birds.put(bird.getName(), bird);
+            }
+            log.info("Loaded {} birds from {}", birds.size(), file);
+        }
+    }
+
+    /**
+     * Schedules the snapshots once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleSnapshots() {
+        if (snapshotInterval.isZero()) {
+            return;
+        }
+        snapshots = Flux.interval(snapshotInterval, snapshotInterval, Schedulers.boundedElastic())
+            .subscribe(tick -> {
+                try {
+                    snapshot();
+                } catch (UncheckedIOException exception) {
+                    log.warn("Bird snapshot failed, trying again in {}", snapshotInterval, exception);
+                }
+            });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (snapshots != null) {
+            snapshots.dispose();
+        }
+        snapshot();
+    }
+
+    /**
+     * Writes the birds to the snapshot file, if they changed since the last snapshot. The snapshot is written to a
+     * temporary file first and then moved over the previous one, so a crash never leaves half a snapshot.
+     */
+    public synchronized void snapshot() {
+        long snapshotted = changes.get();
+        if (snapshotted == snapshotChanges) {
+            return;
+        }
+        Path file = Paths.get(snapshotFile).toAbsolutePath();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Bird> snapshot = new ArrayList<>(birds.values());
+        try {
+            Files.createDirectories(file.getParent());
+            objectMapper.writeValue(temporary.toFile(), snapshot);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot write the bird snapshot to " + file, exception);
+        }
+        snapshotChanges = snapshotted;
+        log.info("Wrote {} birds to {}", snapshot.size(), file);
+    }
+
+    @Override
+    public Mono<Bird> save(Bird bird) {
+        return Mono.fromSupplier(() -> {
+            birds.put(bird.getName(), bird);
+            changes.incrementAndGet();
+            return bird;
+        });
+    }
+
+    @Override
+    public Mono<Bird> findById(String name) {
+        return Mono.fromSupplier(() -> birds.get(name));
+    }
+
+    @Override
+    public Flux<Bird> findAllById(Iterable<String> names) {
+        return Flux.fromIterable(names).mapNotNull(birds::get);
+    }
+
+    @Override
+    public Flux<Bird> findAll() {
+        return Flux.fromIterable(birds.values());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String name) {
+        return Mono.fromRunnable(() -> {
+            if (birds.remove(name) != null) {
+                changes.incrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public Flux<Bird> findByNameGreaterThanOrderByNameAsc(String name, Pageable pageable) {
+        return page(Flux.fromIterable(birds.tailMap(name, false).values()), pageable);
+    }
+
+    @Override
+    public Flux<Bird> findByColorAndNameGreaterThanOrderByNameAsc(String color, String name, Pageable pageable) {
+        return page(
+            Flux.fromIterable(birds.tailMap(name, false).values()).filter(bird -> color.equals(bird.getColor())),
+            pageable
+        );
+    }
+
+    private static Flux<Bird> page(Flux<Bird> birds, Pageable pageable) {
+        return pageable.isPaged() ? birds.skip(pageable.getOffset()).take(pageable.getPageSize()) : birds;
+    }
+
+    @Override
+    public Mono<FacetedBirds> search(BirdSearch search, String after, int limit, int ranges) {
+        return Mono.fromSupplier(() -> {
+            List<Bird> matching = birds.values().stream().filter(matching(search)).collect(Collectors.toList());
+            List<Bird> page = matching.stream()
+                .filter(bird -> bird.getName().compareTo(after) > 0)
+                .limit(limit)
+                .collect(Collectors.toList());
+            return new FacetedBirds(
+                page,
+                matching.size(),
+                colors(matching),
+                ranges(matching, Bird::getWeight, ranges),
+                ranges(matching, Bird::getHeight, ranges),
+                null
+            );
+        });
+    }
+
+    private static Predicate<Bird> matching(BirdSearch search) {
+        return bird -> (search.getColor() == null || search.getColor().equals(bird.getColor()))
+            && within(bird.getWeight(), search.getMinWeight(), search.getMaxWeight())
+            && within(bird.getHeight(), search.getMinHeight(), search.getMaxHeight());
+    }
+
+    // A bird without the measurement only matches when the measurement is not constrained, as in MongoDB
+    private static boolean within(Double value, Double min, Double max) {
+        if (min == null && max == null) {
+            return true;
+        }
+        return value != null && (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    private static List<FacetedBirds.ValueCount> colors(List<Bird> birds) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Bird bird : birds) {
+            counts.merge(bird.getColor(), 1L, Long::sum);
+        }
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.nullsFirst(Comparator.naturalOrder()))))
+            .map(count -> new FacetedBirds.ValueCount(count.getKey(), count.getValue()))
+            .collect(Collectors.toList());
+    }
+
+    // Fills each range with about the same number of values, never splitting equal values over two ranges; every
+    // range ends where the next one starts, and the last one at the largest value
+    private static List<FacetedBirds.RangeCount> ranges(List<Bird> birds, Function<Bird, Double> field, int ranges) {
+        double[] values = birds.stream().map(field).filter(Objects::nonNull).mapToDouble(Double::doubleValue)
+            .sorted().toArray();
+        List<FacetedBirds.RangeCount> counts = new ArrayList<>();
+        long perRange = Math.max(1, Math.round((double) values.length / ranges));
+        int start = 0;
+        while (start < values.length) {
+            int end = counts.size() == ranges - 1 ? values.length : (int) Math.min(values.length, start + perRange);
+            while (end < values.length && values[end] == values[end - 1]) {
+                end++;
+            }
+            double max = end < values.length ? values[end] : values[values.length - 1];
+            counts.add(new FacetedBirds.RangeCount(values[start], max, end - start));
+            start = end;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,431 @@
+package com.project.birdSightings.repository;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import com.project.birdSightings.model.WriteFailure;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.stereotype.Repository;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-process sighting storage, used instead of MongoDB with {@code sightings.storage.engine=columnar}.
+ * <p>
+ * Sightings are kept in {@link SightingColumns}: primitive arrays with dictionary-encoded bird names, colors and
+ * locations, epoch-day dates, and sorted-date and hash indexes serving the queries by bird, location, date range
+ * and area. Statistics are counted straight from the columns, so there are no rollups to update or rebuild. Reads
+ * share a read lock; writes take the write lock for the time of appending or deleting rows. Reads and writes wait
+ * for each other, so they run on the boundedElastic scheduler and never block an event-loop thread.
+ * <p>
+ * The columns are written to snapshot-file every snapshot-interval when they changed, and on shutdown. On startup
+ * the snapshot is mapped into memory and each column is copied with a single bulk read. A crash loses the writes
+ * since the last snapshot, so only w1 writes are acknowledged: journaled and majority write concerns are refused,
+ * and sightings.write.durability has to be w1. Inserted sightings are published to the live feed, as the change
+ * stream would. The number of stored sightings is published as {@code birds.storage.sightings}.
+ */
+@Repository
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "columnar")
+public class ColumnarSightingStore implements SightingRepository, SightingRollupRepository {
+    private static final Logger log = LoggerFactory.getLogger(ColumnarSightingStore.class);
+
+    @Value("${sightings.write.durability:w1}")
+    private Durability durability;
+
+    @Value("${sightings.storage.snapshot-file:data/sightings.snapshot}")
+    private String snapshotFile;
+
+    @Value("${sightings.storage.snapshot-interval:5m}")
+    private Duration snapshotInterval;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Sinks.Many<Sighting> inserted = Sinks.many().multicast().directBestEffort();
+    private SightingColumns columns = new SightingColumns();
+    private volatile int size;
+    private long changes;
+    private long snapshotChanges;
+    private Disposable snapshots;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (durability != Durability.W1) {
+            throw new IllegalArgumentException(
+                "Expected sightings.write.durability=w1 with sightings.storage.engine=columnar"
+            );
+        }
+        Path file = Paths.get(snapshotFile);
+        if (Files.exists(file)) {
+            long start = System.nanoTime();
+            columns = SightingColumns.read(file);
+            size = columns.size();
+            log.info("Loaded {} sightings from {} in {} ms", columns.size(), file,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    /**
+     * Schedules the snapshots once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleSnapshots() {
+        if (snapshotInterval.isZero()) {
+            return;
+        }
+        snapshots = Flux.interval(snapshotInterval, snapshotInterval, Schedulers.boundedElastic())
+            .subscribe(tick -> {
+                try {
+                    snapshot();
+                } catch (UncheckedIOException exception) {
+                    log.warn("Sighting snapshot failed, trying again in {}", snapshotInterval, exception);
+                }
+            });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (snapshots != null) {
+            snapshots.dispose();
+        }
+        snapshot();
+    }
+
+    /**
+     * Registers the meters of this component.
+     *
+     * @param registry the registry to register with
+     */
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("birds.storage.sightings", this, store -> store.size)
+            .description("Sightings held by the columnar storage engine")
+            .register(registry);
+    }
+
+    /**
+     * Follows the sightings inserted into this store from now on.
+     */
+    @Override
+    public Flux<Sighting> inserted() {
+        return inserted.asFlux();
+    }
+
+    @Override
+    public boolean queryReadsMayLag() {
+        return false;
+    }
+
+    /**
+     * Writes the sightings to the snapshot file, if they changed since the last snapshot. The snapshot is written
+     * to a temporary file first and then moved over the previous one, so a crash never leaves half a snapshot.
+     * Writes only wait while the live rows are copied; the file is written from the copy after the lock is released.
+     */
+    public synchronized void snapshot() {
+        Path file = Paths.get(snapshotFile).toAbsolutePath();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        SightingColumns.Snapshot snapshot;
+        long snapshotted;
+        lock.readLock().lock();
+        try {
+            if (changes == snapshotChanges) {
+                return;
+            }
+            snapshot = columns.snapshot();
+            snapshotted = changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            snapshot.write(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot write the sighting snapshot to " + file, exception);
+        }
+        snapshotChanges = snapshotted;
+        log.info("Wrote {} sightings to {} in {} ms", snapshot.size(), file,
+            Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    @Override
+    public Mono<Sighting> store(Sighting sighting, WriteConcern writeConcern) {
+        return Mono.fromCallable(() -> {
+            checkAcknowledgeable(writeConcern);
+            if (sighting.getId() == null) {
+                sighting.setId(ObjectId.get().toHexString());
+            }
+            String failure = write(() -> insert(sighting));
+            if (failure != null) {
+                throw isDuplicate(failure) ? new DuplicateKeyException(failure) : new InvalidRequestException(failure);
+            }
+            publish(List.of(sighting));
+            return sighting;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Map<Integer, WriteFailure>> insertUnordered(List<Sighting> sightings, WriteConcern writeConcern) {
+        return Mono.fromCallable(() -> {
+            checkAcknowledgeable(writeConcern);
+            for (Sighting sighting : sightings) {
+                if (sighting.getId() == null) {
+                    sighting.setId(ObjectId.get().toHexString());
+                }
+            }
+            Map<Integer, WriteFailure> failures = write(() -> {
+                Map<Integer, WriteFailure> refused = new HashMap<>();
+                for (int position = 0; position < sightings.size(); position++) {
+                    String failure = insert(sightings.get(position));
+                    if (failure != null) {
+                        refused.put(position, isDuplicate(failure)
+                            ? WriteFailure.duplicateKey(failure) : WriteFailure.invalid(failure));
+                    }
+                }
+                return refused;
+            });
+            List<Sighting> stored = new ArrayList<>(sightings.size() - failures.size());
+            for (int position = 0; position < sightings.size(); position++) {
+                if (!failures.containsKey(position)) {
+                    stored.add(sightings.get(position));
+                }
+            }
+            publish(stored);
+            return failures;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<Sighting> findByIdempotencyKeys(Collection<Sighting> sightings) {
+        return Flux.defer(() -> Flux.fromIterable(read(() -> {
+            List<Sighting> found = new ArrayList<>();
+            for (Sighting sighting : sightings) {
+                int row = sighting.getIdempotencyKey() == null ? -1 : columns.rowOfKey(sighting.getIdempotencyKey());
+                if (row >= 0) {
+                    found.add(columns.read(row, null));
+                }
+            }
+            return found;
+        }))).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<Sighting> findPage(SightingFilter filter, SightingCursor after, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(read(() -> {
+            List<Sighting> page = new ArrayList<>();
+            columns.scan(filter, after, row -> {
+                page.add(columns.read(row, filter.getFields()));
+                return page.size() < limit;
+            });
+            return page;
+        }))).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<Sighting> stream(SightingFilter filter, SightingCursor after, int batchSize) {
+        // Each batch is a page continuing after the previous one, so no lock is held between batches
+        return findPage(filter, after, batchSize).collectList()
+            .expand(batch -> batch.size() < batchSize
+                ? Mono.empty()
+                : findPage(filter, SightingCursor.after(batch.get(batch.size() - 1)), batchSize).collectList())
+            .flatMapIterable(batch -> batch);
+    }
+
+    @Override
+    public Mono<Long> clearIdempotencyKeys(String prefix) {
+        return Mono.fromCallable(() -> write(() -> {
+            long cleared = columns.clearIdempotencyKeys(prefix);
+            if (cleared > 0) {
+                changes++;
+            }
+            return cleared;
+        })).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Sighting> removeById(String id) {
+        return Mono.fromCallable(() -> write(() -> {
+            int row = columns.rowOf(id);
+            if (row < 0) {
+                return null;
+            }
+            Sighting removed = columns.read(row, null);
+            columns.delete(row);
+            compactIfNeeded();
+            return removed;
+        })).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<List<Sighting>> removeBatch(SightingFilter filter, int batchSize) {
+        return Mono.fromCallable(() -> write(() -> {
+            List<Integer> rows = new ArrayList<>();
+            columns.scan(filter, null, row -> {
+                rows.add(row);
+                return rows.size() < batchSize;
+            });
+            if (rows.isEmpty()) {
+                return List.<Sighting>of();
+            }
+            List<Sighting> removed = new ArrayList<>(rows.size());
+            for (int row : rows) {
+                removed.add(columns.read(row, null));
+                columns.delete(row);
+            }
+            compactIfNeeded();
+            return removed;
+        })).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<Sighting> findNear(SightingFilter filter, GeoJsonPoint point, double maxDistanceMeters, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(read(() -> {
+            List<Sighting> nearest = new ArrayList<>();
+            for (int row : columns.near(filter, point.getX(), point.getY(), maxDistanceMeters, limit)) {
+                nearest.add(columns.read(row, filter.getFields()));
+            }
+            return nearest;
+        }))).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Does nothing: the counts are computed from the columns when they are asked for.
+     */
+    @Override
+    public Mono<Void> increment(Collection<Sighting> sightings, int delta) {
+        return Mono.empty();
+    }
+
+    /**
+     * Counts the stored sightings per group, by scanning the date column and the grouped columns.
+     */
+    @Override
+    public Flux<SightingStat> aggregate(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate) {
+        return Flux.defer(() -> Flux.fromIterable(read(() -> columns.count(groupBy, startDate, endDate)).entrySet()))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(group -> new SightingStat(
+                group.getKey().get(0), group.getKey().get(1), group.getKey().get(2), group.getValue()
+            ))
+            .sort(GROUP_ORDER);
+    }
+
+    /**
+     * Counts the stored sightings per group; the same as {@link #aggregate(Set, LocalDate, LocalDate)}, since
+     * there are no rollups to bypass.
+     */
+    @Override
+    public Flux<SightingStat> aggregateSightings(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate) {
+        return aggregate(groupBy, startDate, endDate);
+    }
+
+    /**
+     * Does nothing: there are no rollups to rebuild.
+     */
+    @Override
+    public Mono<Void> rebuild() {
+        return Mono.empty();
+    }
+
+    // Writes are only in memory until the next snapshot, so a write concern asking for more cannot be honoured
+    private static void checkAcknowledgeable(WriteConcern writeConcern) {
+        if (!WriteConcern.W1.equals(writeConcern)) {
+            throw new InvalidRequestException(
+                "Invalid write concern. Sightings stored in memory are only acknowledged with w1."
+            );
+        }
+    }
+
+    // Called with the write lock held; returns why the sighting was not stored, or null once it is
+    private String insert(Sighting sighting) {
+        if (!SightingColumns.isStorableId(sighting.getId())) {
+            return "Invalid id. Sightings stored in memory need an ObjectId as id, not " + sighting.getId() + ".";
+        }
+        if (columns.rowOf(sighting.getId()) >= 0) {
+            return "Duplicate key. A sighting with id " + sighting.getId() + " is already stored.";
+        }
+        String key = sighting.getIdempotencyKey();
+        if (key != null && columns.rowOfKey(key) >= 0) {
+            return "Duplicate key. A sighting with idempotencyKey " + key + " is already stored.";
+        }
+        columns.append(sighting);
+        changes++;
+        size = columns.size();
+        return null;
+    }
+
+    // Called after the write lock is released; the sink needs its emissions serialized
+    private void publish(List<Sighting> stored) {
+        synchronized (inserted) {
+            for (Sighting sighting : stored) {
+                inserted.tryEmitNext(sighting);
+            }
+        }
+    }
+
+    private static boolean isDuplicate(String failure) {
+        return failure.startsWith("Duplicate key.");
+    }
+
+    // Called with the write lock held, after rows were deleted; compacting renumbers the rows
+    private void compactIfNeeded() {
+        changes++;
+        size = columns.size();
+        if (columns.needsCompaction()) {
+            columns = columns.compacted();
+        }
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.project.birdSightings.repository;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.FacetedBirds;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link BirdRepository} on top of {@link ReactiveMongoTemplate}, used with
+ * {@code sightings.storage.engine=mongodb}. Birds are kept in the {@code birds} collection with the name as _id.
+ * The search serves a query endpoint only, so {@link ReadRouting} may send it to a lagging member; every other read
+ * goes to the primary.
+ */
+@Repository
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class MongoBirdRepository implements BirdRepository {
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    @Override
+    public Mono<Bird> save(Bird bird) {
+        return mongoTemplate.save(bird);
+    }
+
+    @Override
+    public Mono<Bird> findById(String name) {
+        return mongoTemplate.findById(name, Bird.class);
+    }
+
+    @Override
+    public Flux<Bird> findAllById(Iterable<String> names) {
+        List<String> ids = new ArrayList<>();
+        names.forEach(ids::add);
+        return mongoTemplate.find(Query.query(Criteria.where("name").in(ids)), Bird.class);
+    }
+
+    @Override
+    public Flux<Bird> findAll() {
+        return mongoTemplate.findAll(Bird.class);
+    }
+
+    @Override
+    public Mono<Void> deleteById(String name) {
+        return mongoTemplate.remove(Query.query(Criteria.where("name").is(name)), Bird.class).then();
+    }
+
+    @Override
+    public Flux<Bird> findByNameGreaterThanOrderByNameAsc(String name, Pageable pageable) {
+        return mongoTemplate.find(inNameOrder(Criteria.where("name").gt(name), pageable), Bird.class);
+    }
+
+    @Override
+    public Flux<Bird> findByColorAndNameGreaterThanOrderByNameAsc(String color, String name, Pageable pageable) {
+        Criteria criteria = Criteria.where("color").is(color).and("name").gt(name);
+        return mongoTemplate.find(inNameOrder(criteria, pageable), Bird.class);
+    }
+
+    private static Query inNameOrder(Criteria criteria, Pageable pageable) {
+        return Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "name")).with(pageable);
+    }
+
+    @Override
+    public Mono<FacetedBirds> search(BirdSearch search, String after, int limit, int ranges) {
+        List<Document> page = new ArrayList<>();
+        if (!after.isEmpty()) {
+            page.add(new Document("$match", new Document("_id", new Document("$gt", after))));
+        }
+        page.add(new Document("$sort", new Document("_id", 1)));
+        page.add(new Document("$limit", limit));
+        Document facets = new Document("birds", page)
+            .append("total", Collections.singletonList(new Document("$count", "count")))
+            .append("colors", Collections.singletonList(new Document("$sortByCount", "$color")))
+            .append("weights", rangeFacet("weight", ranges))
+            .append("heights", rangeFacet("height", ranges));
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteriaFor(search)),
+            stage(new Document("$facet", facets))
+        );
+        return readRouting.reads("search", true)
+            .aggregate(aggregation, mongoTemplate.getCollectionName(Bird.class), Document.class)
+            .next()
+            .map(this::toFacetedBirds);
+    }
+
+    private FacetedBirds toFacetedBirds(Document result) {
+        List<Bird> birds = result.getList("birds", Document.class).stream()
+            .map(document -> mongoTemplate.getConverter().read(Bird.class, document))
+            .collect(Collectors.toList());
+        List<Document> total = result.getList("total", Document.class);
+        List<FacetedBirds.ValueCount> colors = result.getList("colors", Document.class).stream()
+            .map(color -> new FacetedBirds.ValueCount(color.getString("_id"), count(color)))
+            .collect(Collectors.toList());
+        return new FacetedBirds(
+            birds,
+            total.isEmpty() ? 0 : count(total.get(0)),
+            colors,
+            ranges(result.getList("weights", Document.class)),
+            ranges(result.getList("heights", Document.class)),
+            null
+        );
+    }
+
+    private List<FacetedBirds.RangeCount> ranges(List<Document> buckets) {
+        return buckets.stream()
+            .map(bucket -> {
+                Document range = bucket.get("_id", Document.class);
+                return new FacetedBirds.RangeCount(
+                    ((Number) range.get("min")).doubleValue(), ((Number) range.get("max")).doubleValue(), count(bucket)
+                );
+            })
+            .collect(Collectors.toList());
+    }
+
+    private Criteria criteriaFor(BirdSearch search) {
+        Criteria criteria = new Criteria();
+        if (search.getColor() != null) {
+            criteria = criteria.and("color").is(search.getColor());
+        }
+        criteria = range(criteria, "weight", search.getMinWeight(), search.getMaxWeight());
+        return range(criteria, "height", search.getMinHeight(), search.getMaxHeight());
+    }
+
+    private static Criteria range(Criteria criteria, String field, Double min, Double max) {
+        if (min == null && max == null) {
+            return criteria;
+        }
+        Criteria range = criteria.and(field);
+        if (min != null) {
+            range = range.gte(min);
+        }
+        if (max != null) {
+            range = range.lte(max);
+        }
+        return range;
+    }
+
+    private static List<Document> rangeFacet(String field, int ranges) {
+        // Birds without the measurement would otherwise be put in a range of their own
+        return Arrays.asList(
+            new Document("$match", new Document(field, new Document("$ne", null))),
+            new Document("$bucketAuto", new Document("groupBy", "$" + field).append("buckets", ranges))
+        );
+    }
+
+    private static long count(Document document) {
+        return ((Number) document.get("count")).longValue();
+    }
+
+    private static AggregationOperation stage(Document stage) {
+        return context -> stage;
+    }
+}
@@ -0,0 +1,354 @@
+package com.project.birdSightings.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.WriteConcernError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.UpdateResult;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link SightingRepository} on top of {@link ReactiveMongoTemplate}, used with
+ * {@code sightings.storage.engine=mongodb}.
+ * Reads and writes go to the collections chosen by {@link SightingCollections}. When sightings are bucketed by
+ * month, ordered queries read the overlapping buckets one after the other, oldest first, which keeps the
+ * (date, id) order across buckets and stops reading as soon as enough sightings were found. Reads are routed by
+ * {@link ReadRouting}, to the query read preference for filters marked as query reads and to the primary otherwise.
+ * Inserts are followed with a change stream, which needs a replica set; a single-node replica set is enough.
+ */
+@Repository
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class MongoSightingRepository implements SightingRepository {
+    private static final Logger log = LoggerFactory.getLogger(MongoSightingRepository.class);
+    private static final double EARTH_RADIUS_METERS = 6_378_100;
+    private static final int DOCUMENT_VALIDATION_FAILURE = 121;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private SightingCollections sightingCollections;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    /**
+     * Follows the inserts into the sightings collections with a change stream. When the stream fails, it is
+     * reopened after the last event it delivered, with a growing delay, for as long as it is subscribed to.
+     */
+    @Override
+    public Flux<Sighting> inserted() {
+        return Flux.defer(() -> {
+            AtomicReference<BsonValue> resumeToken = new AtomicReference<>();
+            return Flux.defer(() -> watch(resumeToken.get()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                    .maxBackoff(Duration.ofSeconds(30))
+                    .transientErrors(true)
+                    .doBeforeRetry(signal -> log.warn("Sightings change stream failed, reopening", signal.failure())))
+                .doOnNext(event -> resumeToken.set(event.getResumeToken()));
+        })
+            .filter(event -> event.getBody() != null)
+            .map(ChangeStreamEvent::getBody);
+    }
+
+    private Flux<ChangeStreamEvent<Sighting>> watch(BsonValue resumeToken) {
+        Document match = new Document("operationType", "insert");
+        if (sightingCollections.isBucketed()) {
+            match.append("ns.coll", new Document("$regex", "^" + sightingCollections.namePattern().pattern() + "$"));
+        }
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+            .filter(new Document("$match", match));
+        if (resumeToken != null) {
+            options.resumeAfter(resumeToken);
+        }
+        // Monthly buckets are created over time, so the whole database is watched for inserts into any of them.
+        String collection = sightingCollections.isBucketed() ? null : sightingCollections.baseName();
+        return mongoTemplate.changeStream(null, collection, options.build(), Sighting.class);
+    }
+
+    @Override
+    public boolean queryReadsMayLag() {
+        return !readRouting.queriesPrimary();
+    }
+
+    @Override
+    public Mono<Sighting> store(Sighting sighting, WriteConcern writeConcern) {
+        if (sighting.getId() == null) {
+            sighting.setId(ObjectId.get().toHexString());
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(sighting, document);
+        return sightingCollections.prepare(sightingCollections.collectionFor(sighting.getDate()))
+            .flatMap(mongoTemplate::getCollection)
+            .flatMap(collection -> Mono.from(collection.withWriteConcern(writeConcern).insertOne(document)))
+            .thenReturn(sighting);
+    }
+
+    @Override
+    public Mono<Map<Integer, WriteFailure>> insertUnordered(List<Sighting> sightings, WriteConcern writeConcern) {
+        if (sightings.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        Map<String, List<Integer>> positionsByCollection = new LinkedHashMap<>();
+        for (int position = 0; position < sightings.size(); position++) {
+            Sighting sighting = sightings.get(position);
+            if (sighting.getId() == null) {
+                sighting.setId(ObjectId.get().toHexString());
+            }
+            positionsByCollection.computeIfAbsent(
+                sightingCollections.collectionFor(sighting.getDate()), collection -> new ArrayList<>()
+            ).add(position);
+        }
+        return Flux.fromIterable(positionsByCollection.entrySet())
+            .concatMap(bucket -> insertUnordered(bucket.getKey(), bucket.getValue(), sightings, writeConcern))
+            .<Map<Integer, WriteFailure>>collect(HashMap::new, Map::putAll);
+    }
+
+    private Mono<Map<Integer, WriteFailure>> insertUnordered(String collectionName, List<Integer> positions,
+                                                             List<Sighting> sightings, WriteConcern writeConcern) {
+        List<Document> documents = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(sightings.get(position), document);
+            documents.add(document);
+        }
+        return sightingCollections.prepare(collectionName)
+            .flatMap(mongoTemplate::getCollection)
+            .map(collection -> collection.withWriteConcern(writeConcern))
+            .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+            .map(result -> Collections.<Integer, WriteFailure>emptyMap())
+            .onErrorResume(MongoBulkWriteException.class, exception -> Mono.just(failures(exception, positions)));
+    }
+
+    private static Map<Integer, WriteFailure> failures(MongoBulkWriteException exception, List<Integer> positions) {
+        Map<Integer, WriteFailure> failures = new HashMap<>();
+        // The documents may have been written, but not with the requested durability, so none of them counts
+        WriteConcernError writeConcernError = exception.getWriteConcernError();
+        if (writeConcernError != null) {
+            WriteFailure failure = WriteFailure.serverError("Write concern not satisfied, the sighting may still have "
+                + "been stored. " + writeConcernError.getMessage());
+            for (int position : positions) {
+                failures.put(position, failure);
+            }
+        }
+        for (BulkWriteError error : exception.getWriteErrors()) {
+            failures.put(positions.get(error.getIndex()), failure(error));
+        }
+        return failures;
+    }
+
+    // Only duplicate keys and documents the collection's validation refuses are the record's fault
+    private static WriteFailure failure(BulkWriteError error) {
+        if (error.getCategory() == ErrorCategory.DUPLICATE_KEY) {
+            return WriteFailure.duplicateKey(error.getMessage());
+        }
+        return error.getCode() == DOCUMENT_VALIDATION_FAILURE
+            ? WriteFailure.invalid(error.getMessage())
+            : WriteFailure.serverError(error.getMessage());
+    }
+
+    @Override
+    public Flux<Sighting> findByIdempotencyKeys(Collection<Sighting> sightings) {
+        Map<String, List<String>> keysByCollection = new LinkedHashMap<>();
+        for (Sighting sighting : sightings) {
+            if (sighting.getIdempotencyKey() != null) {
+                keysByCollection.computeIfAbsent(
+                    sightingCollections.collectionFor(sighting.getDate()), collection -> new ArrayList<>()
+                ).add(sighting.getIdempotencyKey());
+            }
+        }
+        return Flux.fromIterable(keysByCollection.entrySet())
+            .concatMap(bucket -> readRouting.reads("findByIdempotencyKeys", false).find(
+                Query.query(Criteria.where("idempotencyKey").in(bucket.getValue())), Sighting.class, bucket.getKey()
+            ));
+    }
+
+    @Override
+    public Mono<Long> clearIdempotencyKeys(String prefix) {
+        // An anchored regex of literal characters is answered from the idempotency_key index as a range
+        Query query = Query.query(
+            Criteria.where("idempotencyKey").regex("^" + prefix.replaceAll("[^A-Za-z0-9]", "\\\\$0"))
+        );
+        Update update = new Update().unset("idempotencyKey");
+        return sightingCollections.all()
+            .flatMapMany(collections -> Flux.fromIterable(collections)
+                .concatMap(collection -> mongoTemplate.updateMulti(query, update, collection)))
+            .map(UpdateResult::getModifiedCount)
+            .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Flux<Sighting> findPage(SightingFilter filter, SightingCursor after, int limit) {
+        Query query = orderedQuery(filter, after).limit(limit);
+        ReactiveMongoTemplate reads = readRouting.reads("findPage", filter.isQueryRead());
+        return collectionsFor(filter, after)
+            .flatMapMany(collections -> Flux.fromIterable(collections)
+                .concatMap(collection -> reads.find(query, Sighting.class, collection)))
+            .take(limit);
+    }
+
+    @Override
+    public Flux<Sighting> stream(SightingFilter filter, SightingCursor after, int batchSize) {
+        Query query = orderedQuery(filter, after).cursorBatchSize(batchSize);
+        ReactiveMongoTemplate reads = readRouting.reads("stream", filter.isQueryRead());
+        return collectionsFor(filter, after)
+            .flatMapMany(collections -> Flux.fromIterable(collections)
+                .concatMap(collection -> reads.find(query, Sighting.class, collection)));
+    }
+
+    @Override
+    public Flux<Sighting> findNear(SightingFilter filter, GeoJsonPoint point, double maxDistanceMeters, int limit) {
+        List<Criteria> criteria = criteriaFor(filter);
+        criteria.add(Criteria.where("position").nearSphere(point).maxDistance(maxDistanceMeters));
+        Query query = new Query(and(criteria)).limit(limit);
+        ReactiveMongoTemplate reads = readRouting.reads("findNear", filter.isQueryRead());
+        // Every bucket returns its sightings nearest first, so merging them by distance keeps that order.
+        return collectionsFor(filter, null)
+            .flatMapMany(collections -> Flux.mergeComparing(
+                Comparator.comparingDouble((Sighting sighting) -> distance(
+                    point.getX(), point.getY(), sighting.getPosition().getX(), sighting.getPosition().getY()
+                )),
+                collections.stream()
+                    .map(collection -> reads.find(query, Sighting.class, collection))
+                    .toArray(Flux[]::new)
+            ))
+            .take(limit);
+    }
+
+    @Override
+    public Mono<Sighting> removeById(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        return sightingCollections.all()
+            .flatMapMany(collections -> Flux.fromIterable(collections)
+                .concatMap(collection -> mongoTemplate.findAndRemove(query, Sighting.class, collection)))
+            .next();
+    }
+
+    @Override
+    public Mono<List<Sighting>> removeBatch(SightingFilter filter, int batchSize) {
+        return collectionsFor(filter, null)
+            .flatMap(collections -> removeBatch(filter, collections, 0, batchSize));
+    }
+
+    // Fills the batch from the buckets in order, so a batch is only short once nothing matches anymore
+    private Mono<List<Sighting>> removeBatch(SightingFilter filter, List<String> collections, int index,
+                                             int batchSize) {
+        if (index == collections.size() || batchSize == 0) {
+            return Mono.just(Collections.emptyList());
+        }
+        String collection = collections.get(index);
+        return mongoTemplate.find(orderedQuery(filter, null).limit(batchSize), Sighting.class, collection)
+            .collectList()
+            .flatMap(found -> found.isEmpty() ? Mono.just(found) : mongoTemplate.remove(
+                Query.query(Criteria.where("id").in(
+                    found.stream().map(Sighting::getId).collect(Collectors.toList())
+                )),
+                collection
+            ).thenReturn(found))
+            .flatMap(found -> removeBatch(filter, collections, index + 1, batchSize - found.size())
+                .map(rest -> {
+                    if (rest.isEmpty()) {
+                        return found;
+                    }
+                    List<Sighting> batch = new ArrayList<>(found);
+                    batch.addAll(rest);
+                    return batch;
+                }));
+    }
+
+    private Mono<List<String>> collectionsFor(SightingFilter filter, SightingCursor after) {
+        LocalDate startDate = filter.getStartDate();
+        if (after != null && (startDate == null || after.getDate().isAfter(startDate))) {
+            startDate = after.getDate();
+        }
+        return sightingCollections.collectionsFor(startDate, filter.getEndDate());
+    }
+
+    private Query orderedQuery(SightingFilter filter, SightingCursor after) {
+        List<Criteria> criteria = criteriaFor(filter);
+        if (after != null) {
+            criteria.add(new Criteria().orOperator(
+                Criteria.where("date").gt(after.getDate()),
+                Criteria.where("date").is(after.getDate()).and("id").gt(after.getId())
+            ));
+        }
+        Query query = new Query(and(criteria)).with(Sort.by(Sort.Direction.ASC, "date", "id"));
+        if (filter.getFields() != null) {
+            filter.getFields().forEach(query.fields()::include);
+        }
+        return query;
+    }
+
+    private List<Criteria> criteriaFor(SightingFilter filter) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter.getBirdName() != null) {
+            criteria.add(Criteria.where("bird.name").is(filter.getBirdName()));
+        }
+        if (filter.getLocation() != null) {
+            criteria.add(Criteria.where("location").is(filter.getLocation()));
+        }
+        if (filter.getStartDate() != null) {
+            criteria.add(Criteria.where("date").gte(filter.getStartDate()));
+        }
+        if (filter.getEndDate() != null) {
+            criteria.add(Criteria.where("date").lte(filter.getEndDate()));
+        }
+        if (filter.getArea() != null) {
+            criteria.add(Criteria.where("position").within(filter.getArea()));
+        }
+        return criteria;
+    }
+
+    private Criteria and(List<Criteria> criteria) {
+        return criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria.toArray(new Criteria[0]));
+    }
+
+    /**
+     * Computes the great-circle distance between two points, as MongoDB does for $nearSphere.
+     */
+    static double distance(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude) {
+        double fromLat = Math.toRadians(fromLatitude);
+        double toLat = Math.toRadians(toLatitude);
+        double halfLat = Math.sin((toLat - fromLat) / 2);
+        double halfLng = Math.sin(Math.toRadians(toLongitude - fromLongitude) / 2);
+        double a = halfLat * halfLat + Math.cos(fromLat) * Math.cos(toLat) * halfLng * halfLng;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,233 @@
+package com.project.birdSightings.repository;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Daily sighting counts per bird and location, kept in the {@code sighting_rollups} collection.
+ * Each rollup document holds the count of one (day, bird, location) combination and is updated with
+ * {@code $inc} whenever sightings are added or deleted. Statistics over any date range are then computed
+ * from the rollups, which are far fewer than the sightings themselves.
+ * Used with {@code sightings.storage.engine=mongodb}.
+ */
+@Repository
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class MongoSightingRollupRepository implements SightingRollupRepository {
+    public static final String COLLECTION = "sighting_rollups";
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private SightingCollections sightingCollections;
+
+    /**
+     * Adds a delta to the rollup counts of the given sightings, creating missing rollups.
+     * Sightings that share a rollup are combined into a single update.
+     */
+    @Override
+    public Mono<Void> increment(Collection<Sighting> sightings, int delta) {
+        if (sightings.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<Document, Long> counts = sightings.stream()
+            .collect(Collectors.groupingBy(this::keyOf, Collectors.counting()));
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> {
+            LocalDate day = LocalDate.parse(key.getString("day"));
+            updates.add(new UpdateOneModel<>(
+                new Document("_id", key),
+                new Document("$inc", new Document("count", count * delta))
+                    .append("$setOnInsert", new Document("week", SightingRollupRepository.week(day))
+                        .append("month", SightingRollupRepository.month(day))),
+                new UpdateOptions().upsert(true)
+            ));
+        });
+        return mongoTemplate.getCollection(COLLECTION)
+            .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false))))
+            .then();
+    }
+
+    @Override
+    public Flux<SightingStat> aggregate(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate) {
+        Criteria criteria = Criteria.where("count").gt(0);
+        if (startDate != null && endDate != null) {
+            criteria = criteria.and("_id.day").gte(startDate.toString()).lte(endDate.toString());
+        } else if (startDate != null) {
+            criteria = criteria.and("_id.day").gte(startDate.toString());
+        } else if (endDate != null) {
+            criteria = criteria.and("_id.day").lte(endDate.toString());
+        }
+        Document group = groupKey(groupBy, dimension -> {
+            switch (dimension) {
+                case BIRD:
+                    return "$_id.bird";
+                case LOCATION:
+                    return "$_id.location";
+                case DAY:
+                    return "$_id.day";
+                case WEEK:
+                    return "$week";
+                default:
+                    return "$month";
+            }
+        });
+        return aggregate(COLLECTION, criteria, group, "$count");
+    }
+
+    /**
+     * Counts sightings per group straight from the sightings collection.
+     * Slower than {@link #aggregate(Set, LocalDate, LocalDate)}, but does not depend on the rollups.
+     * When sightings are bucketed by month, each overlapping bucket is aggregated and the groups are combined.
+     */
+    @Override
+    public Flux<SightingStat> aggregateSightings(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate) {
+        Criteria criteria = new Criteria();
+        if (startDate != null && endDate != null) {
+            criteria = Criteria.where("date").gte(startDate).lte(endDate);
+        } else if (startDate != null) {
+            criteria = Criteria.where("date").gte(startDate);
+        } else if (endDate != null) {
+            criteria = Criteria.where("date").lte(endDate);
+        }
+        Document group = groupKey(groupBy, dimension -> {
+            switch (dimension) {
+                case BIRD:
+                    return "$bird.name";
+                case LOCATION:
+                    return "$location";
+                case DAY:
+                    return formatDate("%Y-%m-%d");
+                case WEEK:
+                    return formatDate("%G-W%V");
+                default:
+                    return formatDate("%Y-%m");
+            }
+        });
+        Criteria match = criteria;
+        return sightingCollections.collectionsFor(startDate, endDate)
+            .flatMapMany(collections -> collections.size() == 1
+                ? aggregate(collections.get(0), match, group, 1)
+                : combine(Flux.fromIterable(collections)
+                    .concatMap(collection -> aggregate(collection, match, group, 1))));
+    }
+
+    /**
+     * Recomputes all rollups from the sightings collection and replaces the rollup collection with the result.
+     * When sightings are bucketed by month, the rollups are cleared and every bucket is merged into them in turn;
+     * buckets never share a day, so they never write to the same rollup.
+     */
+    @Override
+    public Mono<Void> rebuild() {
+        if (!sightingCollections.isBucketed()) {
+            return rebuild(sightingCollections.baseName(), new Document("$out", COLLECTION));
+        }
+        Document merge = new Document("$merge", new Document("into", COLLECTION).append("whenMatched", "replace"));
+        return mongoTemplate.remove(new Query(), COLLECTION)
+            .then(sightingCollections.all())
+            .flatMapMany(Flux::fromIterable)
+            .concatMap(collection -> rebuild(collection, merge))
+            .then();
+    }
+
+    private Mono<Void> rebuild(String sightingsCollection, Document outputStage) {
+        Document key = new Document("day", formatDate("%Y-%m-%d"))
+            .append("bird", "$bird.name")
+            .append("location", "$location");
+        List<Document> pipeline = Arrays.asList(
+            new Document("$group", new Document("_id", key)
+                .append("week", new Document("$first", formatDate("%G-W%V")))
+                .append("month", new Document("$first", formatDate("%Y-%m")))
+                .append("count", new Document("$sum", 1))),
+            outputStage
+        );
+        return mongoTemplate.getCollection(sightingsCollection)
+            .flatMap(collection -> Mono.from(collection.aggregate(pipeline).allowDiskUse(true).toCollection()));
+    }
+
+    private Flux<SightingStat> combine(Flux<SightingStat> stats) {
+        return stats
+            .collect(Collectors.toMap(
+                stat -> Arrays.asList(stat.getBird(), stat.getLocation(), stat.getPeriod()),
+                SightingStat::getCount,
+                Long::sum
+            ))
+            .flatMapIterable(counts -> counts.entrySet().stream()
+                .map(entry -> new SightingStat(
+                    entry.getKey().get(0), entry.getKey().get(1), entry.getKey().get(2), entry.getValue()
+                ))
+                .sorted(GROUP_ORDER)
+                .collect(Collectors.toList()));
+    }
+
+    private Flux<SightingStat> aggregate(String collection, Criteria criteria, Document groupKey,
+                                         Object countExpression) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            stage(new Document("$group", new Document("_id", groupKey)
+                .append("count", new Document("$sum", countExpression)))),
+            stage(new Document("$sort", new Document("_id", 1)))
+        );
+        return mongoTemplate.aggregate(aggregation, collection, Document.class)
+            .map(result -> {
+                Document id = result.get("_id", Document.class);
+                return new SightingStat(
+                    id.getString("bird"),
+                    id.getString("location"),
+                    id.getString("period"),
+                    ((Number) result.get("count")).longValue()
+                );
+            });
+    }
+
+    private Document groupKey(Set<StatDimension> groupBy, Function<StatDimension, Object> expression) {
+        Document key = new Document();
+        for (StatDimension dimension : groupBy) {
+            String field = dimension.isPeriod() ? "period" : dimension.name().toLowerCase();
+            key.append(field, expression.apply(dimension));
+        }
+        return key;
+    }
+
+    private Document formatDate(String format) {
+        return new Document("$dateToString", new Document("format", format)
+            .append("date", "$date")
+            .append("timezone", ZoneId.systemDefault().getId()));
+    }
+
+    private AggregationOperation stage(Document stage) {
+        return context -> stage;
+    }
+
+    private Document keyOf(Sighting sighting) {
+        return new Document("day", sighting.getDate().toString())
+            .append("bird", sighting.getBird().getName())
+            .append("location", sighting.getLocation());
+    }
+}
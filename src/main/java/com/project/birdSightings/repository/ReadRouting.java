@@ -0,0 +1,106 @@
+package com.project.birdSightings.repository;
+
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the members of the replica set that repository reads go to.
+ * <p>
+ * Reads of query endpoints, such as the sighting pages, streams and the bird search, may be answered by the members
+ * of mongodb.reads.query-read-preference, for instance secondaryPreferred, as long as they are no more than
+ * mongodb.reads.max-staleness behind the primary. This keeps long range scans off the primary that takes the
+ * writes. Every other read, such as the bird check of a new sighting, the idempotency keys and the loads of the
+ * in-memory caches, stays on the primary so it sees the writes before it. With the default, primary, all reads go
+ * to the primary.
+ * <p>
+ * The versions behind the ETags move forward when a write is acknowledged by the primary, so a page read from a
+ * lagging member would be tagged as current and kept by the client. Reading queries from other members therefore
+ * requires http.etags.enabled=false.
+ * <p>
+ * Every routed read is counted in {@code birds.mongodb.reads}, tagged with the operation and the read preference.
+ * Only used with {@code sightings.storage.engine=mongodb}.
+ */
+@Component
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class ReadRouting {
+    /**
+     * The smallest max staleness MongoDB accepts.
+     */
+    private static final Duration MIN_MAX_STALENESS = Duration.ofSeconds(90);
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mongodb.reads.query-read-preference:primary}")
+    private String queryReadPreference;
+
+    @Value("${mongodb.reads.max-staleness:90s}")
+    private Duration maxStaleness;
+
+    @Value("${http.etags.enabled:true}")
+    private boolean etagsEnabled;
+
+    private ReactiveMongoTemplate queryTemplate;
+
+    @PostConstruct
+    void init() {
+        if (maxStaleness.compareTo(MIN_MAX_STALENESS) < 0) {
+            throw new IllegalArgumentException("Expected mongodb.reads.max-staleness of at least 90 seconds");
+        }
+        ReadPreference readPreference = ReadPreference.valueOf(queryReadPreference);
+        if (readPreference.equals(ReadPreference.primary())) {
+            queryTemplate = mongoTemplate;
+            return;
+        }
+        if (etagsEnabled) {
+            throw new IllegalArgumentException(
+                "Expected http.etags.enabled=false with a mongodb.reads.query-read-preference other than primary"
+            );
+        }
+        // A template of its own, not a bean: declaring a second template would replace the one Spring Boot configures
+        queryTemplate = new ReactiveMongoTemplate(
+            mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter()
+        );
+        queryTemplate.setReadPreference(ReadPreference.valueOf(
+            queryReadPreference, Collections.emptyList(), maxStaleness.getSeconds(), TimeUnit.SECONDS
+        ));
+    }
+
+    /**
+     * Tells whether query reads go to the primary, so they see every acknowledged write.
+     *
+     * @return true if the query read preference is primary
+     */
+    public boolean queriesPrimary() {
+        return queryTemplate == mongoTemplate;
+    }
+
+    /**
+     * Returns the template to read with and counts the read.
+     *
+     * @param operation the repository operation, used as a metric tag
+     * @param query true if the read serves a query endpoint and may be answered by a stale member, false if it must
+     *              see every earlier write
+     * @return the template whose reads go to the query read preference, or to the primary
+     */
+    public ReactiveMongoTemplate reads(String operation, boolean query) {
+        ReactiveMongoTemplate template = query ? queryTemplate : mongoTemplate;
+        String readPreference = template == mongoTemplate ? "primary" : queryReadPreference;
+        meterRegistry.counter("birds.mongodb.reads", "operation", operation, "readPreference", readPreference)
+            .increment();
+        return template;
+    }
+}
@@ -0,0 +1,191 @@
+package com.project.birdSightings.repository;
+
+import com.project.birdSightings.model.Sighting;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which MongoDB collections hold sightings.
+ * By default all sightings live in the single {@code sightings} collection. With
+ * {@code sightings.storage.monthly-buckets=true} every month gets its own collection ({@code sightings_2021_07}),
+ * created with its indexes on the first write, and date-range queries only read the months that overlap the
+ * range. Each bucket has indexes no larger than one month of data, so wide historical ranges are answered from
+ * small per-month indexes and months outside the range are never touched.
+ * Only used with {@code sightings.storage.engine=mongodb}.
+ */
+@Component
+@ConditionalOnProperty(name = "sightings.storage.engine", havingValue = "mongodb", matchIfMissing = true)
+public class SightingCollections {
+    private static final Pattern BUCKET = Pattern.compile("_\\d{4}_\\d{2}");
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${sightings.storage.monthly-buckets:false}")
+    private boolean monthlyBuckets;
+
+    @Value("${sightings.storage.bucket-refresh:10s}")
+    private Duration bucketRefresh;
+
+    private final Set<String> prepared = ConcurrentHashMap.newKeySet();
+    private volatile Mono<NavigableSet<String>> buckets;
+
+    /**
+     * Returns the indexes every sightings collection has.
+     * Every list query is paginated on (date, _id), so each index ends with those fields. Idempotency keys are
+     * unique per collection; a retried submission has the same date, so it always meets its original in one bucket.
+     *
+     * @return the index definitions
+     */
+    public static List<IndexDefinition> indexes() {
+        return Arrays.asList(
+            new Index().named("date_id").on("date", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            new Index().named("bird_name_date_id")
+                .on("bird.name", Sort.Direction.ASC).on("date", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            new Index().named("location_date_id")
+                .on("location", Sort.Direction.ASC).on("date", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            new CompoundIndexDefinition(new Document("position", "2dsphere").append("date", 1)).named("position_date"),
+            new Index().named("idempotency_key").on("idempotencyKey", Sort.Direction.ASC).unique().sparse()
+        );
+    }
+
+    /**
+     * Tells whether sightings are stored in monthly buckets.
+     *
+     * @return true if sightings are bucketed by month
+     */
+    public boolean isBucketed() {
+        return monthlyBuckets;
+    }
+
+    /**
+     * Returns the name of the single sightings collection, which is also the prefix of the bucket names.
+     *
+     * @return the base collection name
+     */
+    public String baseName() {
+        return mongoTemplate.getCollectionName(Sighting.class);
+    }
+
+    /**
+     * Returns a pattern matching the names of all collections that may hold sightings.
+     *
+     * @return the collection name pattern
+     */
+    public Pattern namePattern() {
+        return Pattern.compile(Pattern.quote(baseName()) + (monthlyBuckets ? BUCKET.pattern() : ""));
+    }
+
+    /**
+     * Returns the collection a sighting of the given date is stored in.
+     *
+     * @param date the date of the sighting
+     * @return the collection name
+     */
+    public String collectionFor(LocalDate date) {
+        if (!monthlyBuckets) {
+            return baseName();
+        }
+        return String.format("%s_%04d_%02d", baseName(), date.getYear(), date.getMonthValue());
+    }
+
+    /**
+     * Makes sure a bucket exists with its indexes before it is written to.
+     * Index creation only happens on the first write to a bucket after startup.
+     *
+     * @param collection the collection about to be written, as returned by {@link #collectionFor(LocalDate)}
+     * @return a Mono containing the collection name
+     */
+    public Mono<String> prepare(String collection) {
+        if (!monthlyBuckets || prepared.contains(collection)) {
+            return Mono.just(collection);
+        }
+        return ensureIndexes(collection)
+            .then(Mono.fromRunnable(() -> {
+                prepared.add(collection);
+                buckets = null;
+            }))
+            .thenReturn(collection);
+    }
+
+    /**
+     * Returns the collections holding sightings between two dates, in chronological order.
+     * Without bucketing this is always the single sightings collection.
+     *
+     * @param startDate the first date of the range, or null for no lower bound
+     * @param endDate the last date of the range, or null for no upper bound
+     * @return a Mono containing the collection names, oldest month first
+     */
+    public Mono<List<String>> collectionsFor(LocalDate startDate, LocalDate endDate) {
+        if (!monthlyBuckets) {
+            return Mono.just(Collections.singletonList(baseName()));
+        }
+        return buckets().map(names -> {
+            if (names.isEmpty()) {
+                return Collections.<String>emptyList();
+            }
+            String from = startDate == null ? names.first() : collectionFor(startDate);
+            String to = endDate == null ? names.last() : collectionFor(endDate);
+            if (from.compareTo(to) > 0) {
+                return Collections.<String>emptyList();
+            }
+            return new ArrayList<>(names.subSet(from, true, to, true));
+        });
+    }
+
+    /**
+     * Returns all collections holding sightings, in chronological order.
+     *
+     * @return a Mono containing the collection names
+     */
+    public Mono<List<String>> all() {
+        return collectionsFor(null, null);
+    }
+
+    /**
+     * Creates the sightings indexes on a collection. Creating an index that already exists is a no-op in MongoDB.
+     *
+     * @param collection the collection name
+     * @return a Flux containing the names of the ensured indexes
+     */
+    public Flux<String> ensureIndexes(String collection) {
+        return Flux.fromIterable(indexes())
+            .concatMap(index -> mongoTemplate.indexOps(collection).ensureIndex(index));
+    }
+
+    private Mono<NavigableSet<String>> buckets() {
+        Mono<NavigableSet<String>> current = buckets;
+        if (current == null) {
+            Pattern pattern = namePattern();
+            current = mongoTemplate.getCollectionNames()
+                .filter(name -> pattern.matcher(name).matches())
+                .collect(TreeSet<String>::new, TreeSet::add)
+                .<NavigableSet<String>>map(Collections::unmodifiableNavigableSet)
+                .cache(names -> bucketRefresh, error -> Duration.ZERO, () -> Duration.ZERO);
+            buckets = current;
+        }
+        return current;
+    }
+}
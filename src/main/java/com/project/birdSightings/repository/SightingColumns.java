@@ -0,0 +1,857 @@
+package com.project.birdSightings.repository;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.StatDimension;
+import org.bson.types.ObjectId;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Sightings stored column by column in primitive arrays, one row per sighting.
+ * <p>
+ * IDs are ObjectIds split into a long and an int, dates are epoch days, bird names, colors and locations are
+ * dictionary codes, and measurements and positions are doubles with NaN for missing values. Only idempotency keys,
+ * which are unique, are kept as strings. Rows are found through a sorted index of days, each holding its rows in ID
+ * order, and through one such index per bird name and per location, hashed by dictionary code; IDs and idempotency
+ * keys are hashed too. Deleted rows leave the indexes at once, and the columns when {@link #compacted()} rewrites
+ * them.
+ * <p>
+ * A snapshot holds the dictionaries and then every column as one block of the live rows in (date, id) order, so
+ * {@link #read(Path)} maps the file and fills each column with a single bulk copy. {@link #snapshot()} copies the
+ * live rows in that order, so the file can be written from the copy while the columns change.
+ * <p>
+ * Not thread-safe; {@link ColumnarSightingStore} guards it with a read-write lock.
+ */
+final class SightingColumns {
+    private static final int MAGIC = 0x42534331;
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Constructor<Sighting> PARTIAL_SIGHTING = partialSightingConstructor();
+
+    private int size;
+    private int deletedCount;
+    private long[] idHighs;
+    private int[] idLows;
+    private int[] dates;
+    private int[] birds;
+    private int[] colors;
+    private double[] weights;
+    private double[] heights;
+    private int[] locations;
+    private double[] longitudes;
+    private double[] latitudes;
+    private String[] idempotencyKeys;
+    private final BitSet deleted = new BitSet();
+
+    private final Dictionary birdNames = new Dictionary();
+    private final Dictionary colorNames = new Dictionary();
+    private final Dictionary locationNames = new Dictionary();
+
+    private final DateIndex byDate = new DateIndex();
+    private final Map<Integer, DateIndex> byBird = new HashMap<>();
+    private final Map<Integer, DateIndex> byLocation = new HashMap<>();
+    private final Map<String, Integer> byIdempotencyKey = new HashMap<>();
+    private int[] idSlots;
+    private int idCount;
+
+    SightingColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private SightingColumns(int capacity) {
+        capacity = Math.max(capacity, INITIAL_CAPACITY);
+        idHighs = new long[capacity];
+        idLows = new int[capacity];
+        dates = new int[capacity];
+        birds = new int[capacity];
+        colors = new int[capacity];
+        weights = new double[capacity];
+        heights = new double[capacity];
+        locations = new int[capacity];
+        longitudes = new double[capacity];
+        latitudes = new double[capacity];
+        idempotencyKeys = new String[capacity];
+        idSlots = new int[Integer.highestOneBit(capacity) * 4];
+    }
+
+    /**
+     * Tells whether an ID can be stored: only ObjectIds in their lowercase hex form fit the ID columns.
+     *
+     * @param id the ID of a sighting
+     * @return true if the ID can be stored
+     */
+    static boolean isStorableId(String id) {
+        return id != null && ObjectId.isValid(id) && id.equals(id.toLowerCase());
+    }
+
+    /**
+     * Returns the number of stored sightings, not counting deleted ones.
+     *
+     * @return the number of sightings
+     */
+    int size() {
+        return size - deletedCount;
+    }
+
+    /**
+     * Appends a sighting. Its ID must be storable, and neither its ID nor its idempotency key may be stored yet.
+     *
+     * @param sighting the sighting to append
+     */
+    void append(Sighting sighting) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        ByteBuffer id = ByteBuffer.wrap(new ObjectId(sighting.getId()).toByteArray());
+        idHighs[row] = id.getLong();
+        idLows[row] = id.getInt();
+        dates[row] = (int) sighting.getDate().toEpochDay();
+        Bird bird = sighting.getBird();
+        birds[row] = birdNames.code(bird.getName());
+        colors[row] = colorNames.code(bird.getColor());
+        weights[row] = bird.getWeight() == null ? Double.NaN : bird.getWeight();
+        heights[row] = bird.getHeight() == null ? Double.NaN : bird.getHeight();
+        locations[row] = locationNames.code(sighting.getLocation());
+        GeoJsonPoint position = sighting.getPosition();
+        longitudes[row] = position == null ? Double.NaN : position.getX();
+        latitudes[row] = position == null ? Double.NaN : position.getY();
+        idempotencyKeys[row] = sighting.getIdempotencyKey();
+        index(row);
+    }
+
+    /**
+     * Finds the row of a stored sighting.
+     *
+     * @param id the ID of the sighting
+     * @return the row, or -1 if no sighting has the ID
+     */
+    int rowOf(String id) {
+        if (!isStorableId(id)) {
+            return NONE;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(new ObjectId(id).toByteArray());
+        long high = bytes.getLong();
+        int low = bytes.getInt();
+        int mask = idSlots.length - 1;
+        for (int slot = hash(high, low) & mask; idSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = idSlots[slot] - 1;
+            if (idHighs[row] == high && idLows[row] == low && !deleted.get(row)) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the row of the stored sighting with an idempotency key.
+     *
+     * @param idempotencyKey the key
+     * @return the row, or -1 if no sighting has the key
+     */
+    int rowOfKey(String idempotencyKey) {
+        return byIdempotencyKey.getOrDefault(idempotencyKey, NONE);
+    }
+
+    /**
+     * Removes the idempotency keys starting with a prefix. The rows keep their sightings.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the number of rows whose key was removed
+     */
+    int clearIdempotencyKeys(String prefix) {
+        int cleared = 0;
+        Iterator<Map.Entry<String, Integer>> keys = byIdempotencyKey.entrySet().iterator();
+        while (keys.hasNext()) {
+            Map.Entry<String, Integer> key = keys.next();
+            if (key.getKey().startsWith(prefix)) {
+                idempotencyKeys[key.getValue()] = null;
+                keys.remove();
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+
+    /**
+     * Deletes a row. It is taken out of the indexes, and stays in the columns until they are compacted.
+     *
+     * @param row the row to delete
+     */
+    void delete(int row) {
+        deleted.set(row);
+        deletedCount++;
+        byDate.remove(row);
+        remove(byBird, birds[row], row);
+        remove(byLocation, locations[row], row);
+        if (idempotencyKeys[row] != null) {
+            byIdempotencyKey.remove(idempotencyKeys[row], row);
+        }
+    }
+
+    /**
+     * Tells whether enough rows were deleted, more than half, that the columns should be compacted.
+     *
+     * @return true if the columns should be compacted
+     */
+    boolean needsCompaction() {
+        return deletedCount > INITIAL_CAPACITY && deletedCount * 2 > size;
+    }
+
+    /**
+     * Copies the live rows into new columns, which also drops dictionary values no longer used.
+     *
+     * @return the compacted columns
+     */
+    SightingColumns compacted() {
+        SightingColumns compacted = new SightingColumns(size());
+        scan(new SightingFilter(), null, row -> {
+            compacted.append(read(row, null));
+            return true;
+        });
+        return compacted;
+    }
+
+    /**
+     * Reads a row as a sighting.
+     *
+     * @param row the row
+     * @param fields the fields to read, as parsed by {@link com.project.birdSightings.service.SightingFields}, or
+     *               null to read all of them
+     * @return the sighting
+     */
+    Sighting read(int row, Set<String> fields) {
+        Sighting sighting;
+        if (fields == null) {
+            sighting = new Sighting(readBird(row, null), locationNames.value(locations[row]), date(row));
+        } else {
+            // Like MongoDB documents, a projection is read through the persistence constructor, which lets the
+            // required properties stay null
+            sighting = BeanUtils.instantiateClass(PARTIAL_SIGHTING);
+            sighting.setDate(date(row));
+            if (fields.contains("location")) {
+                sighting.setLocation(locationNames.value(locations[row]));
+            }
+            if (fields.stream().anyMatch(field -> field.startsWith("bird"))) {
+                sighting.setBird(readBird(row, fields));
+            }
+        }
+        sighting.setId(id(row));
+        if (!Double.isNaN(longitudes[row]) && includes(fields, "position")) {
+            sighting.setPosition(new GeoJsonPoint(longitudes[row], latitudes[row]));
+        }
+        if (includes(fields, "idempotencyKey")) {
+            sighting.setIdempotencyKey(idempotencyKeys[row]);
+        }
+        return sighting;
+    }
+
+    /**
+     * Calls a visitor with the rows matching a filter in (date, id) order, starting after a cursor.
+     * The rows are taken from the index of the bird or the location of the filter, if it has one, and from the
+     * index of all days otherwise; only the days of the date range are visited.
+     *
+     * @param filter the conditions to match
+     * @param after the position to continue after, or null to start from the beginning
+     * @param visitor called with each matching row; returns false to stop the scan
+     */
+    void scan(SightingFilter filter, SightingCursor after, IntPredicate visitor) {
+        int bird = filter.getBirdName() == null ? NONE : birdNames.find(filter.getBirdName());
+        int location = filter.getLocation() == null ? NONE : locationNames.find(filter.getLocation());
+        DateIndex index = byDate;
+        if (filter.getBirdName() != null) {
+            index = byBird.get(bird);
+        } else if (filter.getLocation() != null) {
+            index = byLocation.get(location);
+        }
+        if (index == null || filter.getLocation() != null && location == NONE) {
+            return;
+        }
+        int first = filter.getStartDate() == null ? Integer.MIN_VALUE : (int) filter.getStartDate().toEpochDay();
+        int last = filter.getEndDate() == null ? Integer.MAX_VALUE : (int) filter.getEndDate().toEpochDay();
+        int afterDay = after == null ? Integer.MIN_VALUE : (int) after.getDate().toEpochDay();
+        if (Math.max(first, afterDay) > last) {
+            return;
+        }
+        for (Map.Entry<Integer, IntList> day : index.days.subMap(Math.max(first, afterDay), true, last, true)
+                .entrySet()) {
+            IntList rows = day.getValue();
+            int from = day.getKey() == afterDay ? firstAfter(rows, after.getId()) : 0;
+            for (int i = from; i < rows.size; i++) {
+                int row = rows.values[i];
+                boolean matches = (location == NONE || locations[row] == location)
+                    && (filter.getArea() == null || contains(filter.getArea(), longitudes[row], latitudes[row]));
+                if (matches && !visitor.test(row)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the rows matching a filter within a distance of a point, nearest first.
+     *
+     * @param filter the other conditions to match
+     * @param longitude the longitude of the point
+     * @param latitude the latitude of the point
+     * @param maxDistanceMeters the maximum distance in meters
+     * @param limit the maximum number of rows
+     * @return the rows, nearest first
+     */
+    int[] near(SightingFilter filter, double longitude, double latitude, double maxDistanceMeters, int limit) {
+        // The farthest of the nearest rows found so far is on top, so it is the one replaced by a nearer row
+        PriorityQueue<double[]> nearest = new PriorityQueue<>(
+            Comparator.comparingDouble((double[] found) -> found[0]).reversed()
+        );
+        scan(filter, null, row -> {
+            if (Double.isNaN(longitudes[row])) {
+                return true;
+            }
+            double distance = MongoSightingRepository.distance(longitude, latitude, longitudes[row], latitudes[row]);
+            if (distance <= maxDistanceMeters) {
+                nearest.add(new double[] {distance, row});
+                if (nearest.size() > limit) {
+                    nearest.poll();
+                }
+            }
+            return true;
+        });
+        int[] rows = new int[nearest.size()];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = (int) nearest.poll()[1];
+        }
+        return rows;
+    }
+
+    /**
+     * Counts the sightings of a date range per group.
+     *
+     * @param groupBy the dimensions to group by; an empty set gives a single total
+     * @param startDate the first day to count, or null for no lower bound
+     * @param endDate the last day to count, or null for no upper bound
+     * @return the counts, keyed by the bird, location and period of the group, each null if not grouped by
+     */
+    Map<List<String>, Long> count(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate) {
+        StatDimension period = groupBy.stream().filter(StatDimension::isPeriod).findFirst().orElse(null);
+        int first = startDate == null ? Integer.MIN_VALUE : (int) startDate.toEpochDay();
+        int last = endDate == null ? Integer.MAX_VALUE : (int) endDate.toEpochDay();
+        Map<List<String>, Long> counts = new HashMap<>();
+        if (first > last) {
+            return counts;
+        }
+        for (Map.Entry<Integer, IntList> day : byDate.days.subMap(first, true, last, true).entrySet()) {
+            String periodName = period == null ? null : periodName(period, LocalDate.ofEpochDay(day.getKey()));
+            IntList rows = day.getValue();
+            for (int i = 0; i < rows.size; i++) {
+                int row = rows.values[i];
+                counts.merge(Arrays.asList(
+                    groupBy.contains(StatDimension.BIRD) ? birdNames.value(birds[row]) : null,
+                    groupBy.contains(StatDimension.LOCATION) ? locationNames.value(locations[row]) : null,
+                    periodName
+                ), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Copies the live rows in snapshot order, with the dictionaries.
+     *
+     * @return the copy, to be written to a snapshot file
+     */
+    Snapshot snapshot() {
+        int[] rows = new int[size()];
+        int[] count = {0};
+        scan(new SightingFilter(), null, row -> {
+            rows[count[0]++] = row;
+            return true;
+        });
+        Snapshot snapshot = new Snapshot(rows.length);
+        snapshot.birdNames.addAll(birdNames.values);
+        snapshot.colorNames.addAll(colorNames.values);
+        snapshot.locationNames.addAll(locationNames.values);
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            snapshot.idHighs[i] = idHighs[row];
+            snapshot.idLows[i] = idLows[row];
+            snapshot.dates[i] = dates[row];
+            snapshot.birds[i] = birds[row];
+            snapshot.colors[i] = colors[row];
+            snapshot.weights[i] = weights[row];
+            snapshot.heights[i] = heights[row];
+            snapshot.locations[i] = locations[row];
+            snapshot.longitudes[i] = longitudes[row];
+            snapshot.latitudes[i] = latitudes[row];
+            snapshot.idempotencyKeys[i] = idempotencyKeys[row];
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads the columns from a snapshot file, mapped into memory.
+     *
+     * @param file the snapshot file
+     * @return the columns
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static SightingColumns read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a sighting snapshot: " + file);
+        }
+        int rows = buffer.getInt();
+        SightingColumns columns = new SightingColumns(rows);
+        columns.birdNames.read(buffer);
+        columns.colorNames.read(buffer);
+        columns.locationNames.read(buffer);
+        buffer.asLongBuffer().get(columns.idHighs, 0, rows);
+        buffer.position(buffer.position() + rows * Long.BYTES);
+        readInts(buffer, columns.idLows, rows);
+        readInts(buffer, columns.dates, rows);
+        readInts(buffer, columns.birds, rows);
+        readInts(buffer, columns.colors, rows);
+        readDoubles(buffer, columns.weights, rows);
+        readDoubles(buffer, columns.heights, rows);
+        readInts(buffer, columns.locations, rows);
+        readDoubles(buffer, columns.longitudes, rows);
+        readDoubles(buffer, columns.latitudes, rows);
+        int keys = buffer.getInt();
+        for (int i = 0; i < keys; i++) {
+            int row = buffer.getInt();
+            columns.idempotencyKeys[row] = readString(buffer);
+        }
+        // The rows are in (date, id) order, so every index only ever appends
+        for (int row = 0; row < rows; row++) {
+            columns.size++;
+            columns.index(row);
+        }
+        return columns;
+    }
+
+    private void index(int row) {
+        byDate.add(row);
+        byBird.computeIfAbsent(birds[row], code -> new DateIndex()).add(row);
+        byLocation.computeIfAbsent(locations[row], code -> new DateIndex()).add(row);
+        if (idempotencyKeys[row] != null) {
+            byIdempotencyKey.put(idempotencyKeys[row], row);
+        }
+        if ((idCount + 1) * 2 > idSlots.length) {
+            idSlots = new int[idSlots.length * 2];
+            idCount = 0;
+            for (int indexed = 0; indexed < row; indexed++) {
+                if (!deleted.get(indexed)) {
+                    addId(indexed);
+                }
+            }
+        }
+        addId(row);
+    }
+
+    private void addId(int row) {
+        int mask = idSlots.length - 1;
+        int slot = hash(idHighs[row], idLows[row]) & mask;
+        while (idSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        idSlots[slot] = row + 1;
+        idCount++;
+    }
+
+    private static int hash(long high, int low) {
+        long hash = (high ^ low * 0x9E3779B97F4A7C15L) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (hash ^ hash >>> 29);
+    }
+
+    private static void remove(Map<Integer, DateIndex> indexes, int code, int row) {
+        DateIndex index = indexes.get(code);
+        index.remove(row);
+        if (index.days.isEmpty()) {
+            indexes.remove(code);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= dates.length) {
+            return;
+        }
+        int grown = Math.max(capacity, dates.length * 2);
+        idHighs = Arrays.copyOf(idHighs, grown);
+        idLows = Arrays.copyOf(idLows, grown);
+        dates = Arrays.copyOf(dates, grown);
+        birds = Arrays.copyOf(birds, grown);
+        colors = Arrays.copyOf(colors, grown);
+        weights = Arrays.copyOf(weights, grown);
+        heights = Arrays.copyOf(heights, grown);
+        locations = Arrays.copyOf(locations, grown);
+        longitudes = Arrays.copyOf(longitudes, grown);
+        latitudes = Arrays.copyOf(latitudes, grown);
+        idempotencyKeys = Arrays.copyOf(idempotencyKeys, grown);
+    }
+
+    private String id(int row) {
+        return new ObjectId(ByteBuffer.allocate(12).putLong(idHighs[row]).putInt(idLows[row]).array()).toHexString();
+    }
+
+    private LocalDate date(int row) {
+        return LocalDate.ofEpochDay(dates[row]);
+    }
+
+    private Bird readBird(int row, Set<String> fields) {
+        boolean whole = fields == null || fields.contains("bird");
+        Bird bird = new Bird();
+        if (whole || fields.contains("bird.name")) {
+            bird.setName(birdNames.value(birds[row]));
+        }
+        if (whole || fields.contains("bird.color")) {
+            bird.setColor(colorNames.value(colors[row]));
+        }
+        if (!Double.isNaN(weights[row]) && (whole || fields.contains("bird.weight"))) {
+            bird.setWeight(weights[row]);
+        }
+        if (!Double.isNaN(heights[row]) && (whole || fields.contains("bird.height"))) {
+            bird.setHeight(heights[row]);
+        }
+        return bird;
+    }
+
+    private static boolean includes(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private int compareIds(int row, int other) {
+        int order = Long.compareUnsigned(idHighs[row], idHighs[other]);
+        return order != 0 ? order : Integer.compareUnsigned(idLows[row], idLows[other]);
+    }
+
+    private int firstAfter(IntList rows, String id) {
+        int low = 0;
+        int high = rows.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (id(rows.values[middle]).compareTo(id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String periodName(StatDimension period, LocalDate day) {
+        switch (period) {
+            case DAY:
+                return day.toString();
+            case WEEK:
+                return SightingRollupRepository.week(day);
+            default:
+                return SightingRollupRepository.month(day);
+        }
+    }
+
+    // GeoJSON polygons are tested on the plane of longitudes and latitudes, which matches MongoDB's spherical test
+    // for areas that are small and away from the poles and the antimeridian
+    private static boolean contains(GeoJsonPolygon area, double longitude, double latitude) {
+        if (Double.isNaN(longitude)) {
+            return false;
+        }
+        List<GeoJsonLineString> rings = area.getCoordinates();
+        if (!contains(rings.get(0).getCoordinates(), longitude, latitude)) {
+            return false;
+        }
+        for (GeoJsonLineString hole : rings.subList(1, rings.size())) {
+            if (contains(hole.getCoordinates(), longitude, latitude)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(List<Point> ring, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            Point a = ring.get(i);
+            Point b = ring.get(j);
+            if (a.getY() > y != b.getY() > y
+                && x < (b.getX() - a.getX()) * (y - a.getY()) / (b.getY() - a.getY()) + a.getX()) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static void readInts(ByteBuffer buffer, int[] column, int rows) {
+        buffer.asIntBuffer().get(column, 0, rows);
+        buffer.position(buffer.position() + rows * Integer.BYTES);
+    }
+
+    private static void readDoubles(ByteBuffer buffer, double[] column, int rows) {
+        buffer.asDoubleBuffer().get(column, 0, rows);
+        buffer.position(buffer.position() + rows * Double.BYTES);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NONE);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NONE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Constructor<Sighting> partialSightingConstructor() {
+        try {
+            return ReflectionUtils.accessibleConstructor(Sighting.class);
+        } catch (NoSuchMethodException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * The distinct values of a column, each with its code, the position it was added at. Null is a value too.
+     */
+    private static final class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private int code(String value) {
+            return codes.computeIfAbsent(value, added -> {
+                values.add(added);
+                return values.size() - 1;
+            });
+        }
+
+        private int find(String value) {
+            return codes.getOrDefault(value, NONE);
+        }
+
+        private String value(int code) {
+            return values.get(code);
+        }
+
+        private void read(ByteBuffer buffer) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                code(readString(buffer));
+            }
+        }
+    }
+
+    /**
+     * A copy of the live rows, column by column in snapshot order, that no longer changes with the columns.
+     */
+    static final class Snapshot {
+        private final List<String> birdNames = new ArrayList<>();
+        private final List<String> colorNames = new ArrayList<>();
+        private final List<String> locationNames = new ArrayList<>();
+        private final long[] idHighs;
+        private final int[] idLows;
+        private final int[] dates;
+        private final int[] birds;
+        private final int[] colors;
+        private final double[] weights;
+        private final double[] heights;
+        private final int[] locations;
+        private final double[] longitudes;
+        private final double[] latitudes;
+        private final String[] idempotencyKeys;
+
+        private Snapshot(int rows) {
+            idHighs = new long[rows];
+            idLows = new int[rows];
+            dates = new int[rows];
+            birds = new int[rows];
+            colors = new int[rows];
+            weights = new double[rows];
+            heights = new double[rows];
+            locations = new int[rows];
+            longitudes = new double[rows];
+            latitudes = new double[rows];
+            idempotencyKeys = new String[rows];
+        }
+
+        /**
+         * Returns the number of rows copied.
+         *
+         * @return the number of sightings
+         */
+        int size() {
+            return dates.length;
+        }
+
+        /**
+         * Writes the rows to a snapshot file.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        void write(Path file) throws IOException {
+            try (OutputStream stream = Files.newOutputStream(file);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dates.length);
+                writeValues(out, birdNames);
+                writeValues(out, colorNames);
+                writeValues(out, locationNames);
+                for (long idHigh : idHighs) {
+                    out.writeLong(idHigh);
+                }
+                writeInts(out, idLows);
+                writeInts(out, dates);
+                writeInts(out, birds);
+                writeInts(out, colors);
+                writeDoubles(out, weights);
+                writeDoubles(out, heights);
+                writeInts(out, locations);
+                writeDoubles(out, longitudes);
+                writeDoubles(out, latitudes);
+                int keys = 0;
+                for (String key : idempotencyKeys) {
+                    keys += key == null ? 0 : 1;
+                }
+                out.writeInt(keys);
+                for (int row = 0; row < idempotencyKeys.length; row++) {
+                    if (idempotencyKeys[row] != null) {
+                        out.writeInt(row);
+                        writeString(out, idempotencyKeys[row]);
+                    }
+                }
+            }
+        }
+
+        private static void writeValues(DataOutputStream out, List<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+
+        private static void writeInts(DataOutputStream out, int[] column) throws IOException {
+            for (int value : column) {
+                out.writeInt(value);
+            }
+        }
+
+        private static void writeDoubles(DataOutputStream out, double[] column) throws IOException {
+            for (double value : column) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    /**
+     * The rows of each day, in ID order, with the days sorted.
+     */
+    private final class DateIndex {
+        private final TreeMap<Integer, IntList> days = new TreeMap<>();
+
+        private void add(int row) {
+            IntList rows = days.computeIfAbsent(dates[row], day -> new IntList());
+            // New ObjectIds are the largest so far, so appends are the common case
+            if (rows.size == 0 || compareIds(rows.values[rows.size - 1], row) < 0) {
+                rows.insert(rows.size, row);
+                return;
+            }
+            int low = 0;
+            int high = rows.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareIds(rows.values[middle], row) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            rows.insert(low, row);
+        }
+
+        private void remove(int row) {
+            IntList rows = days.get(dates[row]);
+            int low = 0;
+            int high = rows.size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = compareIds(rows.values[middle], row);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    rows.removeAt(middle);
+                    break;
+                }
+            }
+            if (rows.size == 0) {
+                days.remove(dates[row]);
+            }
+        }
+    }
+
+    /**
+     * A growable list of rows.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void insert(int index, int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        private void removeAt(int index) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.project.birdSightings.repository;
 
-import com.project.birdSightings.model.Bird;
 import com.project.birdSightings.model.Sighting;
-import org.springframework.data.mongodb.repository.Query;
-import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-import java.time.LocalDate;
-import java.util.Date;
+/**
+ * Storage of sightings. The implementation is chosen with {@code sightings.storage.engine}:
+ * {@link MongoSightingRepository} for mongodb, the default, and {@link ColumnarSightingStore} for columnar.
+ */
+public interface SightingRepository extends SightingRepositoryCustom {
 
-public interface SightingRepository extends ReactiveMongoRepository<Sighting, String> {
-    Flux<Sighting> findByBird(Bird bird);
+    /**
+     * Follows the sightings inserted from now on, by any application instance sharing the storage.
+     *
+     * @return an endless Flux of inserted sightings
+     */
+    Flux<Sighting> inserted();
 
-    Flux<Sighting> findByLocation(String location);
-
-    @Query("{ 'date' : { $gte: ?0, $lte: ?1 } }")
-    Flux<Sighting> findByDateBetween(LocalDate startDate, LocalDate endDate);
+    /**
+     * Tells whether reads marked as query reads may be answered from a copy that lags behind the acknowledged
+     * writes, so a result that looks empty has to be confirmed with a read that is not a query read.
+     *
+     * @return true if query reads may miss acknowledged writes
+     */
+    boolean queryReadsMayLag();
 }
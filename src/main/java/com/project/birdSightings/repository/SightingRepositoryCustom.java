@@ -0,0 +1,114 @@
+package com.project.birdSightings.repository;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sighting queries and writes of {@link SightingRepository}. The descriptions refer to MongoDB; the columnar
+ * engine gives the same results from its in-memory indexes.
+ */
+public interface SightingRepositoryCustom {
+
+    /**
+     * Inserts a sighting into the collection that holds its date.
+     * A sighting without an ID gets one assigned before the write.
+     *
+     * @param sighting the sighting to insert
+     * @param writeConcern the write concern the insert is acknowledged with
+     * @return a Mono containing the inserted sighting
+     */
+    Mono<Sighting> store(Sighting sighting, WriteConcern writeConcern);
+
+    /**
+     * Inserts a batch of sightings with a single unordered insertMany.
+     * Sightings without an ID get one assigned before the write, so callers can report it back.
+     * A failing record does not stop the rest of the batch from being written. When sightings are bucketed,
+     * one insertMany is issued per month in the batch.
+     *
+     * @param sightings the sightings to insert
+     * @param writeConcern the write concern the inserts are acknowledged with
+     * @return a Mono containing the positions of the records that failed, mapped to why they failed
+     */
+    Mono<Map<Integer, WriteFailure>> insertUnordered(List<Sighting> sightings, WriteConcern writeConcern);
+
+    /**
+     * Finds the stored sightings that have the idempotency keys of the given sightings.
+     * Each key is only looked up in the collection that holds the date of the sighting carrying it.
+     *
+     * @param sightings the sightings whose keys to look up; sightings without a key are ignored
+     * @return a Flux containing the stored sightings with those keys
+     */
+    Flux<Sighting> findByIdempotencyKeys(Collection<Sighting> sightings);
+
+    /**
+     * Removes the idempotency keys starting with a prefix from the stored sightings, in every collection.
+     * The sightings themselves are kept; their keys just no longer take up the unique idempotency_key index.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return a Mono containing the number of sightings whose key was removed
+     */
+    Mono<Long> clearIdempotencyKeys(String prefix);
+
+    /**
+     * Finds sightings matching a filter in (date, id) order, continuing after a cursor.
+     * The cursor is turned into a range condition on the sort key, so the query seeks on the index
+     * instead of skipping over the earlier pages.
+     *
+     * @param filter the conditions to match, and the fields to read if only some are needed
+     * @param after the position to continue after, or null to start from the beginning
+     * @param limit the maximum number of sightings to return
+     * @return a Flux containing the matching sightings
+     */
+    Flux<Sighting> findPage(SightingFilter filter, SightingCursor after, int limit);
+
+    /**
+     * Streams all sightings matching a filter in (date, id) order, continuing after a cursor.
+     * The MongoDB cursor fetches batches of the given size as downstream demand arrives.
+     *
+     * @param filter the conditions to match, and the fields to read if only some are needed
+     * @param after the position to continue after, or null to start from the beginning
+     * @param batchSize the number of documents fetched per cursor batch
+     * @return a Flux containing the matching sightings
+     */
+    Flux<Sighting> stream(SightingFilter filter, SightingCursor after, int batchSize);
+
+    /**
+     * Deletes a sighting by its ID and returns the deleted document, in one atomic operation.
+     *
+     * @param id the ID of the sighting to delete
+     * @return a Mono containing the deleted sighting, or an empty Mono if it did not exist
+     */
+    Mono<Sighting> removeById(String id);
+
+    /**
+     * Deletes up to a batch of sightings matching a filter and returns them, oldest first.
+     * The batch is read in (date, id) order, bucket after bucket until it is full, and removed by ID, so every
+     * call is a few short indexed reads and deletes, however many sightings match in total.
+     *
+     * @param filter the conditions to match
+     * @param batchSize the maximum number of sightings to delete
+     * @return a Mono containing the deleted sightings; fewer than batchSize only once nothing matches anymore
+     */
+    Mono<List<Sighting>> removeBatch(SightingFilter filter, int batchSize);
+
+    /**
+     * Finds sightings matching a filter within a distance of a point, nearest first.
+     *
+     * @param filter the other conditions to match
+     * @param point the point to measure distances from
+     * @param maxDistanceMeters the maximum distance in meters
+     * @param limit the maximum number of sightings to return
+     * @return a Flux containing the matching sightings, ordered by distance
+     */
+    Flux<Sighting> findNear(SightingFilter filter, GeoJsonPoint point, double maxDistanceMeters, int limit);
+}
@@ -0,0 +1,86 @@
+package com.project.birdSightings.repository;
+
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Sighting counts per group, for the statistics. The implementation is chosen with
+ * {@code sightings.storage.engine}: {@link MongoSightingRollupRepository} keeps daily rollups next to the sightings,
+ * while {@link ColumnarSightingStore} counts straight from its columns and needs no rollups.
+ */
+public interface SightingRollupRepository {
+    /**
+     * The order counts are returned in: by bird, then location, then period, with missing values first.
+     */
+    Comparator<SightingStat> GROUP_ORDER = Comparator
+        .comparing(SightingStat::getBird, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+        .thenComparing(SightingStat::getLocation, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+        .thenComparing(SightingStat::getPeriod, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    /**
+     * Adds a delta to the rollup counts of the given sightings, creating missing rollups.
+     *
+     * @param sightings the sightings that were added or deleted
+     * @param delta 1 for added sightings, -1 for deleted ones
+     * @return a Mono indicating when the rollups are updated
+     */
+    Mono<Void> increment(Collection<Sighting> sightings, int delta);
+
+    /**
+     * Counts sightings per group from the rollups.
+     *
+     * @param groupBy the dimensions to group by; an empty set gives a single total
+     * @param startDate the first day to count, or null for no lower bound
+     * @param endDate the last day to count, or null for no upper bound
+     * @return a Flux containing one count per group, ordered by group
+     */
+    Flux<SightingStat> aggregate(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Counts sightings per group straight from the stored sightings, without depending on the rollups.
+     *
+     * @param groupBy the dimensions to group by; an empty set gives a single total
+     * @param startDate the first day to count, or null for no lower bound
+     * @param endDate the last day to count, or null for no upper bound
+     * @return a Flux containing one count per group, ordered by group
+     */
+    Flux<SightingStat> aggregateSightings(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Recomputes all rollups from the stored sightings.
+     *
+     * @return a Mono indicating when the rollups are rebuilt
+     */
+    Mono<Void> rebuild();
+
+    /**
+     * Returns the ISO week a day belongs to, as the week period of the statistics.
+     *
+     * @param day the day
+     * @return the week, such as 2021-W26
+     */
+    static String week(LocalDate day) {
+        return String.format(
+            "%d-W%02d", day.get(IsoFields.WEEK_BASED_YEAR), day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)
+        );
+    }
+
+    /**
+     * Returns the month a day belongs to, as the month period of the statistics.
+     *
+     * @param day the day
+     * @return the month, such as 2021-07
+     */
+    static String month(LocalDate day) {
+        return day.toString().substring(0, 7);
+    }
+}
@@ -0,0 +1,140 @@
+package com.project.birdSightings.service;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrency limit that adapts to the observed latency (additive increase, multiplicative decrease).
+ * <p>
+ * Every completed call reports its latency. While calls finish within the latency threshold the limit grows by
+ * about one per limit's worth of calls, but only while the calls in flight use at least half of it, so an idle
+ * system does not build up a limit it never tested. A call slower than the threshold, or one that failed because
+ * the database was overloaded, multiplies the limit by the backoff ratio. Decreases are spaced at least one latency
+ * threshold apart, so a burst of slow calls that were all admitted under the old limit only counts once.
+ */
+public class AdaptiveLimit {
+    @Getter
+    private final String name;
+    @Getter
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double limit;
+    private long lastDecrease;
+
+    /**
+     * Constructs a new AdaptiveLimit.
+     *
+     * @param name the name of the budget, used in metrics
+     * @param initialLimit the limit to start with
+     * @param minLimit the lowest the limit goes
+     * @param maxLimit the highest the limit goes
+     * @param latencyThresholdNanos the latency above which the limit is decreased
+     * @param backoffRatio the factor the limit is multiplied with on a decrease, between 0 and 1
+     */
+    public AdaptiveLimit(String name, int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos,
+                         double backoffRatio) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= min-limit <= initial-limit <= max-limit for " + name);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Expected a backoff ratio between 0 and 1 for " + name);
+        }
+        this.name = name;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+        this.lastDecrease = System.nanoTime() - latencyThresholdNanos;
+    }
+
+    /**
+     * Takes a slot if fewer calls than the limit are in flight.
+     * A taken slot must be given back with {@link #release()}.
+     *
+     * @return true if the call is admitted, false if it should be rejected
+     */
+    public boolean tryAcquire() {
+        int currentLimit = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a slot taken with {@link #tryAcquire()}.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Adjusts the limit to the outcome of a completed call.
+     *
+     * @param latencyNanos how long the call took
+     * @param overloaded whether the call failed because the database was overloaded
+     */
+    public synchronized void onSample(long latencyNanos, boolean overloaded) {
+        long now = System.nanoTime();
+        if (overloaded || latencyNanos > latencyThresholdNanos) {
+            if (now - lastDecrease >= latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+            }
+        } else if (inFlight.get() * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the number of calls admitted at the same time
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns whether the limit was decreased below its initial value, i.e. the database has been slow.
+     *
+     * @return true if the limit is below the initial limit
+     */
+    public boolean isDegraded() {
+        return getLimit() < initialLimit;
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     *
+     * @return the calls admitted and not yet released
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of calls rejected since startup.
+     *
+     * @return the rejected calls
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,232 @@
+package com.project.birdSightings.service;
+
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoSocketReadTimeoutException;
+import com.mongodb.MongoTimeoutException;
+import com.project.birdSightings.errorHandling.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how many MongoDB reads and writes run at the same time, with a separate {@link AdaptiveLimit} for each.
+ * <p>
+ * A call over the limit fails right away with a {@link ServiceOverloadedException} instead of queueing for a
+ * pooled connection, so under overload the admitted calls keep their latency and the others get a fast 429 or
+ * 503 with Retry-After. The limits follow the latency of the calls they admit: a Mono call is measured until it
+ * completes, a Flux call until its first record, so a long stream that the client reads slowly does not count
+ * as a slow database. Timeouts of the MongoDB driver (including waiting for a pooled connection) count as slow.
+ * <p>
+ * The limits are published as {@code birds.admission.limit}, {@code birds.admission.in.flight} and
+ * {@code birds.admission.rejected}, tagged with the budget (read or write).
+ * With admission.enabled=false every call is let through.
+ */
+@Component
+public class AdmissionControl {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.read.initial-limit:64}")
+    private int readInitialLimit;
+
+    @Value("${admission.read.min-limit:8}")
+    private int readMinLimit;
+
+    @Value("${admission.read.max-limit:512}")
+    private int readMaxLimit;
+
+    @Value("${admission.read.latency-threshold:50ms}")
+    private Duration readLatencyThreshold;
+
+    @Value("${admission.write.initial-limit:32}")
+    private int writeInitialLimit;
+
+    @Value("${admission.write.min-limit:4}")
+    private int writeMinLimit;
+
+    @Value("${admission.write.max-limit:256}")
+    private int writeMaxLimit;
+
+    @Value("${admission.write.latency-threshold:100ms}")
+    private Duration writeLatencyThreshold;
+
+    @Value("${admission.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${admission.retry-after:1s}")
+    private Duration retryAfter;
+
+    private AdaptiveLimit readLimit;
+    private AdaptiveLimit writeLimit;
+
+    @PostConstruct
+    void init() {
+        readLimit = new AdaptiveLimit(
+            "read", readInitialLimit, readMinLimit, readMaxLimit, readLatencyThreshold.toNanos(), backoffRatio
+        );
+        writeLimit = new AdaptiveLimit(
+            "write", writeInitialLimit, writeMinLimit, writeMaxLimit, writeLatencyThreshold.toNanos(), backoffRatio
+        );
+        register(readLimit);
+        register(writeLimit);
+    }
+
+    /**
+     * Runs a read within the read budget.
+     *
+     * @param call the read
+     * @return the read, or a ServiceOverloadedException if the read budget is used up
+     */
+    public <T> Mono<T> read(Mono<T> call) {
+        return admit(readLimit, call);
+    }
+
+    /**
+     * Runs a streaming read within the read budget. The slot is held until the stream ends.
+     *
+     * @param call the read
+     * @return the read, or a ServiceOverloadedException if the read budget is used up
+     */
+    public <T> Flux<T> read(Flux<T> call) {
+        return admit(readLimit, call);
+    }
+
+    /**
+     * Runs a write within the write budget.
+     *
+     * @param call the write
+     * @return the write, or a ServiceOverloadedException if the write budget is used up
+     */
+    public <T> Mono<T> write(Mono<T> call) {
+        return admit(writeLimit, call);
+    }
+
+    /**
+     * Runs a streaming write, such as a bulk upload, within the write budget. The slot is held until the stream
+     * ends; the latency of the individual writes is reported with {@link #measureWrite(Mono)}.
+     *
+     * @param call the write
+     * @return the write, or a ServiceOverloadedException if the write budget is used up
+     */
+    public <T> Flux<T> write(Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            if (!writeLimit.tryAcquire()) {
+                return Flux.error(rejection(writeLimit));
+            }
+            return call.doFinally(signal -> writeLimit.release());
+        });
+    }
+
+    /**
+     * Reports the latency of a write to the write limit without taking a slot, for the writes of a call
+     * already admitted with {@link #write(Flux)}.
+     *
+     * @param call the write
+     * @return the write, measured until it completes
+     */
+    public <T> Mono<T> measureWrite(Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .doOnSuccess(value -> writeLimit.onSample(System.nanoTime() - start, false))
+                .doOnError(error -> writeLimit.onSample(System.nanoTime() - start, isOverload(error)));
+        });
+    }
+
+    private <T> Mono<T> admit(AdaptiveLimit limit, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            if (!limit.tryAcquire()) {
+                return Mono.error(rejection(limit));
+            }
+            long start = System.nanoTime();
+            return call
+                .doOnSuccess(value -> limit.onSample(System.nanoTime() - start, false))
+                .doOnError(error -> limit.onSample(System.nanoTime() - start, isOverload(error)))
+                .doFinally(signal -> limit.release());
+        });
+    }
+
+    private <T> Flux<T> admit(AdaptiveLimit limit, Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            if (!limit.tryAcquire()) {
+                return Flux.error(rejection(limit));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean sampled = new AtomicBoolean();
+            return call
+                .doOnNext(value -> {
+                    if (sampled.compareAndSet(false, true)) {
+                        limit.onSample(System.nanoTime() - start, false);
+                    }
+                })
+                .doOnError(error -> {
+                    if (sampled.compareAndSet(false, true)) {
+                        limit.onSample(System.nanoTime() - start, isOverload(error));
+                    }
+                })
+                .doFinally(signal -> {
+                    if (signal != SignalType.CANCEL && sampled.compareAndSet(false, true)) {
+                        limit.onSample(System.nanoTime() - start, false);
+                    }
+                    limit.release();
+                });
+        });
+    }
+
+    private ServiceOverloadedException rejection(AdaptiveLimit limit) {
+        return new ServiceOverloadedException(
+            "Too many concurrent " + limit.getName() + "s. Please retry later.", limit.isDegraded(), retryAfter
+        );
+    }
+
+    private static boolean isOverload(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoTimeoutException
+                || cause instanceof MongoSocketReadTimeoutException
+                || cause instanceof MongoExecutionTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void register(AdaptiveLimit limit) {
+        Gauge.builder("birds.admission.limit", limit, AdaptiveLimit::getLimit)
+            .tag("budget", limit.getName())
+            .description("Concurrent MongoDB calls admitted")
+            .register(meterRegistry);
+        Gauge.builder("birds.admission.in.flight", limit, AdaptiveLimit::getInFlight)
+            .tag("budget", limit.getName())
+            .description("MongoDB calls in flight")
+            .register(meterRegistry);
+        FunctionCounter.builder("birds.admission.rejected", limit, AdaptiveLimit::getRejected)
+            .tag("budget", limit.getName())
+            .description("Calls rejected because the budget was used up")
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,161 @@
+package com.project.birdSightings.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.repository.BirdRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-through cache in front of {@link BirdRepository} lookups by name.
+ * Missing birds are cached as well (for a shorter time), so repeated lookups of unknown names
+ * do not reach MongoDB either. Entries are kept up to date by {@link BirdService} on writes.
+ * Loads run inside the cache, so a write that replaces or invalidates an entry while it is being loaded also
+ * discards the load, and a bird read just before it was deleted is not cached afterwards.
+ * The cache statistics are published as the {@code cache.*} metrics of the "birds" cache.
+ */
+@Component
+public class BirdCache {
+    @Autowired
+    private BirdRepository birdRepository;
+
+    @Value("${birds.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${birds.cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${birds.cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    private AsyncCache<String, Optional<Bird>> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new Expiry<String, Optional<Bird>>() {
+                @Override
+                public long expireAfterCreate(String name, Optional<Bird> bird, long currentTime) {
+                    return (bird.isPresent() ? ttl : negativeTtl).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String name, Optional<Bird> bird, long currentTime, long currentDuration) {
+                    return expireAfterCreate(name, bird, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String name, Optional<Bird> bird, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .buildAsync();
+    }
+
+    /**
+     * Registers the meters of this component.
+     *
+     * @param registry the registry to register with
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "birds");
+    }
+
+    /**
+     * Finds a bird by its name, loading it from the repository on a cache miss.
+     *
+     * @param name the name of the bird
+     * @return a Mono containing the bird, or an empty Mono if it does not exist
+     */
+    public Mono<Bird> findById(String name) {
+        return Mono.defer(() -> value(cache.get(name, (key, executor) -> birdRepository.findById(key)
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .toFuture())))
+            .flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * Finds several birds by name. Names missing from the cache are loaded with a single repository query.
+     *
+     * @param names the names of the birds
+     * @return a Mono containing the existing birds keyed by name; unknown names are left out
+     */
+    public Mono<Map<String, Bird>> findAllById(Collection<String> names) {
+        return Mono.defer(() -> value(cache.getAll(names, (missing, executor) -> loadAll(missing).toFuture())))
+            .map(cached -> {
+                Map<String, Bird> found = new HashMap<>();
+                cached.forEach((name, bird) -> bird.ifPresent(present -> found.put(name, present)));
+                return found;
+            });
+    }
+
+    private Mono<Map<String, Optional<Bird>>> loadAll(Iterable<? extends String> missing) {
+        List<String> names = new ArrayList<>();
+        missing.forEach(names::add);
+        return birdRepository.findAllById(names)
+            .collectMap(Bird::getName)
+            .map(loaded -> {
+                Map<String, Optional<Bird>> birds = new HashMap<>();
+                for (String name : names) {
+                    birds.put(name, Optional.ofNullable(loaded.get(name)));
+                }
+                return birds;
+            });
+    }
+
+    // Cached entries are answered without going through the future; each waiting reader gets its own copy, so a
+    // cancelled request does not cancel a load shared with others
+    private static <T> Mono<T> value(CompletableFuture<T> future) {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return Mono.just(future.join());
+        }
+        return Mono.fromFuture(future.copy());
+    }
+
+    /**
+     * Stores the current state of a bird, replacing any cached entry for its name.
+     *
+     * @param bird the bird that was written
+     */
+    public void put(Bird bird) {
+        cache.put(bird.getName(), CompletableFuture.completedFuture(Optional.of(bird)));
+    }
+
+    /**
+     * Removes the cached entry for a bird name.
+     *
+     * @param name the name of the bird
+     */
+    public void invalidate(String name) {
+        cache.synchronous().invalidate(name);
+    }
+
+    /**
+     * Returns the hit/miss/eviction statistics of the cache.
+     *
+     * @return the cache statistics
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+}
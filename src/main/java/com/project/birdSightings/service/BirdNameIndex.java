@@ -0,0 +1,213 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.repository.BirdRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory sorted index of bird names for type-ahead suggestions.
+ * <p>
+ * Names are folded (lower case, accents removed) and kept in a skip list ordered by the folded name, so the birds
+ * starting with a prefix are one contiguous range found in O(log n). Typo-tolerant matching walks the same sorted
+ * keys like a trie: the edit distance rows of a shared prefix are computed once for all names that start with it,
+ * and a prefix that is already too far from the query skips every name below it. A query allows one edit from
+ * three characters on and two edits from six characters on.
+ * <p>
+ * The index is loaded from MongoDB once the application has started and then kept up to date by
+ * {@link BirdService} on every add and delete; it never queries MongoDB to answer a suggestion.
+ * Its size is published as {@code birds.autocomplete.size}.
+ */
+@Component
+public class BirdNameIndex {
+    private static final Logger log = LoggerFactory.getLogger(BirdNameIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    // Separates the folded name from the name in the keys, and sorts before every other character
+    private static final char SEPARATOR = '\u0000';
+
+    @Autowired
+    private BirdRepository birdRepository;
+
+    private final ConcurrentSkipListMap<String, Bird> birds = new ConcurrentSkipListMap<>();
+
+    /**
+     * Loads all birds into the index once the application has started.
+     * Suggestions made before the load completes only contain the birds added since startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        birdRepository.findAll().subscribe(
+            this::put,
+            error -> log.warn("Could not load the bird name index", error),
+            () -> log.info("Loaded {} birds into the bird name index", birds.size())
+        );
+    }
+
+    /**
+     * Registers the meters of this component.
+     *
+     * @param registry the registry to register with
+     */
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("birds.autocomplete.size", birds, Map::size)
+            .description("Birds in the autocomplete index")
+            .register(registry);
+    }
+
+    /**
+     * Adds a bird, or replaces the entry of a bird with the same name.
+     *
+     * @param bird the bird that was written
+     */
+    public void put(Bird bird) {
+        birds.put(key(bird.getName()), bird);
+    }
+
+    /**
+     * Removes a bird.
+     *
+     * @param name the name of the bird
+     */
+    public void remove(String name) {
+        birds.remove(key(name));
+    }
+
+    /**
+     * Suggests birds whose name starts with the query, ignoring case and accents.
+     * Prefix matches come first, in name order. With fuzzy matching, birds whose name starts with something
+     * within the allowed edit distance of the query fill the remaining places, closest first.
+     *
+     * @param query the beginning of the name
+     * @param color the color the birds must have, ignoring case, or null for any color
+     * @param limit the maximum number of birds to return
+     * @param fuzzy true to tolerate typos in the query
+     * @return the suggested birds
+     */
+    public List<Bird> suggest(String query, String color, int limit, boolean fuzzy) {
+        String prefix = fold(query);
+        List<Bird> suggestions = new ArrayList<>(limit);
+        for (Bird bird : birds.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            if (suggestions.size() == limit) {
+                return suggestions;
+            }
+            if (hasColor(bird, color)) {
+                suggestions.add(bird);
+            }
+        }
+        int maxEdits = prefix.length() >= 6 ? 2 : prefix.length() >= 3 ? 1 : 0;
+        if (fuzzy && maxEdits > 0 && suggestions.size() < limit) {
+            List<Match> matches = fuzzyMatches(prefix, color, maxEdits);
+            matches.sort(Comparator.comparingInt((Match match) -> match.distance));
+            for (Match match : matches) {
+                if (suggestions.size() == limit) {
+                    break;
+                }
+                suggestions.add(match.bird);
+            }
+        }
+        return suggestions;
+    }
+
+    private List<Match> fuzzyMatches(String query, String color, int maxEdits) {
+        int columns = query.length() + 1;
+        // rows[i] holds the edit distances between the first i characters of the key and every prefix of the query
+        List<int[]> rows = new ArrayList<>();
+        int[] first = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            first[j] = j;
+        }
+        rows.add(first);
+        List<Match> matches = new ArrayList<>();
+        String previous = "";
+        String from = birds.isEmpty() ? null : birds.firstKey();
+        while (from != null) {
+            String key = from;
+            String name = key.substring(0, key.indexOf(SEPARATOR));
+            from = birds.higherKey(key);
+            // Rows of the prefix shared with the previous key are still valid
+            int depth = Math.min(commonPrefix(previous, name), rows.size() - 1);
+            while (rows.size() > depth + 1) {
+                rows.remove(rows.size() - 1);
+            }
+            previous = name;
+            int pruneAt = -1;
+            for (int i = depth + 1; i <= name.length(); i++) {
+                int[] above = rows.get(i - 1);
+                int[] row = new int[columns];
+                row[0] = i;
+                int best = i;
+                for (int j = 1; j < columns; j++) {
+                    int substitution = above[j - 1] + (name.charAt(i - 1) == query.charAt(j - 1) ? 0 : 1);
+                    row[j] = Math.min(substitution, Math.min(above[j], row[j - 1]) + 1);
+                    best = Math.min(best, row[j]);
+                }
+                rows.add(row);
+                if (best > maxEdits) {
+                    // Longer prefixes of the name only get further from the query
+                    pruneAt = i;
+                    break;
+                }
+            }
+            // The distance of the name is that of its closest prefix
+            int distance = Integer.MAX_VALUE;
+            for (int i = 1; i < rows.size(); i++) {
+                distance = Math.min(distance, rows.get(i)[columns - 1]);
+            }
+            if (distance <= maxEdits) {
+                // Exact prefix matches were suggested already
+                Bird bird = birds.get(key);
+                if (bird != null && distance > 0 && hasColor(bird, color)) {
+                    matches.add(new Match(bird, distance));
+                }
+            } else if (pruneAt > 0) {
+                // No name starting with this prefix can match; skip them all
+                from = birds.ceilingKey(name.substring(0, pruneAt) + Character.MAX_VALUE);
+            }
+        }
+        return matches;
+    }
+
+    private static boolean hasColor(Bird bird, String color) {
+        return color == null || color.equalsIgnoreCase(bird.getColor());
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static String key(String name) {
+        return fold(name) + SEPARATOR + name;
+    }
+
+    private static String fold(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    @AllArgsConstructor
+    private static class Match {
+        private final Bird bird;
+        private final int distance;
+    }
+}
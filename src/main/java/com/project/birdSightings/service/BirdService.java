@@ -1,50 +1,144 @@
 package com.project.birdSightings.service;
 
+import com.project.birdSightings.errorHandling.InvalidRequestException;
 import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.metrics.Instrumentation;
 import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.CursorPage;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.FacetedBirds;
 import com.project.birdSightings.repository.BirdRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.text.MessageFormat;
+import java.util.List;
 
 /**
  * Service class for managing birds.
  */
 @Service
 public class BirdService {
+    private static final String SERVICE = "BirdService";
+
     @Autowired
     private BirdRepository birdRepository;
 
+    @Autowired
+    private BirdCache birdCache;
+
+    @Autowired
+    private Pagination pagination;
+
+    @Autowired
+    private Instrumentation instrumentation;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private SightingPurge sightingPurge;
+
+    @Autowired
+    private BirdNameIndex birdNameIndex;
+
+    @Autowired
+    private DataVersions dataVersions;
+
+    @Value("${streaming.batch-size:256}")
+    private int streamBatchSize;
+
+    @Value("${birds.search.ranges:5}")
+    private int searchRanges;
+
+    @Value("${birds.autocomplete.default-limit:10}")
+    private int autocompleteDefaultLimit;
+
+    @Value("${birds.autocomplete.max-limit:50}")
+    private int autocompleteMaxLimit;
+
     /**
      * Adds a new bird.
+     * A bird whose sightings are still being deleted after a previous delete cannot be added again until that job
+     * has completed, since the job would also delete the sightings of the new bird.
      *
      * @param bird the bird to add
      * @return a Mono containing the added bird
+     * @throws InvalidRequestException if the sightings of a deleted bird of that name are still being deleted
      */
     public Mono<Bird> addBird(Bird bird) {
-        return birdRepository.save(bird);
+        DeletionJob cascade = sightingPurge.runningCascade(bird.getName());
+        if (cascade != null) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Bird {0} is still being deleted. Add it again once job {1} has completed.",
+                bird.getName(), cascade.getId()
+            ));
+        }
+        return instrumentation.timed(SERVICE, "addBird", admissionControl.write(birdRepository.save(bird))
+            .doOnNext(saved -> {
+                birdCache.put(saved);
+                birdNameIndex.put(saved);
+                dataVersions.birdsChanged();
+            }));
+    }
+
+    /**
+     * Retrieves one page of all birds, ordered by name.
+     *
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @return a Mono containing the page of birds
+     */
+    public Mono<CursorPage<Bird>> getAllBirds(String after, Integer limit) {
+        int pageSize = pagination.pageSize(limit);
+        Flux<Bird> page = birdRepository.findByNameGreaterThanOrderByNameAsc(
+            pagination.decodeBirdCursor(after), PageRequest.of(0, pageSize + 1)
+        );
+        return instrumentation.timed(SERVICE, "getAllBirds", admissionControl.read(page.collectList())
+            .map(birds -> CursorPage.of(birds, pageSize, last -> pagination.encodeBirdCursor(last.getName()))));
     }
 
     /**
-     * Retrieves all birds.
+     * Streams all birds, ordered by name.
+     * Demand is passed on to the repository in batches, so the catalog is never held in memory.
      *
      * @return a Flux containing all birds
      */
-    public Flux<Bird> getAllBirds() {
-        return birdRepository.findAll();
+    public Flux<Bird> streamBirds() {
+        return instrumentation.timed(SERVICE, "streamBirds",
+            admissionControl.read(
+                birdRepository.findByNameGreaterThanOrderByNameAsc("", Pageable.unpaged())
+            ).limitRate(streamBatchSize));
+    }
+
+    /**
+     * Streams the birds of a color, ordered by name.
+     *
+     * @param color the color of the birds
+     * @return a Flux containing the birds with the specified color
+     */
+    public Flux<Bird> streamBirdsByColor(String color) {
+        return instrumentation.timed(SERVICE, "streamBirdsByColor",
+            admissionControl.read(
+                birdRepository.findByColorAndNameGreaterThanOrderByNameAsc(color, "", Pageable.unpaged())
+            ).limitRate(streamBatchSize));
     }
 
     /**
      * Finds a bird by its name.
+     * The lookup is served from the bird cache when possible.
      *
      * @param name the name of the bird
      * @return a Mono containing the bird with the specified name, or an error if not found
      */
     public Mono<Bird> findBirdByName(String name) {
-        return birdRepository.findById(name)
+        return instrumentation.timed(SERVICE, "findBirdByName", birdCache.findById(name)
             .switchIfEmpty(
                 Mono.error(
                     new ResourceNotFoundException(
@@ -53,17 +147,70 @@ public class BirdService {
                         )
                     )
                 )
-            );
+            ));
     }
 
     /**
-     * Finds birds by their color.
+     * Finds one page of the birds matching a search, ordered by name, with the number of matching birds per color,
+     * weight range and height range. The page and the counts come from a single aggregation.
+     *
+     * @param search the conditions to match
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @return a Mono containing the page of birds and the counts over all matching birds
+     */
+    public Mono<FacetedBirds> searchBirds(BirdSearch search, String after, Integer limit) {
+        checkRange("weight", search.getMinWeight(), search.getMaxWeight());
+        checkRange("height", search.getMinHeight(), search.getMaxHeight());
+        int pageSize = pagination.pageSize(limit);
+        Mono<FacetedBirds> found = birdRepository.search(
+            search, pagination.decodeBirdCursor(after), pageSize + 1, searchRanges
+        );
+        return instrumentation.timed(SERVICE, "searchBirds", admissionControl.read(found)
+            .map(result -> {
+                CursorPage<Bird> page = CursorPage.of(
+                    result.getBirds(), pageSize, last -> pagination.encodeBirdCursor(last.getName())
+                );
+                return new FacetedBirds(page.getItems(), result.getTotal(), result.getColors(),
+                    result.getWeights(), result.getHeights(), page.getNext());
+            }));
+    }
+
+    /**
+     * Suggests birds whose name starts with the given text, for type-ahead.
+     * Suggestions are served from the in-memory {@link BirdNameIndex} without querying MongoDB.
+     *
+     * @param query the beginning of the name, matched ignoring case and accents
+     * @param color the color of the birds, matched ignoring case, or null for any color
+     * @param limit the maximum number of suggestions, or null for the default
+     * @param fuzzy true to also suggest names that start with a close misspelling of the query
+     * @return a Mono containing the suggested birds, prefix matches first
+     */
+    public Mono<List<Bird>> autocomplete(String query, String color, Integer limit, boolean fuzzy) {
+        if (limit != null && limit < 1) {
+            throw new InvalidRequestException("Invalid limit. The limit must be at least 1.");
+        }
+        int size = limit == null ? autocompleteDefaultLimit : Math.min(limit, autocompleteMaxLimit);
+        return instrumentation.timed(SERVICE, "autocomplete",
+            Mono.fromSupplier(() -> birdNameIndex.suggest(query, color, size, fuzzy)));
+    }
+
+    /**
+     * Finds one page of the birds of a color, ordered by name.
      *
      * @param color the color of the birds
-     * @return a Flux containing the birds with the specified color, or an error if not found
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @return a Mono containing the page of birds with the specified color, or an error if not found
      */
-    public Flux<Bird> findBirdByColor(String color) {
-        return birdRepository.findByColor(color)
+    public Mono<CursorPage<Bird>> findBirdByColor(String color, String after, Integer limit) {
+        int pageSize = pagination.pageSize(limit);
+        Flux<Bird> matching = birdRepository.findByColorAndNameGreaterThanOrderByNameAsc(
+            color, pagination.decodeBirdCursor(after), PageRequest.of(0, pageSize + 1)
+        );
+        return instrumentation.timed(SERVICE, "findBirdByColor", admissionControl.read(matching.collectList())
+            .map(birds -> CursorPage.of(birds, pageSize, last -> pagination.encodeBirdCursor(last.getName())))
+            .filter(page -> after != null || !page.getItems().isEmpty())
             .switchIfEmpty(
                 Mono.error(
                     new ResourceNotFoundException(
@@ -72,16 +219,31 @@ public class BirdService {
                         )
                     )
                 )
-            );
+            ));
+    }
+
+    private static void checkRange(String measurement, Double min, Double max) {
+        if (min != null && max != null && min > max) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid {0} range. The minimum is greater than the maximum.", measurement
+            ));
+        }
     }
 
     /**
      * Deletes a bird by its ID.
+     * The bird's sightings are deleted afterwards by a background job, in batches.
      *
      * @param id the ID of the bird to delete
-     * @return a Mono indicating when the deletion is complete
+     * @return a Mono containing the job deleting the bird's sightings, emitted once the bird is deleted
      */
-    public Mono<Void> deleteBird(String id) {
-        return birdRepository.deleteById(id);
+    public Mono<DeletionJob> deleteBird(String id) {
+        return instrumentation.timed(SERVICE, "deleteBird", admissionControl.write(birdRepository.deleteById(id))
+            .then(Mono.fromSupplier(() -> {
+                birdCache.invalidate(id);
+                birdNameIndex.remove(id);
+                dataVersions.birdsChanged();
+                return sightingPurge.cascade(id);
+            })));
     }
 }
\ No newline at end of file
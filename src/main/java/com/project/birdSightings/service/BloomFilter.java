@@ -0,0 +1,98 @@
+package com.project.birdSightings.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter over strings.
+ * {@link #mightContain(String)} never returns false for a key that was put; it returns true for a key that was
+ * not put with about the configured false positive rate, as long as no more than the expected number of keys
+ * were put. The bit positions are derived from one 64-bit hash of the key by double hashing.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * Constructs a new BloomFilter sized for the expected number of keys.
+     *
+     * @param expectedInsertions the number of keys the filter is sized for
+     * @param falsePositiveRate the rate of false positives at that number of keys, between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected at least one insertion and a false positive rate in (0, 1)");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    public void put(String key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Tells whether a key may have been added.
+     *
+     * @param key the key
+     * @return false if the key was definitely not added, true if it probably was
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns how many keys were added, counting repeated keys every time.
+     *
+     * @return the number of insertions
+     */
+    public long insertions() {
+        return insertions.get();
+    }
+
+    private static long hash(String key) {
+        // FNV-1a over the UTF-8 bytes, followed by the MurmurHash3 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,138 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.model.DataVersion;
+import com.project.birdSightings.model.Sighting;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Version counters of the stored birds and sightings, for conditional GETs.
+ * <p>
+ * Every write moves a version forward once it is acknowledged: birds have one version, sightings have one for the
+ * whole collection and one per month of sighting dates, the same months as the monthly buckets. A read takes the
+ * version of what it depends on before it queries MongoDB, so its ETag can only be older than its data, never
+ * newer, and a request whose If-None-Match still matches is answered with 304 without querying at all. A date
+ * range depends only on its months, so writes to other months do not invalidate it.
+ * <p>
+ * Versions are drawn from one counter, so the version of a date range is simply the highest version of its
+ * months. HTTP dates have a resolution of one second, so a later write in the same second would not move the
+ * Last-Modified date forward; a version is only dated once its second is over, and until then it has an ETag but
+ * no Last-Modified date. The counters live in memory and start over with every start of the application; entity
+ * tags carry the start time so that tags from before a restart never match. They only see the writes made through this
+ * application instance: with several instances behind a load balancer, or writes made directly to MongoDB,
+ * set http.etags.enabled=false.
+ */
+@Component
+public class DataVersions {
+    @Value("${http.etags.enabled:true}")
+    private boolean enabled;
+
+    private Clock clock = Clock.systemUTC();
+    private final Instant startedAt = Instant.now(clock);
+    private final String epoch = Long.toString(startedAt.toEpochMilli(), 36);
+    private final AtomicLong counter = new AtomicLong();
+    private final Stamp initial = new Stamp(0, startedAt);
+    private final Map<YearMonth, Stamp> months = new ConcurrentHashMap<>();
+    private final AtomicReference<Stamp> birds = new AtomicReference<>(initial);
+    private final AtomicReference<Stamp> sightings = new AtomicReference<>(initial);
+
+    /**
+     * Moves the version of the birds forward, after a bird was written or deleted.
+     */
+    public void birdsChanged() {
+        birds.accumulateAndGet(next(), Stamp::latest);
+    }
+
+    /**
+     * Moves the versions of the sightings and of their months forward, after they were written or deleted.
+     *
+     * @param changed the sightings that were written or deleted
+     */
+    public void sightingsChanged(Collection<Sighting> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Stamp stamp = next();
+        for (Sighting sighting : changed) {
+            months.merge(YearMonth.from(sighting.getDate()), stamp, Stamp::latest);
+        }
+        sightings.accumulateAndGet(stamp, Stamp::latest);
+    }
+
+    /**
+     * Returns the version of the birds.
+     *
+     * @return the current version, or null if conditional GETs are disabled
+     */
+    public DataVersion birds() {
+        return version("b", birds.get());
+    }
+
+    /**
+     * Returns the version of all sightings.
+     *
+     * @return the current version, or null if conditional GETs are disabled
+     */
+    public DataVersion sightings() {
+        return version("s", sightings.get());
+    }
+
+    /**
+     * Returns the version of the sightings in a date range.
+     *
+     * @param startDate the first date of the range, or null for no lower bound
+     * @param endDate the last date of the range, or null for no upper bound
+     * @return the current version of the months of the range, or null if conditional GETs are disabled
+     */
+    public DataVersion sightings(LocalDate startDate, LocalDate endDate) {
+        YearMonth from = startDate == null ? null : YearMonth.from(startDate);
+        YearMonth to = endDate == null ? null : YearMonth.from(endDate);
+        Stamp latest = initial;
+        for (Map.Entry<YearMonth, Stamp> month : months.entrySet()) {
+            boolean inRange = (from == null || !month.getKey().isBefore(from))
+                && (to == null || !month.getKey().isAfter(to));
+            if (inRange && month.getValue().number > latest.number) {
+                latest = month.getValue();
+            }
+        }
+        return version("s", latest);
+    }
+
+    private Stamp next() {
+        return new Stamp(counter.incrementAndGet(), Instant.now(clock));
+    }
+
+    private DataVersion version(String kind, Stamp stamp) {
+        if (!enabled) {
+            return null;
+        }
+        Instant second = stamp.at.truncatedTo(ChronoUnit.SECONDS);
+        return new DataVersion(
+            "\"" + kind + "-" + epoch + "-" + stamp.number + "\"",
+            second.plusSeconds(1).isAfter(Instant.now(clock)) ? null : second
+        );
+    }
+
+    @AllArgsConstructor
+    private static class Stamp {
+        private final long number;
+        private final Instant at;
+
+        // Concurrent writers may publish their stamps out of order; a version never goes back
+        private static Stamp latest(Stamp a, Stamp b) {
+            return a.number >= b.number ? a : b;
+        }
+    }
+}
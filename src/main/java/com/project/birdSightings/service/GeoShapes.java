@@ -0,0 +1,93 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds validated GeoJSON shapes from request parameters. Coordinates are given as longitude, latitude.
+ */
+public final class GeoShapes {
+
+    private GeoShapes() {
+    }
+
+    /**
+     * Creates a point.
+     *
+     * @param longitude the longitude, between -180 and 180
+     * @param latitude the latitude, between -90 and 90
+     * @return the point
+     */
+    public static GeoJsonPoint point(double longitude, double latitude) {
+        // NaN fails every comparison, so it has to be rejected explicitly
+        if (!Double.isFinite(longitude) || !Double.isFinite(latitude)
+            || longitude < -180 || longitude > 180 || latitude < -90 || latitude > 90) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid coordinates. ({0}, {1}) is not a valid longitude, latitude pair.", longitude, latitude
+            ));
+        }
+        return new GeoJsonPoint(longitude, latitude);
+    }
+
+    /**
+     * Creates the polygon covering a bounding box.
+     *
+     * @param minLongitude the western edge
+     * @param minLatitude the southern edge
+     * @param maxLongitude the eastern edge
+     * @param maxLatitude the northern edge
+     * @return the polygon
+     */
+    public static GeoJsonPolygon box(double minLongitude, double minLatitude, double maxLongitude, double maxLatitude) {
+        if (minLongitude >= maxLongitude || minLatitude >= maxLatitude) {
+            throw new InvalidRequestException("Invalid bounding box. The minimum corner must be south-west of the maximum corner.");
+        }
+        return new GeoJsonPolygon(
+            point(minLongitude, minLatitude),
+            point(maxLongitude, minLatitude),
+            point(maxLongitude, maxLatitude),
+            point(minLongitude, maxLatitude),
+            point(minLongitude, minLatitude)
+        );
+    }
+
+    /**
+     * Parses a polygon written as "lng,lat;lng,lat;...". The ring is closed automatically.
+     *
+     * @param polygon the polygon vertices
+     * @return the polygon
+     */
+    public static GeoJsonPolygon polygon(String polygon) {
+        List<Point> points = new ArrayList<>();
+        for (String vertex : polygon.split(";")) {
+            String[] coordinates = vertex.split(",");
+            if (coordinates.length != 2) {
+                throw invalidPolygon();
+            }
+            try {
+                points.add(point(Double.parseDouble(coordinates[0].trim()), Double.parseDouble(coordinates[1].trim())));
+            } catch (NumberFormatException exception) {
+                throw invalidPolygon();
+            }
+        }
+        if (!points.isEmpty() && !points.get(0).equals(points.get(points.size() - 1))) {
+            points.add(points.get(0));
+        }
+        if (points.size() < 4) {
+            throw invalidPolygon();
+        }
+        return new GeoJsonPolygon(points);
+    }
+
+    private static InvalidRequestException invalidPolygon() {
+        return new InvalidRequestException(
+            "Invalid polygon. Give at least three vertices as lng,lat pairs separated by semicolons."
+        );
+    }
+}
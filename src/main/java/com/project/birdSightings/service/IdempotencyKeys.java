@@ -0,0 +1,152 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.SightingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recognizes resubmitted sightings by their idempotency key.
+ * <p>
+ * The unique index on the key is the source of truth: an insert with a key that is already stored fails, and the
+ * original sighting is then looked up and returned instead. In front of it, a Bloom filter of the keys this
+ * instance has stored tells which keys are definitely new, so the usual first submission is inserted without a
+ * lookup, while a key the filter may have seen is looked up first and its replay answered with a single read.
+ * Keys stored before startup or by other instances are not in the filter; their replays are caught by the index.
+ * <p>
+ * The filter is sized for expected-keys keys. Once it holds that many, a new filter is started and the previous
+ * one is still consulted, so the false positive rate stays bounded and only the oldest keys fall back to the index.
+ * Lookups are counted as {@code birds.idempotency.checks}, tagged with the outcome: skipped (definitely new),
+ * replayed (an original was found) or missed (a false positive of the filter).
+ */
+@Component
+public class IdempotencyKeys {
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sightings.idempotency.expected-keys:1000000}")
+    private long expectedKeys;
+
+    @Value("${sightings.idempotency.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private Counter skipped;
+    private Counter replayed;
+    private Counter missed;
+
+    @PostConstruct
+    void init() {
+        current = new BloomFilter(expectedKeys, falsePositiveRate);
+        previous = new BloomFilter(1, falsePositiveRate);
+        skipped = meterRegistry.counter("birds.idempotency.checks", "outcome", "skipped");
+        replayed = meterRegistry.counter("birds.idempotency.checks", "outcome", "replayed");
+        missed = meterRegistry.counter("birds.idempotency.checks", "outcome", "missed");
+    }
+
+    /**
+     * Finds the stored originals of sightings that were submitted before.
+     * Only keys the filter may have seen are looked up; without such keys MongoDB is not queried at all.
+     *
+     * @param sightings the submitted sightings
+     * @return a Mono containing the originals, by idempotency key
+     */
+    public Mono<Map<String, Sighting>> findOriginals(Collection<Sighting> sightings) {
+        List<Sighting> candidates = new ArrayList<>();
+        for (Sighting sighting : sightings) {
+            String key = sighting.getIdempotencyKey();
+            if (key == null) {
+                continue;
+            }
+            if (current.mightContain(key) || previous.mightContain(key)) {
+                candidates.add(sighting);
+            } else {
+                skipped.increment();
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        return lookup(candidates).doOnNext(originals -> {
+            replayed.increment(originals.size());
+            missed.increment(candidates.size() - originals.size());
+        });
+    }
+
+    /**
+     * Finds the originals of sightings whose insert failed, for the failures caused by an already stored key.
+     *
+     * @param sightings the sightings that were inserted
+     * @param failures the positions of the sightings whose insert failed, mapped to why they failed
+     * @return a Mono containing the originals, by position in sightings
+     */
+    public Mono<Map<Integer, Sighting>> resolveReplays(List<Sighting> sightings, Map<Integer, WriteFailure> failures) {
+        List<Integer> positions = new ArrayList<>();
+        for (Map.Entry<Integer, WriteFailure> failure : failures.entrySet()) {
+            if (failure.getValue().getKind() == WriteFailure.Kind.DUPLICATE_KEY
+                && sightings.get(failure.getKey()).getIdempotencyKey() != null) {
+                positions.add(failure.getKey());
+            }
+        }
+        if (positions.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        List<Sighting> keyed = new ArrayList<>(positions.size());
+        positions.forEach(position -> keyed.add(sightings.get(position)));
+        return lookup(keyed).map(originals -> {
+            Map<Integer, Sighting> replays = new HashMap<>();
+            for (int position : positions) {
+                Sighting original = originals.get(sightings.get(position).getIdempotencyKey());
+                // A sighting found under its own ID was written by the failed insert itself, so it is no replay
+                if (original != null && !original.getId().equals(sightings.get(position).getId())) {
+                    replays.put(position, original);
+                }
+            }
+            replayed.increment(replays.size());
+            return replays;
+        });
+    }
+
+    /**
+     * Adds the keys of stored sightings to the filter.
+     *
+     * @param sightings the stored sightings
+     */
+    public void remember(Collection<Sighting> sightings) {
+        for (Sighting sighting : sightings) {
+            if (sighting.getIdempotencyKey() != null) {
+                remember(sighting.getIdempotencyKey());
+            }
+        }
+    }
+
+    private synchronized void remember(String key) {
+        if (current.insertions() >= expectedKeys) {
+            previous = current;
+            current = new BloomFilter(expectedKeys, falsePositiveRate);
+        }
+        current.put(key);
+    }
+
+    private Mono<Map<String, Sighting>> lookup(List<Sighting> sightings) {
+        return sightingRepository.findByIdempotencyKeys(sightings)
+            .collectMap(Sighting::getIdempotencyKey);
+    }
+}
@@ -0,0 +1,109 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.SightingCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Page size limits and the encoding of the opaque cursors handed out to clients.
+ * A cursor is the sort key of the last item of a page, base64url-encoded so clients treat it as a token.
+ */
+@Component
+public class Pagination {
+    private static final String SEPARATOR = "\n";
+
+    @Value("${pagination.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${pagination.max-limit:1000}")
+    private int maxLimit;
+
+    /**
+     * Resolves the page size for a request.
+     *
+     * @param limit the requested page size, or null for the default
+     * @return the page size, capped at the configured maximum
+     */
+    public int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new InvalidRequestException("Invalid limit. The limit must be at least 1.");
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    /**
+     * Encodes a bird cursor.
+     *
+     * @param name the name of the last bird of a page
+     * @return the cursor
+     */
+    public String encodeBirdCursor(String name) {
+        return encode(name);
+    }
+
+    /**
+     * Decodes a bird cursor.
+     *
+     * @param cursor the cursor, or null for the first page
+     * @return the name to continue after; the empty string for the first page
+     */
+    public String decodeBirdCursor(String cursor) {
+        return cursor == null ? "" : decode(cursor);
+    }
+
+    /**
+     * Encodes a sighting cursor.
+     *
+     * @param cursor the position of the last sighting of a page
+     * @return the cursor
+     */
+    public String encodeSightingCursor(SightingCursor cursor) {
+        return encode(cursor.getDate() + SEPARATOR + cursor.getId());
+    }
+
+    /**
+     * Decodes a sighting cursor.
+     *
+     * @param cursor the cursor, or null for the first page
+     * @return the position to continue after, or null for the first page
+     */
+    public SightingCursor decodeSightingCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        String[] parts = decode(cursor).split(SEPARATOR, 2);
+        if (parts.length != 2) {
+            throw invalidCursor();
+        }
+        try {
+            return new SightingCursor(LocalDate.parse(parts[0]), parts[1]);
+        } catch (DateTimeParseException exception) {
+            throw invalidCursor();
+        }
+    }
+
+    private String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException exception) {
+            throw invalidCursor();
+        }
+    }
+
+    private InvalidRequestException invalidCursor() {
+        return new InvalidRequestException("Invalid cursor. Use the cursor returned in the Next-Cursor header.");
+    }
+}
@@ -0,0 +1,176 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.ExportCompression;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports sightings as CSV, optionally gzip-compressed, streamed straight from the MongoDB cursor.
+ * <p>
+ * Sightings are read through {@link SightingService#streamSightings(SightingFilter, String)}, so the cursor only
+ * fetches as fast as the consumer writes. Every rows-per-buffer sightings are encoded into one {@link DataBuffer}
+ * allocated from the consumer's factory (pooled direct buffers for an HTTP response, direct buffers for a file),
+ * and compressed bytes are deflated straight into those buffers, so neither the result set nor the file is ever
+ * held in memory. The columns are id, date, bird, color, weight, height, location, longitude and latitude.
+ */
+@Component
+public class SightingExport {
+    private static final String HEADER = "id,date,bird,color,weight,height,location,longitude,latitude\n";
+
+    @Autowired
+    private SightingService sightingService;
+
+    @Value("${export.rows-per-buffer:1000}")
+    private int rowsPerBuffer;
+
+    /**
+     * Streams the sightings matching a filter as a CSV file, ordered by date.
+     *
+     * @param filter the conditions to match
+     * @param compression how the file is compressed
+     * @param bufferFactory the factory of the buffers the file is written into
+     * @return a Flux containing the consecutive parts of the file
+     */
+    public Flux<DataBuffer> exportCsv(SightingFilter filter, ExportCompression compression,
+                                      DataBufferFactory bufferFactory) {
+        Flux<byte[]> chunks = Flux.concat(
+            Mono.fromSupplier(() -> HEADER.getBytes(StandardCharsets.UTF_8)),
+            sightingService.streamSightings(filter, null).buffer(rowsPerBuffer).map(SightingExport::toCsv)
+        );
+        if (compression == ExportCompression.NONE) {
+            return chunks.map(bufferFactory::wrap);
+        }
+        // A cancel closes the stream on the cancelling thread, possibly while the cursor's thread compresses a chunk
+        return Flux.usingWhen(
+            Mono.fromCallable(() -> new GzipStream(bufferFactory)),
+            gzip -> chunks.map(gzip::compress).concatWith(Mono.fromCallable(gzip::finish)),
+            gzip -> Mono.fromRunnable(gzip::close)
+        ).filter(buffer -> {
+            if (buffer.readableByteCount() > 0) {
+                return true;
+            }
+            DataBufferUtils.release(buffer);
+            return false;
+        });
+    }
+
+    private static byte[] toCsv(List<Sighting> sightings) {
+        StringBuilder csv = new StringBuilder(sightings.size() * 96);
+        for (Sighting sighting : sightings) {
+            Bird bird = sighting.getBird();
+            csv.append(sighting.getId()).append(',')
+                .append(sighting.getDate()).append(',');
+            field(csv, bird.getName()).append(',');
+            field(csv, bird.getColor()).append(',');
+            field(csv, bird.getWeight()).append(',');
+            field(csv, bird.getHeight()).append(',');
+            field(csv, sighting.getLocation()).append(',');
+            if (sighting.getPosition() != null) {
+                csv.append(sighting.getPosition().getX()).append(',').append(sighting.getPosition().getY());
+            } else {
+                csv.append(',');
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder field(StringBuilder csv, Object value) {
+        if (value == null) {
+            return csv;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return csv.append(text);
+        }
+        return csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * One gzip stream whose output goes into a new buffer for every chunk written to it.
+     * Closing is serialized with writing, and chunks that arrive once the stream is closed are dropped.
+     */
+    private static class GzipStream {
+        private final DataBufferFactory bufferFactory;
+        private final BufferSink sink = new BufferSink();
+        private final GZIPOutputStream gzip;
+        private boolean closed;
+
+        GzipStream(DataBufferFactory bufferFactory) throws IOException {
+            this.bufferFactory = bufferFactory;
+            sink.current = bufferFactory.allocateBuffer();
+            // Writes the gzip header into the first buffer
+            this.gzip = new GZIPOutputStream(sink, 8192);
+        }
+
+        synchronized DataBuffer compress(byte[] chunk) {
+            if (closed) {
+                return bufferFactory.wrap(new byte[0]);
+            }
+            try {
+                gzip.write(chunk);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            return take();
+        }
+
+        synchronized DataBuffer finish() throws IOException {
+            if (closed) {
+                return bufferFactory.wrap(new byte[0]);
+            }
+            gzip.finish();
+            return take();
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Frees the native memory of the deflater, also when the export is cancelled
+            try {
+                gzip.close();
+            } catch (IOException ignored) {
+                // The output only goes to memory
+            }
+            DataBufferUtils.release(sink.current);
+        }
+
+        private DataBuffer take() {
+            DataBuffer taken = sink.current;
+            sink.current = bufferFactory.allocateBuffer(Math.max(256, taken.capacity()));
+            return taken;
+        }
+    }
+
+    private static class BufferSink extends OutputStream {
+        private DataBuffer current;
+
+        @Override
+        public void write(int b) {
+            current.write((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            current.write(bytes, offset, length);
+        }
+    }
+}
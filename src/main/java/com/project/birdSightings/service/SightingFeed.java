@@ -0,0 +1,97 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.repository.SightingRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Live feed of newly inserted sightings.
+ * The inserts of {@link SightingRepository#inserted()}, a change stream with MongoDB, are followed once per
+ * application instance, from the first subscription on, and multicast to all subscribers through a sink that
+ * replays the most recent sightings to new subscribers. Each subscriber gets a bounded buffer; when a slow
+ * subscriber falls behind, its oldest pending sightings are dropped so it never holds up the stream for the others.
+ * The number of dropped sightings is published as the {@code birds.feed.dropped} metric.
+ */
+@Component
+public class SightingFeed {
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Value("${feed.replay-size:100}")
+    private int replaySize;
+
+    @Value("${feed.subscriber-buffer-size:256}")
+    private int subscriberBufferSize;
+
+    private Sinks.Many<Sighting> sink;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Disposable inserts;
+
+    @PostConstruct
+    void init() {
+        sink = Sinks.many().replay().limit(replaySize);
+    }
+
+    /**
+     * Registers the meters of this component.
+     *
+     * @param registry the registry to register with
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("birds.feed.dropped", dropped, AtomicLong::get)
+            .description("Sightings dropped for live feed subscribers that fell behind")
+            .register(registry);
+    }
+
+    /**
+     * Subscribes to the sightings inserted from now on, preceded by the most recent ones.
+     *
+     * @param filter the condition a sighting must meet to be delivered
+     * @return an endless Flux of sightings
+     */
+    public Flux<Sighting> sightings(Predicate<Sighting> filter) {
+        start();
+        return sink.asFlux()
+            .filter(filter)
+            .onBackpressureBuffer(
+                subscriberBufferSize, sighting -> dropped.incrementAndGet(), BufferOverflowStrategy.DROP_OLDEST
+            );
+    }
+
+    /**
+     * Returns how many sightings were dropped for slow subscribers since startup.
+     *
+     * @return the number of dropped sightings
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            inserts = sightingRepository.inserted().subscribe(sink::tryEmitNext);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (inserts != null) {
+            inserts.dispose();
+        }
+    }
+}
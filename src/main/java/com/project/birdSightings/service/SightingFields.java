@@ -0,0 +1,51 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the sparse fieldsets of sighting responses, such as "location,bird.name". The fields are read from
+ * MongoDB as a projection, so the others are never read, decoded or encoded. The id and date are always included,
+ * since pages continue after them.
+ */
+public final class SightingFields {
+    private static final List<String> FIELDS = List.of(
+        "id", "date", "location", "position", "idempotencyKey",
+        "bird", "bird.name", "bird.color", "bird.weight", "bird.height"
+    );
+
+    private SightingFields() {
+    }
+
+    /**
+     * Parses a comma-separated list of fields. "bird" selects the whole bird, "bird.name" only its name.
+     *
+     * @param fields the fields to read, or null or blank for whole sightings
+     * @return the fields to project, or null to read whole sightings
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>(List.of("id", "date"));
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) {
+                throw new InvalidRequestException(MessageFormat.format(
+                    "Invalid field. {0} is not one of {1}.", name, String.join(", ", FIELDS)
+                ));
+            }
+            parsed.add(name);
+        }
+        // MongoDB refuses a projection of both a document and one of its fields
+        if (parsed.contains("bird")) {
+            parsed.removeIf(name -> name.startsWith("bird."));
+        }
+        return Collections.unmodifiableSet(parsed);
+    }
+}
@@ -0,0 +1,183 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.SightingRepository;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single sighting writes that arrive close together into one insertMany (group commit).
+ * <p>
+ * Writes are queued per durability level and cut into batches of at most max-batch-size sightings, or whatever
+ * arrived within max-delay of the first one. Each batch is written with one unordered insertMany and one rollup
+ * update, so concurrent clients share a round trip and a journal flush instead of paying for one each. A caller's
+ * Mono completes once its batch is acknowledged with the requested write concern; a record the database rejects
+ * fails only its own caller, unless it carries an idempotency key that is already stored, in which case the caller
+ * gets the original sighting. An invalid record or a duplicate key fails the caller with a client error, while a
+ * failure of the database, such as a write concern that was not satisfied, fails it with a server error, as it would
+ * without group commit. Up to concurrency batches per durability level are written at the same time.
+ * <p>
+ * Queued writes are flushed when the application shuts down.
+ */
+@Component
+public class SightingGroupCommit {
+    private static final Logger log = LoggerFactory.getLogger(SightingGroupCommit.class);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Autowired
+    private SightingStatsService sightingStatsService;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Value("${sightings.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sightings.group-commit.max-batch-size:256}")
+    private int maxBatchSize;
+
+    @Value("${sightings.group-commit.max-delay:2ms}")
+    private Duration maxDelay;
+
+    @Value("${sightings.group-commit.concurrency:4}")
+    private int concurrency;
+
+    private final Map<Durability, Sinks.Many<PendingWrite>> queues = new EnumMap<>(Durability.class);
+    private final CountDownLatch drained = new CountDownLatch(Durability.values().length);
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        for (Durability durability : Durability.values()) {
+            Sinks.Many<PendingWrite> queue = Sinks.many().unicast().onBackpressureBuffer();
+            // bufferTimeout fails when a batch is due and nothing is requested, so batches waiting for a
+            // free insert slot are held in a buffer. Admission control bounds how many writes are queued.
+            queue.asFlux()
+                .bufferTimeout(maxBatchSize, maxDelay)
+                .onBackpressureBuffer()
+                .flatMap(batch -> commit(batch, durability), concurrency)
+                .doFinally(signal -> drained.countDown())
+                .subscribe();
+            queues.put(durability, queue);
+        }
+    }
+
+    @PreDestroy
+    void flush() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        queues.values().forEach(queue -> {
+            synchronized (queue) {
+                queue.tryEmitComplete();
+            }
+        });
+        if (!drained.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Queued sighting writes were not flushed within {}", SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    /**
+     * Tells whether single writes are grouped.
+     *
+     * @return true if group commit is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a sighting for the next batch of its durability level.
+     * The sighting's rollups are updated with the batch.
+     *
+     * @param sighting the sighting to store
+     * @param durability the write concern the caller waits for
+     * @return a Mono containing the stored sighting, completing once its batch is acknowledged
+     */
+    public Mono<Sighting> submit(Sighting sighting, Durability durability) {
+        return Mono.create(callback -> {
+            Sinks.Many<PendingWrite> queue = queues.get(durability);
+            Sinks.EmitResult result;
+            // The queue accepts one producer at a time; requests arrive on many threads.
+            synchronized (queue) {
+                result = queue.tryEmitNext(new PendingWrite(sighting, callback));
+            }
+            if (result.isFailure()) {
+                callback.error(new IllegalStateException("Sighting writes are not accepted: " + result));
+            }
+        });
+    }
+
+    private Mono<Void> commit(List<PendingWrite> batch, Durability durability) {
+        List<Sighting> sightings = new ArrayList<>(batch.size());
+        batch.forEach(write -> sightings.add(write.sighting));
+        return sightingRepository.insertUnordered(sightings, durability.getWriteConcern())
+            .flatMap(failures -> idempotencyKeys.resolveReplays(sightings, failures).flatMap(replays -> {
+                List<Sighting> stored = new ArrayList<>(batch.size());
+                for (int position = 0; position < batch.size(); position++) {
+                    if (!failures.containsKey(position)) {
+                        stored.add(sightings.get(position));
+                    }
+                }
+                return sightingStatsService.recordAdded(stored)
+                    .doOnSuccess(ignored -> {
+                        for (int position = 0; position < batch.size(); position++) {
+                            WriteFailure failure = failures.get(position);
+                            Sighting replay = replays.get(position);
+                            if (failure == null) {
+                                batch.get(position).callback.success(sightings.get(position));
+                            } else if (replay != null) {
+                                batch.get(position).callback.success(replay);
+                            } else {
+                                batch.get(position).callback.error(error(failure));
+                            }
+                        }
+                    });
+            }))
+            .onErrorResume(error -> {
+                log.warn("Could not write a batch of {} sightings", batch.size(), error);
+                batch.forEach(write -> write.callback.error(error));
+                return Mono.empty();
+            });
+    }
+
+    private static RuntimeException error(WriteFailure failure) {
+        String message = "Sighting could not be stored. " + failure.getMessage();
+        return failure.isRecordError()
+            ? new InvalidRequestException(message)
+            : new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+    }
+
+    @AllArgsConstructor
+    private static class PendingWrite {
+        private final Sighting sighting;
+        private final MonoSink<Sighting> callback;
+    }
+}
@@ -0,0 +1,636 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.errorHandling.ServiceOverloadedException;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.ImportJob;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.BirdRepository;
+import com.project.birdSightings.repository.SightingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Imports sightings from local CSV files, for backfills too large for the bulk endpoint.
+ * <p>
+ * The file is memory-mapped and cut into chunks of about chunk-size that end on a record boundary. Chunks are
+ * parsed in parallel on up to parallelism cores while the chunks before them are written, and bird names are
+ * checked against the birds loaded once when the import starts instead of being looked up record by record.
+ * Each chunk is written as unordered insertMany batches of batch-size, write-concurrency batches in flight at a
+ * time, each through the write budget of {@link AdmissionControl}; a batch that is rejected waits for the
+ * Retry-After and is tried again, so an import gives way to client writes under load.
+ * <p>
+ * The columns are those of {@link SightingExport}, so an export can be imported again: id, date, bird, color,
+ * weight, height, location, longitude and latitude. The color, weight and height are taken from the stored bird,
+ * and a record without an id gets a new one. Records that cannot be imported are appended to {@code <file>.rejects}
+ * with their offset and the reason. After every chunk the offset up to which the file has been processed and the
+ * length of the reject file are saved to {@code <file>.checkpoint}, together with the size and modification time of
+ * the file; importing the same file again resumes from there, while a checkpoint of a file that changed since is
+ * ignored. The records of a chunk that was interrupted are read again on resume: the reject file is cut back to the
+ * checkpoint, and records that were already stored are skipped. To recognize them, every record is stored with the
+ * idempotency key {@code import:<key scope>:<offset>}, where the key scope is created when an import starts from the
+ * beginning and kept in the checkpoint; clients cannot send keys starting with import:. Once the import completes,
+ * its keys are removed from the stored sightings and the checkpoint is deleted; an import that failed keeps them
+ * until it is resumed to the end.
+ * <p>
+ * Only one import runs at a time. Records are counted as {@code birds.sightings.imported}, tagged with the outcome.
+ */
+@Component
+public class SightingImport {
+    private static final Logger log = LoggerFactory.getLogger(SightingImport.class);
+    private static final int JOB_HISTORY = 20;
+
+    /**
+     * The start of the idempotency keys of imported records, reserved for imports.
+     */
+    public static final String KEY_PREFIX = "import:";
+
+    @Autowired
+    private BirdRepository birdRepository;
+
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Autowired
+    private SightingStatsService sightingStatsService;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${import.directory:imports}")
+    private String directory;
+
+    @Value("${import.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${import.write-concurrency:4}")
+    private int writeConcurrency;
+
+    @Value("${import.parallelism:0}")
+    private int parallelism;
+
+    @Value("${sightings.write.durability:w1}")
+    private Durability durability;
+
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+    private Counter stored;
+    private Counter rejected;
+    private ImportJob running;
+
+    @PostConstruct
+    void init() {
+        stored = meterRegistry.counter("birds.sightings.imported", "outcome", "stored");
+        rejected = meterRegistry.counter("birds.sightings.imported", "outcome", "rejected");
+    }
+
+    /**
+     * Starts importing a file of the import directory in the background.
+     *
+     * @param fileName the name of the file, relative to import.directory
+     * @return the started job
+     * @throws ResourceNotFoundException if the file does not exist in the import directory
+     * @throws InvalidRequestException if an import is already running
+     */
+    public ImportJob start(String fileName) {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        Path path = root.resolve(fileName).normalize();
+        if (!path.startsWith(root) || !Files.isRegularFile(path)) {
+            throw new ResourceNotFoundException(MessageFormat.format(
+                "File not found. {0} is not a file of the import directory.", fileName
+            ));
+        }
+        Checkpoint checkpoint = readCheckpoint(path);
+        ImportJob job = register(path, checkpoint);
+        run(job, path, checkpoint).subscribe(finished -> { }, error -> { });
+        return job;
+    }
+
+    /**
+     * Imports a file, for the command line.
+     *
+     * @param path the file to import
+     * @return a Mono containing the completed job, or the error that stopped it
+     */
+    public Mono<ImportJob> importFile(Path path) {
+        return Mono.fromCallable(() -> readCheckpoint(path))
+            .flatMap(checkpoint -> run(register(path, checkpoint), path, checkpoint));
+    }
+
+    /**
+     * Finds an import by its ID.
+     *
+     * @param id the ID of the job
+     * @return a Mono containing the job, or an error if it is unknown or no longer kept
+     */
+    public Mono<ImportJob> findJob(String id) {
+        ImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        return job != null ? Mono.just(job) : Mono.error(new ResourceNotFoundException(
+            MessageFormat.format("Import not found. Import with ID {0} does not exist.", id)
+        ));
+    }
+
+    /**
+     * Returns the kept imports, most recently started first.
+     *
+     * @return a Flux containing the jobs
+     */
+    public Flux<ImportJob> getJobs() {
+        List<ImportJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(snapshot);
+        return Flux.fromIterable(snapshot);
+    }
+
+    private synchronized ImportJob register(Path path, Checkpoint checkpoint) {
+        if (running != null && running.getStatus() == ImportJob.Status.RUNNING) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Import already running. Wait for import {0} to finish.", running.getId()
+            ));
+        }
+        ImportJob job = new ImportJob(
+            ObjectId.get().toHexString(), path.toString(), checkpoint.size, checkpoint.offset
+        );
+        running = job;
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            // Only one import runs at a time, so the oldest job is always finished
+            Iterator<ImportJob> oldest = jobs.values().iterator();
+            for (int excess = jobs.size() - JOB_HISTORY; excess > 0; excess--) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        return job;
+    }
+
+    private Mono<ImportJob> run(ImportJob job, Path path, Checkpoint resumed) {
+        Path checkpoint = sibling(path, ".checkpoint");
+        String keyPrefix = KEY_PREFIX + resumed.keyScope + ":";
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return birdRepository.findAll()
+            .collectMap(Bird::getName)
+            .flatMap(birds -> Flux.using(
+                () -> new ImportFile(path, resumed.rejectsLength),
+                file -> chunks(file.channel, resumed.offset, resumed.size)
+                    .flatMapSequential(chunk -> Mono.fromCallable(() -> parse(chunk, keyPrefix, birds))
+                        .subscribeOn(Schedulers.parallel()), threads, 1)
+                    .concatMap(parsed -> skipReplayed(parsed, job)
+                        .then(Mono.defer(() -> write(parsed, job, file)))
+                        .thenReturn(parsed))
+                    .doOnNext(parsed -> {
+                        file.flush();
+                        saveCheckpoint(checkpoint, resumed.advance(parsed.end, file.rejectsLength()));
+                        job.advance(parsed.end);
+                    }),
+                ImportFile::close
+            ).then())
+            // The keys were only needed to resume; the checkpoint goes last, so a crash before leaves both in place
+            .then(Mono.defer(() -> sightingRepository.clearIdempotencyKeys(keyPrefix)))
+            .then(Mono.fromCallable(() -> {
+                Files.deleteIfExists(checkpoint);
+                job.complete();
+                log.info("Import {} of {} completed: {} sightings imported, {} rejected",
+                    job.getId(), path, job.getImported(), job.getRejected());
+                return job;
+            }))
+            .doOnError(error -> {
+                log.warn("Import {} of {} failed at offset {}", job.getId(), path, job.getCheckpoint(), error);
+                job.fail(error.getMessage());
+            });
+    }
+
+    private Flux<Chunk> chunks(FileChannel channel, long from, long size) {
+        return Flux.<Chunk, Long>generate(() -> from, (offset, sink) -> {
+            if (offset >= size) {
+                sink.complete();
+                return offset;
+            }
+            try {
+                Chunk chunk = nextChunk(channel, offset, size);
+                sink.next(chunk);
+                return chunk.start + chunk.bytes.limit();
+            } catch (IOException exception) {
+                sink.error(exception);
+                return offset;
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Chunk nextChunk(FileChannel channel, long offset, long size) throws IOException {
+        long target = chunkSize.toBytes();
+        // Map twice the chunk size so the record crossing the nominal end can be completed
+        int length = (int) Math.min(size - offset, Math.min(Integer.MAX_VALUE, 2 * target));
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        // A line break only ends a record outside quotes, so the quotes are tracked from the start of the chunk
+        boolean quoted = false;
+        for (int i = 0; i < length; i++) {
+            byte b = window.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted && i + 1 >= target) {
+                return new Chunk(offset, window.limit(i + 1));
+            }
+        }
+        if (offset + length == size) {
+            return new Chunk(offset, window);
+        }
+        throw new IOException(MessageFormat.format(
+            "The record after offset {0} is longer than import.chunk-size.", String.valueOf(offset)
+        ));
+    }
+
+    private static Parsed parse(Chunk chunk, String keyPrefix, Map<String, Bird> birds) {
+        ByteBuffer bytes = chunk.bytes;
+        int limit = bytes.limit();
+        Parsed parsed = new Parsed(chunk.start, chunk.start + limit);
+        List<String> fields = new ArrayList<>();
+        byte[] field = new byte[256];
+        int length = 0;
+        int recordStart = 0;
+        boolean quoted = false;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes.get(i);
+            if (quoted) {
+                if (b != '"') {
+                    field = append(field, length++, b);
+                } else if (i + 1 < limit && bytes.get(i + 1) == '"') {
+                    field = append(field, length++, b);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == ',') {
+                fields.add(new String(field, 0, length, StandardCharsets.UTF_8));
+                length = 0;
+            } else if (b == '\n') {
+                if (length > 0 && field[length - 1] == '\r') {
+                    length--;
+                }
+                fields.add(new String(field, 0, length, StandardCharsets.UTF_8));
+                length = 0;
+                record(parsed, chunk, recordStart, i, fields, keyPrefix, birds);
+                fields.clear();
+                recordStart = i + 1;
+            } else {
+                field = append(field, length++, b);
+            }
+        }
+        if (recordStart < limit) {
+            // The last record of the file need not end with a line break
+            fields.add(new String(field, 0, length, StandardCharsets.UTF_8));
+            if (quoted) {
+                parsed.rejects.add(reject(chunk.start + recordStart, "Invalid record. A quoted field is not closed.",
+                    text(chunk, recordStart, limit)));
+            } else {
+                record(parsed, chunk, recordStart, limit, fields, keyPrefix, birds);
+            }
+        }
+        return parsed;
+    }
+
+    private static void record(Parsed parsed, Chunk chunk, int start, int end, List<String> fields,
+                               String keyPrefix, Map<String, Bird> birds) {
+        long offset = chunk.start + start;
+        // Skip blank lines and the header of the file
+        if (fields.size() == 1 && fields.get(0).isEmpty() || offset == 0 && "id".equals(fields.get(0))) {
+            return;
+        }
+        try {
+            Sighting sighting = toSighting(fields, birds);
+            // The same record always gets the same key within one import, so a resumed import can recognize it
+            sighting.setIdempotencyKey(keyPrefix + offset);
+            parsed.sightings.add(sighting);
+            parsed.offsets.add(offset);
+        } catch (InvalidRequestException exception) {
+            parsed.rejects.add(reject(offset, exception.getMessage(), text(chunk, start, end)));
+        }
+    }
+
+    private static String text(Chunk chunk, int start, int end) {
+        byte[] raw = new byte[end - start];
+        chunk.bytes.duplicate().position(start).get(raw);
+        return new String(raw, StandardCharsets.UTF_8).trim();
+    }
+
+    private static Sighting toSighting(List<String> fields, Map<String, Bird> birds) {
+        if (fields.size() < 7) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid record. Expected at least 7 fields but found {0}.", fields.size()
+            ));
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(fields.get(1));
+        } catch (DateTimeParseException exception) {
+            throw new InvalidRequestException(MessageFormat.format(
+                "Invalid date. {0} is not a date in the format yyyy-MM-dd.", fields.get(1)
+            ));
+        }
+        Bird bird = birds.get(fields.get(2));
+        if (bird == null) {
+            throw new InvalidRequestException("Bird not found. Cannot add sighting.");
+        }
+        if (fields.get(6).isEmpty()) {
+            throw new InvalidRequestException("Invalid location. The location is required.");
+        }
+        Sighting sighting = new Sighting(bird, fields.get(6), date);
+        sighting.setId(fields.get(0).isEmpty() ? null : fields.get(0));
+        if (fields.size() >= 9 && !fields.get(7).isEmpty() && !fields.get(8).isEmpty()) {
+            try {
+                sighting.setPosition(new GeoJsonPoint(
+                    Double.parseDouble(fields.get(7)), Double.parseDouble(fields.get(8))
+                ));
+            } catch (NumberFormatException exception) {
+                throw new InvalidRequestException(MessageFormat.format(
+                    "Invalid position. {0},{1} is not a longitude and latitude.", fields.get(7), fields.get(8)
+                ));
+            }
+        }
+        return sighting;
+    }
+
+    // Only the chunk the checkpoint points to can have been written before the import was interrupted
+    private Mono<Void> skipReplayed(Parsed parsed, ImportJob job) {
+        if (job.getResumedFrom() == 0 || parsed.start != job.getResumedFrom() || parsed.sightings.isEmpty()) {
+            return Mono.empty();
+        }
+        return sightingRepository.findByIdempotencyKeys(parsed.sightings)
+            .map(Sighting::getIdempotencyKey)
+            .collect(Collectors.toSet())
+            .doOnNext(stored -> {
+                for (int i = parsed.sightings.size() - 1; i >= 0; i--) {
+                    if (stored.contains(parsed.sightings.get(i).getIdempotencyKey())) {
+                        parsed.sightings.remove(i);
+                        parsed.offsets.remove(i);
+                    }
+                }
+            })
+            .then();
+    }
+
+    private Mono<Void> write(Parsed parsed, ImportJob job, ImportFile file) {
+        job.recordRejects(parsed.rejects.size());
+        rejected.increment(parsed.rejects.size());
+        file.reject(parsed.rejects);
+        int count = parsed.sightings.size();
+        return Flux.range(0, (count + batchSize - 1) / batchSize)
+            .map(batch -> batch * batchSize)
+            .flatMap(from -> {
+                List<Sighting> batch = parsed.sightings.subList(from, Math.min(from + batchSize, count));
+                return insert(batch).map(failures -> new Written(from, batch, failures));
+            }, writeConcurrency)
+            .concatMap(written -> {
+                List<Sighting> batchStored = new ArrayList<>(written.batch.size());
+                List<String> batchRejects = new ArrayList<>(written.failures.size());
+                for (int i = 0; i < written.batch.size(); i++) {
+                    WriteFailure failure = written.failures.get(i);
+                    if (failure == null) {
+                        batchStored.add(written.batch.get(i));
+                    } else {
+                        batchRejects.add(reject(parsed.offsets.get(written.from + i), failure.getMessage(), ""));
+                    }
+                }
+                file.reject(batchRejects);
+                job.recordBatch(batchStored.size(), batchRejects.size());
+                stored.increment(batchStored.size());
+                rejected.increment(batchRejects.size());
+                return sightingStatsService.recordAdded(batchStored);
+            })
+            .then();
+    }
+
+    private Mono<Map<Integer, WriteFailure>> insert(List<Sighting> batch) {
+        return Mono.defer(() -> admissionControl.write(
+                sightingRepository.insertUnordered(batch, durability.getWriteConcern())
+            ))
+            .retryWhen(Retry.from(signals -> signals.concatMap(signal -> signal.failure()
+                instanceof ServiceOverloadedException
+                ? Mono.delay(((ServiceOverloadedException) signal.failure()).getRetryAfter())
+                : Mono.error(signal.failure()))));
+    }
+
+    private static String reject(long offset, String reason, String record) {
+        return offset + ",\"" + reason.replace("\"", "\"\"") + "\"," + record;
+    }
+
+    private static byte[] append(byte[] field, int length, byte b) {
+        byte[] target = length < field.length ? field : Arrays.copyOf(field, field.length * 2);
+        target[length] = b;
+        return target;
+    }
+
+    // Returns the saved checkpoint if it belongs to the file as it is now, or a new one to start from the beginning
+    private static Checkpoint readCheckpoint(Path path) {
+        try {
+            long size = Files.size(path);
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            Path checkpoint = sibling(path, ".checkpoint");
+            if (Files.exists(checkpoint)) {
+                String[] saved = Files.readString(checkpoint).trim().split(",");
+                if (saved.length == 5 && Long.parseLong(saved[3]) == size
+                    && Long.parseLong(saved[4]) == lastModified) {
+                    return new Checkpoint(
+                        Long.parseLong(saved[0]), Long.parseLong(saved[1]), saved[2], size, lastModified
+                    );
+                }
+                log.warn("Ignoring the checkpoint of {}, which was saved for a different version of the file", path);
+            }
+            return new Checkpoint(0, 0, ObjectId.get().toHexString(), size, lastModified);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static void saveCheckpoint(Path checkpoint, Checkpoint saved) {
+        try {
+            Path temporary = sibling(checkpoint, ".tmp");
+            Files.writeString(temporary, saved.offset + "," + saved.rejectsLength + "," + saved.keyScope + ","
+                + saved.size + "," + saved.lastModified);
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    /**
+     * How far an import got: the offset up to which the file has been processed, the length of the reject file
+     * then, and the key scope of the import, for the file of the given size and modification time.
+     */
+    @AllArgsConstructor
+    private static class Checkpoint {
+        private final long offset;
+        private final long rejectsLength;
+        private final String keyScope;
+        private final long size;
+        private final long lastModified;
+
+        private Checkpoint advance(long processed, long rejectsLengthThen) {
+            return new Checkpoint(processed, rejectsLengthThen, keyScope, size, lastModified);
+        }
+    }
+
+    /**
+     * A consecutive range of whole records of the file.
+     */
+    @AllArgsConstructor
+    private static class Chunk {
+        private final long start;
+        private final ByteBuffer bytes;
+    }
+
+    /**
+     * The records of a chunk, parsed.
+     */
+    private static class Parsed {
+        private final long start;
+        private final long end;
+        private final List<Sighting> sightings = new ArrayList<>();
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<String> rejects = new ArrayList<>();
+
+        private Parsed(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Written {
+        private final int from;
+        private final List<Sighting> batch;
+        private final Map<Integer, WriteFailure> failures;
+    }
+
+    /**
+     * The imported file and its reject file, which is only created once a record is rejected.
+     * Used by one chunk at a time.
+     */
+    private static class ImportFile implements Closeable {
+        private final FileChannel channel;
+        private final Path rejectsPath;
+        private final boolean resumed;
+        private BufferedWriter rejects;
+
+        /**
+         * Opens the file, and cuts the reject file back to the length saved with the checkpoint so the rejects of
+         * an interrupted chunk are not written twice.
+         *
+         * @param rejectsLength the length to keep of the reject file; 0 starts a new one
+         */
+        private ImportFile(Path path, long rejectsLength) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.rejectsPath = sibling(path, ".rejects");
+            this.resumed = rejectsLength > 0;
+            if (!resumed) {
+                Files.deleteIfExists(rejectsPath);
+            } else if (Files.exists(rejectsPath)) {
+                try (FileChannel kept = FileChannel.open(rejectsPath, StandardOpenOption.WRITE)) {
+                    kept.truncate(rejectsLength);
+                }
+            }
+        }
+
+        private long rejectsLength() {
+            try {
+                return Files.exists(rejectsPath) ? Files.size(rejectsPath) : 0;
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void reject(List<String> lines) {
+            try {
+                for (String line : lines) {
+                    if (rejects == null) {
+                        rejects = Files.newBufferedWriter(rejectsPath, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, resumed ? StandardOpenOption.APPEND : StandardOpenOption.WRITE);
+                    }
+                    rejects.write(line);
+                    rejects.newLine();
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void flush() {
+            try {
+                if (rejects != null) {
+                    rejects.flush();
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+                if (rejects != null) {
+                    rejects.close();
+                }
+            } catch (IOException exception) {
+                log.warn("Could not close the import files", exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.errorHandling.ServiceOverloadedException;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.repository.SightingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes sightings in the background, in throttled batches.
+ * <p>
+ * Deleting a bird starts a cascade that removes the bird's sightings, and with sightings.retention.max-age set a
+ * purge of the sightings older than that age runs every sightings.retention.interval. Both delete at most
+ * batch-size sightings per round trip and pause batch-delay between batches, so neither holds a long-running
+ * delete over the collection and its indexes. Every batch goes through the write budget of
+ * {@link AdmissionControl}; a batch that is rejected waits for the Retry-After and is tried again, so background
+ * deletes give way to client writes under load. Deleted sightings are removed from the rollups batch by batch.
+ * <p>
+ * The purge deletes documents instead of relying on a TTL index, because TTL deletes bypass the rollups.
+ * Only one retention purge runs at a time. The last job-history jobs can be looked up by ID, and deleted sightings
+ * are counted as {@code birds.sightings.purged}, tagged with the kind of job.
+ */
+@Component
+public class SightingPurge {
+    private static final Logger log = LoggerFactory.getLogger(SightingPurge.class);
+
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Autowired
+    private SightingStatsService sightingStatsService;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sightings.deletion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${sightings.deletion.batch-delay:50ms}")
+    private Duration batchDelay;
+
+    @Value("${sightings.deletion.job-history:100}")
+    private int jobHistory;
+
+    @Value("${sightings.retention.max-age:0d}")
+    private Period maxAge;
+
+    @Value("${sightings.retention.interval:1h}")
+    private Duration retentionInterval;
+
+    private final Map<String, DeletionJob> jobs = new LinkedHashMap<>();
+    private Counter cascaded;
+    private Counter expired;
+    private volatile DeletionJob retentionJob;
+    private Disposable schedule;
+
+    @PostConstruct
+    void init() {
+        cascaded = meterRegistry.counter("birds.sightings.purged", "kind", "cascade");
+        expired = meterRegistry.counter("birds.sightings.purged", "kind", "retention");
+    }
+
+    /**
+     * Schedules the retention purge once the application has started, if a maximum age is configured.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRetention() {
+        if (maxAge.isZero()) {
+            return;
+        }
+        schedule = Flux.interval(Duration.ZERO, retentionInterval)
+            .subscribe(tick -> purgeExpired());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    /**
+     * Starts deleting the sightings of a bird.
+     *
+     * @param birdName the name of the deleted bird
+     * @return the started job
+     */
+    public DeletionJob cascade(String birdName) {
+        DeletionJob job = register(DeletionJob.Kind.CASCADE, birdName);
+        run(job, SightingFilter.byBird(birdName), cascaded);
+        return job;
+    }
+
+    /**
+     * Finds the running cascade of a bird, which deletes every sighting of that name until it ends.
+     *
+     * @param birdName the name of the bird
+     * @return the running job, or null if none runs for that name
+     */
+    public DeletionJob runningCascade(String birdName) {
+        synchronized (jobs) {
+            for (DeletionJob job : jobs.values()) {
+                if (job.getKind() == DeletionJob.Kind.CASCADE && job.getStatus() == DeletionJob.Status.RUNNING
+                    && job.getTarget().equals(birdName)) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts deleting the sightings older than the retention period, unless a purge is already running.
+     *
+     * @return the started job, or the running one
+     * @throws InvalidRequestException if no retention period is configured
+     */
+    public synchronized DeletionJob purgeExpired() {
+        if (maxAge.isZero()) {
+            throw new InvalidRequestException(
+                "Retention is not configured. Set sightings.retention.max-age to enable it."
+            );
+        }
+        DeletionJob running = retentionJob;
+        if (running != null && running.getStatus() == DeletionJob.Status.RUNNING) {
+            return running;
+        }
+        LocalDate lastExpired = LocalDate.now().minus(maxAge).minusDays(1);
+        DeletionJob job = register(DeletionJob.Kind.RETENTION, lastExpired.toString());
+        retentionJob = job;
+        run(job, SightingFilter.byDateBetween(null, lastExpired), expired);
+        return job;
+    }
+
+    /**
+     * Finds a job by its ID.
+     *
+     * @param id the ID of the job
+     * @return a Mono containing the job, or an error if it is unknown or no longer kept
+     */
+    public Mono<DeletionJob> findJob(String id) {
+        DeletionJob job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        return job != null ? Mono.just(job) : Mono.error(new ResourceNotFoundException(
+            MessageFormat.format("Job not found. Job with ID {0} does not exist.", id)
+        ));
+    }
+
+    /**
+     * Returns the kept jobs, most recently started first.
+     *
+     * @return a Flux containing the jobs
+     */
+    public Flux<DeletionJob> getJobs() {
+        List<DeletionJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(snapshot);
+        return Flux.fromIterable(snapshot);
+    }
+
+    private DeletionJob register(DeletionJob.Kind kind, String target) {
+        DeletionJob job = new DeletionJob(ObjectId.get().toHexString(), kind, target);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            // Forget the oldest finished jobs; running jobs are kept until they end
+            Iterator<DeletionJob> oldest = jobs.values().iterator();
+            int excess = jobs.size() - jobHistory;
+            while (excess > 0 && oldest.hasNext()) {
+                if (oldest.next().getStatus() != DeletionJob.Status.RUNNING) {
+                    oldest.remove();
+                    excess--;
+                }
+            }
+        }
+        return job;
+    }
+
+    private void run(DeletionJob job, SightingFilter filter, Counter purged) {
+        removeBatch(filter)
+            .expand(batch -> batch.size() < batchSize
+                ? Mono.empty()
+                : removeBatch(filter).delaySubscription(batchDelay))
+            .filter(batch -> !batch.isEmpty())
+            .concatMap(batch -> sightingStatsService.recordDeleted(batch).thenReturn(batch))
+            .subscribe(
+                batch -> {
+                    job.recordBatch(batch.size());
+                    purged.increment(batch.size());
+                },
+                error -> {
+                    log.warn("Deletion job {} failed after {} sightings", job.getId(), job.getDeleted(), error);
+                    job.fail(error.getMessage());
+                },
+                job::complete
+            );
+    }
+
+    private Mono<List<Sighting>> removeBatch(SightingFilter filter) {
+        return Mono.defer(() -> admissionControl.write(sightingRepository.removeBatch(filter, batchSize)))
+            .retryWhen(Retry.from(signals -> signals.concatMap(signal -> signal.failure()
+                instanceof ServiceOverloadedException
+                ? Mono.delay(((ServiceOverloadedException) signal.failure()).getRetryAfter())
+                : Mono.error(signal.failure()))));
+    }
+}
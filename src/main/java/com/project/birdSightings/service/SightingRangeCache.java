@@ -0,0 +1,252 @@
+package com.project.birdSightings.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.repository.SightingRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cache of the sightings of whole days and months, from which date-range pages are composed.
+ * <p>
+ * A date range is split into segments: every calendar month it covers entirely, and single days for the partial
+ * months at either end. Each segment is loaded from MongoDB once, in (date, id) order, and shared by every range
+ * that covers it, so "last summer" and "July" read the same July. A page reads the segments in order and only
+ * loads those it reaches. Writes and deletes invalidate just the day and the month of each sighting they touched,
+ * through {@link SightingStatsService}, which every sighting write reports to. Segments are always loaded from the
+ * primary, so a lagging secondary cannot leave a cache entry that misses an invalidated write.
+ * <p>
+ * A segment with more than max-segment-size sightings is not kept; its part of a range is queried from MongoDB
+ * each time, as are ranges of more than max-segments segments. The cache is bounded by an estimate of the memory
+ * its sightings take, max-memory. Its statistics are published as the {@code cache.*} metrics of the
+ * "sightingRanges" cache, along with {@code birds.range.cache.hit.ratio} and {@code birds.range.cache.memory}, the
+ * estimated bytes held.
+ */
+@Component
+public class SightingRangeCache {
+    @Autowired
+    private SightingRepository sightingRepository;
+
+    @Value("${sightings.range-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sightings.range-cache.max-memory:64MB}")
+    private DataSize maxMemory;
+
+    @Value("${sightings.range-cache.max-segment-size:20000}")
+    private int maxSegmentSize;
+
+    @Value("${sightings.range-cache.max-segments:400}")
+    private int maxSegments;
+
+    private AsyncCache<Segment, Loaded> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxMemory.toBytes())
+            .weigher((Segment segment, Loaded loaded) -> loaded.bytes)
+            .recordStats()
+            .buildAsync();
+    }
+
+    /**
+     * Registers the meters of this component.
+     *
+     * @param registry the registry to register with
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "sightingRanges");
+        Gauge.builder("birds.range.cache.hit.ratio", cache, cache -> cache.synchronous().stats().hitRate())
+            .description("Share of date-range segment lookups answered from the cache")
+            .register(registry);
+        Gauge.builder("birds.range.cache.memory", cache, cache -> cache.synchronous().policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L))
+            .description("Estimated memory held by the cached date-range segments")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Tells whether the pages of a filter are read through this cache: the filter must have a start and an end
+     * date, no other condition and no projection.
+     *
+     * @param filter the filter of the query
+     * @return true if the query is answered from cached segments
+     */
+    public boolean covers(SightingFilter filter) {
+        return enabled && filter.getStartDate() != null && filter.getEndDate() != null
+            && filter.getBirdName() == null && filter.getLocation() == null && filter.getArea() == null
+            && filter.getFields() == null;
+    }
+
+    /**
+     * Finds the sightings of a date range, in (date, id) order, starting after a cursor.
+     *
+     * @param filter the date range, as accepted by {@link #covers(SightingFilter)}
+     * @param after the cursor to continue after, or null to start at the beginning
+     * @param limit the maximum number of sightings
+     * @return a Flux containing the sightings
+     */
+    public Flux<Sighting> findPage(SightingFilter filter, SightingCursor after, int limit) {
+        List<Segment> segments = segments(filter.getStartDate(), filter.getEndDate());
+        if (segments == null) {
+            return sightingRepository.findPage(filter, after, limit);
+        }
+        return Flux.fromIterable(segments)
+            .filter(segment -> after == null || !segment.last.isBefore(after.getDate()))
+            .concatMap(segment -> read(segment, filter.isQueryRead(), after, limit), 1)
+            .take(limit);
+    }
+
+    /**
+     * Drops the cached days and months of written or deleted sightings.
+     *
+     * @param sightings the sightings that were written or deleted
+     */
+    public void invalidate(Collection<Sighting> sightings) {
+        if (cache == null) {
+            return;
+        }
+        Set<Segment> touched = new HashSet<>();
+        for (Sighting sighting : sightings) {
+            touched.add(Segment.day(sighting.getDate()));
+            touched.add(Segment.month(YearMonth.from(sighting.getDate())));
+        }
+        cache.synchronous().invalidateAll(touched);
+    }
+
+    private List<Segment> segments(LocalDate startDate, LocalDate endDate) {
+        List<Segment> segments = new ArrayList<>();
+        LocalDate date = startDate;
+        while (!date.isAfter(endDate)) {
+            if (segments.size() == maxSegments) {
+                return null;
+            }
+            YearMonth month = YearMonth.from(date);
+            if (date.getDayOfMonth() == 1 && !month.atEndOfMonth().isAfter(endDate)) {
+                segments.add(Segment.month(month));
+                date = month.plusMonths(1).atDay(1);
+            } else {
+                segments.add(Segment.day(date));
+                date = date.plusDays(1);
+            }
+        }
+        return segments;
+    }
+
+    private Flux<Sighting> read(Segment segment, boolean queryRead, SightingCursor after, int limit) {
+        // Each reader waits on its own copy, so a cancelled request does not cancel a load shared with others
+        return Mono.fromFuture(cache.get(segment, (key, executor) -> load(key).toFuture()).copy())
+            .flatMapMany(loaded -> {
+                if (loaded.sightings == null) {
+                    SightingFilter filter = segment.filter();
+                    filter.setQueryRead(queryRead);
+                    return sightingRepository.findPage(filter, after, limit);
+                }
+                int from = firstAfter(loaded.sightings, after);
+                return Flux.fromIterable(loaded.sightings.subList(from, loaded.sightings.size()));
+            });
+    }
+
+    private Mono<Loaded> load(Segment segment) {
+        return sightingRepository.findPage(segment.filter(), null, maxSegmentSize + 1)
+            .collectList()
+            .map(sightings -> {
+                if (sightings.size() > maxSegmentSize) {
+                    return Loaded.TOO_LARGE;
+                }
+                int bytes = 0;
+                for (Sighting sighting : sightings) {
+                    bytes += estimateSize(sighting);
+                }
+                return new Loaded(Collections.unmodifiableList(sightings), bytes);
+            });
+    }
+
+    private static int firstAfter(List<Sighting> sightings, SightingCursor after) {
+        if (after == null) {
+            return 0;
+        }
+        int low = 0;
+        int high = sightings.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Sighting sighting = sightings.get(middle);
+            int order = sighting.getDate().compareTo(after.getDate());
+            if (order < 0 || order == 0 && sighting.getId().compareTo(after.getId()) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // A rough size of a sighting on the heap: the objects of the sighting, its bird, date and position, and strings
+    private static int estimateSize(Sighting sighting) {
+        return 200 + estimateSize(sighting.getId()) + estimateSize(sighting.getLocation())
+            + estimateSize(sighting.getIdempotencyKey()) + estimateSize(sighting.getBird().getName())
+            + estimateSize(sighting.getBird().getColor());
+    }
+
+    private static int estimateSize(String text) {
+        return text == null ? 0 : 40 + text.length();
+    }
+
+    /**
+     * A day or a calendar month of sightings.
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Segment {
+        private final LocalDate first;
+        private final LocalDate last;
+
+        private static Segment day(LocalDate date) {
+            return new Segment(date, date);
+        }
+
+        private static Segment month(YearMonth month) {
+            return new Segment(month.atDay(1), month.atEndOfMonth());
+        }
+
+        private SightingFilter filter() {
+            return SightingFilter.byDateBetween(first, last);
+        }
+    }
+
+    /**
+     * The sightings of a segment, or none if there were too many to keep.
+     */
+    @AllArgsConstructor
+    private static class Loaded {
+        private static final Loaded TOO_LARGE = new Loaded(null, 1);
+
+        private final List<Sighting> sightings;
+        private final int bytes;
+    }
+}
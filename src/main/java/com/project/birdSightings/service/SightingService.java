@@ -1,31 +1,91 @@
 package com.project.birdSightings.service;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
 import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.metrics.Instrumentation;
 import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.CursorPage;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.IngestResult;
 import com.project.birdSightings.model.Sighting;
-import com.project.birdSightings.repository.BirdRepository;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
 import com.project.birdSightings.repository.SightingRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import java.text.MessageFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Service class for managing bird sightings.
  */
 @Service
 public class SightingService {
+    private static final String SERVICE = "SightingService";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     @Autowired
     private SightingRepository sightingRepository;
 
     @Autowired
-    private BirdRepository birdRepository;
+    private BirdCache birdCache;
+
+    @Autowired
+    private Pagination pagination;
+
+    @Autowired
+    private SightingStatsService sightingStatsService;
+
+    @Autowired
+    private SightingFeed sightingFeed;
+
+    @Autowired
+    private Instrumentation instrumentation;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private SightingGroupCommit sightingGroupCommit;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    private SightingRangeCache sightingRangeCache;
+
+    @Value("${sightings.write.durability:w1}")
+    private Durability defaultDurability;
+
+    @Value("${sightings.ingest.batch-size:500}")
+    private int ingestBatchSize;
+
+    @Value("${sightings.ingest.concurrency:4}")
+    private int ingestConcurrency;
+
+    @Value("${streaming.batch-size:256}")
+    private int streamBatchSize;
 
     /**
      * Adds a new sighting.
@@ -37,55 +97,242 @@ public class SightingService {
      * @return a Mono containing the added sighting wrapped in a ResponseEntity
      */
     public Mono<ResponseEntity<Sighting>> addSighting(Sighting sighting) {
-        return birdRepository.findById(sighting.getBird().getName())
+        return addSighting(sighting, null);
+    }
+
+    /**
+     * Adds a new sighting, acknowledged with the given durability.
+     * With group commit enabled, the write is batched with other sightings arriving at the same time.
+     * A sighting with an idempotency key that was already stored is not stored again; the response then
+     * carries the original sighting and an Idempotent-Replayed header.
+     *
+     * @param sighting the sighting to add
+     * @param durability the write concern to wait for, or null for the configured default
+     * @return a Mono containing the added sighting wrapped in a ResponseEntity
+     * @throws InvalidRequestException if the sighting misses its bird name, location or date, or its idempotency
+     *     key is reserved for imports
+     */
+    public Mono<ResponseEntity<Sighting>> addSighting(Sighting sighting, Durability durability) {
+        String invalid = validate(sighting);
+        if (invalid != null) {
+            throw new InvalidRequestException(invalid);
+        }
+        Durability writeDurability = durability == null ? defaultDurability : durability;
+        Mono<Bird> lookup = instrumentation.timed(
+            "BirdCache", "findById", birdCache.findById(sighting.getBird().getName())
+        );
+        return instrumentation.timed(SERVICE, "addSighting", lookup
             .flatMap(existingBird -> {
                 // Set the found bird reference to the sighting
                 sighting.setBird(existingBird);
-                return sightingRepository.save(sighting)
-                    .map(savedSighting -> ResponseEntity.status(HttpStatus.CREATED).body(savedSighting));
+                return admissionControl.write(idempotencyKeys.findOriginals(Collections.singletonList(sighting))
+                    .flatMap(originals -> {
+                        Sighting original = originals.get(sighting.getIdempotencyKey());
+                        return original != null ? Mono.just(original) : store(sighting, writeDurability);
+                    }));
             })
+            .map(stored -> stored == sighting
+                ? ResponseEntity.status(HttpStatus.CREATED).body(stored)
+                : ResponseEntity.status(HttpStatus.CREATED).header(IDEMPOTENT_REPLAYED, "true").body(stored))
             .switchIfEmpty(
                 Mono.error(new ResourceNotFoundException("Bird not found. Cannot add sighting."))
-            );
+            ));
+    }
+
+    private Mono<Sighting> store(Sighting sighting, Durability durability) {
+        if (sightingGroupCommit.isEnabled()) {
+            return sightingGroupCommit.submit(sighting, durability)
+                .doOnNext(stored -> idempotencyKeys.remember(Collections.singletonList(stored)));
+        }
+        return sightingRepository.store(sighting, durability.getWriteConcern())
+            .flatMap(stored -> sightingStatsService.recordAdded(Collections.singletonList(stored)).thenReturn(stored))
+            .onErrorResume(error -> sighting.getIdempotencyKey() != null && isDuplicateKey(error), error ->
+                idempotencyKeys.resolveReplays(
+                    Collections.singletonList(sighting),
+                    Collections.singletonMap(0, WriteFailure.duplicateKey(error.getMessage()))
+                )
+                    .flatMap(replays -> replays.containsKey(0) ? Mono.just(replays.get(0)) : Mono.error(error)))
+            .doOnNext(stored -> idempotencyKeys.remember(Collections.singletonList(stored)));
+    }
+
+    private static boolean isDuplicateKey(Throwable error) {
+        return error instanceof DuplicateKeyException
+            || error instanceof MongoWriteException
+            && ((MongoWriteException) error).getError().getCategory() == ErrorCategory.DUPLICATE_KEY;
+    }
+
+    /**
+     * Adds a stream of sightings in batches.
+     * The upload is consumed batch by batch, so it is never buffered as a whole, and takes one slot of the write
+     * budget for its whole duration. Each distinct bird name of a batch is resolved once through the bird cache,
+     * and the valid records of a batch are written with a single unordered insert, so one bad record does not
+     * hold back the others. A record with an idempotency key that was already stored is reported as accepted
+     * with the ID of the original sighting.
+     *
+     * @param sightings the sightings to add
+     * @return a Flux containing one result per uploaded record, in upload order
+     */
+    public Flux<IngestResult> addSightings(Flux<Sighting> sightings) {
+        return addSightings(sightings, null);
     }
 
     /**
-     * Retrieves all sightings.
+     * Adds a stream of sightings in batches, each acknowledged with the given durability.
      *
-     * @return a Flux containing all sightings
+     * @param sightings the sightings to add
+     * @param durability the write concern to wait for, or null for the configured default
+     * @return a Flux containing one result per uploaded record, in upload order
      */
-    public Flux<Sighting> getAllSightings() {
-        return sightingRepository.findAll();
+    public Flux<IngestResult> addSightings(Flux<Sighting> sightings, Durability durability) {
+        Durability writeDurability = durability == null ? defaultDurability : durability;
+        return instrumentation.timed(SERVICE, "addSightings", admissionControl.write(sightings.index()
+            .buffer(ingestBatchSize)
+            .flatMapSequential(batch -> ingestBatch(batch, writeDurability), ingestConcurrency)));
+    }
+
+    private Flux<IngestResult> ingestBatch(List<Tuple2<Long, Sighting>> batch, Durability durability) {
+        Set<String> birdNames = batch.stream()
+            .filter(record -> validate(record.getT2()) == null)
+            .map(record -> record.getT2().getBird().getName())
+            .collect(Collectors.toSet());
+
+        return instrumentation.timed("BirdCache", "findAllById", birdCache.findAllById(birdNames))
+            .flatMapMany(birds -> {
+                IngestResult[] results = new IngestResult[batch.size()];
+                List<Sighting> accepted = new ArrayList<>(batch.size());
+                List<Integer> acceptedPositions = new ArrayList<>(batch.size());
+                for (int position = 0; position < batch.size(); position++) {
+                    long index = batch.get(position).getT1();
+                    Sighting sighting = batch.get(position).getT2();
+                    String invalid = validate(sighting);
+                    if (invalid != null) {
+                        results[position] = IngestResult.rejected(index, invalid);
+                        continue;
+                    }
+                    Bird existingBird = birds.get(sighting.getBird().getName());
+                    if (existingBird == null) {
+                        results[position] = IngestResult.rejected(index, "Bird not found. Cannot add sighting.");
+                        continue;
+                    }
+                    sighting.setBird(existingBird);
+                    accepted.add(sighting);
+                    acceptedPositions.add(position);
+                }
+                return idempotencyKeys.findOriginals(accepted)
+                    .flatMapMany(originals -> storeBatch(batch, results, accepted, acceptedPositions, originals,
+                        durability));
+            });
+    }
+
+    // Request bodies may miss required properties, see Sighting
+    private static String validate(Sighting sighting) {
+        if (sighting.getBird() == null || sighting.getBird().getName() == null) {
+            return "Invalid bird. The bird name is required.";
+        }
+        if (sighting.getLocation() == null) {
+            return "Invalid location. The location is required.";
+        }
+        if (sighting.getDate() == null) {
+            return "Invalid date. The date is required.";
+        }
+        String key = sighting.getIdempotencyKey();
+        if (key != null && key.startsWith(SightingImport.KEY_PREFIX)) {
+            return "Invalid idempotency key. Keys starting with " + SightingImport.KEY_PREFIX + " are reserved.";
+        }
+        return null;
+    }
+
+    private Flux<IngestResult> storeBatch(List<Tuple2<Long, Sighting>> batch, IngestResult[] results,
+                                          List<Sighting> accepted, List<Integer> acceptedPositions,
+                                          Map<String, Sighting> originals, Durability durability) {
+        // Records replaying an already stored key are answered with the original instead of being inserted
+        List<Sighting> inserts = new ArrayList<>(accepted.size());
+        List<Integer> insertPositions = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            Sighting sighting = accepted.get(i);
+            int position = acceptedPositions.get(i);
+            Sighting original = originals.get(sighting.getIdempotencyKey());
+            if (original != null) {
+                results[position] = IngestResult.accepted(batch.get(position).getT1(), original.getId());
+            } else {
+                inserts.add(sighting);
+                insertPositions.add(position);
+            }
+        }
+        Mono<Map<Integer, WriteFailure>> insert =
+            sightingRepository.insertUnordered(inserts, durability.getWriteConcern());
+        return admissionControl.measureWrite(insert)
+            .flatMapMany(failures -> idempotencyKeys.resolveReplays(inserts, failures).flatMapMany(replays -> {
+                List<Sighting> stored = new ArrayList<>(inserts.size());
+                for (int i = 0; i < inserts.size(); i++) {
+                    int position = insertPositions.get(i);
+                    long index = batch.get(position).getT1();
+                    WriteFailure failure = failures.get(i);
+                    if (failure == null) {
+                        stored.add(inserts.get(i));
+                        results[position] = IngestResult.accepted(index, inserts.get(i).getId());
+                    } else if (replays.containsKey(i)) {
+                        results[position] = IngestResult.accepted(index, replays.get(i).getId());
+                    } else {
+                        results[position] = IngestResult.rejected(index, failure.getMessage());
+                    }
+                }
+                idempotencyKeys.remember(stored);
+                idempotencyKeys.remember(replays.values());
+                return sightingStatsService.recordAdded(stored)
+                    .thenMany(Flux.fromArray(results));
+            }));
     }
 
     /**
-     * Retrieves sightings by a specific bird.
+     * Retrieves one page of all sightings, ordered by date.
      *
-     * @param bird the bird to filter sightings by
-     * @return a Flux containing the sightings of the specified bird
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @param fields the comma-separated fields to return, or null for whole sightings
+     * @return a Mono containing the page of sightings
      */
-    public Flux<Sighting> getSightingsByBird(Bird bird) {
-        return sightingRepository.findByBird(bird)
+    public Mono<CursorPage<Sighting>> getAllSightings(String after, Integer limit, String fields) {
+        return instrumentation.timed(SERVICE, "getAllSightings", findPage(new SightingFilter(), after, limit, fields));
+    }
+
+    /**
+     * Retrieves one page of the sightings of a specific bird, ordered by date.
+     *
+     * @param birdName the name of the bird to filter sightings by
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @param fields the comma-separated fields to return, or null for whole sightings
+     * @return a Mono containing the page of sightings of the specified bird
+     */
+    public Mono<CursorPage<Sighting>> getSightingsByBird(String birdName, String after, Integer limit, String fields) {
+        return instrumentation.timed(SERVICE, "getSightingsByBird",
+            findExistingPage(SightingFilter.byBird(birdName), after, limit, fields)
             .switchIfEmpty(
                 Mono.error(
                     new ResourceNotFoundException(
                         MessageFormat.format(
                             "Sighting not found. Sighting for bird with name {0} does not exist.",
-                            bird.getName()
+                            birdName
                         )
                     )
                 )
-            );
+            ));
     }
 
     /**
-     * Retrieves sightings by location.
+     * Retrieves one page of the sightings at a location, ordered by date.
      *
      * @param location the location to filter sightings by
-     * @return a Flux containing the sightings at the specified location
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @param fields the comma-separated fields to return, or null for whole sightings
+     * @return a Mono containing the page of sightings at the specified location
      */
-    public Flux<Sighting> getSightingsByLocation(String location) {
-        return sightingRepository.findByLocation(location)
+    public Mono<CursorPage<Sighting>> getSightingsByLocation(String location, String after, Integer limit,
+                                                             String fields) {
+        return instrumentation.timed(SERVICE, "getSightingsByLocation",
+            findExistingPage(SightingFilter.byLocation(location), after, limit, fields)
             .switchIfEmpty(
                 Mono.error(
                     new ResourceNotFoundException(
@@ -95,18 +342,23 @@ public class SightingService {
                         )
                     )
                 )
-            );
+            ));
     }
 
     /**
-     * Retrieves sightings within a date range.
+     * Retrieves one page of the sightings within a date range, ordered by date.
      *
      * @param startDate the start date of the range
      * @param endDate the end date of the range
-     * @return a Flux containing the sightings within the specified date range
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @param fields the comma-separated fields to return, or null for whole sightings
+     * @return a Mono containing the page of sightings within the specified date range
      */
-    public Flux<Sighting> getSightingsByDateBetween(LocalDate startDate, LocalDate endDate) {
-        return sightingRepository.findByDateBetween(startDate, endDate)
+    public Mono<CursorPage<Sighting>> getSightingsByDateBetween(LocalDate startDate, LocalDate endDate,
+                                                                String after, Integer limit, String fields) {
+        return instrumentation.timed(SERVICE, "getSightingsByDateBetween",
+            findExistingPage(SightingFilter.byDateBetween(startDate, endDate), after, limit, fields)
             .switchIfEmpty(
                 Mono.error(
                     new ResourceNotFoundException(
@@ -117,7 +369,122 @@ public class SightingService {
                         )
                     )
                 )
-            );
+            ));
+    }
+
+    /**
+     * Retrieves the sightings within a radius of a point, nearest first, optionally within a date range.
+     *
+     * @param point the center of the search
+     * @param radiusKm the search radius in kilometers
+     * @param startDate the start date of the range, or null
+     * @param endDate the end date of the range, or null
+     * @param limit the maximum number of sightings, or null for the default page size
+     * @return a Flux containing the sightings ordered by distance
+     */
+    public Flux<Sighting> getSightingsNear(GeoJsonPoint point, double radiusKm, LocalDate startDate, LocalDate endDate,
+                                           Integer limit) {
+        if (radiusKm <= 0) {
+            throw new InvalidRequestException("Invalid radius. The radius must be greater than 0.");
+        }
+        SightingFilter filter = SightingFilter.byDateBetween(startDate, endDate);
+        filter.setQueryRead(true);
+        return instrumentation.timed(SERVICE, "getSightingsNear", admissionControl.read(
+            sightingRepository.findNear(filter, point, radiusKm * 1000, pagination.pageSize(limit))
+        ));
+    }
+
+    /**
+     * Retrieves one page of the sightings within an area, ordered by date, optionally within a date range.
+     *
+     * @param area the area to search
+     * @param startDate the start date of the range, or null
+     * @param endDate the end date of the range, or null
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size, or null for the default
+     * @param fields the comma-separated fields to return, or null for whole sightings
+     * @return a Mono containing the page of sightings within the area
+     */
+    public Mono<CursorPage<Sighting>> getSightingsWithin(GeoJsonPolygon area, LocalDate startDate, LocalDate endDate,
+                                                         String after, Integer limit, String fields) {
+        return instrumentation.timed(SERVICE, "getSightingsWithin",
+            findPage(SightingFilter.byArea(area, startDate, endDate), after, limit, fields));
+    }
+
+    /**
+     * Follows newly added sightings as they are stored, optionally filtered.
+     * The bounding box applies to sightings with a position; all four edges must be given for it to apply.
+     *
+     * @param birdName the bird name to match, or null
+     * @param location the location to match, or null
+     * @param minLng the western edge of the box, or null
+     * @param minLat the southern edge of the box, or null
+     * @param maxLng the eastern edge of the box, or null
+     * @param maxLat the northern edge of the box, or null
+     * @return an endless Flux of new sightings
+     */
+    public Flux<Sighting> liveSightings(String birdName, String location,
+                                        Double minLng, Double minLat, Double maxLng, Double maxLat) {
+        Predicate<Sighting> filter = sighting -> true;
+        if (birdName != null) {
+            filter = filter.and(sighting -> birdName.equals(sighting.getBird().getName()));
+        }
+        if (location != null) {
+            filter = filter.and(sighting -> location.equals(sighting.getLocation()));
+        }
+        if (minLng != null && minLat != null && maxLng != null && maxLat != null) {
+            filter = filter.and(sighting -> sighting.getPosition() != null
+                && sighting.getPosition().getX() >= minLng && sighting.getPosition().getX() <= maxLng
+                && sighting.getPosition().getY() >= minLat && sighting.getPosition().getY() <= maxLat);
+        }
+        return sightingFeed.sightings(filter);
+    }
+
+    /**
+     * Streams all sightings matching a filter, ordered by date.
+     * Records are pulled from the MongoDB cursor in batches as the client consumes them, so memory use
+     * does not depend on the size of the result. An empty result ends the stream without records. Like the pages,
+     * it is a query read, which {@link com.project.birdSightings.repository.ReadRouting} may send to a secondary.
+     *
+     * @param filter the conditions to match, and the fields to return if only some are needed
+     * @param after the cursor to resume after, or null to start from the beginning
+     * @return a Flux containing the matching sightings
+     */
+    public Flux<Sighting> streamSightings(SightingFilter filter, String after) {
+        filter.setQueryRead(true);
+        return instrumentation.timed(SERVICE, "streamSightings",
+            admissionControl.read(
+                sightingRepository.stream(filter, pagination.decodeSightingCursor(after), streamBatchSize)
+            ).limitRate(streamBatchSize));
+    }
+
+    private Mono<CursorPage<Sighting>> findPage(SightingFilter filter, String after, Integer limit, String fields) {
+        return findPage(filter, after, limit, fields, true);
+    }
+
+    // An empty first page is a 404, so when query reads may lag the writes, a current read confirms it
+    private Mono<CursorPage<Sighting>> findExistingPage(SightingFilter filter, String after, Integer limit,
+                                                        String fields) {
+        return findPage(filter, after, limit, fields, true)
+            .filter(found -> after != null || !found.getItems().isEmpty())
+            .switchIfEmpty(Mono.defer(() -> sightingRepository.queryReadsMayLag()
+                ? findPage(filter, null, limit, fields, false).filter(found -> !found.getItems().isEmpty())
+                : Mono.empty()));
+    }
+
+    private Mono<CursorPage<Sighting>> findPage(SightingFilter filter, String after, Integer limit, String fields,
+                                                boolean queryRead) {
+        int pageSize = pagination.pageSize(limit);
+        SightingCursor cursor = pagination.decodeSightingCursor(after);
+        filter.setFields(SightingFields.parse(fields));
+        filter.setQueryRead(queryRead);
+        Flux<Sighting> page = sightingRangeCache.covers(filter)
+            ? sightingRangeCache.findPage(filter, cursor, pageSize + 1)
+            : sightingRepository.findPage(filter, cursor, pageSize + 1);
+        return admissionControl.read(page.collectList())
+            .map(sightings -> CursorPage.of(
+                sightings, pageSize, last -> pagination.encodeSightingCursor(SightingCursor.after(last))
+            ));
     }
 
     /**
@@ -127,6 +494,8 @@ public class SightingService {
      * @return a Mono indicating when the deletion is complete
      */
     public Mono<Void> deleteSighting(String id) {
-        return sightingRepository.deleteById(id);
+        return instrumentation.timed(SERVICE, "deleteSighting",
+            admissionControl.write(sightingRepository.removeById(id))
+                .flatMap(deleted -> sightingStatsService.recordDeleted(Collections.singletonList(deleted))));
     }
 }
\ No newline at end of file
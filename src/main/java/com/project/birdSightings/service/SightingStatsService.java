@@ -0,0 +1,103 @@
+package com.project.birdSightings.service;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import com.project.birdSightings.repository.SightingRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Service class for sighting statistics.
+ * Counts are served from rollups that are updated on every sighting write, so dashboard queries do not
+ * scan the raw sightings. The raw sightings can still be aggregated directly when needed.
+ * Since every sighting write reports here, this is also where the {@link DataVersions} of the sightings move on
+ * and where the {@link SightingRangeCache} drops the days and months that changed.
+ */
+@Service
+public class SightingStatsService {
+    private static final Logger log = LoggerFactory.getLogger(SightingStatsService.class);
+
+    @Autowired
+    private SightingRollupRepository sightingRollupRepository;
+
+    @Autowired
+    private DataVersions dataVersions;
+
+    @Autowired
+    private SightingRangeCache sightingRangeCache;
+
+    /**
+     * Counts sightings grouped by the given dimensions.
+     *
+     * @param groupBy the dimensions to group by; an empty set gives a single total
+     * @param startDate the first day to count, or null for no lower bound
+     * @param endDate the last day to count, or null for no upper bound
+     * @param raw true to aggregate the raw sightings instead of the rollups
+     * @return a Flux containing one count per group
+     */
+    public Flux<SightingStat> getStats(Set<StatDimension> groupBy, LocalDate startDate, LocalDate endDate, boolean raw) {
+        if (groupBy.stream().filter(StatDimension::isPeriod).count() > 1) {
+            throw new InvalidRequestException("Invalid grouping. Group by at most one of day, week and month.");
+        }
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new InvalidRequestException("Invalid date range. The start date is after the end date.");
+        }
+        return raw
+            ? sightingRollupRepository.aggregateSightings(groupBy, startDate, endDate)
+            : sightingRollupRepository.aggregate(groupBy, startDate, endDate);
+    }
+
+    /**
+     * Rebuilds the rollups from the raw sightings, for example after rollup updates failed.
+     *
+     * @return a Mono indicating when the rollups are rebuilt
+     */
+    public Mono<Void> rebuildRollups() {
+        return sightingRollupRepository.rebuild();
+    }
+
+    /**
+     * Counts stored sightings into the rollups.
+     * A failed rollup update is logged rather than failing the write that triggered it.
+     *
+     * @param sightings the sightings that were stored
+     * @return a Mono indicating when the rollups are updated
+     */
+    public Mono<Void> recordAdded(Collection<Sighting> sightings) {
+        return update(sightings, 1);
+    }
+
+    /**
+     * Removes deleted sightings from the rollups.
+     * A failed rollup update is logged rather than failing the delete that triggered it.
+     *
+     * @param sightings the sightings that were deleted
+     * @return a Mono indicating when the rollups are updated
+     */
+    public Mono<Void> recordDeleted(Collection<Sighting> sightings) {
+        return update(sightings, -1);
+    }
+
+    private Mono<Void> update(Collection<Sighting> sightings, int delta) {
+        return sightingRollupRepository.increment(sightings, delta)
+            .onErrorResume(error -> {
+                log.warn("Could not update sighting rollups; rebuild them to resynchronize the statistics", error);
+                return Mono.empty();
+            })
+            .then(Mono.fromRunnable(() -> {
+                // Invalidate first, so a reader that sees the new version cannot be served the old segments
+                sightingRangeCache.invalidate(sightings);
+                dataVersions.sightingsChanged(sightings);
+            }));
+    }
+}
@@ -0,0 +1,130 @@
+package com.project.birdSightings.birds;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.repository.BirdRepository;
+import com.project.birdSightings.service.BirdCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BirdCacheTests {
+
+    @Mock
+    private BirdRepository birdRepository;
+
+    @InjectMocks
+    private BirdCache birdCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(birdCache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(birdCache, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(birdCache, "negativeTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.invokeMethod(birdCache, "init");
+    }
+
+    @Test
+    void findByIdLoadsOnceAndServesFromMemory() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        when(birdRepository.findById("Sparrow")).thenReturn(Mono.just(bird));
+
+        StepVerifier.create(birdCache.findById("Sparrow")).expectNext(bird).verifyComplete();
+        StepVerifier.create(birdCache.findById("Sparrow")).expectNext(bird).verifyComplete();
+
+        verify(birdRepository, times(1)).findById("Sparrow");
+        assertEquals(1, birdCache.stats().hitCount());
+        assertEquals(1, birdCache.stats().missCount());
+    }
+
+    @Test
+    void findByIdCachesMissingBirds() {
+        when(birdRepository.findById("Dodo")).thenReturn(Mono.empty());
+
+        StepVerifier.create(birdCache.findById("Dodo")).verifyComplete();
+        StepVerifier.create(birdCache.findById("Dodo")).verifyComplete();
+
+        verify(birdRepository, times(1)).findById("Dodo");
+    }
+
+    @Test
+    void putAndInvalidateKeepEntriesCurrent() {
+        Bird bird = new Bird("Robin", "Red", "4.5", "0.8");
+        when(birdRepository.findById("Robin")).thenReturn(Mono.empty());
+
+        birdCache.put(bird);
+        StepVerifier.create(birdCache.findById("Robin")).expectNext(bird).verifyComplete();
+        verify(birdRepository, never()).findById("Robin");
+
+        birdCache.invalidate("Robin");
+        StepVerifier.create(birdCache.findById("Robin")).verifyComplete();
+        verify(birdRepository, times(1)).findById("Robin");
+    }
+
+    @Test
+    void invalidateDiscardsALoadInFlight() {
+        Bird bird = new Bird("Robin", "Red", "4.5", "0.8");
+        Sinks.One<Bird> loading = Sinks.one();
+        when(birdRepository.findById("Robin")).thenReturn(loading.asMono(), Mono.empty());
+
+        StepVerifier.create(birdCache.findById("Robin"))
+            .then(() -> {
+                // The bird is deleted while it is being read
+                birdCache.invalidate("Robin");
+                loading.tryEmitValue(bird);
+            })
+            .expectNext(bird)
+            .verifyComplete();
+
+        StepVerifier.create(birdCache.findById("Robin")).verifyComplete();
+        verify(birdRepository, times(2)).findById("Robin");
+    }
+
+    @Test
+    void findAllByIdOnlyQueriesMisses() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Bird robin = new Bird("Robin", "Red", "4.5", "0.8");
+        birdCache.put(sparrow);
+        when(birdRepository.findAllById(anyIterable())).thenReturn(Flux.just(robin));
+
+        StepVerifier.create(birdCache.findAllById(Arrays.asList("Sparrow", "Robin", "Dodo")))
+            .expectNextMatches(birds -> birds.size() == 2 && birds.get("Robin") == robin)
+            .verifyComplete();
+        StepVerifier.create(birdCache.findAllById(Arrays.asList("Sparrow", "Robin", "Dodo")))
+            .expectNextMatches(birds -> birds.size() == 2)
+            .verifyComplete();
+
+        verify(birdRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void bindToPublishesCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        when(birdRepository.findById("Sparrow")).thenReturn(Mono.just(new Bird("Sparrow", "Brown", "3.5", "0.5")));
+
+        birdCache.bindTo(registry);
+        StepVerifier.create(birdCache.findById("Sparrow")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(birdCache.findById("Sparrow")).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, registry.get("cache.gets").tags("cache", "birds", "result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tags("cache", "birds", "result", "miss").functionCounter().count());
+    }
+}
@@ -0,0 +1,74 @@
+package com.project.birdSightings.birds;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.service.BirdNameIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BirdNameIndexTests {
+
+    private BirdNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BirdNameIndex();
+        index.put(new Bird("Sparrow", "Brown", "3.5", "0.5"));
+        index.put(new Bird("Sparrowhawk", "Grey", "20", "3"));
+        index.put(new Bird("Spoonbill", "White", "150", "80"));
+        index.put(new Bird("Robin", "Red", "4.5", "0.8"));
+        index.put(new Bird("Rook", "Black", "40", "5"));
+        index.put(new Bird("\u00c9meu", "Brown", "3000", "170"));
+    }
+
+    @Test
+    void suggestsNamesStartingWithThePrefixIgnoringCaseAndAccents() {
+        assertEquals(List.of("Sparrow", "Sparrowhawk"), names(index.suggest("SPAR", null, 10, false)));
+        assertEquals(List.of("Sparrow", "Sparrowhawk", "Spoonbill"), names(index.suggest("sp", null, 10, false)));
+        assertEquals(List.of("\u00c9meu"), names(index.suggest("eme", null, 10, false)));
+        assertTrue(index.suggest("sparx", null, 10, false).isEmpty());
+    }
+
+    @Test
+    void filtersByColorIgnoringCaseAndStopsAtTheLimit() {
+        assertEquals(List.of("Sparrowhawk"), names(index.suggest("spa", "grey", 10, false)));
+        assertEquals(List.of("\u00c9meu", "Sparrow"), names(index.suggest("", "BROWN", 10, false)));
+        assertEquals(List.of("Robin"), names(index.suggest("r", null, 1, false)));
+    }
+
+    @Test
+    void fuzzySuggestionsTolerateTyposAfterThePrefixMatches() {
+        assertTrue(index.suggest("spqr", null, 10, false).isEmpty());
+        assertEquals(List.of("Sparrow", "Sparrowhawk"), names(index.suggest("spqr", null, 10, true)));
+        assertEquals(List.of("Robin"), names(index.suggest("robn", null, 10, true)));
+        // Exact prefix matches come first and are not repeated
+        assertEquals(List.of("Rook", "Robin"), names(index.suggest("roo", null, 10, true)));
+        // Two edits are allowed from six characters on
+        assertEquals(List.of("Sparrowhawk"), names(index.suggest("sparowhwk", null, 10, true)));
+        // Short queries are only matched exactly
+        assertTrue(index.suggest("rb", null, 10, true).isEmpty());
+    }
+
+    @Test
+    void updatesWithAddsAndDeletes() {
+        index.remove("Sparrow");
+        index.put(new Bird("Robin", "Orange", "4.5", "0.8"));
+
+        assertEquals(List.of("Sparrowhawk"), names(index.suggest("spar", null, 10, false)));
+        assertEquals("Orange", index.suggest("robin", null, 10, false).get(0).getColor());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        index.bindTo(registry);
+        assertEquals(5, registry.get("birds.autocomplete.size").gauge().value());
+    }
+
+    private static List<String> names(List<Bird> birds) {
+        return birds.stream().map(Bird::getName).collect(Collectors.toList());
+    }
+}
@@ -1,18 +1,50 @@
 package com.project.birdSightings.birds;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.birdSightings.controller.BirdController;
+import com.project.birdSightings.metrics.Instrumentation;
 import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.CursorPage;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.FacetedBirds;
 import com.project.birdSightings.service.BirdService;
+import com.project.birdSightings.service.DataVersions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class BirdTests {
@@ -20,12 +52,19 @@ class BirdTests {
     @Mock
     private BirdService birdService;
 
+    @Spy
+    private Instrumentation instrumentation = new Instrumentation();
+
+    @Spy
+    private DataVersions dataVersions = new DataVersions();
+
     @InjectMocks
     private BirdController birdController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(instrumentation, "meterRegistry", new SimpleMeterRegistry());
     }
 
     @Test
@@ -44,9 +83,85 @@ class BirdTests {
     void getAllBirdsSuccessfully() {
         Bird bird1 = new Bird("Sparrow", "Brown", "3.5", "0.5");
         Bird bird2 = new Bird("Robin", "Red", "4.5", "0.8");
-        when(birdService.getAllBirds()).thenReturn(Flux.just(bird1, bird2));
+        when(birdService.getAllBirds(null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(bird1, bird2), null)));
+
+        Mono<ResponseEntity<List<Bird>>> result = birdController.getAllBirds(null, null, get("/api/bird"));
+
+        StepVerifier.create(result)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(bird1, bird2))
+                && !response.getHeaders().containsKey("Next-Cursor"))
+            .verifyComplete();
+    }
+
+    @Test
+    void getAllBirdsAnswersNotModifiedWithoutReadingUntilABirdChanges() {
+        ReflectionTestUtils.setField(dataVersions, "enabled", true);
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        when(birdService.getAllBirds(null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.singletonList(bird), null)));
+
+        ResponseEntity<List<Bird>> first = birdController.getAllBirds(null, null, get("/api/bird")).block();
+        String eTag = first.getHeaders().getETag();
+        ResponseEntity<List<Bird>> repeated = birdController.getAllBirds(null, null, get("/api/bird", eTag)).block();
+        dataVersions.birdsChanged();
+        System.out.println("DBG " + dataVersions.birds().getLastModified() + " " + Instant.now());
+        ResponseEntity<List<Bird>> changed = birdController.getAllBirds(null, null, get("/api/bird", eTag)).block();
+
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNotNull(eTag);
+        assertEquals(bird.getName(), first.getBody().get(0).getName());
+        assertEquals(HttpStatus.NOT_MODIFIED, repeated.getStatusCode());
+        assertEquals(eTag, repeated.getHeaders().getETag());
+        assertNull(repeated.getBody());
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(eTag, changed.getHeaders().getETag());
+        verify(birdService, times(2)).getAllBirds(null, null);
+    }
+
+    @Test
+    void getAllBirdsIsOnlyDatedOnceTheSecondOfItsLastWriteIsOver() {
+        ReflectionTestUtils.setField(dataVersions, "enabled", true);
+        when(birdService.getAllBirds(null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.emptyList(), null)));
+        Instant second = Instant.parse("2021-07-01T10:00:00Z");
+        ReflectionTestUtils.setField(dataVersions, "clock", Clock.fixed(second.plusMillis(200), ZoneOffset.UTC));
+
+        dataVersions.birdsChanged();
+        ResponseEntity<List<Bird>> sameSecond =
+            birdController.getAllBirds(null, null, get("/api/bird", second)).block();
+        ReflectionTestUtils.setField(dataVersions, "clock", Clock.fixed(second.plusSeconds(1), ZoneOffset.UTC));
+        ResponseEntity<List<Bird>> nextSecond =
+            birdController.getAllBirds(null, null, get("/api/bird", second)).block();
+
+        assertEquals(HttpStatus.OK, sameSecond.getStatusCode());
+        assertEquals(-1, sameSecond.getHeaders().getLastModified());
+        assertNotNull(sameSecond.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, nextSecond.getStatusCode());
+        assertEquals(second.toEpochMilli(), nextSecond.getHeaders().getLastModified());
+    }
+
+    @Test
+    void getAllBirdsReturnsNextCursor() {
+        Bird bird1 = new Bird("Robin", "Red", "4.5", "0.8");
+        when(birdService.getAllBirds(null, 1))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.singletonList(bird1), "Um9iaW4")));
+
+        Mono<ResponseEntity<List<Bird>>> result = birdController.getAllBirds(null, 1, get("/api/bird"));
+
+        StepVerifier.create(result)
+            .expectNextMatches(response -> response.getBody().equals(Collections.singletonList(bird1))
+                && "Um9iaW4".equals(response.getHeaders().getFirst("Next-Cursor")))
+            .verifyComplete();
+    }
+
+    @Test
+    void streamAllBirdsSuccessfully() {
+        Bird bird1 = new Bird("Robin", "Red", "4.5", "0.8");
+        Bird bird2 = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        when(birdService.streamBirds()).thenReturn(Flux.just(bird1, bird2));
 
-        Flux<Bird> result = birdController.getAllBirds();
+        Flux<Bird> result = birdController.streamAllBirds();
 
         StepVerifier.create(result)
             .expectNext(bird1)
@@ -80,33 +195,97 @@ class BirdTests {
     void getBirdByColorSuccessfully() {
         Bird bird1 = new Bird("Sparrow", "Brown", "3.5", "0.5");
         Bird bird2 = new Bird("Robin", "Red", "4.5", "0.8");
-        when(birdService.findBirdByColor("Brown")).thenReturn(Flux.just(bird1, bird2));
+        when(birdService.findBirdByColor("Brown", null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(bird1, bird2), null)));
 
-        Flux<Bird> result = birdController.getBirdByColor("Brown");
+        Mono<ResponseEntity<List<Bird>>> result =
+            birdController.getBirdByColor("Brown", null, null, get("/api/bird/color/Brown"));
 
         StepVerifier.create(result)
-            .expectNext(bird1)
-            .expectNext(bird2)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(bird1, bird2)))
             .verifyComplete();
     }
 
     @Test
     void getBirdByColorNotFound() {
-        when(birdService.findBirdByColor("NonExistentColor")).thenReturn(Flux.empty());
+        when(birdService.findBirdByColor("NonExistentColor", null, null)).thenReturn(Mono.empty());
 
-        Flux<Bird> result = birdController.getBirdByColor("NonExistentColor");
+        Mono<ResponseEntity<List<Bird>>> result = birdController.getBirdByColor(
+            "NonExistentColor", null, null, get("/api/bird/color/NonExistentColor")
+        );
 
         StepVerifier.create(result)
             .verifyComplete();
     }
 
+    @Test
+    void searchBirdsWithFacets() {
+        Bird bird = new Bird("Sparrow", "Brown", "25", "15");
+        FacetedBirds result = new FacetedBirds(
+            Collections.singletonList(bird), 3,
+            Collections.singletonList(new FacetedBirds.ValueCount("Brown", 3)),
+            Collections.singletonList(new FacetedBirds.RangeCount(20, 40, 3)),
+            Collections.singletonList(new FacetedBirds.RangeCount(10, 20, 3)),
+            "next-cursor"
+        );
+        ArgumentCaptor<BirdSearch> search = ArgumentCaptor.forClass(BirdSearch.class);
+        when(birdService.searchBirds(search.capture(), eq(null), eq(1))).thenReturn(Mono.just(result));
+
+        Mono<ResponseEntity<FacetedBirds>> response = birdController.searchBirds(
+            "Brown", 20.0, 40.0, null, null, null, 1, get("/api/bird/search")
+        );
+
+        StepVerifier.create(response)
+            .assertNext(entity -> {
+                assertEquals(result, entity.getBody());
+                assertEquals("next-cursor", entity.getHeaders().getFirst("Next-Cursor"));
+            })
+            .verifyComplete();
+        assertEquals("Brown", search.getValue().getColor());
+        assertEquals(20.0, search.getValue().getMinWeight());
+        assertEquals(40.0, search.getValue().getMaxWeight());
+        assertNull(search.getValue().getMinHeight());
+    }
+
+    @Test
+    void measurementsAreNumbersAndAcceptedAsText() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Bird bird = objectMapper.readValue(
+            "{\"name\":\"Sparrow\",\"color\":\"Brown\",\"weight\":\"3.5\",\"height\":0.5}", Bird.class
+        );
+
+        assertEquals(3.5, bird.getWeight());
+        assertEquals(0.5, bird.getHeight());
+        assertEquals(3.5, new Bird("Sparrow", "Brown", "3.5", null).getWeight());
+        assertNull(new Bird("Sparrow", "Brown", "3.5", null).getHeight());
+    }
+
+    @Test
+    void autocompleteBirds() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        when(birdService.autocomplete("spa", null, 5, true)).thenReturn(Mono.just(Collections.singletonList(bird)));
+
+        Mono<List<Bird>> result = birdController.autocomplete("spa", null, 5, true);
+
+        StepVerifier.create(result)
+            .expectNext(Collections.singletonList(bird))
+            .verifyComplete();
+    }
+
     @Test
     void deleteBirdSuccessfully() {
-        when(birdService.deleteBird("Sparrow")).thenReturn(Mono.empty());
+        DeletionJob job = new DeletionJob("job-1", DeletionJob.Kind.CASCADE, "Sparrow");
+        when(birdService.deleteBird("Sparrow")).thenReturn(Mono.just(job));
 
-        Mono<Void> result = birdController.deleteBird("Sparrow");
+        Mono<ResponseEntity<DeletionJob>> result = birdController.deleteBird("Sparrow");
 
         StepVerifier.create(result)
+            .assertNext(response -> {
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                assertEquals(URI.create("/api/sighting/jobs/job-1"), response.getHeaders().getLocation());
+                assertEquals(job, response.getBody());
+            })
             .verifyComplete();
     }
 
@@ -114,9 +293,25 @@ class BirdTests {
     void deleteBirdNotFound() {
         when(birdService.deleteBird("NonExistentBird")).thenReturn(Mono.empty());
 
-        Mono<Void> result = birdController.deleteBird("NonExistentBird");
+        Mono<ResponseEntity<DeletionJob>> result = birdController.deleteBird("NonExistentBird");
 
         StepVerifier.create(result)
             .verifyComplete();
     }
-}
\ No newline at end of file
+
+    private static ServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private static ServerWebExchange get(String path, Instant ifModifiedSince) {
+        return MockServerWebExchange.from(
+            MockServerHttpRequest.get(path).ifModifiedSince(ifModifiedSince.toEpochMilli())
+        );
+    }
+
+    private static ServerWebExchange get(String path, String ifNoneMatch) {
+        return MockServerWebExchange.from(
+            MockServerHttpRequest.get(path).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+        );
+    }
+}
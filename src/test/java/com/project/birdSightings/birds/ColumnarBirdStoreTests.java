@@ -0,0 +1,108 @@
+package com.project.birdSightings.birds;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.BirdSearch;
+import com.project.birdSightings.model.FacetedBirds;
+import com.project.birdSightings.repository.ColumnarBirdStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarBirdStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private ColumnarBirdStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+        for (Bird bird : Arrays.asList(
+            new Bird("Sparrow", "Brown", "3.5", "0.5"),
+            new Bird("Robin", "Red", "2.5", "0.2"),
+            new Bird("Cardinal", "Red", "4.5", null),
+            new Bird("Wren", "Brown", "1.0", "0.1"),
+            new Bird("Kite", "Brown", null, "0.6")
+        )) {
+            store.save(bird).block();
+        }
+    }
+
+    @Test
+    void findsPagesInNameOrder() {
+        assertEquals(List.of("Kite", "Robin"),
+            names(store.findByNameGreaterThanOrderByNameAsc("Cardinal", PageRequest.of(0, 2))));
+        assertEquals(List.of("Kite", "Sparrow", "Wren"),
+            names(store.findByColorAndNameGreaterThanOrderByNameAsc("Brown", "", Pageable.unpaged())));
+        assertEquals(List.of("Robin"), names(store.findAllById(List.of("Robin", "Dodo"))));
+
+        store.deleteById("Robin").block();
+        assertNull(store.findById("Robin").block());
+        assertEquals(List.of("Cardinal"),
+            names(store.findByColorAndNameGreaterThanOrderByNameAsc("Red", "", Pageable.unpaged())));
+    }
+
+    @Test
+    void searchCountsColorsAndRangesOfAllMatchingBirds() {
+        BirdSearch search = new BirdSearch();
+        search.setMinWeight(1.0);
+
+        FacetedBirds found = store.search(search, "Cardinal", 2, 2).block();
+
+        assertEquals(List.of("Robin", "Sparrow"), found.getBirds().stream().map(Bird::getName)
+            .collect(Collectors.toList()));
+        assertEquals(4, found.getTotal());
+        assertEquals("Brown", found.getColors().get(0).getValue());
+        assertEquals(2, found.getColors().get(0).getCount());
+        assertEquals(2, found.getWeights().size());
+        assertEquals(1.0, found.getWeights().get(0).getMin());
+        assertEquals(3.5, found.getWeights().get(0).getMax());
+        assertEquals(2, found.getWeights().get(0).getCount());
+        assertEquals(4.5, found.getWeights().get(1).getMax());
+        // The cardinal has no height, so only three birds fall into the height ranges
+        assertEquals(3, found.getHeights().stream().mapToLong(FacetedBirds.RangeCount::getCount).sum());
+    }
+
+    @Test
+    void snapshotIsReadBackOnStartup() {
+        ReflectionTestUtils.invokeMethod(store, "stop");
+        assertTrue(Files.exists(directory.resolve("birds.snapshot")));
+
+        ColumnarBirdStore reloaded = newStore();
+
+        assertEquals(List.of("Cardinal", "Kite", "Robin", "Sparrow", "Wren"), names(reloaded.findAll()));
+        Bird kite = reloaded.findById("Kite").block();
+        assertNull(kite.getWeight());
+        assertEquals(0.6, kite.getHeight());
+    }
+
+    private ColumnarBirdStore newStore() {
+        ColumnarBirdStore created = new ColumnarBirdStore();
+        ReflectionTestUtils.setField(created, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(created, "snapshotFile", directory.resolve("birds.snapshot").toString());
+        ReflectionTestUtils.setField(created, "snapshotInterval", Duration.ZERO);
+        ReflectionTestUtils.invokeMethod(created, "init");
+        return created;
+    }
+
+    private static List<String> names(Flux<Bird> birds) {
+        return birds.map(Bird::getName).collectList().block();
+    }
+}
@@ -0,0 +1,128 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.MongoTimeoutException;
+import com.project.birdSightings.errorHandling.ServiceOverloadedException;
+import com.project.birdSightings.service.AdaptiveLimit;
+import com.project.birdSightings.service.AdmissionControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTests {
+
+    private AdmissionControl admissionControl;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        admissionControl = new AdmissionControl();
+        ReflectionTestUtils.setField(admissionControl, "meterRegistry", registry);
+        ReflectionTestUtils.setField(admissionControl, "enabled", true);
+        ReflectionTestUtils.setField(admissionControl, "readInitialLimit", 2);
+        ReflectionTestUtils.setField(admissionControl, "readMinLimit", 1);
+        ReflectionTestUtils.setField(admissionControl, "readMaxLimit", 4);
+        ReflectionTestUtils.setField(admissionControl, "readLatencyThreshold", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(admissionControl, "writeInitialLimit", 2);
+        ReflectionTestUtils.setField(admissionControl, "writeMinLimit", 1);
+        ReflectionTestUtils.setField(admissionControl, "writeMaxLimit", 4);
+        ReflectionTestUtils.setField(admissionControl, "writeLatencyThreshold", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(admissionControl, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(admissionControl, "retryAfter", Duration.ofSeconds(2));
+        ReflectionTestUtils.invokeMethod(admissionControl, "init");
+    }
+
+    @Test
+    void rejectsCallsOverTheLimitWithTooManyRequests() {
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        admissionControl.write(first.asMono()).subscribe();
+        admissionControl.write(second.asMono()).subscribe();
+
+        StepVerifier.create(admissionControl.write(Mono.just("third")))
+            .expectErrorSatisfies(error -> {
+                ServiceOverloadedException overloaded = (ServiceOverloadedException) error;
+                assertEquals(HttpStatus.TOO_MANY_REQUESTS, overloaded.getStatus());
+                assertEquals(Duration.ofSeconds(2), overloaded.getRetryAfter());
+            })
+            .verify();
+        // Reads have their own budget
+        StepVerifier.create(admissionControl.read(Mono.just("read"))).expectNext("read").verifyComplete();
+
+        first.tryEmitValue("first");
+        StepVerifier.create(admissionControl.write(Mono.just("fourth"))).expectNext("fourth").verifyComplete();
+        assertEquals(1, registry.get("birds.admission.rejected").tag("budget", "write").functionCounter().count());
+    }
+
+    @Test
+    void streamsHoldTheirSlotUntilTheyEnd() {
+        Sinks.Many<String> stream = Sinks.many().unicast().onBackpressureBuffer();
+        admissionControl.read(stream.asFlux()).subscribe();
+        admissionControl.read(Flux.never()).subscribe();
+
+        StepVerifier.create(admissionControl.read(Flux.just("third")))
+            .expectError(ServiceOverloadedException.class)
+            .verify();
+
+        stream.tryEmitNext("first");
+        stream.tryEmitComplete();
+        StepVerifier.create(admissionControl.read(Flux.just("third"))).expectNext("third").verifyComplete();
+    }
+
+    @Test
+    void driverTimeoutsLowerTheLimitAndRejectWithServiceUnavailable() {
+        MongoTimeoutException timeout = new MongoTimeoutException("Timed out waiting for a connection");
+        StepVerifier.create(admissionControl.write(Mono.error(timeout)))
+            .expectError(MongoTimeoutException.class)
+            .verify();
+        assertEquals(1, registry.get("birds.admission.limit").tag("budget", "write").gauge().value());
+
+        Sinks.One<String> pending = Sinks.one();
+        admissionControl.write(pending.asMono()).subscribe();
+        StepVerifier.create(admissionControl.write(Mono.just("second")))
+            .expectErrorSatisfies(error ->
+                assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ServiceOverloadedException) error).getStatus()))
+            .verify();
+    }
+
+    @Test
+    void limitGrowsAdditivelyWhileUsedAndShrinksMultiplicativelyWhenSlow() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveLimit limit = new AdaptiveLimit("test", 4, 1, 8, threshold, 0.5);
+
+        // Fast samples with the limit barely used do not grow it
+        limit.onSample(0, false);
+        assertEquals(4, limit.getLimit());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        for (int i = 0; i < 5; i++) {
+            limit.onSample(threshold / 2, false);
+        }
+        assertEquals(5, limit.getLimit());
+        assertFalse(limit.isDegraded());
+
+        limit.onSample(threshold * 2, false);
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.isDegraded());
+        // A second slow call right after the decrease was admitted under the old limit and does not count again
+        limit.onSample(threshold * 2, false);
+        assertEquals(2, limit.getLimit());
+        assertEquals(1, limit.getRejected());
+    }
+}
@@ -0,0 +1,270 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.ColumnarSightingStore;
+import com.project.birdSightings.service.GeoShapes;
+import com.project.birdSightings.service.SightingFields;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarSightingStoreTests {
+    private static final Bird SPARROW = new Bird("Sparrow", "Brown", "3.5", null);
+    private static final Bird ROBIN = new Bird("Robin", "Red", "2.5", "0.2");
+
+    @TempDir
+    Path directory;
+
+    private ColumnarSightingStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+    }
+
+    @Test
+    void findsPagesByBirdLocationAndDateRangeInDateAndIdOrder() {
+        Sighting first = store(SPARROW, "Park", LocalDate.of(2021, 7, 2));
+        Sighting second = store(ROBIN, "Park", LocalDate.of(2021, 7, 1));
+        Sighting third = store(SPARROW, "Lake", LocalDate.of(2021, 7, 1));
+        Sighting fourth = store(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+
+        assertEquals(ids(second, third, fourth, first), ids(store.findPage(new SightingFilter(), null, 10)));
+        assertEquals(ids(third, fourth, first), ids(store.findPage(SightingFilter.byBird("Sparrow"), null, 10)));
+        assertEquals(ids(second, fourth, first), ids(store.findPage(SightingFilter.byLocation("Park"), null, 10)));
+        assertEquals(ids(second, third, fourth), ids(store.findPage(
+            SightingFilter.byDateBetween(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 1)), null, 10)));
+        assertTrue(ids(store.findPage(SightingFilter.byBird("Owl"), null, 10)).isEmpty());
+
+        SightingFilter sparrowsInThePark = SightingFilter.byBird("Sparrow");
+        sparrowsInThePark.setLocation("Park");
+        assertEquals(ids(fourth, first), ids(store.findPage(sparrowsInThePark, null, 10)));
+
+        // The cursor continues within the day of the last sighting
+        SightingCursor afterThird = SightingCursor.after(third);
+        assertEquals(ids(fourth), ids(store.findPage(new SightingFilter(), afterThird, 1)));
+        assertEquals(ids(fourth, first), ids(store.stream(new SightingFilter(), afterThird, 1)));
+    }
+
+    @Test
+    void readsOnlyTheProjectedFields() {
+        Sighting stored = sighting(ROBIN, "Park", LocalDate.of(2021, 7, 1));
+        stored.setPosition(GeoShapes.point(-73.97, 40.78));
+        store.store(stored, WriteConcern.W1).block();
+
+        SightingFilter filter = new SightingFilter();
+        filter.setFields(SightingFields.parse("bird.name"));
+        Sighting projected = store.findPage(filter, null, 1).blockFirst();
+
+        assertEquals(stored.getId(), projected.getId());
+        assertEquals(stored.getDate(), projected.getDate());
+        assertEquals("Robin", projected.getBird().getName());
+        assertNull(projected.getBird().getColor());
+        assertNull(projected.getLocation());
+        assertNull(projected.getPosition());
+    }
+
+    @Test
+    void rejectsDuplicateKeysAndRemovesSightings() {
+        Sighting keyed = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+        keyed.setIdempotencyKey("key-1");
+        store.store(keyed, WriteConcern.W1).block();
+
+        Sighting retried = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+        retried.setIdempotencyKey("key-1");
+        StepVerifier.create(store.store(retried, WriteConcern.W1))
+            .expectError(DuplicateKeyException.class)
+            .verify();
+        Sighting invalid = sighting(ROBIN, "Lake", LocalDate.of(2021, 7, 2));
+        invalid.setId("not an ObjectId");
+        Map<Integer, WriteFailure> failures = store.insertUnordered(
+            List.of(retried, sighting(ROBIN, "Lake", LocalDate.of(2021, 7, 2)), invalid), WriteConcern.W1
+        ).block();
+        assertEquals(Set.of(0, 2), failures.keySet());
+        assertEquals(WriteFailure.Kind.DUPLICATE_KEY, failures.get(0).getKind());
+        assertEquals(WriteFailure.Kind.INVALID, failures.get(2).getKind());
+        assertEquals(ids(keyed), ids(store.findByIdempotencyKeys(List.of(retried))));
+
+        assertEquals(keyed.getId(), store.removeById(keyed.getId()).block().getId());
+        assertNull(store.removeById(keyed.getId()).block());
+        assertTrue(ids(store.findByIdempotencyKeys(List.of(retried))).isEmpty());
+        assertEquals(1, store.removeBatch(SightingFilter.byBird("Robin"), 10).block().size());
+        assertTrue(store.removeBatch(SightingFilter.byBird("Robin"), 10).block().isEmpty());
+        assertTrue(ids(store.findPage(new SightingFilter(), null, 10)).isEmpty());
+    }
+
+    @Test
+    void clearsIdempotencyKeysByPrefixAndKeepsTheSightings() {
+        Sighting imported = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+        imported.setIdempotencyKey("import:scope:0");
+        Sighting posted = sighting(ROBIN, "Lake", LocalDate.of(2021, 7, 2));
+        posted.setIdempotencyKey("key-1");
+        store.insertUnordered(List.of(imported, posted), WriteConcern.W1).block();
+
+        assertEquals(1L, store.clearIdempotencyKeys("import:scope:").block());
+
+        assertTrue(ids(store.findByIdempotencyKeys(List.of(imported))).isEmpty());
+        assertEquals(ids(posted), ids(store.findByIdempotencyKeys(List.of(posted))));
+        assertEquals(ids(imported, posted), ids(store.findPage(new SightingFilter(), null, 10)));
+        // The key can be used again
+        Sighting again = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 3));
+        again.setIdempotencyKey("import:scope:0");
+        assertEquals(again.getId(), store.store(again, WriteConcern.W1).block().getId());
+    }
+
+    @Test
+    void refusesWriteConcernsItCannotHonour() {
+        Sighting sighting = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+
+        StepVerifier.create(store.store(sighting, WriteConcern.MAJORITY))
+            .expectError(InvalidRequestException.class)
+            .verify();
+        StepVerifier.create(store.insertUnordered(List.of(sighting), WriteConcern.JOURNALED))
+            .expectError(InvalidRequestException.class)
+            .verify();
+        assertTrue(ids(store.findPage(new SightingFilter(), null, 10)).isEmpty());
+
+        ColumnarSightingStore majority = new ColumnarSightingStore();
+        ReflectionTestUtils.setField(majority, "durability", Durability.MAJORITY);
+        assertThrows(IllegalArgumentException.class, () -> ReflectionTestUtils.invokeMethod(majority, "init"));
+    }
+
+    @Test
+    void compactsTheColumnsOnceMostRowsAreDeleted() {
+        List<Sighting> sightings = new ArrayList<>();
+        for (int day = 0; day < 3000; day++) {
+            sightings.add(sighting(day % 2 == 0 ? SPARROW : ROBIN, "Park", LocalDate.of(2020, 1, 1).plusDays(day)));
+        }
+        store.insertUnordered(sightings, WriteConcern.W1).block();
+
+        assertEquals(2000, store.removeBatch(
+            SightingFilter.byDateBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 1).plusDays(1999)), 5000
+        ).block().size());
+
+        List<String> left = ids(store.findPage(SightingFilter.byBird("Robin"), null, 1000));
+        assertEquals(500, left.size());
+        assertEquals(sightings.get(2001).getId(), left.get(0));
+        assertEquals(sightings.get(2001).getId(), store.removeById(sightings.get(2001).getId()).block().getId());
+    }
+
+    @Test
+    void answersNearAreaAndCountQueriesFromTheColumns() {
+        Sighting park = sighting(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+        park.setPosition(GeoShapes.point(-73.97, 40.78));
+        Sighting lake = sighting(ROBIN, "Lake", LocalDate.of(2021, 7, 20));
+        lake.setPosition(GeoShapes.point(-73.96, 40.79));
+        Sighting far = sighting(SPARROW, "Coast", LocalDate.of(2021, 8, 1));
+        far.setPosition(GeoShapes.point(-70.0, 42.0));
+        store.insertUnordered(List.of(park, lake, far), WriteConcern.W1).block();
+        store(ROBIN, "Nowhere", LocalDate.of(2021, 8, 2));
+
+        assertEquals(ids(lake, park), ids(store.findNear(
+            new SightingFilter(), GeoShapes.point(-73.96, 40.79), 5000, 10)));
+        assertEquals(ids(park, lake), ids(store.findPage(SightingFilter.byArea(
+            GeoShapes.box(-74.0, 40.7, -73.9, 40.8), null, null), null, 10)));
+
+        List<SightingStat> counts = store.aggregate(EnumSet.of(StatDimension.BIRD, StatDimension.MONTH), null, null)
+            .collectList().block();
+        Map<String, Long> perBirdAndMonth = counts.stream()
+            .collect(Collectors.toMap(stat -> stat.getBird() + " " + stat.getPeriod(), SightingStat::getCount));
+        assertEquals(Map.of("Sparrow 2021-07", 1L, "Robin 2021-07", 1L, "Sparrow 2021-08", 1L, "Robin 2021-08", 1L),
+            perBirdAndMonth);
+    }
+
+    @Test
+    void takesTheLockOffTheCallingThread() {
+        Sighting stored = store(SPARROW, "Park", LocalDate.of(2021, 7, 1));
+
+        String writer = store.store(sighting(ROBIN, "Lake", LocalDate.of(2021, 7, 2)), WriteConcern.W1)
+            .map(written -> Thread.currentThread().getName()).block();
+        String reader = store.findPage(new SightingFilter(), null, 1)
+            .map(found -> Thread.currentThread().getName()).blockFirst();
+
+        assertTrue(writer.startsWith("boundedElastic"), writer);
+        assertTrue(reader.startsWith("boundedElastic"), reader);
+        assertEquals(stored.getId(), store.removeById(stored.getId()).block().getId());
+    }
+
+    @Test
+    void reloadsTheSnapshotWrittenOnShutdown() {
+        Sighting keyed = sighting(ROBIN, "Park", LocalDate.of(2021, 7, 1));
+        keyed.setIdempotencyKey("key-1");
+        keyed.setPosition(GeoShapes.point(-73.97, 40.78));
+        store.store(keyed, WriteConcern.W1).block();
+        Sighting plain = store(SPARROW, "Lake", LocalDate.of(2021, 6, 30));
+        ReflectionTestUtils.invokeMethod(store, "stop");
+        assertTrue(Files.exists(directory.resolve("sightings.snapshot")));
+
+        ColumnarSightingStore reloaded = newStore();
+        List<Sighting> sightings = reloaded.findPage(new SightingFilter(), null, 10).collectList().block();
+
+        assertEquals(ids(plain, keyed), ids(Flux.fromIterable(sightings)));
+        Sighting robin = sightings.get(1);
+        assertEquals("key-1", robin.getIdempotencyKey());
+        assertEquals(keyed.getPosition(), robin.getPosition());
+        assertEquals(0.2, robin.getBird().getHeight());
+        assertNull(sightings.get(0).getBird().getHeight());
+        assertEquals(ids(keyed), ids(reloaded.findByIdempotencyKeys(List.of(keyed))));
+        StepVerifier.create(reloaded.store(keyed, WriteConcern.W1))
+            .expectError(DuplicateKeyException.class)
+            .verify();
+    }
+
+    private ColumnarSightingStore newStore() {
+        ColumnarSightingStore created = new ColumnarSightingStore();
+        ReflectionTestUtils.setField(created, "durability", Durability.W1);
+        ReflectionTestUtils.setField(created, "snapshotFile", directory.resolve("sightings.snapshot").toString());
+        ReflectionTestUtils.setField(created, "snapshotInterval", Duration.ZERO);
+        ReflectionTestUtils.invokeMethod(created, "init");
+        return created;
+    }
+
+    private Sighting store(Bird bird, String location, LocalDate date) {
+        return store.store(sighting(bird, location, date), WriteConcern.W1).block();
+    }
+
+    private static Sighting sighting(Bird bird, String location, LocalDate date) {
+        Sighting sighting = new Sighting(bird, location, date);
+        sighting.setId(ObjectId.get().toHexString());
+        return sighting;
+    }
+
+    private static List<String> ids(Flux<Sighting> sightings) {
+        return sightings.map(Sighting::getId).collectList().block();
+    }
+
+    private static List<String> ids(Sighting... sightings) {
+        return Arrays.stream(sightings).map(Sighting::getId).collect(Collectors.toList());
+    }
+}
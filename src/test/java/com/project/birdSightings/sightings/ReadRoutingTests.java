@@ -0,0 +1,92 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.project.birdSightings.repository.ReadRouting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadRoutingTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // The client connects lazily, so no MongoDB is needed as long as nothing is read
+    private MongoClient mongoClient;
+
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private ReadRouting readRouting;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create("mongodb://localhost:27017,localhost:27018/?replicaSet=rs0");
+        mongoTemplate = new ReactiveMongoTemplate(mongoClient, "birdsdb");
+        readRouting = new ReadRouting();
+        ReflectionTestUtils.setField(readRouting, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(readRouting, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(readRouting, "maxStaleness", Duration.ofSeconds(120));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoClient.close();
+    }
+
+    @Test
+    void sendsQueryReadsToSecondariesAndKeepsOtherReadsOnThePrimary() {
+        ReflectionTestUtils.setField(readRouting, "queryReadPreference", "secondaryPreferred");
+        ReflectionTestUtils.invokeMethod(readRouting, "init");
+
+        assertFalse(readRouting.queriesPrimary());
+
+        ReactiveMongoTemplate queryReads = readRouting.reads("findPage", true);
+        assertNotSame(mongoTemplate, queryReads);
+        assertSame(queryReads, readRouting.reads("findPage", true));
+        assertSame(mongoTemplate, readRouting.reads("findByIdempotencyKeys", false));
+
+        assertEquals(2, meterRegistry.get("birds.mongodb.reads")
+            .tags("operation", "findPage", "readPreference", "secondaryPreferred").counter().count());
+        assertEquals(1, meterRegistry.get("birds.mongodb.reads")
+            .tags("operation", "findByIdempotencyKeys", "readPreference", "primary").counter().count());
+    }
+
+    @Test
+    void readsEverythingFromThePrimaryByDefault() {
+        ReflectionTestUtils.setField(readRouting, "queryReadPreference", "primary");
+        ReflectionTestUtils.setField(readRouting, "etagsEnabled", true);
+        ReflectionTestUtils.invokeMethod(readRouting, "init");
+
+        assertTrue(readRouting.queriesPrimary());
+        assertSame(mongoTemplate, readRouting.reads("stream", true));
+        assertEquals(1, meterRegistry.get("birds.mongodb.reads")
+            .tags("operation", "stream", "readPreference", "primary").counter().count());
+    }
+
+    @Test
+    void rejectsQueryReadsFromSecondariesWhileETagsAreEnabled() {
+        ReflectionTestUtils.setField(readRouting, "queryReadPreference", "secondaryPreferred");
+        ReflectionTestUtils.setField(readRouting, "etagsEnabled", true);
+
+        assertThrows(IllegalArgumentException.class, () -> ReflectionTestUtils.invokeMethod(readRouting, "init"));
+    }
+
+    @Test
+    void rejectsAMaxStalenessMongoDbWouldRefuse() {
+        ReflectionTestUtils.setField(readRouting, "queryReadPreference", "secondary");
+        ReflectionTestUtils.setField(readRouting, "maxStaleness", Duration.ofSeconds(30));
+
+        assertThrows(IllegalArgumentException.class, () -> ReflectionTestUtils.invokeMethod(readRouting, "init"));
+    }
+}
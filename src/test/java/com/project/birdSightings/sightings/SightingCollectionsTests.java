@@ -0,0 +1,80 @@
+package com.project.birdSightings.sightings;
+
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.repository.SightingCollections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingCollectionsTests {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private SightingCollections sightingCollections;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(sightingCollections, "monthlyBuckets", true);
+        ReflectionTestUtils.setField(sightingCollections, "bucketRefresh", Duration.ofSeconds(10));
+        when(mongoTemplate.getCollectionName(Sighting.class)).thenReturn("sightings");
+        when(mongoTemplate.getCollectionNames()).thenReturn(Flux.just(
+            "birds", "sighting_rollups", "sightings", "sightings_2021_08", "sightings_2021_06", "sightings_2021_07"
+        ));
+    }
+
+    @Test
+    void collectionForUsesMonthOfDate() {
+        assertEquals("sightings_2021_07", sightingCollections.collectionFor(LocalDate.of(2021, 7, 31)));
+    }
+
+    @Test
+    void collectionsForReturnsOnlyOverlappingBucketsInOrder() {
+        StepVerifier.create(sightingCollections.collectionsFor(LocalDate.of(2021, 7, 15), LocalDate.of(2022, 1, 1)))
+            .expectNext(Arrays.asList("sightings_2021_07", "sightings_2021_08"))
+            .verifyComplete();
+    }
+
+    @Test
+    void collectionsForWithoutBoundsReturnsAllBuckets() {
+        StepVerifier.create(sightingCollections.all())
+            .expectNext(Arrays.asList("sightings_2021_06", "sightings_2021_07", "sightings_2021_08"))
+            .verifyComplete();
+    }
+
+    @Test
+    void collectionsForRangeBeforeAllBucketsIsEmpty() {
+        StepVerifier.create(sightingCollections.collectionsFor(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31)))
+            .expectNext(Collections.emptyList())
+            .verifyComplete();
+    }
+
+    @Test
+    void singleCollectionWhenNotBucketed() {
+        ReflectionTestUtils.setField(sightingCollections, "monthlyBuckets", false);
+
+        assertEquals("sightings", sightingCollections.collectionFor(LocalDate.of(2021, 7, 31)));
+        StepVerifier.create(sightingCollections.collectionsFor(LocalDate.of(2021, 7, 1), null))
+            .expectNext(Collections.singletonList("sightings"))
+            .verifyComplete();
+        verify(mongoTemplate, never()).getCollectionNames();
+    }
+}
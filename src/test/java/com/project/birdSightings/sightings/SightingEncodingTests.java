@@ -0,0 +1,105 @@
+package com.project.birdSightings.sightings;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.project.birdSightings.config.JacksonConfig;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SightingEncodingTests {
+    private static final ResolvableType SIGHTING = ResolvableType.forClass(Sighting.class);
+    private static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+
+    @BeforeEach
+    void setUp() {
+        JacksonConfig jacksonConfig = new JacksonConfig();
+        configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(builder(jacksonConfig).build()));
+        configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(builder(jacksonConfig).build()));
+        jacksonConfig.binaryCodecs(builder(jacksonConfig)).customize(configurer);
+    }
+
+    @Test
+    void encodesTheSameSightingInFewerBytesAsCborAndSmile() {
+        Sighting sighting = new Sighting(new Bird("Sparrow", "Brown", "3.5", null), "Park", LocalDate.of(2021, 7, 1));
+        sighting.setId("61f0c0ffee0000000000abcd");
+        sighting.setPosition(new GeoJsonPoint(-73.97, 40.78));
+
+        byte[] json = encode(sighting, MediaType.APPLICATION_JSON);
+        String text = new String(json, StandardCharsets.UTF_8);
+        assertTrue(text.contains("\"coordinates\":[-73.97,40.78]"), text);
+        assertFalse(text.contains("height"));
+        assertFalse(text.contains("idempotencyKey"));
+
+        for (MediaType mediaType : new MediaType[] {MediaType.APPLICATION_JSON, CBOR, SMILE}) {
+            byte[] encoded = encode(sighting, mediaType);
+            if (!mediaType.equals(MediaType.APPLICATION_JSON)) {
+                assertTrue(encoded.length < json.length, mediaType + " is not smaller than JSON");
+            }
+            Sighting decoded = decode(encoded, mediaType);
+            assertEquals(sighting.getId(), decoded.getId());
+            assertEquals(sighting.getDate(), decoded.getDate());
+            assertEquals(sighting.getPosition(), decoded.getPosition());
+            assertEquals(3.5, decoded.getBird().getWeight());
+            assertNull(decoded.getBird().getHeight());
+        }
+    }
+
+    private byte[] encode(Sighting sighting, MediaType mediaType) {
+        Encoder<Sighting> encoder = configurer.getWriters().stream()
+            .filter(writer -> writer instanceof EncoderHttpMessageWriter && writer.canWrite(SIGHTING, mediaType))
+            .map(writer -> ((EncoderHttpMessageWriter<Sighting>) writer).getEncoder())
+            .findFirst()
+            .orElseThrow();
+        DataBuffer buffer = encoder.encodeValue(
+            sighting, DefaultDataBufferFactory.sharedInstance, SIGHTING, mediaType, Collections.emptyMap()
+        );
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    private Sighting decode(byte[] bytes, MediaType mediaType) {
+        Decoder<Sighting> decoder = configurer.getReaders().stream()
+            .filter(reader -> reader instanceof DecoderHttpMessageReader && reader.canRead(SIGHTING, mediaType))
+            .map(reader -> ((DecoderHttpMessageReader<Sighting>) reader).getDecoder())
+            .findFirst()
+            .orElseThrow();
+        return decoder.decode(DefaultDataBufferFactory.sharedInstance.wrap(bytes), SIGHTING, mediaType,
+            Collections.emptyMap());
+    }
+
+    private static Jackson2ObjectMapperBuilder builder(JacksonConfig jacksonConfig) {
+        return new Jackson2ObjectMapperBuilder()
+            .modulesToInstall(jacksonConfig.geoJsonModule(), new ParameterNamesModule())
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
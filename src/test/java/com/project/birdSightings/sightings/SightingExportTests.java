@@ -0,0 +1,148 @@
+package com.project.birdSightings.sightings;
+
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.ExportCompression;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.service.SightingExport;
+import com.project.birdSightings.service.SightingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.reactivestreams.Subscriber;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Operators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+class SightingExportTests {
+    private static final String HEADER = "id,date,bird,color,weight,height,location,longitude,latitude\n";
+
+    @Mock
+    private SightingService sightingService;
+
+    @InjectMocks
+    private SightingExport sightingExport;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(sightingExport, "rowsPerBuffer", 2);
+    }
+
+    @Test
+    void exportsCsvWithQuotedFields() {
+        Sighting plain = sighting("1", new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park");
+        plain.setPosition(new GeoJsonPoint(-73.97, 40.78));
+        Sighting quoted = sighting("2", new Bird("Robin", null, null, null), "Lake \"North\", shore");
+        when(sightingService.streamSightings(any(SightingFilter.class), isNull()))
+            .thenReturn(Flux.just(plain, quoted));
+
+        String csv = text(sightingExport.exportCsv(new SightingFilter(), ExportCompression.NONE, factory()));
+
+        assertEquals(HEADER
+            + "1,2021-07-01,Sparrow,Brown,3.5,0.5,Park,-73.97,40.78\n"
+            + "2,2021-07-01,Robin,,,,\"Lake \"\"North\"\", shore\",,\n", csv);
+    }
+
+    @Test
+    void gzipExportDecompressesToTheSameCsv() throws IOException {
+        List<Sighting> sightings = IntStream.range(0, 1000)
+            .mapToObj(i -> sighting(String.valueOf(i), new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park"))
+            .collect(Collectors.toList());
+        when(sightingService.streamSightings(any(SightingFilter.class), isNull()))
+            .thenReturn(Flux.fromIterable(sightings));
+
+        String csv = text(sightingExport.exportCsv(new SightingFilter(), ExportCompression.NONE, factory()));
+        byte[] gzipped = bytes(sightingExport.exportCsv(new SightingFilter(), ExportCompression.GZIP, factory()));
+
+        assertTrue(gzipped.length < csv.length() / 4);
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals(csv, new String(gunzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void emptyResultExportsTheHeaderOnly() throws IOException {
+        when(sightingService.streamSightings(any(SightingFilter.class), isNull())).thenReturn(Flux.empty());
+
+        byte[] gzipped = bytes(sightingExport.exportCsv(new SightingFilter(), ExportCompression.GZIP, factory()));
+
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals(HEADER, new String(gunzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void chunksArrivingAfterACancelAreDropped() {
+        ReflectionTestUtils.setField(sightingExport, "rowsPerBuffer", 1);
+        List<Subscriber<? super Sighting>> cursor = new ArrayList<>();
+        when(sightingService.streamSightings(any(SightingFilter.class), isNull())).thenReturn(Flux.from(subscriber -> {
+            cursor.add(subscriber);
+            subscriber.onSubscribe(Operators.emptySubscription());
+        }));
+        List<Throwable> dropped = new ArrayList<>();
+        Hooks.onErrorDropped(dropped::add);
+        try {
+            Disposable export = sightingExport.exportCsv(new SightingFilter(), ExportCompression.GZIP, factory())
+                .subscribe(DataBufferUtils::release);
+            export.dispose();
+            // The cursor still delivers a sighting it had fetched when the export was cancelled
+            cursor.get(0).onNext(sighting("1", new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park"));
+        } finally {
+            Hooks.resetOnErrorDropped();
+        }
+
+        assertEquals(Collections.emptyList(), dropped);
+    }
+
+    private static DefaultDataBufferFactory factory() {
+        return new DefaultDataBufferFactory();
+    }
+
+    private static String text(Flux<DataBuffer> buffers) {
+        return new String(bytes(buffers), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(Flux<DataBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffers.doOnNext(buffer -> {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            out.write(bytes, 0, bytes.length);
+            DataBufferUtils.release(buffer);
+        }).blockLast();
+        return out.toByteArray();
+    }
+
+    private static Sighting sighting(String id, Bird bird, String location) {
+        Sighting sighting = new Sighting(bird, location, LocalDate.of(2021, 7, 1));
+        sighting.setId(id);
+        return sighting;
+    }
+}
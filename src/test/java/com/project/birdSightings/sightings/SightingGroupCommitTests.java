@@ -0,0 +1,153 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.SightingRepository;
+import com.project.birdSightings.service.IdempotencyKeys;
+import com.project.birdSightings.service.SightingGroupCommit;
+import com.project.birdSightings.service.SightingStatsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingGroupCommitTests {
+
+    @Mock
+    private SightingRepository sightingRepository;
+
+    @Mock
+    private SightingStatsService sightingStatsService;
+
+    @Mock
+    private IdempotencyKeys idempotencyKeys;
+
+    @InjectMocks
+    private SightingGroupCommit sightingGroupCommit;
+
+    private final Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(sightingGroupCommit, "enabled", true);
+        ReflectionTestUtils.setField(sightingGroupCommit, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(sightingGroupCommit, "maxDelay", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(sightingGroupCommit, "concurrency", 1);
+        ReflectionTestUtils.invokeMethod(sightingGroupCommit, "init");
+        when(sightingStatsService.recordAdded(anyCollection())).thenReturn(Mono.empty());
+        when(idempotencyKeys.resolveReplays(anyList(), anyMap())).thenReturn(Mono.just(Collections.emptyMap()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(sightingGroupCommit, "flush");
+    }
+
+    @Test
+    void concurrentWritesShareOneInsert() {
+        when(sightingRepository.insertUnordered(anyList(), eq(WriteConcern.MAJORITY)))
+            .thenReturn(Mono.just(Collections.emptyMap()));
+
+        List<Sighting> stored = Flux.range(1, 3)
+            .map(day -> new Sighting(sparrow, "Park", LocalDate.of(2021, 7, day)))
+            .flatMap(sighting -> sightingGroupCommit.submit(sighting, Durability.MAJORITY))
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(3, stored.size());
+        verify(sightingRepository, times(1)).insertUnordered(anyList(), eq(WriteConcern.MAJORITY));
+        verify(sightingStatsService, times(1)).recordAdded(anyCollection());
+    }
+
+    @Test
+    void partialBatchIsWrittenAfterTheDelay() {
+        when(sightingRepository.insertUnordered(anyList(), eq(WriteConcern.W1)))
+            .thenReturn(Mono.just(Collections.emptyMap()));
+
+        Sighting sighting = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        StepVerifier.create(sightingGroupCommit.submit(sighting, Durability.W1))
+            .expectNext(sighting)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void replayedKeyCompletesWithTheOriginal() {
+        Sighting original = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        original.setId("original");
+        Sighting retry = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        retry.setIdempotencyKey("key-1");
+        when(sightingRepository.insertUnordered(anyList(), eq(WriteConcern.W1)))
+            .thenReturn(Mono.just(
+                Collections.singletonMap(0, WriteFailure.duplicateKey("E11000 duplicate key error"))
+            ));
+        when(idempotencyKeys.resolveReplays(anyList(), anyMap()))
+            .thenReturn(Mono.just(Collections.singletonMap(0, original)));
+
+        StepVerifier.create(sightingGroupCommit.submit(retry, Durability.W1))
+            .expectNext(original)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void rejectedRecordFailsOnlyItsOwnCaller() {
+        when(sightingRepository.insertUnordered(anyList(), eq(WriteConcern.JOURNALED)))
+            .thenReturn(Mono.just(Collections.singletonMap(1, WriteFailure.duplicateKey("duplicate key"))));
+
+        Sighting first = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        Sighting second = new Sighting(sparrow, "Garden", LocalDate.of(2021, 7, 2));
+        Sighting third = new Sighting(sparrow, "Lake", LocalDate.of(2021, 7, 3));
+        Mono<Sighting> firstWrite = sightingGroupCommit.submit(first, Durability.JOURNALED).cache();
+        Mono<Sighting> secondWrite = sightingGroupCommit.submit(second, Durability.JOURNALED).cache();
+        Mono<Sighting> thirdWrite = sightingGroupCommit.submit(third, Durability.JOURNALED).cache();
+        firstWrite.subscribe(value -> { }, error -> { });
+        secondWrite.subscribe(value -> { }, error -> { });
+        thirdWrite.subscribe(value -> { }, error -> { });
+
+        StepVerifier.create(firstWrite).expectNext(first).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(secondWrite).expectError(InvalidRequestException.class).verify(Duration.ofSeconds(5));
+        StepVerifier.create(thirdWrite).expectNext(third).expectComplete().verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void unsatisfiedWriteConcernFailsWithAServerError() {
+        when(sightingRepository.insertUnordered(anyList(), eq(WriteConcern.MAJORITY))).thenReturn(Mono.just(
+            Collections.singletonMap(0, WriteFailure.serverError("Write concern not satisfied."))
+        ));
+
+        Sighting sighting = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        StepVerifier.create(sightingGroupCommit.submit(sighting, Durability.MAJORITY))
+            .expectErrorSatisfies(error -> assertEquals(
+                HttpStatus.INTERNAL_SERVER_ERROR, ((ResponseStatusException) error).getStatus()
+            ))
+            .verify(Duration.ofSeconds(5));
+    }
+}
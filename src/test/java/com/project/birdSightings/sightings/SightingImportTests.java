@@ -0,0 +1,210 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.ImportJob;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.repository.BirdRepository;
+import com.project.birdSightings.repository.SightingRepository;
+import com.project.birdSightings.service.AdmissionControl;
+import com.project.birdSightings.service.SightingImport;
+import com.project.birdSightings.service.SightingStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingImportTests {
+    private static final String HEADER = "id,date,bird,color,weight,height,location,longitude,latitude\n";
+
+    @Mock
+    private BirdRepository birdRepository;
+
+    @Mock
+    private SightingRepository sightingRepository;
+
+    @Mock
+    private SightingStatsService sightingStatsService;
+
+    @Spy
+    private AdmissionControl admissionControl = new AdmissionControl();
+
+    @InjectMocks
+    private SightingImport sightingImport;
+
+    @TempDir
+    Path directory;
+
+    private final List<Sighting> inserted = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(sightingImport, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sightingImport, "directory", directory.toString());
+        ReflectionTestUtils.setField(sightingImport, "chunkSize", DataSize.ofBytes(64));
+        ReflectionTestUtils.setField(sightingImport, "batchSize", 2);
+        ReflectionTestUtils.setField(sightingImport, "writeConcurrency", 2);
+        ReflectionTestUtils.setField(sightingImport, "parallelism", 4);
+        ReflectionTestUtils.setField(sightingImport, "durability", Durability.MAJORITY);
+        ReflectionTestUtils.invokeMethod(sightingImport, "init");
+        when(birdRepository.findAll()).thenReturn(Flux.just(
+            new Bird("Sparrow", "Brown", "3.5", "0.5"), new Bird("Robin", "Red", "4.5", "0.8")
+        ));
+        when(sightingRepository.insertUnordered(anyList(), any(WriteConcern.class))).thenAnswer(invocation -> {
+            List<Sighting> batch = invocation.getArgument(0);
+            inserted.addAll(batch);
+            return Mono.just(Collections.emptyMap());
+        });
+        when(sightingStatsService.recordAdded(anyList())).thenReturn(Mono.empty());
+        when(sightingRepository.findByIdempotencyKeys(anyList())).thenReturn(Flux.empty());
+        when(sightingRepository.clearIdempotencyKeys(anyString())).thenReturn(Mono.just(0L));
+    }
+
+    @Test
+    void importsValidRecordsInChunksAndWritesTheRestToTheRejectFile() throws IOException {
+        List<String> locations = IntStream.range(0, 50).mapToObj(i -> "Park " + i).collect(Collectors.toList());
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (String location : locations) {
+            csv.append(",2021-07-01,Sparrow,,,,").append(location).append(",-73.97,40.78\n");
+        }
+        csv.append(",2021-07-02,Dodo,,,,Zoo,,\n")
+            .append(",07/02/2021,Robin,,,,Zoo,,\n")
+            .append("42,2021-07-03,Robin,Brown,1,1,\"Lake \"\"North\"\",\nshore\"\n");
+        Path file = write("sightings.csv", csv.toString());
+
+        ImportJob job = sightingImport.importFile(file).block(Duration.ofSeconds(10));
+
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(51, job.getImported());
+        assertEquals(2, job.getRejected());
+        assertEquals(100, job.getProgress());
+        // Chunks are written in file order
+        assertEquals(locations, inserted.subList(0, 50).stream()
+            .map(Sighting::getLocation).collect(Collectors.toList()));
+        assertEquals(-73.97, inserted.get(0).getPosition().getX());
+        assertEquals("Brown", inserted.get(0).getBird().getColor());
+        Sighting quoted = inserted.get(50);
+        assertEquals("42", quoted.getId());
+        assertEquals("Lake \"North\",\nshore", quoted.getLocation());
+        assertEquals("Red", quoted.getBird().getColor());
+        assertNull(quoted.getPosition());
+
+        List<String> rejects = Files.readAllLines(directory.resolve("sightings.csv.rejects"));
+        assertEquals(2, rejects.size());
+        assertEquals(csv.indexOf(",2021-07-02,Dodo") + ",\"Bird not found. Cannot add sighting.\","
+            + ",2021-07-02,Dodo,,,,Zoo,,", rejects.get(0));
+        assertEquals(csv.indexOf(",07/02/2021"), Long.parseLong(rejects.get(1).split(",")[0]));
+        assertFalse(Files.exists(directory.resolve("sightings.csv.checkpoint")));
+        // Every record of the import is keyed in one scope, whose keys are removed once the import completes
+        String keyPrefix = inserted.get(0).getIdempotencyKey().substring(0, "import:".length() + 25);
+        assertTrue(keyPrefix.startsWith("import:") && keyPrefix.endsWith(":"));
+        assertTrue(inserted.stream().allMatch(sighting -> sighting.getIdempotencyKey().startsWith(keyPrefix)));
+        verify(sightingRepository).clearIdempotencyKeys(keyPrefix);
+    }
+
+    @Test
+    void resumesFromTheCheckpoint() throws IOException {
+        String first = ",2021-07-01,Sparrow,,,,Park,,\n";
+        Path file = write("sightings.csv", first + ",2021-07-02,Robin,,,,Lake,,\n");
+        writeCheckpoint(file, first.length() + ",0,scope");
+
+        ImportJob job = sightingImport.importFile(file).block(Duration.ofSeconds(10));
+
+        assertEquals(first.length(), job.getResumedFrom());
+        assertEquals(1, job.getImported());
+        assertEquals(1, inserted.size());
+        assertEquals(LocalDate.of(2021, 7, 2), inserted.get(0).getDate());
+        assertEquals("import:scope:" + first.length(), inserted.get(0).getIdempotencyKey());
+        verify(sightingRepository).clearIdempotencyKeys("import:scope:");
+        assertFalse(Files.exists(directory.resolve("sightings.csv.checkpoint")));
+    }
+
+    @Test
+    void ignoresTheCheckpointOfAnEarlierFileWithTheSameName() throws IOException {
+        String first = ",2021-07-01,Sparrow,,,,Park,,\n";
+        Path file = write("sightings.csv", first + ",2021-07-02,Robin,,,,Lake,,\n");
+        writeCheckpoint(file, first.length() + ",0,scope");
+        Files.writeString(file, first + ",2021-07-03,Robin,,,,Garden,,\n");
+
+        ImportJob job = sightingImport.importFile(file).block(Duration.ofSeconds(10));
+
+        assertEquals(0, job.getResumedFrom());
+        assertEquals(2, inserted.size());
+        assertFalse(inserted.get(0).getIdempotencyKey().startsWith("import:scope:"));
+    }
+
+    @Test
+    void resumeSkipsTheRecordsOfTheInterruptedChunkThatWereStored() throws IOException {
+        String first = ",2021-07-01,Sparrow,,,,Park,,\n";
+        String second = ",2021-07-02,Dodo,,,,Zoo,,\n";
+        String third = ",2021-07-03,Robin,,,,Lake,,\n";
+        Path file = write("sightings.csv", first + second + third + ",2021-07-04,Robin,,,,Pond,,\n");
+        String kept = "0,\"Invalid record.\",\n";
+        write("sightings.csv.rejects", kept + first.length() + ",\"Bird not found. Cannot add sighting.\",\n");
+        writeCheckpoint(file, first.length() + "," + kept.length() + ",scope");
+        Sighting stored = new Sighting(new Bird("Robin", "Red", "4.5", "0.8"), "Lake", LocalDate.of(2021, 7, 3));
+        stored.setIdempotencyKey("import:scope:" + (first + second).length());
+        when(sightingRepository.findByIdempotencyKeys(anyList())).thenReturn(Flux.just(stored));
+        ReflectionTestUtils.setField(sightingImport, "chunkSize", DataSize.ofBytes(1024));
+
+        ImportJob job = sightingImport.importFile(file).block(Duration.ofSeconds(10));
+
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(1, inserted.size());
+        assertEquals("Pond", inserted.get(0).getLocation());
+        assertEquals("import:scope:" + (first + second + third).length(), inserted.get(0).getIdempotencyKey());
+        List<String> rejects = Files.readAllLines(directory.resolve("sightings.csv.rejects"));
+        assertEquals(2, rejects.size());
+        assertEquals(kept.trim(), rejects.get(0));
+        assertEquals(first.length(), Long.parseLong(rejects.get(1).split(",")[0]));
+    }
+
+    @Test
+    void onlyImportsFilesOfTheImportDirectory() {
+        assertThrows(ResourceNotFoundException.class, () -> sightingImport.start("../outside.csv"));
+        assertThrows(ResourceNotFoundException.class, () -> sightingImport.start("missing.csv"));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+
+    // Saves a checkpoint for the file as it is now
+    private void writeCheckpoint(Path file, String progress) throws IOException {
+        write(file.getFileName() + ".checkpoint",
+            progress + "," + Files.size(file) + "," + Files.getLastModifiedTime(file).toMillis());
+    }
+}
@@ -0,0 +1,183 @@
+package com.project.birdSightings.sightings;
+
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.errorHandling.ServiceOverloadedException;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.DeletionJob;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.repository.SightingRepository;
+import com.project.birdSightings.service.AdmissionControl;
+import com.project.birdSightings.service.SightingPurge;
+import com.project.birdSightings.service.SightingStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingPurgeTests {
+
+    @Mock
+    private SightingRepository sightingRepository;
+
+    @Mock
+    private SightingStatsService sightingStatsService;
+
+    @Spy
+    private AdmissionControl admissionControl = new AdmissionControl();
+
+    @InjectMocks
+    private SightingPurge sightingPurge;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(sightingPurge, "meterRegistry", registry);
+        ReflectionTestUtils.setField(sightingPurge, "batchSize", 2);
+        ReflectionTestUtils.setField(sightingPurge, "batchDelay", Duration.ZERO);
+        ReflectionTestUtils.setField(sightingPurge, "jobHistory", 10);
+        ReflectionTestUtils.setField(sightingPurge, "maxAge", Period.ZERO);
+        ReflectionTestUtils.invokeMethod(sightingPurge, "init");
+        when(sightingStatsService.recordDeleted(anyList())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void cascadeDeletesTheSightingsOfABirdInBatches() {
+        List<Sighting> first = Arrays.asList(sighting("2021-07-01"), sighting("2021-07-02"));
+        List<Sighting> second = Collections.singletonList(sighting("2021-07-03"));
+        when(sightingRepository.removeBatch(any(SightingFilter.class), eq(2)))
+            .thenReturn(Mono.just(first), Mono.just(second));
+
+        DeletionJob job = awaitFinished(sightingPurge.cascade("Sparrow"));
+
+        assertEquals(DeletionJob.Status.COMPLETED, job.getStatus());
+        assertEquals(DeletionJob.Kind.CASCADE, job.getKind());
+        assertEquals(3, job.getDeleted());
+        assertEquals(2, job.getBatches());
+        ArgumentCaptor<SightingFilter> filter = ArgumentCaptor.forClass(SightingFilter.class);
+        verify(sightingRepository, times(2)).removeBatch(filter.capture(), eq(2));
+        assertEquals("Sparrow", filter.getValue().getBirdName());
+        verify(sightingStatsService).recordDeleted(first);
+        verify(sightingStatsService).recordDeleted(second);
+        assertEquals(3, registry.get("birds.sightings.purged").tag("kind", "cascade").counter().count());
+        StepVerifier.create(sightingPurge.findJob(job.getId())).expectNext(job).verifyComplete();
+    }
+
+    @Test
+    void runningCascadeIsFoundByBirdNameUntilItEnds() {
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt())).thenReturn(Mono.never());
+        DeletionJob running = sightingPurge.cascade("Sparrow");
+
+        assertSame(running, sightingPurge.runningCascade("Sparrow"));
+        assertNull(sightingPurge.runningCascade("Robin"));
+
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt()))
+            .thenReturn(Mono.just(Collections.emptyList()));
+        awaitFinished(sightingPurge.cascade("Robin"));
+        assertNull(sightingPurge.runningCascade("Robin"));
+    }
+
+    @Test
+    void rejectedBatchesAreRetriedAfterTheRetryAfter() {
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt())).thenReturn(
+            Mono.error(new ServiceOverloadedException("Too many writes", false, Duration.ofMillis(10))),
+            Mono.just(Collections.singletonList(sighting("2021-07-01")))
+        );
+
+        DeletionJob job = awaitFinished(sightingPurge.cascade("Sparrow"));
+
+        assertEquals(DeletionJob.Status.COMPLETED, job.getStatus());
+        assertEquals(1, job.getDeleted());
+    }
+
+    @Test
+    void failedBatchFailsTheJob() {
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt()))
+            .thenReturn(Mono.error(new IllegalStateException("Connection reset")));
+
+        DeletionJob job = awaitFinished(sightingPurge.cascade("Sparrow"));
+
+        assertEquals(DeletionJob.Status.FAILED, job.getStatus());
+        assertEquals("Connection reset", job.getError());
+    }
+
+    @Test
+    void retentionPurgesSightingsOlderThanTheMaximumAgeOneJobAtATime() {
+        ReflectionTestUtils.setField(sightingPurge, "maxAge", Period.ofDays(30));
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt())).thenReturn(Mono.never());
+
+        DeletionJob job = sightingPurge.purgeExpired();
+
+        assertSame(job, sightingPurge.purgeExpired());
+        LocalDate lastExpired = LocalDate.now().minusDays(31);
+        assertEquals(DeletionJob.Kind.RETENTION, job.getKind());
+        assertEquals(lastExpired.toString(), job.getTarget());
+        ArgumentCaptor<SightingFilter> filter = ArgumentCaptor.forClass(SightingFilter.class);
+        verify(sightingRepository).removeBatch(filter.capture(), eq(2));
+        assertNull(filter.getValue().getStartDate());
+        assertEquals(lastExpired, filter.getValue().getEndDate());
+    }
+
+    @Test
+    void retentionWithoutMaximumAgeIsRejected() {
+        assertThrows(InvalidRequestException.class, sightingPurge::purgeExpired);
+    }
+
+    @Test
+    void onlyTheLastFinishedJobsAreKept() {
+        ReflectionTestUtils.setField(sightingPurge, "jobHistory", 2);
+        when(sightingRepository.removeBatch(any(SightingFilter.class), anyInt()))
+            .thenReturn(Mono.just(Collections.emptyList()));
+
+        DeletionJob oldest = awaitFinished(sightingPurge.cascade("Sparrow"));
+        DeletionJob older = awaitFinished(sightingPurge.cascade("Robin"));
+        DeletionJob newest = awaitFinished(sightingPurge.cascade("Wren"));
+
+        StepVerifier.create(sightingPurge.getJobs()).expectNext(newest, older).verifyComplete();
+        StepVerifier.create(sightingPurge.findJob(oldest.getId()))
+            .expectError(ResourceNotFoundException.class)
+            .verify();
+    }
+
+    private static DeletionJob awaitFinished(DeletionJob job) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (job.getStatus() == DeletionJob.Status.RUNNING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        return job;
+    }
+
+    private static Sighting sighting(String date) {
+        return new Sighting(new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park", LocalDate.parse(date));
+    }
+}
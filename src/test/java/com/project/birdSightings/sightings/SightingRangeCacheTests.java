@@ -0,0 +1,174 @@
+package com.project.birdSightings.sightings;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.repository.SightingRepository;
+import com.project.birdSightings.service.SightingRangeCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingRangeCacheTests {
+    private static final Bird SPARROW = new Bird("Sparrow", "Brown", "3.5", "0.5");
+
+    @Mock
+    private SightingRepository sightingRepository;
+
+    @InjectMocks
+    private SightingRangeCache sightingRangeCache;
+
+    private final List<Sighting> stored = new ArrayList<>();
+
+    private final List<String> queries = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(sightingRangeCache, "enabled", true);
+        ReflectionTestUtils.setField(sightingRangeCache, "maxMemory", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(sightingRangeCache, "maxSegmentSize", 3);
+        ReflectionTestUtils.setField(sightingRangeCache, "maxSegments", 40);
+        ReflectionTestUtils.invokeMethod(sightingRangeCache, "init");
+        when(sightingRepository.findPage(any(SightingFilter.class), any(), anyInt())).thenAnswer(invocation -> {
+            SightingFilter filter = invocation.getArgument(0);
+            SightingCursor after = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            queries.add(filter.getStartDate() + ".." + filter.getEndDate());
+            return Flux.fromIterable(stored.stream()
+                .filter(sighting -> !sighting.getDate().isBefore(filter.getStartDate())
+                    && !sighting.getDate().isAfter(filter.getEndDate()))
+                .sorted(Comparator.comparing(Sighting::getDate).thenComparing(Sighting::getId))
+                .filter(sighting -> after == null || sighting.getDate().isAfter(after.getDate())
+                    || sighting.getDate().equals(after.getDate()) && sighting.getId().compareTo(after.getId()) > 0)
+                .limit(limit)
+                .collect(Collectors.toList()));
+        });
+    }
+
+    @Test
+    void composesRangesFromSharedMonthAndDaySegments() {
+        store("a", 2021, 7, 10);
+        store("b", 2021, 7, 20);
+        store("c", 2021, 8, 2);
+        store("d", 2021, 6, 30);
+
+        assertEquals(List.of("d", "a", "b", "c"), ids(range(LocalDate.of(2021, 6, 30), LocalDate.of(2021, 8, 2)), 10));
+        assertEquals(List.of("2021-06-30..2021-06-30", "2021-07-01..2021-07-31", "2021-08-01..2021-08-01",
+            "2021-08-02..2021-08-02"), queries);
+
+        // July is shared with the first range, and the cursor continues within it
+        queries.clear();
+        SightingCursor afterA = new SightingCursor(LocalDate.of(2021, 7, 10), "a");
+        assertEquals(List.of("b"), sightingRangeCache.findPage(
+                range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31)), afterA, 10)
+            .map(Sighting::getId).collectList().block());
+        assertTrue(queries.isEmpty());
+
+        // A page stops loading segments once it is full
+        assertEquals(List.of("d"), ids(range(LocalDate.of(2021, 6, 29), LocalDate.of(2021, 9, 30)), 1));
+        assertEquals(List.of("2021-06-29..2021-06-29"), queries);
+    }
+
+    @Test
+    void writesOnlyInvalidateTheirDayAndMonth() {
+        Sighting july = store("a", 2021, 7, 10);
+        store("b", 2021, 8, 10);
+        SightingFilter summer = range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 8, 31));
+        ids(summer, 10);
+
+        queries.clear();
+        Sighting added = store("c", 2021, 7, 11);
+        sightingRangeCache.invalidate(List.of(added));
+        assertEquals(List.of("a", "c", "b"), ids(summer, 10));
+        assertEquals(List.of("2021-07-01..2021-07-31"), queries);
+
+        queries.clear();
+        stored.remove(july);
+        sightingRangeCache.invalidate(List.of(july));
+        assertEquals(List.of("c", "b"), ids(summer, 10));
+        assertEquals(List.of("2021-07-01..2021-07-31"), queries);
+    }
+
+    @Test
+    void readsSegmentsTooLargeToCacheFromTheRepository() {
+        for (String id : List.of("a", "b", "c", "d")) {
+            store(id, 2021, 7, 10);
+        }
+        SightingFilter july = range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31));
+        july.setQueryRead(true);
+
+        assertEquals(List.of("a", "b"), ids(july, 2));
+        queries.clear();
+        SightingCursor afterB = new SightingCursor(LocalDate.of(2021, 7, 10), "b");
+        assertEquals(List.of("c", "d"), sightingRangeCache.findPage(july, afterB, 2)
+            .map(Sighting::getId).collectList().block());
+        assertEquals(List.of("2021-07-01..2021-07-31"), queries);
+
+        // Segments are loaded from the primary; the reads of the query itself may go to a secondary
+        verify(sightingRepository).findPage(argThat(filter -> !filter.isQueryRead()), isNull(), eq(4));
+        verify(sightingRepository).findPage(argThat(SightingFilter::isQueryRead), eq(afterB), eq(2));
+    }
+
+    @Test
+    void onlyCoversPlainDateRangesAndPublishesItsHitRatio() {
+        SightingFilter withBird = range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31));
+        withBird.setBirdName("Sparrow");
+        assertFalse(sightingRangeCache.covers(withBird));
+        assertFalse(sightingRangeCache.covers(SightingFilter.byLocation("Park")));
+        assertTrue(sightingRangeCache.covers(range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31))));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sightingRangeCache.bindTo(registry);
+        store("a", 2021, 7, 10);
+        ids(range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31)), 10);
+        ids(range(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31)), 10);
+
+        // The weights of loaded segments are applied by Caffeine's maintenance, which runs asynchronously
+        AsyncCache<?, ?> cache = (AsyncCache<?, ?>) ReflectionTestUtils.getField(sightingRangeCache, "cache");
+        cache.synchronous().cleanUp();
+
+        assertEquals(0.5, registry.get("birds.range.cache.hit.ratio").gauge().value());
+        assertTrue(registry.get("birds.range.cache.memory").gauge().value() > 0);
+    }
+
+    private Sighting store(String id, int year, int month, int day) {
+        Sighting sighting = new Sighting(SPARROW, "Park", LocalDate.of(year, month, day));
+        sighting.setId(id);
+        stored.add(sighting);
+        return sighting;
+    }
+
+    private static SightingFilter range(LocalDate startDate, LocalDate endDate) {
+        return SightingFilter.byDateBetween(startDate, endDate);
+    }
+
+    private List<String> ids(SightingFilter filter, int limit) {
+        return sightingRangeCache.findPage(filter, null, limit).map(Sighting::getId).collectList().block();
+    }
+}
@@ -0,0 +1,147 @@
+package com.project.birdSightings.sightings;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.WriteConcernError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.MongoSightingRepository;
+import com.project.birdSightings.repository.ReadRouting;
+import com.project.birdSightings.repository.SightingCollections;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingRepositoryTests {
+    private static final Bird SPARROW = new Bird("Sparrow", "Brown", "3.5", "0.5");
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private SightingCollections sightingCollections;
+
+    @Mock
+    private ReadRouting readRouting;
+
+    @InjectMocks
+    private MongoSightingRepository sightingRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.remove(any(Query.class), any(String.class)))
+            .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+    }
+
+    @Test
+    void removeBatchFillsTheBatchFromTheNextMonthlyBucket() {
+        when(sightingCollections.collectionsFor(isNull(), isNull()))
+            .thenReturn(Mono.just(Arrays.asList("sightings_2021_06", "sightings_2021_07")));
+        List<Sighting> june = Arrays.asList(sighting("a", 2021, 6, 29), sighting("b", 2021, 6, 30));
+        List<Sighting> july = Collections.singletonList(sighting("c", 2021, 7, 1));
+        when(mongoTemplate.find(any(Query.class), eq(Sighting.class), eq("sightings_2021_06")))
+            .thenReturn(Flux.fromIterable(june));
+        when(mongoTemplate.find(any(Query.class), eq(Sighting.class), eq("sightings_2021_07")))
+            .thenReturn(Flux.fromIterable(july));
+
+        List<Sighting> batch = sightingRepository.removeBatch(SightingFilter.byBird("Sparrow"), 3).block();
+
+        assertEquals(Arrays.asList("a", "b", "c"), batch.stream().map(Sighting::getId).collect(Collectors.toList()));
+        ArgumentCaptor<Query> julyQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(julyQuery.capture(), eq(Sighting.class), eq("sightings_2021_07"));
+        assertEquals(1, julyQuery.getValue().getLimit());
+        verify(mongoTemplate).remove(any(Query.class), eq("sightings_2021_06"));
+        verify(mongoTemplate).remove(any(Query.class), eq("sightings_2021_07"));
+    }
+
+    @Test
+    void removeBatchIsEmptyOnceNoBucketHasMatches() {
+        when(sightingCollections.collectionsFor(isNull(), isNull()))
+            .thenReturn(Mono.just(Arrays.asList("sightings_2021_06", "sightings_2021_07")));
+        when(mongoTemplate.find(any(Query.class), eq(Sighting.class), any(String.class))).thenReturn(Flux.empty());
+
+        assertTrue(sightingRepository.removeBatch(SightingFilter.byBird("Sparrow"), 3).block().isEmpty());
+    }
+
+    @Test
+    void insertUnorderedFailsEveryRecordWithoutTheRequestedDurability() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter());
+        when(sightingCollections.collectionFor(any(LocalDate.class))).thenReturn("sightings");
+        when(sightingCollections.prepare("sightings")).thenReturn(Mono.just("sightings"));
+        when(mongoTemplate.getCollection("sightings")).thenReturn(Mono.just(collection));
+        when(collection.withWriteConcern(WriteConcern.MAJORITY)).thenReturn(collection);
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class))).thenReturn(Mono.error(
+            new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(2, 0, 0, 0, Collections.emptyList(), Collections.emptyList()),
+                Collections.emptyList(),
+                new WriteConcernError(64, "WriteConcernFailed", "waiting for replication timed out",
+                    new BsonDocument()),
+                new ServerAddress()
+            )
+        ));
+
+        Map<Integer, WriteFailure> failures = sightingRepository.insertUnordered(
+            Arrays.asList(sighting("a", 2021, 7, 1), sighting("b", 2021, 7, 2)), WriteConcern.MAJORITY
+        ).block();
+
+        assertEquals(Set.of(0, 1), failures.keySet());
+        assertEquals(WriteFailure.Kind.SERVER_ERROR, failures.get(0).getKind());
+        assertTrue(failures.get(0).getMessage().contains("waiting for replication timed out"));
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static Sighting sighting(String id, int year, int month, int day) {
+        Sighting sighting = new Sighting(SPARROW, "Park", LocalDate.of(year, month, day));
+        sighting.setId(id);
+        return sighting;
+    }
+}
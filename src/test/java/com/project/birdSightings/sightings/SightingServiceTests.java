@@ -0,0 +1,399 @@
+package com.project.birdSightings.sightings;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.WriteConcern;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.errorHandling.ResourceNotFoundException;
+import com.project.birdSightings.metrics.Instrumentation;
+import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.Durability;
+import com.project.birdSightings.model.IngestResult;
+import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingCursor;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.WriteFailure;
+import com.project.birdSightings.repository.SightingRepository;
+import com.project.birdSightings.service.AdmissionControl;
+import com.project.birdSightings.service.BirdCache;
+import com.project.birdSightings.service.Pagination;
+import com.project.birdSightings.service.SightingFeed;
+import com.project.birdSightings.service.SightingFields;
+import com.project.birdSightings.service.IdempotencyKeys;
+import com.project.birdSightings.service.SightingGroupCommit;
+import com.project.birdSightings.service.SightingRangeCache;
+import com.project.birdSightings.service.SightingService;
+import com.project.birdSightings.service.SightingStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SightingServiceTests {
+
+    @Mock
+    private SightingRepository sightingRepository;
+
+    @Mock
+    private BirdCache birdCache;
+
+    @Mock
+    private SightingStatsService sightingStatsService;
+
+    @Mock
+    private SightingFeed sightingFeed;
+
+    @Spy
+    private Pagination pagination = new Pagination();
+
+    @Spy
+    private Instrumentation instrumentation = new Instrumentation();
+
+    @Spy
+    private AdmissionControl admissionControl = new AdmissionControl();
+
+    @Spy
+    private SightingGroupCommit sightingGroupCommit = new SightingGroupCommit();
+
+    @Spy
+    private IdempotencyKeys idempotencyKeys = new IdempotencyKeys();
+
+    @Spy
+    private SightingRangeCache sightingRangeCache = new SightingRangeCache();
+
+    @InjectMocks
+    private SightingService sightingService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(instrumentation, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pagination, "defaultLimit", 2);
+        ReflectionTestUtils.setField(pagination, "maxLimit", 10);
+        ReflectionTestUtils.setField(sightingService, "ingestBatchSize", 2);
+        ReflectionTestUtils.setField(sightingService, "ingestConcurrency", 1);
+        ReflectionTestUtils.setField(sightingService, "defaultDurability", Durability.W1);
+        ReflectionTestUtils.setField(idempotencyKeys, "sightingRepository", sightingRepository);
+        ReflectionTestUtils.setField(idempotencyKeys, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotencyKeys, "expectedKeys", 100L);
+        ReflectionTestUtils.setField(idempotencyKeys, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.invokeMethod(idempotencyKeys, "init");
+        when(sightingStatsService.recordAdded(anyCollection())).thenReturn(Mono.empty());
+        when(sightingStatsService.recordDeleted(anyCollection())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void addSightingStoresWithRequestedWriteConcern() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        when(birdCache.findById("Sparrow")).thenReturn(Mono.just(sparrow));
+        when(sightingRepository.store(eq(sighting), any())).thenReturn(Mono.just(sighting));
+
+        StepVerifier.create(sightingService.addSighting(sighting, Durability.MAJORITY))
+            .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED)
+            .verifyComplete();
+        StepVerifier.create(sightingService.addSighting(sighting))
+            .expectNextCount(1)
+            .verifyComplete();
+
+        verify(sightingRepository).store(sighting, WriteConcern.MAJORITY);
+        verify(sightingRepository).store(sighting, WriteConcern.W1);
+        verify(sightingStatsService, times(2)).recordAdded(anyCollection());
+    }
+
+    @Test
+    void addSightingReturnsTheOriginalForAReplayedKey() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting first = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        first.setIdempotencyKey("key-1");
+        Sighting retry = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        retry.setIdempotencyKey("key-1");
+        when(birdCache.findById("Sparrow")).thenReturn(Mono.just(sparrow));
+        when(sightingRepository.store(eq(first), any())).thenAnswer(invocation -> {
+            first.setId("1");
+            return Mono.just(first);
+        });
+        when(sightingRepository.findByIdempotencyKeys(anyCollection())).thenReturn(Flux.just(first));
+
+        // The key is new to the filter, so the first submission is stored without a lookup
+        StepVerifier.create(sightingService.addSighting(first))
+            .expectNextMatches(response -> !response.getHeaders().containsKey("Idempotent-Replayed"))
+            .verifyComplete();
+        verify(sightingRepository, times(0)).findByIdempotencyKeys(anyCollection());
+
+        StepVerifier.create(sightingService.addSighting(retry))
+            .expectNextMatches(response -> response.getBody() == first
+                && "true".equals(response.getHeaders().getFirst("Idempotent-Replayed")))
+            .verifyComplete();
+        verify(sightingRepository, times(1)).store(any(), any());
+        verify(sightingStatsService, times(1)).recordAdded(anyCollection());
+    }
+
+    @Test
+    void addSightingFallsBackToTheUniqueIndexForUnknownKeys() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting original = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        original.setId("1");
+        original.setIdempotencyKey("key-1");
+        Sighting retry = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        retry.setIdempotencyKey("key-1");
+        when(birdCache.findById("Sparrow")).thenReturn(Mono.just(sparrow));
+        when(sightingRepository.store(eq(retry), any())).thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(sightingRepository.findByIdempotencyKeys(anyCollection())).thenReturn(Flux.just(original));
+
+        StepVerifier.create(sightingService.addSighting(retry))
+            .expectNextMatches(response -> response.getBody() == original)
+            .verifyComplete();
+    }
+
+    @Test
+    void addSightingsReportsReplayedKeysWithTheOriginalId() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting original = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        original.setId("original");
+        original.setIdempotencyKey("key-1");
+        Sighting retry = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        retry.setIdempotencyKey("key-1");
+        Sighting fresh = new Sighting(sparrow, "Garden", LocalDate.of(2021, 7, 2));
+
+        when(birdCache.findAllById(anyCollection())).thenReturn(Mono.just(Collections.singletonMap("Sparrow", sparrow)));
+        when(sightingRepository.insertUnordered(anyList(), any())).thenAnswer(invocation -> {
+            fresh.setId("fresh");
+            return Mono.just(
+                Collections.singletonMap(0, WriteFailure.duplicateKey("E11000 duplicate key error"))
+            );
+        });
+        when(sightingRepository.findByIdempotencyKeys(anyCollection())).thenReturn(Flux.just(original));
+
+        StepVerifier.create(sightingService.addSightings(Flux.just(retry, fresh)))
+            .expectNextMatches(result -> result.isAccepted() && "original".equals(result.getId()))
+            .expectNextMatches(result -> result.isAccepted() && "fresh".equals(result.getId()))
+            .verifyComplete();
+    }
+
+    @Test
+    void addSightingsResolvesBirdsOncePerBatch() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Bird unknown = new Bird("Dodo", "Grey", "10", "1");
+        Flux<Sighting> sightings = Flux.just(
+            new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1)),
+            new Sighting(sparrow, "Garden", LocalDate.of(2021, 7, 2)),
+            new Sighting(unknown, "Park", LocalDate.of(2021, 7, 3))
+        );
+
+        when(birdCache.findAllById(anyCollection()))
+            .thenReturn(Mono.just(Collections.singletonMap("Sparrow", sparrow)), Mono.just(Collections.emptyMap()));
+        when(sightingRepository.insertUnordered(anyList(), any())).thenAnswer(invocation -> {
+            List<Sighting> batch = invocation.getArgument(0);
+            batch.forEach(sighting -> sighting.setId("id-" + sighting.getLocation()));
+            return Mono.just(Collections.emptyMap());
+        });
+
+        StepVerifier.create(sightingService.addSightings(sightings).map(IngestResult::isAccepted))
+            .expectNext(true, true, false)
+            .verifyComplete();
+
+        verify(birdCache, times(2)).findAllById(anyCollection());
+        verify(sightingStatsService, times(2)).recordAdded(anyCollection());
+    }
+
+    @Test
+    void addSightingsReportsFailedInserts() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Flux<Sighting> sightings = Flux.just(
+            new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1)),
+            new Sighting(sparrow, "Garden", LocalDate.of(2021, 7, 2))
+        );
+
+        when(birdCache.findAllById(anyCollection())).thenReturn(Mono.just(Collections.singletonMap("Sparrow", sparrow)));
+        when(sightingRepository.insertUnordered(anyList(), any()))
+            .thenReturn(Mono.just(Collections.singletonMap(1, WriteFailure.duplicateKey("duplicate key"))));
+
+        StepVerifier.create(sightingService.addSightings(sightings))
+            .expectNextMatches(result -> result.isAccepted() && result.getIndex() == 0)
+            .expectNextMatches(result -> !result.isAccepted() && result.getMessage().equals("duplicate key"))
+            .verifyComplete();
+    }
+
+    @Test
+    void addSightingsRejectsIncompleteRecordsOneByOne() throws Exception {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Flux<Sighting> sightings = Flux.just(
+            "{\"bird\":{\"name\":\"Sparrow\"},\"location\":\"Park\",\"date\":\"2021-07-01\"}",
+            "{\"location\":\"Park\",\"date\":\"2021-07-01\"}",
+            "{\"bird\":{\"name\":\"Sparrow\"},\"location\":\"Park\"}",
+            "{\"bird\":{\"name\":\"Sparrow\"},\"location\":\"Park\",\"date\":\"2021-07-01\","
+                + "\"idempotencyKey\":\"import:1\"}"
+        ).map(record -> {
+            try {
+                return objectMapper.readValue(record, Sighting.class);
+            } catch (JsonProcessingException exception) {
+                throw new IllegalStateException(exception);
+            }
+        });
+
+        when(birdCache.findAllById(anyCollection())).thenReturn(Mono.just(Collections.singletonMap("Sparrow", sparrow)));
+        when(sightingRepository.insertUnordered(anyList(), any())).thenReturn(Mono.just(Collections.emptyMap()));
+
+        StepVerifier.create(sightingService.addSightings(sightings))
+            .expectNextMatches(result -> result.isAccepted() && result.getIndex() == 0)
+            .expectNextMatches(result -> !result.isAccepted()
+                && result.getMessage().equals("Invalid bird. The bird name is required."))
+            .expectNextMatches(result -> !result.isAccepted() && result.getIndex() == 2
+                && result.getMessage().equals("Invalid date. The date is required."))
+            .expectNextMatches(result -> !result.isAccepted() && result.getIndex() == 3
+                && result.getMessage().equals("Invalid idempotency key. Keys starting with import: are reserved."))
+            .verifyComplete();
+        assertThrows(InvalidRequestException.class,
+            () -> sightingService.addSighting(objectMapper.readValue("{\"location\":\"Park\"}", Sighting.class)));
+    }
+
+    @Test
+    void deleteSightingUpdatesStatistics() {
+        Sighting sighting = new Sighting(new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park", LocalDate.of(2021, 7, 1));
+        when(sightingRepository.removeById("1")).thenReturn(Mono.just(sighting));
+        when(sightingRepository.removeById("2")).thenReturn(Mono.empty());
+
+        StepVerifier.create(sightingService.deleteSighting("1")).verifyComplete();
+        StepVerifier.create(sightingService.deleteSighting("2")).verifyComplete();
+
+        verify(sightingStatsService, times(1)).recordDeleted(Collections.singletonList(sighting));
+    }
+
+    @Test
+    void liveSightingsAppliesFilters() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Bird robin = new Bird("Robin", "Red", "4.5", "0.8");
+        Sighting inBox = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        inBox.setPosition(new GeoJsonPoint(13.4, 52.5));
+        Sighting outsideBox = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        outsideBox.setPosition(new GeoJsonPoint(2.3, 48.8));
+        Sighting otherBird = new Sighting(robin, "Park", LocalDate.of(2021, 7, 1));
+        otherBird.setPosition(new GeoJsonPoint(13.4, 52.5));
+
+        when(sightingFeed.sightings(any())).thenAnswer(invocation ->
+            Flux.just(inBox, outsideBox, otherBird).filter(invocation.getArgument(0)));
+
+        StepVerifier.create(sightingService.liveSightings("Sparrow", null, 13.0, 52.0, 14.0, 53.0))
+            .expectNext(inBox)
+            .verifyComplete();
+    }
+
+    @Test
+    void getAllSightingsReturnsCursorWhenMorePagesExist() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting first = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 1));
+        Sighting second = new Sighting(sparrow, "Garden", LocalDate.of(2021, 7, 2));
+        Sighting third = new Sighting(sparrow, "Field", LocalDate.of(2021, 7, 3));
+        first.setId("a");
+        second.setId("b");
+        third.setId("c");
+
+        when(sightingRepository.findPage(any(SightingFilter.class), isNull(), eq(3)))
+            .thenReturn(Flux.just(first, second, third));
+
+        StepVerifier.create(sightingService.getAllSightings(null, null, null))
+            .expectNextMatches(page -> page.getItems().equals(Arrays.asList(first, second))
+                && pagination.decodeSightingCursor(page.getNext()).getId().equals("b")
+                && pagination.decodeSightingCursor(page.getNext()).getDate().equals(LocalDate.of(2021, 7, 2)))
+            .verifyComplete();
+    }
+
+    @Test
+    void getSightingsByLocationContinuesAfterCursor() {
+        Bird sparrow = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(sparrow, "Park", LocalDate.of(2021, 7, 3));
+        String cursor = pagination.encodeSightingCursor(new SightingCursor(LocalDate.of(2021, 7, 2), "b"));
+
+        when(sightingRepository.findPage(any(SightingFilter.class), any(SightingCursor.class), eq(3)))
+            .thenReturn(Flux.just(sighting));
+
+        StepVerifier.create(sightingService.getSightingsByLocation("Park", cursor, null, null))
+            .expectNextMatches(page -> page.getItems().size() == 1 && page.getNext() == null)
+            .verifyComplete();
+    }
+
+    @Test
+    void getSightingsByBirdAndDateConfirmOnThePrimaryThatALaggingMemberHasNoSightings() {
+        LocalDate day = LocalDate.of(2021, 7, 3);
+        Sighting sighting = new Sighting(new Bird("Sparrow", "Brown", "3.5", "0.5"), "Park", day);
+        when(sightingRepository.queryReadsMayLag()).thenReturn(true);
+        when(sightingRepository.findPage(any(SightingFilter.class), isNull(), eq(3))).thenAnswer(invocation ->
+            ((SightingFilter) invocation.getArgument(0)).isQueryRead() ? Flux.empty() : Flux.just(sighting));
+
+        StepVerifier.create(sightingService.getSightingsByBird("Sparrow", null, null, null))
+            .expectNextMatches(page -> page.getItems().equals(Collections.singletonList(sighting)))
+            .verifyComplete();
+        StepVerifier.create(sightingService.getSightingsByDateBetween(day, day, null, null, null))
+            .expectNextMatches(page -> page.getItems().equals(Collections.singletonList(sighting)))
+            .verifyComplete();
+
+        when(sightingRepository.findPage(any(SightingFilter.class), isNull(), eq(3))).thenReturn(Flux.empty());
+        StepVerifier.create(sightingService.getSightingsByBird("Sparrow", null, null, null))
+            .expectError(ResourceNotFoundException.class)
+            .verify();
+        StepVerifier.create(sightingService.getSightingsByDateBetween(day, day, null, null, null))
+            .expectError(ResourceNotFoundException.class)
+            .verify();
+    }
+
+    @Test
+    void getSightingsByLocationRejectsInvalidCursor() {
+        assertThrows(InvalidRequestException.class,
+            () -> sightingService.getSightingsByLocation("Park", "not a cursor", null, null));
+    }
+
+    @Test
+    void getSightingsByDateBetweenProjectsTheRequestedFields() {
+        Sighting sighting = new Sighting(new Bird("Sparrow", null, null, null), "Park", LocalDate.of(2021, 7, 3));
+        sighting.setId("a");
+        when(sightingRepository.findPage(argThat(filter -> filter.getFields() != null), isNull(), eq(3)))
+            .thenReturn(Flux.just(sighting));
+
+        StepVerifier.create(sightingService.getSightingsByDateBetween(
+                LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 31), null, null, "location, bird.name"))
+            .expectNextMatches(page -> page.getItems().equals(Collections.singletonList(sighting)))
+            .verifyComplete();
+        verify(sightingRepository).findPage(
+            argThat(filter -> filter.getFields().equals(Set.of("id", "date", "location", "bird.name"))
+                && filter.isQueryRead()),
+            isNull(), eq(3)
+        );
+    }
+
+    @Test
+    void getAllSightingsRejectsUnknownFields() {
+        assertThrows(InvalidRequestException.class, () -> sightingService.getAllSightings(null, null, "date,weight"));
+        assertEquals(Set.of("id", "date", "bird"), SightingFields.parse("bird.name,bird"));
+    }
+}
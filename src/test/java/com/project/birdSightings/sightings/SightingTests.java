@@ -1,23 +1,50 @@
 package com.project.birdSightings.sightings;
 
 import com.project.birdSightings.controller.SightingController;
+import com.project.birdSightings.errorHandling.InvalidRequestException;
+import com.project.birdSightings.metrics.Instrumentation;
 import com.project.birdSightings.model.Bird;
+import com.project.birdSightings.model.CursorPage;
+import com.project.birdSightings.model.IngestResult;
 import com.project.birdSightings.model.Sighting;
+import com.project.birdSightings.model.SightingFilter;
+import com.project.birdSightings.model.SightingStat;
+import com.project.birdSightings.model.StatDimension;
+import com.project.birdSightings.service.DataVersions;
 import com.project.birdSightings.service.SightingService;
+import com.project.birdSightings.service.SightingStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 class SightingTests {
@@ -25,12 +52,22 @@ class SightingTests {
     @Mock
     private SightingService sightingService;
 
+    @Mock
+    private SightingStatsService sightingStatsService;
+
+    @Spy
+    private Instrumentation instrumentation = new Instrumentation();
+
+    @Spy
+    private DataVersions dataVersions = new DataVersions();
+
     @InjectMocks
     private SightingController sightingController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(instrumentation, "meterRegistry", new SimpleMeterRegistry());
     }
 
     @Test
@@ -38,15 +75,35 @@ class SightingTests {
         Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
         Sighting sighting = new Sighting(bird, "Park",  LocalDate.of(2021, 7, 1));
 
-        when(sightingService.addSighting(any(Sighting.class))).thenReturn(Mono.just(ResponseEntity.ok(sighting)));
+        when(sightingService.addSighting(any(Sighting.class), any())).thenReturn(Mono.just(ResponseEntity.ok(sighting)));
 
-        Mono<ResponseEntity<Sighting>> result = sightingController.addSighting(sighting);
+        Mono<ResponseEntity<Sighting>> result = sightingController.addSighting(sighting, null, null);
 
         StepVerifier.create(result)
             .expectNext(ResponseEntity.ok(sighting))
             .verifyComplete();
     }
 
+    @Test
+    void addSightingsInBulkSuccessfully() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Flux<Sighting> sightings = Flux.just(
+            new Sighting(bird, "Park", LocalDate.of(2021, 7, 1)),
+            new Sighting(bird, "Garden", LocalDate.of(2021, 7, 2))
+        );
+        IngestResult accepted = IngestResult.accepted(0, "1");
+        IngestResult rejected = IngestResult.rejected(1, "Bird not found. Cannot add sighting.");
+
+        when(sightingService.addSightings(sightings, null)).thenReturn(Flux.just(accepted, rejected));
+
+        Flux<IngestResult> result = sightingController.addSightings(sightings, null);
+
+        StepVerifier.create(result)
+            .expectNext(accepted)
+            .expectNext(rejected)
+            .verifyComplete();
+    }
+
     @Test
     void getAllSightingsSuccessfully() {
         Bird bird1 = new Bird("Sparrow", "Brown", "3.5", "0.5");
@@ -54,9 +111,47 @@ class SightingTests {
         Sighting sighting1 = new Sighting(bird1, "Park", LocalDate.of(2021, 7, 1));
         Sighting sighting2 = new Sighting(bird2, "Park", LocalDate.of(2021, 8, 1));
 
-        when(sightingService.getAllSightings()).thenReturn(Flux.just(sighting1, sighting2));
+        when(sightingService.getAllSightings(null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(sighting1, sighting2), null)));
+
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getAllSightings(null, null, null, get("/api/sighting"));
+
+        StepVerifier.create(result)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(sighting1, sighting2))
+                && !response.getHeaders().containsKey("Next-Cursor"))
+            .verifyComplete();
+    }
+
+    @Test
+    void getAllSightingsReturnsNextCursor() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+
+        when(sightingService.getAllSightings("cursor", 1, null))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.singletonList(sighting), "next")));
+
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getAllSightings("cursor", 1, null, get("/api/sighting"));
+
+        StepVerifier.create(result)
+            .expectNextMatches(response -> response.getBody().equals(Collections.singletonList(sighting))
+                && "next".equals(response.getHeaders().getFirst("Next-Cursor")))
+            .verifyComplete();
+    }
+
+    @Test
+    void streamSightingsByDateSuccessfully() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting1 = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+        Sighting sighting2 = new Sighting(bird, "Garden", LocalDate.of(2021, 8, 1));
+        LocalDate startDate = LocalDate.of(2021, 6, 1);
+        LocalDate endDate = LocalDate.of(2021, 9, 1);
+
+        when(sightingService.streamSightings(any(SightingFilter.class), isNull()))
+            .thenReturn(Flux.just(sighting1, sighting2));
 
-        Flux<Sighting> result = sightingController.getAllSightings();
+        Flux<Sighting> result = sightingController.streamSightingsByDate(startDate, endDate, null, null);
 
         StepVerifier.create(result)
             .expectNext(sighting1)
@@ -70,13 +165,15 @@ class SightingTests {
         Sighting sighting1 = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
         Sighting sighting2 = new Sighting(bird, "Garden", LocalDate.of(2021, 8, 1));
 
-        when(sightingService.getSightingsByBird(bird)).thenReturn(Flux.just(sighting1, sighting2));
+        when(sightingService.getSightingsByBird("Sparrow", null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(sighting1, sighting2), null)));
 
-        Flux<Sighting> result = sightingController.getSightingsByBird(bird);
+        Mono<ResponseEntity<List<Sighting>>> result = sightingController.getSightingsByBird(
+            "Sparrow", null, null, null, get("/api/sighting/bird/Sparrow")
+        );
 
         StepVerifier.create(result)
-            .expectNext(sighting1)
-            .expectNext(sighting2)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(sighting1, sighting2)))
             .verifyComplete();
     }
 
@@ -86,21 +183,26 @@ class SightingTests {
         Bird bird2 = new Bird("Robin", "Red", "4.5", "0.8");
         Sighting sighting1 = new Sighting(bird1, "Park",   LocalDate.of(2021, 7, 1));
         Sighting sighting2 = new Sighting(bird2, "Park",  LocalDate.of(2021, 8, 1));
-        when(sightingService.getSightingsByLocation("Park")).thenReturn(Flux.just(sighting1, sighting2));
+        when(sightingService.getSightingsByLocation("Park", null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(sighting1, sighting2), null)));
 
-        Flux<Sighting> result = sightingController.getSightingsByLocation("Park");
+        Mono<ResponseEntity<List<Sighting>>> result = sightingController.getSightingsByLocation(
+            "Park", null, null, null, get("/api/sighting/location/Park")
+        );
 
         StepVerifier.create(result)
-            .expectNext(sighting1)
-            .expectNext(sighting2)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(sighting1, sighting2)))
             .verifyComplete();
     }
 
     @Test
     void getSightingByLocationNotFound() {
-        when(sightingService.getSightingsByLocation("NonExistentLocation")).thenReturn(Flux.empty());
+        when(sightingService.getSightingsByLocation("NonExistentLocation", null, null, null)).thenReturn(Mono.empty());
 
-        Flux<Sighting> result = sightingController.getSightingsByLocation("NonExistentLocation");
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getSightingsByLocation(
+                "NonExistentLocation", null, null, null, get("/api/sighting/location/NonExistentLocation")
+            );
 
         StepVerifier.create(result)
             .verifyComplete();
@@ -115,29 +217,153 @@ class SightingTests {
         LocalDate startDate = LocalDate.of(2021, 6, 1);
         LocalDate endDate = LocalDate.of(2021, 9, 1);
 
-        when(sightingService.getSightingsByDateBetween(startDate, endDate)).thenReturn(Flux.just(sighting1, sighting2));
+        when(sightingService.getSightingsByDateBetween(startDate, endDate, null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Arrays.asList(sighting1, sighting2), null)));
 
-        Flux<Sighting> result = sightingController.getSightingsByDate(startDate, endDate);
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getSightingsByDate(
+                startDate, endDate, null, null, null, get("/api/sighting/date-range")
+            );
 
         StepVerifier.create(result)
-            .expectNext(sighting1)
-            .expectNext(sighting2)
+            .expectNextMatches(response -> response.getBody().equals(Arrays.asList(sighting1, sighting2)))
             .verifyComplete();
     }
 
+    @Test
+    void getSightingsByDateIsOnlyModifiedByWritesToItsMonths() {
+        ReflectionTestUtils.setField(dataVersions, "enabled", true);
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        LocalDate startDate = LocalDate.of(2021, 6, 1);
+        LocalDate endDate = LocalDate.of(2021, 9, 1);
+        when(sightingService.getSightingsByDateBetween(startDate, endDate, null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.emptyList(), null)));
+
+        String eTag = sightingController
+            .getSightingsByDate(startDate, endDate, null, null, null, get("/api/sighting/date-range"))
+            .block().getHeaders().getETag();
+        dataVersions.sightingsChanged(Collections.singletonList(new Sighting(bird, "Park", LocalDate.of(2022, 1, 5))));
+        ResponseEntity<List<Sighting>> otherMonth =
+            sightingController.getSightingsByDate(
+                startDate, endDate, null, null, null, get("/api/sighting/date-range", eTag)
+            ).block();
+        dataVersions.sightingsChanged(Collections.singletonList(new Sighting(bird, "Park", LocalDate.of(2021, 8, 5))));
+        ResponseEntity<List<Sighting>> sameMonth =
+            sightingController.getSightingsByDate(
+                startDate, endDate, null, null, null, get("/api/sighting/date-range", eTag)
+            ).block();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, otherMonth.getStatusCode());
+        assertEquals(HttpStatus.OK, sameMonth.getStatusCode());
+    }
+
     @Test
     void getSightingsByDateNotFound() {
         LocalDate startDate = LocalDate.of(2021, 6, 1);
         LocalDate endDate = LocalDate.of(2021, 9, 1);
 
-        when(sightingService.getSightingsByDateBetween(startDate, endDate)).thenReturn(Flux.empty());
+        when(sightingService.getSightingsByDateBetween(startDate, endDate, null, null, null)).thenReturn(Mono.empty());
 
-        Flux<Sighting> result = sightingController.getSightingsByDate(startDate, endDate);
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getSightingsByDate(
+                startDate, endDate, null, null, null, get("/api/sighting/date-range")
+            );
 
         StepVerifier.create(result)
             .verifyComplete();
     }
 
+    @Test
+    void getSightingsNearSuccessfully() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+        sighting.setPosition(new GeoJsonPoint(13.4, 52.5));
+
+        when(sightingService.getSightingsNear(new GeoJsonPoint(13.4, 52.5), 5, null, null, null))
+            .thenReturn(Flux.just(sighting));
+
+        Flux<Sighting> result = sightingController.getSightingsNear(13.4, 52.5, 5, null, null, null);
+
+        StepVerifier.create(result)
+            .expectNext(sighting)
+            .verifyComplete();
+    }
+
+    @Test
+    void getSightingsNearRejectsInvalidCoordinates() {
+        assertThrows(InvalidRequestException.class,
+            () -> sightingController.getSightingsNear(13.4, 95, 5, null, null, null));
+        assertThrows(InvalidRequestException.class,
+            () -> sightingController.getSightingsNear(Double.NaN, 52.5, 5, null, null, null));
+        assertThrows(InvalidRequestException.class,
+            () -> sightingController.getSightingsNear(13.4, Double.POSITIVE_INFINITY, 5, null, null, null));
+    }
+
+    @Test
+    void getSightingsWithinBoxSuccessfully() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+        GeoJsonPolygon box = new GeoJsonPolygon(
+            new Point(13, 52), new Point(14, 52), new Point(14, 53), new Point(13, 53), new Point(13, 52)
+        );
+
+        when(sightingService.getSightingsWithin(box, null, null, null, null, null))
+            .thenReturn(Mono.just(new CursorPage<>(Collections.singletonList(sighting), null)));
+
+        Mono<ResponseEntity<List<Sighting>>> result =
+            sightingController.getSightingsWithin(
+                13.0, 52.0, 14.0, 53.0, null, null, null, null, null, null, get("/api/sighting/within")
+            );
+
+        StepVerifier.create(result)
+            .expectNextMatches(response -> response.getBody().equals(Collections.singletonList(sighting)))
+            .verifyComplete();
+    }
+
+    @Test
+    void getSightingsWithinRequiresArea() {
+        assertThrows(InvalidRequestException.class,
+            () -> sightingController.getSightingsWithin(
+                13.0, 52.0, null, null, null, null, null, null, null, null, get("/api/sighting/within")
+            ));
+    }
+
+    @Test
+    void liveSightingsSuccessfully() {
+        Bird bird = new Bird("Sparrow", "Brown", "3.5", "0.5");
+        Sighting sighting = new Sighting(bird, "Park", LocalDate.of(2021, 7, 1));
+
+        when(sightingService.liveSightings("Sparrow", null, null, null, null, null)).thenReturn(Flux.just(sighting));
+
+        Flux<Sighting> result = sightingController.liveSightings("Sparrow", null, null, null, null, null);
+
+        StepVerifier.create(result)
+            .expectNext(sighting)
+            .verifyComplete();
+    }
+
+    @Test
+    void getStatsSuccessfully() {
+        SightingStat sparrowStat = new SightingStat("Sparrow", null, "2021-07", 12);
+        SightingStat robinStat = new SightingStat("Robin", null, "2021-07", 3);
+
+        when(sightingStatsService.getStats(EnumSet.of(StatDimension.BIRD, StatDimension.MONTH), null, null, false))
+            .thenReturn(Flux.just(sparrowStat, robinStat));
+
+        Flux<SightingStat> result = sightingController.getStats(Arrays.asList("bird", "Month"), null, null, "rollup");
+
+        StepVerifier.create(result)
+            .expectNext(sparrowStat)
+            .expectNext(robinStat)
+            .verifyComplete();
+    }
+
+    @Test
+    void getStatsRejectsUnknownDimension() {
+        assertThrows(InvalidRequestException.class,
+            () -> sightingController.getStats(Collections.singletonList("species"), null, null, "rollup"));
+    }
+
     @Test
     void deleteSightingSuccessfully() {
         when(sightingService.deleteSighting("Sparrow")).thenReturn(Mono.empty());
@@ -147,4 +373,14 @@ class SightingTests {
         StepVerifier.create(result)
             .verifyComplete();
     }
-}
\ No newline at end of file
+
+    private static ServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private static ServerWebExchange get(String path, String ifNoneMatch) {
+        return MockServerWebExchange.from(
+            MockServerHttpRequest.get(path).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+        );
+    }
+}